@@ -3,10 +3,12 @@ package com.banquito.gateway.transacciones.banquito;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 //PRUEBA DEVOPS
 @SpringBootApplication
 @EnableFeignClients
+@EnableScheduling
 public class BanquitoApplication {
 
 	public static void main(String[] args) {
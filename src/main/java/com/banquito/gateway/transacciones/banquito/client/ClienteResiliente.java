@@ -0,0 +1,68 @@
+package com.banquito.gateway.transacciones.banquito.client;
+
+import java.io.IOException;
+import java.net.URI;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+/**
+ * Cliente HTTP de Feign con bulkhead y circuit breaker por servicio remoto (nombre del @FeignClient).
+ * Con el bulkhead lleno o el circuito abierto la llamada falla de inmediato con BulkheadFullException o
+ * CallNotPermittedException, sin ocupar una conexión ni esperar el read-timeout del servicio degradado.
+ */
+public class ClienteResiliente implements Client {
+
+    private final Client delegado;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    public ClienteResiliente(Client delegado, CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry) {
+        this.delegado = delegado;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        String cliente = nombreCliente(request);
+        Bulkhead bulkhead = this.bulkheadRegistry.bulkhead(cliente);
+        CircuitBreaker circuitBreaker = this.circuitBreakerRegistry.circuitBreaker(cliente);
+
+        bulkhead.acquirePermission();
+        try {
+            circuitBreaker.acquirePermission();
+            long inicio = circuitBreaker.getCurrentTimestamp();
+            try {
+                Response response = this.delegado.execute(request, options);
+                // Los 5xx cuentan como fallo según recordResult de la configuración del circuito
+                circuitBreaker.onResult(circuitBreaker.getCurrentTimestamp() - inicio,
+                        circuitBreaker.getTimestampUnit(), response);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - inicio,
+                        circuitBreaker.getTimestampUnit(), e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    static String nombreCliente(Request request) {
+        if (request.requestTemplate() != null && request.requestTemplate().feignTarget() != null) {
+            return request.requestTemplate().feignTarget().name();
+        }
+        return URI.create(request.url()).getHost();
+    }
+
+    public static boolean esFalloRemoto(Object resultado) {
+        return resultado instanceof Response response && response.status() >= 500;
+    }
+}
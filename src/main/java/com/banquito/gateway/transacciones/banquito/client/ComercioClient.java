@@ -6,7 +6,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 
 import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
 
-@FeignClient(name = "comercios", url = "http://gestioncomercios-alb-945169585.us-east-2.elb.amazonaws.com")
+@FeignClient(name = "comercios", url = "${gateway.clientes.comercios.url}")
 public interface ComercioClient {
     
     @GetMapping("/v1/comercios/pos/{codigoPOS}")
@@ -7,7 +7,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 import com.banquito.gateway.transacciones.banquito.client.dto.ProcesadorPagosDTO;
 //cometario de prueba para devops
-@FeignClient(name = "procesadorPagos", url = "http://procesatransaccion-alb-785318717.us-east-2.elb.amazonaws.com")
+@FeignClient(name = "procesadorPagos", url = "${gateway.clientes.procesador-pagos.url}")
 public interface ProcesadorPagosClient {
     
     @PostMapping("/api/v1/transacciones")
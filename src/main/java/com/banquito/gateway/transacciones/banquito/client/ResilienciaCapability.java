@@ -0,0 +1,26 @@
+package com.banquito.gateway.transacciones.banquito.client;
+
+import feign.Capability;
+import feign.Client;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+/**
+ * Envuelve el Client de cada @FeignClient con su bulkhead y circuit breaker. Debe ser una clase pública:
+ * Feign invoca los métodos enrich por reflexión.
+ */
+public class ResilienciaCapability implements Capability {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    public ResilienciaCapability(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return new ClienteResiliente(client, this.circuitBreakerRegistry, this.bulkheadRegistry);
+    }
+}
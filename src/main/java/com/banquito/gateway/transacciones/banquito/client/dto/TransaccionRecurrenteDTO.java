@@ -3,6 +3,8 @@ package com.banquito.gateway.transacciones.banquito.client.dto;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -22,6 +24,9 @@ public class TransaccionRecurrenteDTO {
     private String pais;
     private Long tarjeta;
     private LocalDate fechaCaducidad;
+    // El gateway no conserva el CVV (ver TransaccionRecurrenteService): sin valor el campo no se envía, en lugar
+    // de llegar al servicio de recurrentes como "cvv": null
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String cvv;
     private Integer frecuenciaDias;
 } 
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoAleatorio;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoSecuencial;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoTransaccion;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generador de COD_TRANSACCION, elegido con gateway.codigo-transaccion.generador:
+ * <ul>
+ * <li>aleatorio (por defecto): el esquema original basado en UUID; no necesita configuración por instancia.</li>
+ * <li>secuencial: ordenado por tiempo y único por nodo. Cada instancia debe tener un gateway.codigo-transaccion.nodo
+ * (GATEWAY_NODO) distinto; sin configurarlo la aplicación no arranca, porque dos instancias con el mismo nodo
+ * generarían códigos repetidos. Solo sirve si el despliegue asigna el nodo por instancia: las tareas de un servicio
+ * ECS comparten el mismo entorno.</li>
+ * </ul>
+ */
+@Configuration
+@Slf4j
+public class CodigoTransaccionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.codigo-transaccion.generador", havingValue = "secuencial")
+    public GeneradorCodigoTransaccion generadorCodigoSecuencial(
+            @Value("${gateway.codigo-transaccion.nodo:-1}") int nodo) {
+        if (nodo < 0) {
+            throw new IllegalStateException("gateway.codigo-transaccion.nodo (GATEWAY_NODO) no está configurado: "
+                    + "cada instancia necesita un nodo distinto entre 0 y " + (GeneradorCodigoSecuencial.NODOS - 1)
+                    + " o gateway.codigo-transaccion.generador=aleatorio");
+        }
+        log.info("Generador de códigos de transacción secuencial con el nodo {}", nodo);
+        return new GeneradorCodigoSecuencial(nodo);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.codigo-transaccion.generador", havingValue = "aleatorio",
+            matchIfMissing = true)
+    public GeneradorCodigoTransaccion generadorCodigoAleatorio() {
+        return new GeneradorCodigoAleatorio();
+    }
+}
@@ -0,0 +1,173 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Destino de las transacciones de solo lectura (ver ReplicasLecturaConfig): reparte las conexiones entre las
+ * réplicas cuyo retraso de replicación no supera el máximo tolerado y recurre a la primaria si ninguna lo cumple
+ * o si el hilo lo pidió con {@link #enPrimaria}. El retraso se mide periódicamente en cada réplica; una réplica
+ * cuyo receptor de WAL no está en streaming o lleva más de silencio-maximo sin recibir nada de la primaria queda
+ * fuera de servicio aunque esté al día con lo que recibió.
+ */
+@Slf4j
+public class EnrutadorLecturas extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARIA = "primaria";
+
+    private static final ThreadLocal<Boolean> PRIMARIA_FORZADA = new ThreadLocal<>();
+
+    // Fuera de recuperación el retraso es 0. En una réplica, -1 si el receptor de WAL no está en streaming o calla
+    // más de silencio-maximo (sano, pide respuesta a la primaria cada wal_receiver_timeout / 2 aunque no haya
+    // tráfico); si no, 0 cuando está al día con lo recibido o la antigüedad de lo último aplicado. El usuario de las
+    // réplicas necesita pg_read_all_stats: sin él pg_stat_wal_receiver oculta el estado y la réplica no se usa
+    private static final String CONSULTA_RETRASO = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0
+                        WHEN receptor.status IS DISTINCT FROM 'streaming'
+                                OR receptor.last_msg_receipt_time IS NULL
+                                OR now() - receptor.last_msg_receipt_time > ? * INTERVAL '1 millisecond' THEN -1
+                        WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE COALESCE((EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0)
+                   END
+            FROM (SELECT 1) AS consulta
+            LEFT JOIN pg_stat_wal_receiver AS receptor ON true
+            """;
+
+    private final List<DataSource> replicas;
+    private final List<JdbcTemplate> verificadores;
+    private final long retrasoMaximoMs;
+    private final long silencioMaximoMs;
+    // Retraso medido en ms por réplica; -1 si la réplica no respondió o no recibe de la primaria
+    private final AtomicLongArray retrasos;
+    private final AtomicInteger siguiente = new AtomicInteger();
+    private final Counter lecturasPrimaria;
+
+    public EnrutadorLecturas(DataSource primaria, List<DataSource> replicas, Duration retrasoMaximo,
+            Duration silencioMaximo, MeterRegistry meterRegistry) {
+        this.replicas = List.copyOf(replicas);
+        this.verificadores = this.replicas.stream().map(JdbcTemplate::new).toList();
+        this.retrasoMaximoMs = retrasoMaximo.toMillis();
+        this.silencioMaximoMs = silencioMaximo.toMillis();
+        this.retrasos = new AtomicLongArray(this.replicas.size());
+        for (int i = 0; i < this.replicas.size(); i++) {
+            this.retrasos.set(i, -1);
+        }
+
+        Map<Object, Object> destinos = new HashMap<>();
+        destinos.put(PRIMARIA, primaria);
+        for (int i = 0; i < this.replicas.size(); i++) {
+            destinos.put(i, this.replicas.get(i));
+            int replica = i;
+            Gauge.builder("gateway.replicas.retraso", this.retrasos, valores -> valores.get(replica))
+                    .description("Retraso de replicación medido en la réplica; -1 si no respondió o si no recibe "
+                            + "de la primaria")
+                    .baseUnit("milliseconds")
+                    .tag("replica", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.setTargetDataSources(destinos);
+        this.setDefaultTargetDataSource(primaria);
+        this.setLenientFallback(false);
+        this.lecturasPrimaria = Counter.builder("gateway.replicas.lecturas.primaria")
+                .description("Transacciones de solo lectura atendidas por la primaria")
+                .register(meterRegistry);
+    }
+
+    // Las réplicas empiezan fuera de servicio hasta la primera medición
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        this.verificarRetraso();
+    }
+
+    // Ejecuta la consulta con las lecturas de este hilo dirigidas a la primaria (lectura de lo recién escrito).
+    // La conexión se elige al ejecutar la primera sentencia, así que la transacción debe empezar dentro
+    public static <T> T enPrimaria(Supplier<T> consulta) {
+        Boolean anterior = PRIMARIA_FORZADA.get();
+        PRIMARIA_FORZADA.set(Boolean.TRUE);
+        try {
+            return consulta.get();
+        } finally {
+            if (anterior == null) {
+                PRIMARIA_FORZADA.remove();
+            } else {
+                PRIMARIA_FORZADA.set(anterior);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        int total = this.replicas.size();
+        if (total > 0 && !Boolean.TRUE.equals(PRIMARIA_FORZADA.get())) {
+            int inicio = Math.floorMod(this.siguiente.getAndIncrement(), total);
+            for (int i = 0; i < total; i++) {
+                int replica = (inicio + i) % total;
+                if (this.disponible(replica)) {
+                    return replica;
+                }
+            }
+        }
+        this.lecturasPrimaria.increment();
+        return PRIMARIA;
+    }
+
+    boolean disponible(int replica) {
+        long retraso = this.retrasos.get(replica);
+        return retraso >= 0 && retraso <= this.retrasoMaximoMs;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.replicas.intervalo-verificacion:PT1S}")
+    public void verificarRetraso() {
+        for (int i = 0; i < this.verificadores.size(); i++) {
+            long retraso;
+            try {
+                Long medido = this.verificadores.get(i).queryForObject(CONSULTA_RETRASO, Long.class,
+                        this.silencioMaximoMs);
+                retraso = medido == null ? -1 : medido;
+            } catch (RuntimeException e) {
+                log.warn("No se pudo medir el retraso de la réplica {}: {}", i, e.getMessage());
+                retraso = -1;
+            }
+            this.registrarRetraso(i, retraso);
+        }
+    }
+
+    void registrarRetraso(int replica, long retrasoMs) {
+        boolean estabaDisponible = this.disponible(replica);
+        this.retrasos.set(replica, retrasoMs);
+        boolean disponible = this.disponible(replica);
+        if (estabaDisponible && !disponible) {
+            log.warn("Réplica {} fuera de servicio para lecturas (retraso {} ms, máximo {} ms)",
+                    replica, retrasoMs, this.retrasoMaximoMs);
+        } else if (!estabaDisponible && disponible) {
+            log.info("Réplica {} disponible para lecturas (retraso {} ms)", replica, retrasoMs);
+        }
+    }
+
+    // Los pools de las réplicas se crean con el enrutador y se cierran con él
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : this.replicas) {
+            if (replica instanceof AutoCloseable cerrable) {
+                cerrable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Envía las transacciones de solo lectura (@Transactional(readOnly = true) y las consultas de los repositorios
+ * fuera de una transacción de escritura) a las réplicas de gateway.replicas.urls. Se activa con
+ * gateway.replicas.habilitado=true; sin él se mantiene el DataSource autoconfigurado.
+ * <p>
+ * LazyConnectionDataSourceProxy no pide la conexión hasta la primera sentencia, cuando el gestor de transacciones
+ * ya marcó si es de solo lectura: las de escritura van a la primaria y las de lectura a {@link EnrutadorLecturas}.
+ * Cada réplica tiene su propio pool, con la configuración de spring.datasource.hikari salvo el tamaño.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "gateway.replicas.habilitado", havingValue = "true")
+public class ReplicasLecturaConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource fuentePrimaria(DataSourceProperties propiedades) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaria.setPoolName("primaria");
+        return primaria;
+    }
+
+    @Bean
+    public EnrutadorLecturas enrutadorLecturas(HikariDataSource fuentePrimaria, DataSourceProperties propiedades,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.replicas.urls}") List<String> urls,
+            @Value("${gateway.replicas.usuario:${spring.datasource.username}}") String usuario,
+            @Value("${gateway.replicas.clave:${spring.datasource.password}}") String clave,
+            @Value("${gateway.replicas.tamanio-pool:10}") int tamanioPool,
+            @Value("${gateway.replicas.retraso-maximo:PT2S}") Duration retrasoMaximo,
+            @Value("${gateway.replicas.silencio-maximo:PT40S}") Duration silencioMaximo) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig configuracion = new HikariConfig();
+            fuentePrimaria.copyStateTo(configuracion);
+            configuracion.setPoolName("replica-" + i);
+            configuracion.setJdbcUrl(urls.get(i).trim());
+            configuracion.setUsername(usuario);
+            configuracion.setPassword(clave);
+            configuracion.setMaximumPoolSize(tamanioPool);
+            configuracion.setMinimumIdle(Math.min(configuracion.getMinimumIdle(), tamanioPool));
+            configuracion.setReadOnly(true);
+            replicas.add(new HikariDataSource(configuracion));
+        }
+        return new EnrutadorLecturas(fuentePrimaria, replicas, retrasoMaximo, silencioMaximo,
+                meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource fuentePrimaria, EnrutadorLecturas enrutadorLecturas) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(fuentePrimaria);
+        proxy.setReadOnlyDataSource(enrutadorLecturas);
+        return proxy;
+    }
+}
@@ -0,0 +1,93 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.banquito.gateway.transacciones.banquito.client.ClienteResiliente;
+import com.banquito.gateway.transacciones.banquito.client.ResilienciaCapability;
+
+import feign.Capability;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Aislamiento de los servicios remotos: cada @FeignClient tiene su propio bulkhead (llamadas concurrentes)
+ * y su propio circuit breaker, de modo que un procesador degradado no consume los hilos ni las conexiones
+ * que necesitan comercios o transacciones recurrentes. Los timeouts de conexión y lectura se configuran por
+ * cliente en spring.cloud.openfeign.client.config.
+ */
+@Configuration
+public class ResilienciaFeignConfig {
+
+    public static final String CLIENTE_COMERCIOS = "comercios";
+    public static final String CLIENTE_PROCESADOR_PAGOS = "procesadorPagos";
+    public static final String CLIENTE_TRANSACCIONES_RECURRENTES = "transaccionesRecurrentes";
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry,
+            @Value("${gateway.resiliencia.circuito.umbral-fallos:50}") float umbralFallos,
+            @Value("${gateway.resiliencia.circuito.umbral-lentas:80}") float umbralLentas,
+            @Value("${gateway.resiliencia.circuito.llamada-lenta:PT2S}") Duration llamadaLenta,
+            @Value("${gateway.resiliencia.circuito.ventana:50}") int ventana,
+            @Value("${gateway.resiliencia.circuito.minimo-llamadas:20}") int minimoLlamadas,
+            @Value("${gateway.resiliencia.circuito.espera-abierto:PT10S}") Duration esperaAbierto,
+            @Value("${gateway.resiliencia.circuito.llamadas-semiabierto:5}") int llamadasSemiabierto) {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(configuracionCircuito(umbralFallos, umbralLentas,
+                llamadaLenta, ventana, minimoLlamadas, esperaAbierto, llamadasSemiabierto));
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        registry.circuitBreaker(CLIENTE_COMERCIOS);
+        registry.circuitBreaker(CLIENTE_PROCESADOR_PAGOS);
+        registry.circuitBreaker(CLIENTE_TRANSACCIONES_RECURRENTES);
+        return registry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry,
+            @Value("${gateway.resiliencia.bulkhead.comercios:40}") int maximoComercios,
+            @Value("${gateway.resiliencia.bulkhead.procesador-pagos:100}") int maximoProcesador,
+            @Value("${gateway.resiliencia.bulkhead.transacciones-recurrentes:20}") int maximoRecurrentes) {
+        BulkheadRegistry registry = BulkheadRegistry.of(configuracionBulkhead(maximoRecurrentes));
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        registry.bulkhead(CLIENTE_COMERCIOS, configuracionBulkhead(maximoComercios));
+        registry.bulkhead(CLIENTE_PROCESADOR_PAGOS, configuracionBulkhead(maximoProcesador));
+        registry.bulkhead(CLIENTE_TRANSACCIONES_RECURRENTES, configuracionBulkhead(maximoRecurrentes));
+        return registry;
+    }
+
+    @Bean
+    public Capability resilienciaCapability(CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry) {
+        return new ResilienciaCapability(circuitBreakerRegistry, bulkheadRegistry);
+    }
+
+    public static CircuitBreakerConfig configuracionCircuito(float umbralFallos, float umbralLentas,
+            Duration llamadaLenta, int ventana, int minimoLlamadas, Duration esperaAbierto, int llamadasSemiabierto) {
+        return CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(ventana)
+                .minimumNumberOfCalls(minimoLlamadas)
+                .failureRateThreshold(umbralFallos)
+                .slowCallRateThreshold(umbralLentas)
+                .slowCallDurationThreshold(llamadaLenta)
+                .waitDurationInOpenState(esperaAbierto)
+                .permittedNumberOfCallsInHalfOpenState(llamadasSemiabierto)
+                .recordResult(ClienteResiliente::esFalloRemoto)
+                .build();
+    }
+
+    public static BulkheadConfig configuracionBulkhead(int maximoConcurrentes) {
+        // Sin espera: si el servicio remoto ya tiene todas sus llamadas ocupadas se falla de inmediato
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(maximoConcurrentes)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+    }
+}
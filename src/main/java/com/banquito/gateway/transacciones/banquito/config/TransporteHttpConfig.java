@@ -0,0 +1,149 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import feign.http2client.Http2Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * Transporte HTTP de los clientes Feign, elegido con gateway.http.transporte:
+ * <ul>
+ * <li>hc5 (por defecto): Apache HttpClient 5 con pool de conexiones persistentes, límite por ruta para cada
+ * servicio remoto, keep-alive acotado, desalojo de conexiones ociosas y métricas del pool.</li>
+ * <li>jdk: java.net.http.HttpClient, con HTTP/2 opcional (gateway.http.http2). No expone métricas de pool.</li>
+ * <li>url-connection: el cliente por defecto de Feign (HttpURLConnection).</li>
+ * </ul>
+ * Los timeouts de conexión y lectura siguen viniendo de spring.cloud.openfeign.client.config por cliente.
+ */
+@Configuration
+public class TransporteHttpConfig {
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "gateway.http.transporte", havingValue = "hc5", matchIfMissing = true)
+    static class TransporteHc5 {
+
+        @Bean(destroyMethod = "close")
+        public PoolingHttpClientConnectionManager feignConnectionManager(MeterRegistry meterRegistry,
+                @Value("${gateway.http.pool.max-total:200}") int maximoTotal,
+                @Value("${gateway.http.pool.max-por-ruta:20}") int maximoPorRuta,
+                @Value("${gateway.http.pool.tiempo-vida:PT5M}") Duration tiempoVida,
+                @Value("${gateway.http.pool.validar-tras-inactividad:PT2S}") Duration validarTrasInactividad,
+                @Value("${gateway.clientes.comercios.url}") String urlComercios,
+                @Value("${gateway.http.pool.max-por-ruta.comercios:40}") int maximoComercios,
+                @Value("${gateway.clientes.procesador-pagos.url}") String urlProcesador,
+                @Value("${gateway.http.pool.max-por-ruta.procesador-pagos:100}") int maximoProcesador,
+                @Value("${gateway.clientes.transacciones-recurrentes.url}") String urlRecurrentes,
+                @Value("${gateway.http.pool.max-por-ruta.transacciones-recurrentes:20}") int maximoRecurrentes) {
+            Map<String, Integer> maximoPorUrl = new LinkedHashMap<>();
+            maximoPorUrl.put(urlComercios, maximoComercios);
+            maximoPorUrl.put(urlProcesador, maximoProcesador);
+            maximoPorUrl.put(urlRecurrentes, maximoRecurrentes);
+            PoolingHttpClientConnectionManager connectionManager = crearConnectionManager(maximoTotal, maximoPorRuta,
+                    tiempoVida, validarTrasInactividad, maximoPorUrl);
+            new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "feign").bindTo(meterRegistry);
+            return connectionManager;
+        }
+
+        @Bean(destroyMethod = "close")
+        public CloseableHttpClient feignHttpClient(PoolingHttpClientConnectionManager feignConnectionManager,
+                @Value("${gateway.http.pool.keep-alive:PT30S}") Duration keepAlive,
+                @Value("${gateway.http.pool.inactividad-maxima:PT20S}") Duration inactividadMaxima,
+                @Value("${gateway.http.pool.espera-conexion:PT1S}") Duration esperaConexion) {
+            return crearHttpClient(feignConnectionManager, keepAlive, inactividadMaxima, esperaConexion);
+        }
+
+        @Bean
+        public Client feignClient(CloseableHttpClient feignHttpClient) {
+            return new ApacheHttp5Client(feignHttpClient);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "gateway.http.transporte", havingValue = "jdk")
+    static class TransporteJdk {
+
+        @Bean
+        public Client feignClient(@Value("${gateway.http.http2:false}") boolean http2,
+                @Value("${spring.cloud.openfeign.client.config.default.connect-timeout:1000}") long connectTimeoutMs) {
+            return new Http2Client(crearHttpClientJdk(http2, Duration.ofMillis(connectTimeoutMs)));
+        }
+    }
+
+    public static PoolingHttpClientConnectionManager crearConnectionManager(int maximoTotal, int maximoPorRuta,
+            Duration tiempoVida, Duration validarTrasInactividad, Map<String, Integer> maximoPorUrl) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maximoTotal)
+                .setMaxConnPerRoute(maximoPorRuta)
+                // LIFO: las conexiones más usadas se mantienen calientes y las sobrantes quedan ociosas y se desalojan
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setTimeToLive(TimeValue.of(tiempoVida))
+                        .setValidateAfterInactivity(TimeValue.of(validarTrasInactividad))
+                        .build())
+                .build();
+        maximoPorUrl.forEach((url, maximo) -> connectionManager.setMaxPerRoute(ruta(url), maximo));
+        return connectionManager;
+    }
+
+    public static CloseableHttpClient crearHttpClient(PoolingHttpClientConnectionManager connectionManager,
+            Duration keepAlive, Duration inactividadMaxima, Duration esperaConexion) {
+        // Se respeta el Keep-Alive del servidor pero nunca por encima de keepAlive, que debe quedar por debajo
+        // del idle timeout del ALB (60 s) para no reutilizar una conexión que el balanceador ya cerró
+        TimeValue keepAliveMaximo = TimeValue.of(keepAlive);
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue servidor = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(servidor) && servidor.compareTo(keepAliveMaximo) < 0
+                            ? servidor : keepAliveMaximo;
+                })
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(esperaConexion))
+                        .setRedirectsEnabled(false)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(inactividadMaxima))
+                .disableCookieManagement()
+                .build();
+    }
+
+    public static HttpClient crearHttpClientJdk(boolean http2, Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    // Misma normalización que el planificador de rutas de HttpClient: sin puerto explícito se usa el del esquema
+    static HttpRoute ruta(String url) {
+        URI uri = URI.create(url);
+        int puerto = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), puerto));
+    }
+}
@@ -1,33 +1,62 @@
 package com.banquito.gateway.transacciones.banquito.controller;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.banquito.gateway.transacciones.banquito.controller.dto.CursorPageResponseDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.EstadisticaDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.EventoTransaccionDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.PageResponseDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.ResultadoLoteDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionRecurrenteInboundDTO;
 import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.gateway.transacciones.banquito.exception.CodigoUnicoReutilizadoException;
+import com.banquito.gateway.transacciones.banquito.exception.SuscripcionRechazadaException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionEnCursoException;
 import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
 import com.banquito.gateway.transacciones.banquito.exception.TransaccionNotFoundException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
 import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.FiltroTransaccion;
+import com.banquito.gateway.transacciones.banquito.service.AutorizacionAsincronaService;
+import com.banquito.gateway.transacciones.banquito.service.BusquedaTransaccionService;
+import com.banquito.gateway.transacciones.banquito.service.CursorTransaccion;
+import com.banquito.gateway.transacciones.banquito.service.EstadisticasTransaccionService;
+import com.banquito.gateway.transacciones.banquito.service.EventosTransaccionService;
+import com.banquito.gateway.transacciones.banquito.service.FormatoExportacion;
+import com.banquito.gateway.transacciones.banquito.service.LoteTransaccionService;
+import com.banquito.gateway.transacciones.banquito.service.TransaccionExportacionService;
 import com.banquito.gateway.transacciones.banquito.service.TransaccionService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -46,22 +75,177 @@ public class TransaccionController {
 
     private final TransaccionService transaccionService;
     private final TransaccionMapper mapper;
+    private final TransaccionExportacionService exportacionService;
+    private final BusquedaTransaccionService busquedaService;
+    private final EstadisticasTransaccionService estadisticasService;
+    private final LoteTransaccionService loteService;
+    private final AutorizacionAsincronaService autorizacionAsincronaService;
+    private final EventosTransaccionService eventosService;
 
-    public TransaccionController(TransaccionService transaccionService, TransaccionMapper mapper) {
+    public TransaccionController(TransaccionService transaccionService, TransaccionMapper mapper,
+            TransaccionExportacionService exportacionService, BusquedaTransaccionService busquedaService,
+            EstadisticasTransaccionService estadisticasService, LoteTransaccionService loteService,
+            AutorizacionAsincronaService autorizacionAsincronaService, EventosTransaccionService eventosService) {
         this.transaccionService = transaccionService;
         this.mapper = mapper;
+        this.exportacionService = exportacionService;
+        this.busquedaService = busquedaService;
+        this.estadisticasService = estadisticasService;
+        this.loteService = loteService;
+        this.autorizacionAsincronaService = autorizacionAsincronaService;
+        this.eventosService = eventosService;
     }
 
     @PostMapping
     @Operation(summary = "Crear una nueva transacción", description = "Crea una nueva transacción en el sistema de pago")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Transacción creada exitosamente"),
-        @ApiResponse(responseCode = "400", description = "Datos de transacción inválidos")
+        @ApiResponse(responseCode = "200", description = "Transacción creada exitosamente (o resultado original si el código único se repite)"),
+        @ApiResponse(responseCode = "202", description = "Con Prefer: respond-async, transacción registrada en PEN; el estado final se consulta en el Location devuelto"),
+        @ApiResponse(responseCode = "400", description = "Datos de transacción inválidos"),
+        @ApiResponse(responseCode = "409", description = "Una solicitud con el mismo código único aún se está procesando")
     })
-    public ResponseEntity<TransaccionDTO> crearTransaccion(@Valid @RequestBody TransaccionPosDTO transaccionPosDTO) {
+    public ResponseEntity<TransaccionDTO> crearTransaccion(@Valid @RequestBody TransaccionPosDTO transaccionPosDTO,
+            @Parameter(description = "respond-async para responder al registrar la transacción en PEN, sin esperar al procesador de pagos")
+            @RequestHeader(name = "Prefer", required = false) String prefer) {
         log.info("Recibiendo petición para crear transacción desde POS: {}", transaccionPosDTO.getCodigoPOS());
-        Transaccion transaccion = this.transaccionService.procesarTransaccionPOS(transaccionPosDTO);
-        return ResponseEntity.ok(this.mapper.toDTO(transaccion));
+        if (prefer == null || !prefer.contains("respond-async")) {
+            Transaccion transaccion = this.transaccionService.procesarTransaccionPOS(transaccionPosDTO);
+            return ResponseEntity.ok(this.mapper.toDTO(transaccion));
+        }
+        
+        Transaccion transaccion = this.autorizacionAsincronaService.aceptar(transaccionPosDTO);
+        if (transaccion.getEstado() != EstadoTransaccion.PEN) {
+            return ResponseEntity.ok(this.mapper.toDTO(transaccion));
+        }
+        return ResponseEntity.accepted()
+                .location(UriComponentsBuilder.fromPath("/api/v1/transacciones/codigo-unico/{codigoUnico}/resultado")
+                        .buildAndExpand(transaccion.getCodigoUnicoTransaccion()).encode().toUri())
+                .header("Preference-Applied", "respond-async")
+                .body(this.mapper.toDTO(transaccion));
+    }
+
+    @GetMapping("/codigo-unico/{codigoUnico}/resultado")
+    @Operation(summary = "Esperar el estado final de una transacción", description = "Long-poll: responde en cuanto la transacción deja PEN, o al vencer la espera con su estado en ese momento")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Transacción en estado final (ACT, REJ o ERR)"),
+        @ApiResponse(responseCode = "202", description = "La transacción sigue en PEN al vencer la espera"),
+        @ApiResponse(responseCode = "404", description = "Transacción no encontrada")
+    })
+    public DeferredResult<ResponseEntity<TransaccionDTO>> esperarResultado(
+            @Parameter(description = "Código único de la transacción", required = true)
+            @PathVariable("codigoUnico") String codigoUnico,
+            @Parameter(description = "Segundos de espera como máximo")
+            @RequestParam(name = "espera", defaultValue = "30") long espera) {
+        Duration limite = this.autorizacionAsincronaService.limitarEspera(Duration.ofSeconds(espera));
+        AutorizacionAsincronaService.Espera resultado = this.autorizacionAsincronaService.esperarResultado(codigoUnico);
+        
+        DeferredResult<ResponseEntity<TransaccionDTO>> respuesta = new DeferredResult<>(limite.toMillis());
+        respuesta.onTimeout(() -> {
+            try {
+                Transaccion actual = this.autorizacionAsincronaService.estadoActual(codigoUnico);
+                respuesta.setResult(ResponseEntity.status(actual.getEstado() == EstadoTransaccion.PEN ? 202 : 200)
+                        .body(this.mapper.toDTO(actual)));
+            } catch (RuntimeException e) {
+                respuesta.setErrorResult(e);
+            }
+        });
+        resultado.resultado().thenAccept(transaccion -> respuesta.setResult(ResponseEntity.ok(this.mapper.toDTO(transaccion))));
+        return respuesta;
+    }
+
+    @GetMapping(path = "/codigo-unico/{codigoUnico}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Eventos de estado de una transacción", description = "Server-sent events: envía el estado actual y, si está en PEN, el estado final cuando se conoce; luego cierra el stream")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream de eventos 'estado'"),
+        @ApiResponse(responseCode = "404", description = "Transacción no encontrada")
+    })
+    public SseEmitter eventosTransaccion(
+            @Parameter(description = "Código único de la transacción", required = true)
+            @PathVariable("codigoUnico") String codigoUnico) {
+        AutorizacionAsincronaService.Espera resultado = this.autorizacionAsincronaService.esperarResultado(codigoUnico);
+        SseEmitter emisor = new SseEmitter(this.autorizacionAsincronaService.esperaMaxima().toMillis());
+        emisor.onTimeout(emisor::complete);
+        this.enviarEstado(emisor, resultado.actual());
+        if (resultado.actual().getEstado() != EstadoTransaccion.PEN) {
+            emisor.complete();
+            return emisor;
+        }
+        resultado.resultado().thenAccept(transaccion -> {
+            this.enviarEstado(emisor, transaccion);
+            emisor.complete();
+        });
+        return emisor;
+    }
+
+    @GetMapping(path = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Eventos de transacciones en vivo", description = "Server-sent events con cada creación ('creacion') y cambio de estado ('estado') de las transacciones que coinciden con los filtros. Con Last-Event-ID se reanuda desde el último evento recibido; si ya no se puede, llega un evento 'reinicio' y el estado debe volver a consultarse con GET /transacciones. Un cliente que no consume a tiempo se desconecta")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream de eventos"),
+        @ApiResponse(responseCode = "400", description = "Estado inválido"),
+        @ApiResponse(responseCode = "503", description = "Se alcanzó el máximo de suscriptores del nodo")
+    })
+    public SseEmitter eventos(
+            @Parameter(description = "Código del comercio") @RequestParam(name = "comercio", required = false) String comercio,
+            @Parameter(description = "Código del POS") @RequestParam(name = "pos", required = false) String pos,
+            @Parameter(description = "Estado de la transacción (PEN, ACT, REJ, ERR)") @RequestParam(name = "estado", required = false) String estado,
+            @Parameter(description = "Id del último evento recibido, para reanudar")
+            @RequestHeader(name = "Last-Event-ID", required = false) String ultimoEvento) {
+        EventosTransaccionService.Filtro filtro = new EventosTransaccionService.Filtro(comercio, pos,
+                EstadoTransaccion.desde(estado));
+        log.info("Nueva suscripción a eventos de transacciones: {}", filtro);
+        SseEmitter emisor = new SseEmitter(this.eventosService.duracionMaxima().toMillis());
+        try {
+            // Antes de suscribir, para que sea lo primero del stream. SseEmitter retiene lo enviado antes de que el
+            // método retorne y lo escribe al iniciar la respuesta: cabeceras y comentario salen al terminar el
+            // método, sin esperar al primer evento o latido
+            emisor.send(SseEmitter.event().comment("suscrito"));
+        } catch (IOException e) {
+            emisor.completeWithError(e);
+            return emisor;
+        }
+        EventosTransaccionService.Suscripcion suscripcion = this.eventosService.suscribir(filtro, ultimoEvento,
+                new EventosTransaccionService.Destino() {
+                    @Override
+                    public void enviar(EventosTransaccionService.Evento evento) throws IOException {
+                        emisor.send(SseEmitter.event()
+                                .id(evento.id())
+                                .name(evento.tipo())
+                                .data(evento.datos(TransaccionController.this::convertToEventoDTO), MediaType.APPLICATION_JSON));
+                    }
+
+                    @Override
+                    public void latido() throws IOException {
+                        emisor.send(SseEmitter.event().comment("latido"));
+                    }
+
+                    @Override
+                    public void cerrar(String motivo) {
+                        log.info("Cerrando suscripción a eventos ({}): {}", motivo, filtro);
+                        emisor.complete();
+                    }
+                });
+        emisor.onCompletion(() -> this.eventosService.cancelar(suscripcion));
+        emisor.onTimeout(emisor::complete);
+        emisor.onError(e -> this.eventosService.cancelar(suscripcion));
+        return emisor;
+    }
+
+    @PostMapping("/lote")
+    @Operation(summary = "Autorizar un lote de transacciones", description = "Procesa varias solicitudes del POS en una sola petición y devuelve el resultado de cada una, en el mismo orden, con el código de estado que habría tenido en POST /transacciones. Una solicitud inválida o rechazada no afecta a las demás")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote procesado; el resultado de cada transacción viaja en su elemento"),
+        @ApiResponse(responseCode = "400", description = "Lote vacío o con más transacciones que el máximo permitido")
+    })
+    public ResponseEntity<List<ResultadoLoteDTO>> crearTransacciones(@RequestBody List<TransaccionPosDTO> transacciones) {
+        log.info("Recibiendo lote de {} transacciones desde POS", transacciones != null ? transacciones.size() : 0);
+        List<LoteTransaccionService.ResultadoLote> resultados = this.loteService.procesar(transacciones);
+        
+        List<ResultadoLoteDTO> resultadosDTO = new ArrayList<>(resultados.size());
+        for (LoteTransaccionService.ResultadoLote resultado : resultados) {
+            resultadosDTO.add(this.convertToResultadoLoteDTO(resultado));
+        }
+        
+        return ResponseEntity.ok(resultadosDTO);
     }
 
     @GetMapping("/{id}")
@@ -93,7 +277,7 @@ public class TransaccionController {
     }
 
     @GetMapping
-    @Operation(summary = "Buscar transacciones con filtros", description = "Permite buscar transacciones aplicando diferentes filtros y paginación")
+    @Operation(summary = "Buscar transacciones con filtros", description = "Permite buscar transacciones combinando cualquier subconjunto de filtros, con paginación por página (offset) o por cursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente"),
         @ApiResponse(responseCode = "400", description = "Parámetros de búsqueda inválidos")
@@ -116,6 +300,24 @@ public class TransaccionController {
             @Parameter(description = "Tipo de transacción (PAG, RET, TRA, DEV)")
             @RequestParam(name = "tipo", required = false) String tipo,
             
+            @Parameter(description = "Código de moneda (USD, EUR, etc)")
+            @RequestParam(name = "moneda", required = false) String moneda,
+            
+            @Parameter(description = "Código de país ISO (2 caracteres)")
+            @RequestParam(name = "pais", required = false) String pais,
+            
+            @Parameter(description = "Monto mínimo")
+            @RequestParam(name = "montoMinimo", required = false) BigDecimal montoMinimo,
+            
+            @Parameter(description = "Monto máximo")
+            @RequestParam(name = "montoMaximo", required = false) BigDecimal montoMaximo,
+            
+            @Parameter(description = "Código SWIFT del banco")
+            @RequestParam(name = "swiftBanco", required = false) String swiftBanco,
+            
+            @Parameter(description = "Número de cuenta IBAN")
+            @RequestParam(name = "cuentaIban", required = false) String cuentaIban,
+            
             @Parameter(description = "Número de página (comenzando en 0)")
             @RequestParam(name = "page", defaultValue = "0") int page,
             
@@ -126,35 +328,86 @@ public class TransaccionController {
             @RequestParam(name = "sort", defaultValue = "fecha") String sort,
             
             @Parameter(description = "Dirección del ordenamiento (ASC, DESC)")
-            @RequestParam(name = "direction", defaultValue = "DESC") String direction) {
+            @RequestParam(name = "direction", defaultValue = "DESC") String direction,
+            
+            @Parameter(description = "Modo de paginación: offset (page/size) o cursor (ordenado por fecha y código)")
+            @RequestParam(name = "paginacion", defaultValue = "offset") String paginacion,
+            
+            @Parameter(description = "Token de continuación devuelto en nextCursor (solo paginación por cursor)")
+            @RequestParam(name = "cursor", required = false) String cursor,
+            
+            @Parameter(description = "Incluir el total de registros (solo paginación por cursor, implica un COUNT)")
+            @RequestParam(name = "incluirTotal", defaultValue = "false") boolean incluirTotal) {
         
         log.info("Buscando transacciones con filtros");
         
         Sort.Direction sortDirection = direction.equalsIgnoreCase("ASC") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        
+        FiltroTransaccion filtro = new FiltroTransaccion(estado, tipo, marca, moneda, pais, fechaInicio, fechaFin,
+                montoMinimo, montoMaximo, swiftBanco, cuentaIban);
+        
+        if (cursor != null || "cursor".equalsIgnoreCase(paginacion)) {
+            Specification<Transaccion> filtros = this.busquedaService.construir(filtro);
+            return ResponseEntity.ok(buscarPorCursor(filtros, cursor, sortDirection, size, incluirTotal));
+        }
+        
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sort));
         
-        if (estado != null && tipo != null) {
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorTipoYEstado(tipo, estado, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else if (marca != null && fechaInicio != null && fechaFin != null) {
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorMarcaYFecha(marca, fechaInicio, fechaFin, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else if (estado != null) {
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorEstado(estado, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else if (fechaInicio != null && fechaFin != null) {
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorFecha(fechaInicio, fechaFin, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else if (marca != null) {
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorMarca(marca, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else if (tipo != null) {
-            log.info("Buscando transacciones por tipo: {}", tipo);
-            Page<Transaccion> transaccionesPage = this.transaccionService.obtenerTransaccionesPorTipo(tipo, pageable);
-            return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
-        } else {
-            return ResponseEntity.badRequest().body("Se requiere al menos un parámetro de filtrado");
+        Page<Transaccion> transaccionesPage = this.busquedaService.buscar(filtro, pageable);
+        return ResponseEntity.ok(convertToPageResponseDTO(transaccionesPage));
+    }
+    
+    @GetMapping("/estadisticas")
+    @Operation(summary = "Estadísticas de volumen", description = "Cantidad, suma de montos y cantidad por estado de las transacciones creadas en una ventana, con resolución de un minuto, agrupadas por marca, moneda, país o tipo. Se calculan desde los agregados por minuto y por hora, sin recorrer las transacciones")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estadísticas calculadas exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Ventana, agrupación o intervalo inválidos")
+    })
+    public ResponseEntity<List<EstadisticaDTO>> obtenerEstadisticas(
+            @Parameter(description = "Inicio de la ventana, incluido (ISO DateTime)", required = true)
+            @RequestParam(name = "desde") 
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            
+            @Parameter(description = "Fin de la ventana, excluido (ISO DateTime)", required = true)
+            @RequestParam(name = "hasta") 
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            
+            @Parameter(description = "Dimensiones de agrupación separadas por coma: marca, moneda, pais, tipo")
+            @RequestParam(name = "agruparPor", required = false) List<String> agruparPor,
+            
+            @Parameter(description = "Serie temporal: total, hora o minuto")
+            @RequestParam(name = "intervalo", defaultValue = "total") String intervalo) {
+        
+        log.info("Consultando estadísticas entre {} y {} agrupadas por {} ({})", desde, hasta, agruparPor, intervalo);
+        List<EstadisticasTransaccionService.Estadistica> estadisticas = 
+                this.estadisticasService.consultar(desde, hasta, agruparPor, intervalo);
+        
+        List<EstadisticaDTO> estadisticasDTO = new ArrayList<>(estadisticas.size());
+        for (EstadisticasTransaccionService.Estadistica estadistica : estadisticas) {
+            estadisticasDTO.add(this.mapper.toDTO(estadistica));
         }
+        
+        return ResponseEntity.ok(estadisticasDTO);
+    }
+    
+    @PostMapping("/estadisticas/reconstruccion")
+    @Operation(summary = "Reconstruir estadísticas", description = "Recalcula desde las transacciones los agregados de las horas que cubren la ventana, por ejemplo tras la caída de una instancia con agregados sin volcar")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estadísticas reconstruidas exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Ventana inválida")
+    })
+    public ResponseEntity<Map<String, Integer>> reconstruirEstadisticas(
+            @Parameter(description = "Inicio de la ventana (ISO DateTime)", required = true)
+            @RequestParam(name = "desde") 
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            
+            @Parameter(description = "Fin de la ventana (ISO DateTime)", required = true)
+            @RequestParam(name = "hasta") 
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        
+        log.info("Reconstruyendo estadísticas entre {} y {}", desde, hasta);
+        int agregados = this.estadisticasService.reconstruir(desde, hasta);
+        return ResponseEntity.ok(Map.of("agregadosPorMinuto", agregados));
     }
     
     @GetMapping("/tarjeta/{numeroTarjeta}")
@@ -292,6 +545,133 @@ public class TransaccionController {
         return ResponseEntity.ok(transaccionesDTO);
     }
     
+    @GetMapping("/tarjeta/{numeroTarjeta}/exportacion")
+    @Operation(summary = "Exportar transacciones por número de tarjeta", description = "Transmite en NDJSON o CSV todas las transacciones de una tarjeta sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Formato de exportación inválido")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorTarjeta(
+            @Parameter(description = "Número de tarjeta (16 dígitos)", required = true)
+            @PathVariable("numeroTarjeta") String numeroTarjeta,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        log.info("Exportando transacciones para la tarjeta: {}", numeroTarjeta);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        return this.respuestaExportacion(formatoExportacion,
+                salida -> this.exportacionService.exportarPorTarjeta(numeroTarjeta, formatoExportacion, salida));
+    }
+    
+    @GetMapping("/swift-banco/{swiftBanco}/exportacion")
+    @Operation(summary = "Exportar transacciones por código SWIFT de banco", description = "Transmite en NDJSON o CSV todas las transacciones de un banco sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Formato de exportación inválido")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorSwiftBanco(
+            @Parameter(description = "Código SWIFT del banco", required = true)
+            @PathVariable("swiftBanco") String swiftBanco,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        log.info("Exportando transacciones para el banco con SWIFT: {}", swiftBanco);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        return this.respuestaExportacion(formatoExportacion,
+                salida -> this.exportacionService.exportarPorSwiftBanco(swiftBanco, formatoExportacion, salida));
+    }
+    
+    @GetMapping("/cuenta-iban/{cuentaIban}/exportacion")
+    @Operation(summary = "Exportar transacciones por cuenta IBAN", description = "Transmite en NDJSON o CSV todas las transacciones de una cuenta sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Formato de exportación inválido")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorCuentaIban(
+            @Parameter(description = "Número de cuenta IBAN", required = true)
+            @PathVariable("cuentaIban") String cuentaIban,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        log.info("Exportando transacciones para la cuenta IBAN: {}", cuentaIban);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        return this.respuestaExportacion(formatoExportacion,
+                salida -> this.exportacionService.exportarPorCuentaIban(cuentaIban, formatoExportacion, salida));
+    }
+    
+    @GetMapping("/moneda/{moneda}/exportacion")
+    @Operation(summary = "Exportar transacciones por moneda", description = "Transmite en NDJSON o CSV todas las transacciones en una moneda sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Formato de exportación inválido")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorMoneda(
+            @Parameter(description = "Código de moneda (USD, EUR, etc)", required = true)
+            @PathVariable("moneda") String moneda,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        log.info("Exportando transacciones en moneda: {}", moneda);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        return this.respuestaExportacion(formatoExportacion,
+                salida -> this.exportacionService.exportarPorMoneda(moneda, formatoExportacion, salida));
+    }
+    
+    @GetMapping("/pais/{pais}/exportacion")
+    @Operation(summary = "Exportar transacciones por país", description = "Transmite en NDJSON o CSV todas las transacciones de un país sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Formato de exportación inválido")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorPais(
+            @Parameter(description = "Código de país ISO (2 caracteres)", required = true)
+            @PathVariable("pais") String pais,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        log.info("Exportando transacciones del país: {}", pais);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        return this.respuestaExportacion(formatoExportacion,
+                salida -> this.exportacionService.exportarPorPais(pais, formatoExportacion, salida));
+    }
+    
+    @GetMapping("/monto/exportacion")
+    @Operation(summary = "Exportar transacciones por rango de monto", description = "Transmite en NDJSON o CSV las transacciones filtradas por monto sin cargarlas en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación iniciada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Parámetros de búsqueda inválidos")
+    })
+    public ResponseEntity<StreamingResponseBody> exportarTransaccionesPorMonto(
+            @Parameter(description = "Monto mínimo")
+            @RequestParam(name = "minimo", required = false) BigDecimal montoMinimo,
+            
+            @Parameter(description = "Monto máximo")
+            @RequestParam(name = "maximo", required = false) BigDecimal montoMaximo,
+            
+            @Parameter(description = "Formato de salida: ndjson o csv")
+            @RequestParam(name = "formato", defaultValue = "ndjson") String formato) {
+        
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        if (montoMinimo != null && montoMaximo != null) {
+            return ResponseEntity.badRequest().build();
+        } else if (montoMinimo != null) {
+            log.info("Exportando transacciones con monto mínimo: {}", montoMinimo);
+            return this.respuestaExportacion(formatoExportacion,
+                    salida -> this.exportacionService.exportarPorMontoMinimo(montoMinimo, formatoExportacion, salida));
+        } else if (montoMaximo != null) {
+            log.info("Exportando transacciones con monto máximo: {}", montoMaximo);
+            return this.respuestaExportacion(formatoExportacion,
+                    salida -> this.exportacionService.exportarPorMontoMaximo(montoMaximo, formatoExportacion, salida));
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PostMapping("/recurrentes")
     @Operation(summary = "Procesar una transacción recurrente", description = "Procesa una transacción recurrente proveniente del microservicio de transacciones recurrentes")
     @ApiResponses(value = {
@@ -318,6 +698,86 @@ public class TransaccionController {
         return ResponseEntity.status(400).body(e.getMessage());
     }
     
+    @ExceptionHandler({SuscripcionRechazadaException.class})
+    public ResponseEntity<String> handleSuscripcionRechazada(SuscripcionRechazadaException e) {
+        log.warn("Suscripción rechazada: {}", e.getMessage());
+        return ResponseEntity.status(503).body(e.getMessage());
+    }
+    
+    @ExceptionHandler({TransaccionEnCursoException.class})
+    public ResponseEntity<String> handleTransaccionEnCurso(TransaccionEnCursoException e) {
+        log.warn("Transacción en curso: {}", e.getMessage());
+        return ResponseEntity.status(409).body(e.getMessage());
+    }
+    
+    @ExceptionHandler({CodigoUnicoReutilizadoException.class})
+    public ResponseEntity<String> handleCodigoUnicoReutilizado(CodigoUnicoReutilizadoException e) {
+        log.warn("Código único reutilizado: {}", e.getMessage());
+        return ResponseEntity.status(422).body(e.getMessage());
+    }
+    
+    private void enviarEstado(SseEmitter emisor, Transaccion transaccion) {
+        try {
+            emisor.send(SseEmitter.event()
+                    .name("estado")
+                    .data(this.mapper.toDTO(transaccion), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            log.debug("El cliente cerró el stream de la transacción {}", transaccion.getCodigoUnicoTransaccion());
+            emisor.completeWithError(e);
+        }
+    }
+    
+    private EventoTransaccionDTO convertToEventoDTO(EventosTransaccionService.Evento evento) {
+        return new EventoTransaccionDTO(evento.tipo(),
+                evento.estadoAnterior() != null ? evento.estadoAnterior().name() : null,
+                evento.codigoComercio(), evento.codigoPOS(),
+                evento.transaccion() != null ? this.mapper.toDTO(evento.transaccion()) : null);
+    }
+    
+    // Los mismos códigos que los @ExceptionHandler para una transacción individual
+    private ResultadoLoteDTO convertToResultadoLoteDTO(LoteTransaccionService.ResultadoLote resultado) {
+        if (resultado.error() == null) {
+            return new ResultadoLoteDTO(resultado.indice(), resultado.codigoUnicoTransaccion(), 200,
+                    this.mapper.toDTO(resultado.transaccion()), null);
+        }
+        int codigoEstado;
+        String mensaje = resultado.error().getMessage();
+        if (resultado.error() instanceof TransaccionEnCursoException) {
+            codigoEstado = 409;
+        } else if (resultado.error() instanceof CodigoUnicoReutilizadoException) {
+            codigoEstado = 422;
+        } else if (resultado.error() instanceof TransaccionInvalidaException) {
+            codigoEstado = 400;
+        } else {
+            log.error("Error inesperado en la transacción {} del lote: {}", resultado.indice(), mensaje);
+            codigoEstado = 500;
+            mensaje = "Error interno al procesar la transacción";
+        }
+        return new ResultadoLoteDTO(resultado.indice(), resultado.codigoUnicoTransaccion(), codigoEstado, null, mensaje);
+    }
+    
+    private CursorPageResponseDTO<TransaccionDTO> buscarPorCursor(Specification<Transaccion> filtros, String cursor,
+            Sort.Direction direccion, int size, boolean incluirTotal) {
+        CursorTransaccion cursorTransaccion = cursor != null ? CursorTransaccion.decodificar(cursor) : null;
+        Sort.Direction direccionEfectiva = cursorTransaccion != null ? cursorTransaccion.direccion() : direccion;
+        Window<Transaccion> ventana = this.transaccionService.obtenerTransaccionesPorCursor(
+                filtros, cursorTransaccion, direccionEfectiva, size);
+        
+        List<TransaccionDTO> dtos = new ArrayList<>(ventana.size());
+        for (Transaccion transaccion : ventana) {
+            dtos.add(mapper.toDTO(transaccion));
+        }
+        
+        String siguienteCursor = null;
+        if (ventana.hasNext() && !ventana.isEmpty()) {
+            Transaccion ultima = ventana.getContent().get(ventana.size() - 1);
+            siguienteCursor = CursorTransaccion.desde(ultima, direccionEfectiva).codificar();
+        }
+        Long total = incluirTotal ? this.transaccionService.contarTransacciones(filtros) : null;
+        
+        return new CursorPageResponseDTO<>(dtos, size, siguienteCursor, siguienteCursor != null, total);
+    }
+    
     private PageResponseDTO<TransaccionDTO> convertToPageResponseDTO(Page<Transaccion> page) {
         List<TransaccionDTO> dtos = new ArrayList<>(page.getSize());
         for (Transaccion transaccion : page.getContent()) {
@@ -333,4 +793,14 @@ public class TransaccionController {
                 page.isFirst(),
                 page.isLast());
     }
-} 
\ No newline at end of file
+    
+    private ResponseEntity<StreamingResponseBody> respuestaExportacion(FormatoExportacion formato,
+            StreamingResponseBody cuerpo) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getContentType()));
+        if (formato == FormatoExportacion.CSV) {
+            respuesta.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transacciones.csv\"");
+        }
+        return respuesta.body(cuerpo);
+    }
+}
\ No newline at end of file
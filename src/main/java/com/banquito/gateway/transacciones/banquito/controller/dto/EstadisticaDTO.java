@@ -0,0 +1,27 @@
+package com.banquito.gateway.transacciones.banquito.controller.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Totales de una combinación de periodo y dimensiones; lo no agrupado viaja en null
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadisticaDTO {
+
+    private LocalDateTime periodo;
+    private String marca;
+    private String moneda;
+    private String pais;
+    private String tipo;
+    private long cantidad;
+    private BigDecimal monto;
+    private long pendientes;
+    private long aceptadas;
+    private long rechazadas;
+    private long errores;
+}
@@ -0,0 +1,18 @@
+package com.banquito.gateway.transacciones.banquito.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Datos de un evento de GET /eventos; en un evento de reinicio solo viaja el tipo
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoTransaccionDTO {
+
+    private String tipo;
+    private String estadoAnterior;
+    private String codigoComercio;
+    private String codigoPOS;
+    private TransaccionDTO transaccion;
+}
@@ -0,0 +1,18 @@
+package com.banquito.gateway.transacciones.banquito.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Resultado de una solicitud de POST /lote: codigoEstado es el que tendría la misma solicitud en POST /transacciones
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLoteDTO {
+
+    private int indice;
+    private String codigoUnicoTransaccion;
+    private int codigoEstado;
+    private TransaccionDTO transaccion;
+    private String mensaje;
+}
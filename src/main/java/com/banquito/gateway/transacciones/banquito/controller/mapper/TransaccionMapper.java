@@ -4,8 +4,13 @@ import org.mapstruct.Mapper;
 import org.mapstruct.MappingConstants;
 import org.mapstruct.ReportingPolicy;
 
+import com.banquito.gateway.transacciones.banquito.controller.dto.EstadisticaDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
 import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.EstadisticasTransaccionService.Estadistica;
 
 @Mapper(
     componentModel = MappingConstants.ComponentModel.SPRING,
@@ -16,4 +21,19 @@ public interface TransaccionMapper {
     TransaccionDTO toDTO(Transaccion model);
     
     Transaccion toModel(TransaccionDTO dto);
+
+    EstadisticaDTO toDTO(Estadistica estadistica);
+
+    // Los catálogos viajan como texto ("PAG", "ACT", "USD"); un valor desconocido es una solicitud inválida
+    default TipoTransaccion toTipo(String tipo) {
+        return TipoTransaccion.desde(tipo);
+    }
+
+    default EstadoTransaccion toEstado(String estado) {
+        return EstadoTransaccion.desde(estado);
+    }
+
+    default Moneda toMoneda(String moneda) {
+        return Moneda.desde(moneda);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.banquito.gateway.transacciones.banquito.exception;
+
+public class CodigoUnicoReutilizadoException extends RuntimeException {
+    
+    private final String codigoUnico;
+
+    public CodigoUnicoReutilizadoException(String codigoUnico) {
+        super();
+        this.codigoUnico = codigoUnico;
+    }
+
+    @Override
+    public String getMessage() {
+        return "El código único " + this.codigoUnico + " ya se usó en una transacción con otros datos";
+    }
+}
@@ -0,0 +1,8 @@
+package com.banquito.gateway.transacciones.banquito.exception;
+
+public class SuscripcionRechazadaException extends RuntimeException {
+
+    public SuscripcionRechazadaException(String mensaje) {
+        super(mensaje);
+    }
+}
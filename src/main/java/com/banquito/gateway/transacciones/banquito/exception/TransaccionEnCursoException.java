@@ -0,0 +1,16 @@
+package com.banquito.gateway.transacciones.banquito.exception;
+
+public class TransaccionEnCursoException extends RuntimeException {
+    
+    private final String codigoUnico;
+
+    public TransaccionEnCursoException(String codigoUnico) {
+        super();
+        this.codigoUnico = codigoUnico;
+    }
+
+    @Override
+    public String getMessage() {
+        return "La transacción con código único " + this.codigoUnico + " aún se está procesando, reintente más tarde";
+    }
+}
@@ -0,0 +1,10 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+/**
+ * Catálogo cerrado que se guarda en la base como SMALLINT. El código de cada constante es fijo: cambiarlo o
+ * reutilizarlo requiere una migración de los datos existentes.
+ */
+public interface CodigoPersistente {
+
+    short getCodigo();
+}
@@ -0,0 +1,48 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import java.lang.reflect.Array;
+
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Convierte un catálogo {@link CodigoPersistente} a su código SMALLINT. La lectura usa un arreglo indexado por
+ * código, sin búsquedas ni asignaciones por fila.
+ */
+public abstract class ConvertidorCodigo<E extends Enum<E> & CodigoPersistente> implements AttributeConverter<E, Short> {
+
+    private final Class<E> tipo;
+    private final E[] porCodigo;
+
+    @SuppressWarnings("unchecked")
+    protected ConvertidorCodigo(Class<E> tipo) {
+        E[] constantes = tipo.getEnumConstants();
+        int maximo = 0;
+        for (E constante : constantes) {
+            maximo = Math.max(maximo, constante.getCodigo());
+        }
+        this.tipo = tipo;
+        this.porCodigo = (E[]) Array.newInstance(tipo, maximo + 1);
+        for (E constante : constantes) {
+            if (this.porCodigo[constante.getCodigo()] != null) {
+                throw new IllegalStateException("Código duplicado en " + tipo.getSimpleName() + ": " + constante.getCodigo());
+            }
+            this.porCodigo[constante.getCodigo()] = constante;
+        }
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(E valor) {
+        return valor == null ? null : valor.getCodigo();
+    }
+
+    @Override
+    public E convertToEntityAttribute(Short codigo) {
+        if (codigo == null) {
+            return null;
+        }
+        if (codigo < 0 || codigo >= this.porCodigo.length || this.porCodigo[codigo] == null) {
+            throw new IllegalStateException("Código desconocido para " + this.tipo.getSimpleName() + ": " + codigo);
+        }
+        return this.porCodigo[codigo];
+    }
+}
@@ -0,0 +1,43 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+public enum EstadoTransaccion implements CodigoPersistente {
+    PEN(1),
+    ACT(2),
+    REJ(3),
+    ERR(4);
+
+    private final short codigo;
+
+    EstadoTransaccion(int codigo) {
+        this.codigo = (short) codigo;
+    }
+
+    @Override
+    public short getCodigo() {
+        return this.codigo;
+    }
+
+    // Conversión desde el valor recibido en la API; null si no corresponde a ningún estado
+    public static EstadoTransaccion buscar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        return switch (valor) {
+            case "PEN" -> PEN;
+            case "ACT" -> ACT;
+            case "REJ" -> REJ;
+            case "ERR" -> ERR;
+            default -> null;
+        };
+    }
+
+    public static EstadoTransaccion desde(String valor) {
+        EstadoTransaccion estado = buscar(valor);
+        if (estado == null && valor != null) {
+            throw new TransaccionInvalidaException("Estado de transacción no soportado: " + valor);
+        }
+        return estado;
+    }
+}
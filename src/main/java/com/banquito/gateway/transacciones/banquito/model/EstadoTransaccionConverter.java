@@ -0,0 +1,11 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import jakarta.persistence.Converter;
+
+@Converter(autoApply = true)
+public class EstadoTransaccionConverter extends ConvertidorCodigo<EstadoTransaccion> {
+
+    public EstadoTransaccionConverter() {
+        super(EstadoTransaccion.class);
+    }
+}
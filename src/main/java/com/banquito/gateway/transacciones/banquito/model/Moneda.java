@@ -0,0 +1,39 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+public enum Moneda implements CodigoPersistente {
+    USD(1),
+    EUR(2);
+
+    private final short codigo;
+
+    Moneda(int codigo) {
+        this.codigo = (short) codigo;
+    }
+
+    @Override
+    public short getCodigo() {
+        return this.codigo;
+    }
+
+    // Conversión desde el código ISO recibido en la API; null si la moneda no está soportada
+    public static Moneda buscar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        return switch (valor) {
+            case "USD" -> USD;
+            case "EUR" -> EUR;
+            default -> null;
+        };
+    }
+
+    public static Moneda desde(String valor) {
+        Moneda moneda = buscar(valor);
+        if (moneda == null && valor != null) {
+            throw new TransaccionInvalidaException("Moneda no soportada: " + valor);
+        }
+        return moneda;
+    }
+}
@@ -0,0 +1,11 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import jakarta.persistence.Converter;
+
+@Converter(autoApply = true)
+public class MonedaConverter extends ConvertidorCodigo<Moneda> {
+
+    public MonedaConverter() {
+        super(Moneda.class);
+    }
+}
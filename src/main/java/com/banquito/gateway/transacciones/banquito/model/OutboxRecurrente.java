@@ -0,0 +1,69 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Entity
+@Table(name = "GTW_OUTBOX_RECURRENTE")
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class OutboxRecurrente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "COD_OUTBOX")
+    private Long codOutbox;
+
+    @Column(name = "COD_TRANSACCION", length = 10, nullable = false)
+    private String codTransaccion;
+
+    // TransaccionRecurrenteDTO serializado en JSON
+    @Column(name = "CONTENIDO", nullable = false, columnDefinition = "TEXT")
+    @ToString.Exclude
+    private String contenido;
+
+    @Column(name = "ESTADO", length = 3, nullable = false)
+    private String estado;
+
+    @Column(name = "INTENTOS", nullable = false)
+    private Integer intentos;
+
+    @Column(name = "FECHA_CREACION", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "PROXIMO_INTENTO", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "FECHA_ENVIO")
+    private LocalDateTime fechaEnvio;
+
+    @Column(name = "ULTIMO_ERROR", length = 500)
+    private String ultimoError;
+
+    @Override
+    public int hashCode() {
+        return codOutbox == null ? 0 : codOutbox.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        OutboxRecurrente other = (OutboxRecurrente) obj;
+        return codOutbox != null && codOutbox.equals(other.codOutbox);
+    }
+}
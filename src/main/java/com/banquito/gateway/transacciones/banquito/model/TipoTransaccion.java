@@ -0,0 +1,43 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+public enum TipoTransaccion implements CodigoPersistente {
+    PAG(1),
+    RET(2),
+    TRA(3),
+    DEV(4);
+
+    private final short codigo;
+
+    TipoTransaccion(int codigo) {
+        this.codigo = (short) codigo;
+    }
+
+    @Override
+    public short getCodigo() {
+        return this.codigo;
+    }
+
+    // Conversión desde el valor recibido en la API; null si no corresponde a ningún tipo
+    public static TipoTransaccion buscar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        return switch (valor) {
+            case "PAG" -> PAG;
+            case "RET" -> RET;
+            case "TRA" -> TRA;
+            case "DEV" -> DEV;
+            default -> null;
+        };
+    }
+
+    public static TipoTransaccion desde(String valor) {
+        TipoTransaccion tipo = buscar(valor);
+        if (tipo == null && valor != null) {
+            throw new TransaccionInvalidaException("Tipo de transacción no soportado: " + valor);
+        }
+        return tipo;
+    }
+}
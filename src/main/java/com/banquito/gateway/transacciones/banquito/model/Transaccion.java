@@ -4,10 +4,15 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 
+import org.springframework.data.domain.Persistable;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -19,14 +24,15 @@ import lombok.ToString;
 @Setter
 @NoArgsConstructor
 @ToString
-public class Transaccion {
+public class Transaccion implements Persistable<String> {
 
     @Id
     @Column(name = "COD_TRANSACCION", length = 10)
     private String codTransaccion;
 
-    @Column(name = "TIPO", length = 3, nullable = false)
-    private String tipo;
+    // TIPO, ESTADO y MONEDA se guardan como SMALLINT (ver ConvertidorCodigo); la API sigue usando los códigos de texto
+    @Column(name = "TIPO", nullable = false)
+    private TipoTransaccion tipo;
 
     @Column(name = "MARCA", length = 4, nullable = false)
     private String marca;
@@ -40,11 +46,11 @@ public class Transaccion {
     @Column(name = "FECHA", nullable = false)
     private LocalDateTime fecha;
 
-    @Column(name = "ESTADO", length = 3, nullable = false)
-    private String estado;
+    @Column(name = "ESTADO", nullable = false)
+    private EstadoTransaccion estado;
 
-    @Column(name = "MONEDA", length = 3, nullable = false)
-    private String moneda;
+    @Column(name = "MONEDA", nullable = false)
+    private Moneda moneda;
 
     @Column(name = "PAIS", length = 2, nullable = false)
     private String pais;
@@ -67,10 +73,56 @@ public class Transaccion {
     @Column(name = "DIFERIDO")
     private Boolean diferido;
 
+    // El código se asigna en la aplicación; sin esta marca save() haría merge (SELECT + INSERT)
+    // y Hibernate no podría agrupar las inserciones en lotes JDBC. Solo se desmarca al cargarla,
+    // así un reintento tras un lote fallido nunca se convierte en un UPDATE de otra fila
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean nueva = true;
+
     public Transaccion(String codTransaccion) {
         this.codTransaccion = codTransaccion;
     }
 
+    // Copia desligada del contexto de persistencia, para las instantáneas de CacheTransacciones. Se marca como
+    // persistida: un save() de la copia actualiza la fila en lugar de intentar insertarla otra vez
+    public Transaccion copia() {
+        Transaccion copia = new Transaccion(this.codTransaccion);
+        copia.tipo = this.tipo;
+        copia.marca = this.marca;
+        copia.monto = this.monto;
+        copia.codigoUnicoTransaccion = this.codigoUnicoTransaccion;
+        copia.fecha = this.fecha;
+        copia.estado = this.estado;
+        copia.moneda = this.moneda;
+        copia.pais = this.pais;
+        copia.tarjeta = this.tarjeta;
+        copia.fechaCaducidad = this.fechaCaducidad;
+        copia.transaccionEncriptada = this.transaccionEncriptada;
+        copia.swiftBanco = this.swiftBanco;
+        copia.cuentaIban = this.cuentaIban;
+        copia.diferido = this.diferido;
+        copia.nueva = false;
+        return copia;
+    }
+
+    @Override
+    public String getId() {
+        return this.codTransaccion;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.nueva;
+    }
+
+    @PostLoad
+    void marcarPersistida() {
+        this.nueva = false;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
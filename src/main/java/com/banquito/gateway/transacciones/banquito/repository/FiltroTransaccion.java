@@ -0,0 +1,18 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record FiltroTransaccion(
+        String estado,
+        String tipo,
+        String marca,
+        String moneda,
+        String pais,
+        LocalDateTime fechaInicio,
+        LocalDateTime fechaFin,
+        BigDecimal montoMinimo,
+        BigDecimal montoMaximo,
+        String swiftBanco,
+        String cuentaIban) {
+}
@@ -0,0 +1,30 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import com.banquito.gateway.transacciones.banquito.model.OutboxRecurrente;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface OutboxRecurrenteRepository extends JpaRepository<OutboxRecurrente, Long> {
+
+    // lock.timeout=-2 genera FOR UPDATE SKIP LOCKED: varias instancias del relay reclaman lotes disjuntos
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OutboxRecurrente> findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntento(String estado,
+            LocalDateTime ahora, Limit limite);
+
+    Optional<OutboxRecurrente> findFirstByEstadoOrderByFechaCreacion(String estado);
+
+    long countByEstado(String estado);
+}
@@ -3,20 +3,34 @@ package com.banquito.gateway.transacciones.banquito.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
 import com.banquito.gateway.transacciones.banquito.model.Transaccion;
 
+import org.hibernate.jpa.HibernateHints;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import java.time.LocalDateTime;
 
 @Repository
-public interface TransaccionRepository extends JpaRepository<Transaccion, String> {
+public interface TransaccionRepository extends JpaRepository<Transaccion, String>, JpaSpecificationExecutor<Transaccion> {
     
-    List<Transaccion> findByEstado(String estado);
+    List<Transaccion> findByEstado(EstadoTransaccion estado);
     
-    Page<Transaccion> findByEstado(String estado, Pageable pageable);
+    Page<Transaccion> findByEstado(EstadoTransaccion estado, Pageable pageable);
     
     List<Transaccion> findByFechaBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin);
     
@@ -28,7 +42,7 @@ public interface TransaccionRepository extends JpaRepository<Transaccion, String
     
     List<Transaccion> findByTarjeta(String tarjeta);
     
-    List<Transaccion> findByMoneda(String moneda);
+    List<Transaccion> findByMoneda(Moneda moneda);
     
     List<Transaccion> findByPais(String pais);
     
@@ -36,21 +50,52 @@ public interface TransaccionRepository extends JpaRepository<Transaccion, String
     
     List<Transaccion> findByMontoLessThanEqual(BigDecimal monto);
     
+    // Los métodos derivados no heredan la transacción de solo lectura de SimpleJpaRepository: sin ella irían
+    // siempre a la primaria aunque haya réplicas de lectura
+    @Transactional(readOnly = true)
     Transaccion findByCodigoUnicoTransaccion(String codigoUnicoTransaccion);
     
-    List<Transaccion> findByTipo(String tipo);
+    List<Transaccion> findByTipo(TipoTransaccion tipo);
     
-    Page<Transaccion> findByTipo(String tipo, Pageable pageable);
+    Page<Transaccion> findByTipo(TipoTransaccion tipo, Pageable pageable);
     
     List<Transaccion> findBySwiftBanco(String swiftBanco);
     
     List<Transaccion> findByCuentaIban(String cuentaIban);
     
-    List<Transaccion> findByTipoAndEstado(String tipo, String estado);
+    List<Transaccion> findByTipoAndEstado(TipoTransaccion tipo, EstadoTransaccion estado);
     
-    Page<Transaccion> findByTipoAndEstado(String tipo, String estado, Pageable pageable);
+    Page<Transaccion> findByTipoAndEstado(TipoTransaccion tipo, EstadoTransaccion estado, Pageable pageable);
     
     List<Transaccion> findByMarcaAndFechaBetween(String marca, LocalDateTime fechaInicio, LocalDateTime fechaFin);
     
     Page<Transaccion> findByMarcaAndFechaBetween(String marca, LocalDateTime fechaInicio, LocalDateTime fechaFin, Pageable pageable);
+    
+    // Pendientes más antiguas que la fecha dada (ix_gtw_transaccion_pendientes), para el barrido de abandonadas
+    List<Transaccion> findByEstadoAndFechaBefore(EstadoTransaccion estado, LocalDateTime fecha, Pageable pageable);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Transaccion> findByCodTransaccionAndEstado(String codTransaccion, EstadoTransaccion estado);
+    
+    // Variantes con cursor JDBC para exportaciones: requieren una transacción abierta mientras se consumen
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByTarjeta(String tarjeta);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamBySwiftBanco(String swiftBanco);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByCuentaIban(String cuentaIban);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByMoneda(Moneda moneda);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByPais(String pais);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByMontoGreaterThanEqual(BigDecimal monto);
+    
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Transaccion> streamByMontoLessThanEqual(BigDecimal monto);
 } 
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+public final class TransaccionSpecification {
+
+    private TransaccionSpecification() {
+    }
+
+    // Los predicados se agregan del más selectivo al menos selectivo: primero las claves casi únicas (IBAN, SWIFT),
+    // luego las columnas iniciales de los índices compuestos (tipo, estado), después las de baja cardinalidad y al
+    // final los rangos, que son la columna final de cada índice (fecha) o un filtro residual (monto)
+    public static Specification<Transaccion> conFiltros(FiltroTransaccion filtro) {
+        Specification<Transaccion> spec = Specification.where(null);
+        if (filtro.cuentaIban() != null) {
+            spec = spec.and(igual("cuentaIban", filtro.cuentaIban()));
+        }
+        if (filtro.swiftBanco() != null) {
+            spec = spec.and(igual("swiftBanco", filtro.swiftBanco()));
+        }
+        if (filtro.tipo() != null) {
+            spec = spec.and(igual("tipo", TipoTransaccion.desde(filtro.tipo())));
+        }
+        if (filtro.estado() != null) {
+            spec = spec.and(igual("estado", EstadoTransaccion.desde(filtro.estado())));
+        }
+        if (filtro.marca() != null) {
+            spec = spec.and(igual("marca", filtro.marca()));
+        }
+        if (filtro.pais() != null) {
+            spec = spec.and(igual("pais", filtro.pais()));
+        }
+        if (filtro.moneda() != null) {
+            spec = spec.and(igual("moneda", Moneda.desde(filtro.moneda())));
+        }
+        if (filtro.fechaInicio() != null) {
+            LocalDateTime fechaInicio = filtro.fechaInicio();
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fecha"), fechaInicio));
+        }
+        if (filtro.fechaFin() != null) {
+            LocalDateTime fechaFin = filtro.fechaFin();
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("fecha"), fechaFin));
+        }
+        if (filtro.montoMinimo() != null) {
+            BigDecimal montoMinimo = filtro.montoMinimo();
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("monto"), montoMinimo));
+        }
+        if (filtro.montoMaximo() != null) {
+            BigDecimal montoMaximo = filtro.montoMaximo();
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("monto"), montoMaximo));
+        }
+        return spec;
+    }
+
+    private static Specification<Transaccion> igual(String campo, Object valor) {
+        return (root, query, cb) -> cb.equal(root.get(campo), valor);
+    }
+}
@@ -0,0 +1,196 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionNotFoundException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Modo asíncrono de POST /transacciones (Prefer: respond-async). La petición termina al confirmarse la fila en PEN;
+ * la llamada al procesador y la actualización del estado se ejecutan en un executor acotado, y el estado final se
+ * espera por long-poll o por eventos a través de {@link ResultadoTransacciones}. Sin lugar en la cola del executor
+ * la transacción se procesa en el hilo de la petición, como en el modo síncrono. Lo que quede en PEN más de
+ * {@code gateway.asincrono.pendiente-maximo} (autorizaciones en cola al detenerse un nodo, o un nodo caído a mitad)
+ * lo pasa a ERR un barrido periódico.
+ */
+@Service
+@Slf4j
+public class AutorizacionAsincronaService {
+
+    private final TransaccionService transaccionService;
+    private final IdempotenciaService idempotenciaService;
+    private final MetricasTransaccion metricasTransaccion;
+    private final ResultadoTransacciones resultadoTransacciones;
+    private final Duration esperaMaxima;
+    private final Duration pendienteMaximo;
+    private final int barridoMaximo;
+    private final ThreadPoolExecutor ejecutor;
+    private final Counter sincronas;
+    private final Counter abandonadas;
+
+    public AutorizacionAsincronaService(TransaccionService transaccionService, IdempotenciaService idempotenciaService,
+            MetricasTransaccion metricasTransaccion, ResultadoTransacciones resultadoTransacciones,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.asincrono.hilos:100}") int hilos,
+            @Value("${gateway.asincrono.capacidad-cola:2000}") int capacidadCola,
+            @Value("${gateway.asincrono.espera-maxima:PT60S}") Duration esperaMaxima,
+            @Value("${gateway.asincrono.pendiente-maximo:PT5M}") Duration pendienteMaximo,
+            @Value("${gateway.asincrono.barrido-maximo:500}") int barridoMaximo) {
+        this.transaccionService = transaccionService;
+        this.idempotenciaService = idempotenciaService;
+        this.metricasTransaccion = metricasTransaccion;
+        this.resultadoTransacciones = resultadoTransacciones;
+        this.esperaMaxima = esperaMaxima;
+        this.pendienteMaximo = pendienteMaximo;
+        this.barridoMaximo = barridoMaximo;
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(capacidadCola), tarea -> {
+                    Thread hilo = new Thread(tarea, "autorizacion-asincrona-" + numero.getAndIncrement());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.ejecutor.allowCoreThreadTimeOut(true);
+        this.sincronas = Counter.builder("gateway.asincrono.sincronas")
+                .description("Autorizaciones asíncronas procesadas en el hilo de la petición por cola llena")
+                .register(meterRegistry);
+        this.abandonadas = Counter.builder("gateway.asincrono.abandonadas")
+                .description("Transacciones que el barrido pasó a ERR por seguir en PEN sin autorización en curso")
+                .register(meterRegistry);
+        Gauge.builder("gateway.asincrono.cola", this.ejecutor.getQueue(), BlockingQueue::size)
+                .description("Autorizaciones aceptadas en espera de un hilo")
+                .register(meterRegistry);
+        Gauge.builder("gateway.asincrono.en-curso", this.ejecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Autorizaciones aceptadas esperando al procesador de pagos")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        this.ejecutor.shutdown();
+        if (!this.ejecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Se detiene el nodo con {} autorizaciones asíncronas en cola; quedarán en PEN hasta el barrido",
+                    this.ejecutor.getQueue().size());
+        }
+    }
+
+    // La llamada al procesador no se puede repetir (el CVV no se guarda) ni se sabe si llegó: como cuando falla, ERR
+    @Scheduled(fixedDelayString = "${gateway.asincrono.intervalo-barrido:PT1M}")
+    public void barrerPendientes() {
+        int marcadas = this.transaccionService.marcarPendientesAbandonadas(
+                LocalDateTime.now().minus(this.pendienteMaximo), this.barridoMaximo);
+        if (marcadas > 0) {
+            this.abandonadas.increment(marcadas);
+            log.warn("{} transacciones en PEN desde hace más de {} marcadas con estado de error", marcadas,
+                    this.pendienteMaximo);
+        }
+    }
+
+    // Devuelve la transacción en PEN si la autorización quedó en curso, o su estado final si ya se conoce
+    public Transaccion aceptar(TransaccionPosDTO posDTO) {
+        String codigoUnico = posDTO.getCodigoUnicoTransaccion();
+        IdempotenciaService.Reserva reserva = this.idempotenciaService.reservar(codigoUnico,
+                IdempotenciaService.Huella.de(posDTO));
+        if (!reserva.propia()) {
+            return this.reintento(codigoUnico, reserva);
+        }
+        MetricasTransaccion.Medicion medicion = this.metricasTransaccion.iniciar(
+                MetricasTransaccion.FLUJO_POS, posDTO.getTipo(), posDTO.getMarca());
+        TransaccionService.RegistroPOS registro;
+        try {
+            registro = this.transaccionService.registrarTransaccionPOS(posDTO, medicion);
+        } catch (RuntimeException e) {
+            medicion.finalizar();
+            throw reserva.fallar(e);
+        }
+        if (!registro.pendiente()) {
+            medicion.finalizar();
+            return reserva.completar(registro.transaccion());
+        }
+
+        Runnable autorizacion = () -> {
+            try {
+                reserva.completar(this.transaccionService.autorizarTransaccionPOS(posDTO, registro.comercioDTO(),
+                        registro.transaccion(), medicion));
+            } catch (RuntimeException e) {
+                reserva.fallar(e);
+            } finally {
+                medicion.finalizar();
+            }
+        };
+        try {
+            this.ejecutor.execute(autorizacion);
+            return registro.transaccion();
+        } catch (RejectedExecutionException e) {
+            this.sincronas.increment();
+            log.warn("Cola de autorización asíncrona llena, procesando en el hilo de la petición: {}", codigoUnico);
+            autorizacion.run();
+            return reserva.esperar();
+        }
+    }
+
+    // Reintento de un código único aún en curso en este nodo: se responde con su estado sin esperar al procesador,
+    // salvo que la original todavía no haya llegado a insertarse. Si la fila ya dejó PEN la original está por
+    // resolver su reserva, y el reintento debe recibir lo mismo que ella (un rechazo es una excepción)
+    private Transaccion reintento(String codigoUnico, IdempotenciaService.Reserva reserva) {
+        if (!reserva.terminada()) {
+            try {
+                Transaccion actual = this.transaccionService.obtenerTransaccionPorCodigoUnico(codigoUnico);
+                if (actual.getEstado() == EstadoTransaccion.PEN) {
+                    return actual;
+                }
+            } catch (TransaccionNotFoundException e) {
+                log.info("El código único {} aún no se registra, se espera a la solicitud original", codigoUnico);
+            }
+        }
+        return reserva.esperar();
+    }
+
+    // La espera se registra antes de leer el estado actual para no perder una publicación intermedia
+    public Espera esperarResultado(String codigoUnico) {
+        CompletableFuture<Transaccion> resultado = this.resultadoTransacciones.esperar(codigoUnico);
+        Transaccion actual = this.transaccionService.obtenerTransaccionPorCodigoUnico(codigoUnico);
+        if (actual.getEstado() != EstadoTransaccion.PEN) {
+            resultado.complete(actual);
+        }
+        return new Espera(actual, resultado);
+    }
+
+    public Transaccion estadoActual(String codigoUnico) {
+        return this.transaccionService.obtenerTransaccionPorCodigoUnico(codigoUnico);
+    }
+
+    public Duration esperaMaxima() {
+        return this.esperaMaxima;
+    }
+
+    // Sin espera positiva se usa la máxima: un DeferredResult con timeout 0 no vencería nunca
+    public Duration limitarEspera(Duration espera) {
+        return espera.compareTo(this.esperaMaxima) > 0 || espera.isNegative() || espera.isZero()
+                ? this.esperaMaxima
+                : espera;
+    }
+
+    public record Espera(Transaccion actual, CompletableFuture<Transaccion> resultado) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.FiltroTransaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionSpecification;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class BusquedaTransaccionService {
+
+    private final TransaccionRepository transaccionRepository;
+    private final Duration rangoMaximo;
+
+    public BusquedaTransaccionService(TransaccionRepository transaccionRepository,
+            @Value("${gateway.busqueda.rango-maximo:P31D}") Duration rangoMaximo) {
+        this.transaccionRepository = transaccionRepository;
+        this.rangoMaximo = rangoMaximo;
+    }
+
+    @Transactional(readOnly = true)
+    public Page<Transaccion> buscar(FiltroTransaccion filtro, Pageable pageable) {
+        log.info("Buscando transacciones con filtros: {}", filtro);
+        return this.transaccionRepository.findAll(construir(filtro), pageable);
+    }
+
+    public Specification<Transaccion> construir(FiltroTransaccion filtro) {
+        validarAlcance(filtro);
+        return TransaccionSpecification.conFiltros(filtro);
+    }
+
+    // Evita recorridos completos de la tabla (y el COUNT de la paginación): la búsqueda debe usar una clave selectiva
+    // con índice propio o un rango de fechas acotado
+    private void validarAlcance(FiltroTransaccion filtro) {
+        if (filtro.fechaInicio() != null && filtro.fechaFin() != null
+                && filtro.fechaInicio().isAfter(filtro.fechaFin())) {
+            throw new TransaccionInvalidaException("La fecha de inicio no puede ser posterior a la fecha fin");
+        }
+        if (filtro.montoMinimo() != null && filtro.montoMaximo() != null
+                && filtro.montoMinimo().compareTo(filtro.montoMaximo()) > 0) {
+            throw new TransaccionInvalidaException("El monto mínimo no puede ser mayor al monto máximo");
+        }
+        if (filtro.cuentaIban() != null || filtro.swiftBanco() != null || "PEN".equals(filtro.estado())) {
+            return;
+        }
+        if (filtro.fechaInicio() == null || filtro.fechaFin() == null) {
+            throw new TransaccionInvalidaException("La búsqueda debe acotarse con fechaInicio y fechaFin (máximo "
+                    + this.rangoMaximo.toDays() + " días) o filtrar por swiftBanco, cuentaIban o estado PEN");
+        }
+        if (Duration.between(filtro.fechaInicio(), filtro.fechaFin()).compareTo(this.rangoMaximo) > 0) {
+            throw new TransaccionInvalidaException("El rango de fechas no puede superar "
+                    + this.rangoMaximo.toDays() + " días");
+        }
+    }
+}
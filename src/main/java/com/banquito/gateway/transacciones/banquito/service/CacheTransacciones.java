@@ -0,0 +1,200 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Instantáneas de las transacciones creadas o actualizadas recientemente, por código y por código único, para las
+ * consultas repetidas de los POS y del portal. Las escrituras publican su instantánea al confirmarse, y un lector
+ * nunca ve en este nodo un estado anterior a uno ya confirmado en él:
+ * <ul>
+ * <li>cada escritura incrementa, antes de confirmarse, el contador de su franja (por código y por código único) y
+ * quita la entrada; al terminar publica su instantánea solo si ninguna otra escritura de la franja se solapó con
+ * ella, si no la quita y la siguiente lectura va a la base;</li>
+ * <li>un lector que no encontró la entrada solo guarda lo que leyó si la franja no cambió durante la lectura ni
+ * había escrituras en curso.</li>
+ * </ul>
+ * Las franjas se comparten entre claves: una colisión solo provoca una lectura más a la base. Una instantánea en
+ * PEN vence a los pocos segundos (ttl-pendiente): el estado final puede confirmarlo otro nodo, y este seguiría
+ * respondiendo PEN a los POS que consultan hasta que venciera.
+ */
+@Component
+@Slf4j
+public class CacheTransacciones {
+
+    // Cada franja guarda las escrituras iniciadas (bits altos) y las que siguen en curso (bits bajos)
+    private static final int BITS_EN_CURSO = 20;
+    private static final long EN_CURSO = (1L << BITS_EN_CURSO) - 1;
+    private static final long INICIADA = (1L << BITS_EN_CURSO) + 1;
+
+    private final boolean habilitada;
+    private final Cache<String, Transaccion> porCodigo;
+    private final Cache<String, String> porCodigoUnico;
+    private final AtomicLongArray franjas;
+
+    @Autowired
+    public CacheTransacciones(MeterRegistry meterRegistry,
+            @Value("${gateway.transacciones.cache.habilitada:true}") boolean habilitada,
+            @Value("${gateway.transacciones.cache.tamanio-maximo:50000}") long tamanioMaximo,
+            @Value("${gateway.transacciones.cache.ttl:PT5M}") Duration ttl,
+            @Value("${gateway.transacciones.cache.ttl-pendiente:PT2S}") Duration ttlPendiente,
+            @Value("${gateway.transacciones.cache.franjas:4096}") int franjas) {
+        this(meterRegistry, habilitada, tamanioMaximo, ttl, ttlPendiente, franjas, Ticker.systemTicker());
+    }
+
+    CacheTransacciones(MeterRegistry meterRegistry, boolean habilitada, long tamanioMaximo, Duration ttl,
+            Duration ttlPendiente, int franjas, Ticker ticker) {
+        this.habilitada = habilitada;
+        this.porCodigo = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new Vigencia(ttl.toNanos(), ttlPendiente.toNanos()))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.porCodigoUnico = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.franjas = new AtomicLongArray(Integer.highestOneBit(Math.max(franjas, 1)));
+        CaffeineCacheMetrics.monitor(meterRegistry, this.porCodigo, "transacciones");
+        CaffeineCacheMetrics.monitor(meterRegistry, this.porCodigoUnico, "transacciones-codigo-unico");
+    }
+
+    public Transaccion buscarPorCodigo(String codTransaccion, Supplier<Transaccion> carga) {
+        if (!this.habilitada) {
+            return carga.get();
+        }
+        Transaccion instantanea = this.porCodigo.getIfPresent(codTransaccion);
+        if (instantanea != null) {
+            return instantanea.copia();
+        }
+        return this.cargar(this.franja(codTransaccion), carga);
+    }
+
+    public Transaccion buscarPorCodigoUnico(String codigoUnico, Supplier<Transaccion> carga) {
+        if (!this.habilitada) {
+            return carga.get();
+        }
+        String codTransaccion = this.porCodigoUnico.getIfPresent(codigoUnico);
+        Transaccion instantanea = codTransaccion != null ? this.porCodigo.getIfPresent(codTransaccion) : null;
+        if (instantanea != null) {
+            return instantanea.copia();
+        }
+        return this.cargar(this.franja(codigoUnico), carga);
+    }
+
+    /**
+     * Registra la escritura de la transacción. Dentro de una transacción de base de datos se llama antes de que se
+     * confirme y la instantánea se publica al confirmarse (o se descarta si se revierte); sin transacción activa la
+     * escritura ya está confirmada y se publica de inmediato.
+     */
+    public void escribir(Transaccion transaccion) {
+        if (!this.habilitada) {
+            return;
+        }
+        Escritura escritura = this.iniciar(transaccion);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    CacheTransacciones.this.terminar(escritura, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            this.terminar(escritura, true);
+        }
+    }
+
+    private Transaccion cargar(int franja, Supplier<Transaccion> carga) {
+        long antes = this.franjas.get(franja);
+        Transaccion transaccion = carga.get();
+        if (transaccion == null || (antes & EN_CURSO) != 0) {
+            return transaccion;
+        }
+        Transaccion instantanea = transaccion.copia();
+        this.porCodigo.asMap().compute(instantanea.getCodTransaccion(),
+                (codigo, actual) -> this.franjas.get(franja) == antes ? instantanea : actual);
+        this.porCodigoUnico.put(instantanea.getCodigoUnicoTransaccion(), instantanea.getCodTransaccion());
+        return transaccion;
+    }
+
+    private Escritura iniciar(Transaccion transaccion) {
+        int franjaCodigo = this.franja(transaccion.getCodTransaccion());
+        int franjaCodigoUnico = this.franja(transaccion.getCodigoUnicoTransaccion());
+        long previoCodigo = this.franjas.getAndAdd(franjaCodigo, INICIADA);
+        // Misma franja para ambas claves: se cuenta una sola vez
+        long previoCodigoUnico = franjaCodigoUnico == franjaCodigo
+                ? previoCodigo
+                : this.franjas.getAndAdd(franjaCodigoUnico, INICIADA);
+        this.porCodigo.invalidate(transaccion.getCodTransaccion());
+        boolean sinSolapar = (previoCodigo & EN_CURSO) == 0 && (previoCodigoUnico & EN_CURSO) == 0;
+        return new Escritura(transaccion, franjaCodigo, previoCodigo + INICIADA,
+                franjaCodigoUnico, previoCodigoUnico + INICIADA, sinSolapar);
+    }
+
+    private void terminar(Escritura escritura, boolean confirmada) {
+        Transaccion transaccion = escritura.transaccion();
+        // Dentro del compute: ningún lector puede guardar su lectura entre la comprobación y la publicación
+        this.porCodigo.asMap().compute(transaccion.getCodTransaccion(), (codigo, actual) -> {
+            long codigoAhora = this.franjas.addAndGet(escritura.franjaCodigo(), -1);
+            long codigoUnicoAhora = escritura.franjaCodigoUnico() == escritura.franjaCodigo()
+                    ? codigoAhora
+                    : this.franjas.addAndGet(escritura.franjaCodigoUnico(), -1);
+            boolean ultima = escritura.sinSolapar()
+                    && codigoAhora >>> BITS_EN_CURSO == escritura.iniciadaCodigo() >>> BITS_EN_CURSO
+                    && codigoUnicoAhora >>> BITS_EN_CURSO == escritura.iniciadaCodigoUnico() >>> BITS_EN_CURSO;
+            return confirmada && ultima ? transaccion.copia() : null;
+        });
+        if (confirmada) {
+            this.porCodigoUnico.put(transaccion.getCodigoUnicoTransaccion(), transaccion.getCodTransaccion());
+        }
+    }
+
+    private int franja(String clave) {
+        int hash = clave.hashCode();
+        return (hash ^ (hash >>> 16)) & (this.franjas.length() - 1);
+    }
+
+    // Desde que se guarda la instantánea, según su estado; leerla no la renueva
+    private record Vigencia(long ttlNanos, long ttlPendienteNanos) implements Expiry<String, Transaccion> {
+
+        @Override
+        public long expireAfterCreate(String codigo, Transaccion instantanea, long ahora) {
+            return instantanea.getEstado() == EstadoTransaccion.PEN ? this.ttlPendienteNanos : this.ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String codigo, Transaccion instantanea, long ahora, long restante) {
+            return this.expireAfterCreate(codigo, instantanea, ahora);
+        }
+
+        @Override
+        public long expireAfterRead(String codigo, Transaccion instantanea, long ahora, long restante) {
+            return restante;
+        }
+    }
+
+    private record Escritura(Transaccion transaccion, int franjaCodigo, long iniciadaCodigo, int franjaCodigoUnico,
+            long iniciadaCodigoUnico, boolean sinSolapar) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.banquito.gateway.transacciones.banquito.client.ComercioClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class ComercioCacheService {
+
+    private static final String NOMBRE_CACHE = "comercios";
+
+    private final ComercioClient comercioClient;
+    private final LoadingCache<String, ComercioDTO> cache;
+    private final Cache<String, ComercioDTO> respaldo;
+    private final boolean servirObsoleto;
+    private final Timer tiempoCarga;
+    private final Counter obsoletosServidos;
+
+    @Autowired
+    public ComercioCacheService(ComercioClient comercioClient, MeterRegistry meterRegistry,
+            @Qualifier("applicationTaskExecutor") Executor executor,
+            @Value("${gateway.comercios.cache.tamanio-maximo:10000}") long tamanioMaximo,
+            @Value("${gateway.comercios.cache.ttl:PT30M}") Duration ttl,
+            @Value("${gateway.comercios.cache.refresco-anticipado:PT20M}") Duration refrescoAnticipado,
+            @Value("${gateway.comercios.cache.servir-obsoleto:true}") boolean servirObsoleto,
+            @Value("${gateway.comercios.cache.obsoleto-maximo:PT24H}") Duration obsoletoMaximo) {
+        this(comercioClient, meterRegistry, tamanioMaximo, ttl, refrescoAnticipado, servirObsoleto, obsoletoMaximo,
+                Ticker.systemTicker(), executor);
+    }
+
+    ComercioCacheService(ComercioClient comercioClient, MeterRegistry meterRegistry, long tamanioMaximo,
+            Duration ttl, Duration refrescoAnticipado, boolean servirObsoleto, Duration obsoletoMaximo, Ticker ticker,
+            Executor executor) {
+        if (refrescoAnticipado.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("El refresco anticipado de comercios debe ser menor al TTL");
+        }
+        this.comercioClient = comercioClient;
+        this.servirObsoleto = servirObsoleto;
+        this.tiempoCarga = Timer.builder("gateway.comercios.cache.carga")
+                .description("Latencia de carga de datos bancarios desde el servicio de comercios")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.obsoletosServidos = Counter.builder("gateway.comercios.cache.obsoletos")
+                .description("Datos de comercio servidos desde el respaldo por caída del servicio")
+                .register(meterRegistry);
+        this.respaldo = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(obsoletoMaximo)
+                .ticker(ticker)
+                .build();
+        // La carga concurrente de una misma clave la realiza un solo hilo (single-flight);
+        // pasado el refresco anticipado la recarga ocurre en segundo plano sin bloquear
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refrescoAnticipado)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build(this::cargar);
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, NOMBRE_CACHE);
+    }
+
+    public ComercioDTO obtenerDatosComercio(String codigoPOS) {
+        try {
+            return this.cache.get(codigoPOS);
+        } catch (RuntimeException e) {
+            ComercioDTO obsoleto = this.servirObsoleto ? this.respaldo.getIfPresent(codigoPOS) : null;
+            if (obsoleto == null) {
+                throw e;
+            }
+            log.warn("Servicio de comercios no disponible ({}), usando datos previos del POS {}", 
+                    e.getMessage(), codigoPOS);
+            this.obsoletosServidos.increment();
+            return obsoleto;
+        }
+    }
+
+    public void invalidar(String codigoPOS) {
+        this.cache.invalidate(codigoPOS);
+        this.respaldo.invalidate(codigoPOS);
+    }
+
+    private ComercioDTO cargar(String codigoPOS) {
+        log.info("Consultando datos bancarios del comercio con POS: {}", codigoPOS);
+        ComercioDTO comercioDTO = this.tiempoCarga.record(() -> this.comercioClient.obtenerDatosComercio(codigoPOS));
+        if (comercioDTO == null) {
+            throw new TransaccionInvalidaException("No existen datos bancarios para el POS " + codigoPOS);
+        }
+        this.respaldo.put(codigoPOS, comercioDTO);
+        return comercioDTO;
+    }
+}
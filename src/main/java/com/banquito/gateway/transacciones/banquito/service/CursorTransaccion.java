@@ -0,0 +1,72 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+// Token opaco de continuación construido con la clave de orden (fecha, codTransaccion). La suma de verificación
+// rechaza cursores truncados o editados a mano; no es un control de acceso: la posición solo recorre las filas que
+// ya permiten los filtros de la consulta
+public record CursorTransaccion(LocalDateTime fecha, String codTransaccion, Sort.Direction direccion) {
+
+    private static final String VERSION = "v2";
+    private static final String SEPARADOR = "|";
+    private static final int LONGITUD_CODIGO = 10;
+
+    public static final Sort ORDEN_ASC = Sort.by(Sort.Direction.ASC, "fecha", "codTransaccion");
+    public static final Sort ORDEN_DESC = Sort.by(Sort.Direction.DESC, "fecha", "codTransaccion");
+
+    public static CursorTransaccion desde(Transaccion ultima, Sort.Direction direccion) {
+        return new CursorTransaccion(ultima.getFecha(), ultima.getCodTransaccion(), direccion);
+    }
+
+    public static CursorTransaccion decodificar(String token) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separador = texto.lastIndexOf(SEPARADOR);
+            String[] partes = texto.split("\\" + SEPARADOR, -1);
+            if (partes.length != 5 || !VERSION.equals(partes[0])
+                    || !suma(texto.substring(0, separador)).equals(partes[4])
+                    || partes[2].isEmpty() || partes[2].length() > LONGITUD_CODIGO) {
+                throw new TransaccionInvalidaException("Cursor de paginación inválido");
+            }
+            return new CursorTransaccion(LocalDateTime.parse(partes[1]), partes[2], Sort.Direction.valueOf(partes[3]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new TransaccionInvalidaException("Cursor de paginación inválido");
+        }
+    }
+
+    public static Sort orden(Sort.Direction direccion) {
+        return direccion.isAscending() ? ORDEN_ASC : ORDEN_DESC;
+    }
+
+    public String codificar() {
+        String texto = String.join(SEPARADOR, VERSION, this.fecha.toString(), this.codTransaccion, this.direccion.name());
+        texto = texto + SEPARADOR + suma(texto);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String suma(String texto) {
+        CRC32 crc = new CRC32();
+        crc.update(texto.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    public KeysetScrollPosition posicion() {
+        Map<String, Object> claves = new LinkedHashMap<>();
+        claves.put("fecha", this.fecha);
+        claves.put("codTransaccion", this.codTransaccion);
+        return ScrollPosition.forward(claves);
+    }
+}
@@ -0,0 +1,490 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.MonedaConverter;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccionConverter;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Totales de transacciones por minuto y por hora (cantidad, suma de montos y cantidad por estado), por marca,
+ * moneda, país y tipo, según la fecha de creación de la transacción. Cada instancia acumula en memoria las
+ * creaciones y cambios de estado que confirma y los suma periódicamente a gtw_estadistica (V7); las consultas
+ * combinan las filas por hora con las de minuto de los extremos de la ventana y lo aún no volcado en esta
+ * instancia. Los agregados por minuto se conservan gateway.estadisticas.retencion-minutos: una ventana anterior
+ * solo admite extremos en horas exactas.
+ * <p>
+ * Lo acumulado y no volcado se pierde si la instancia cae: {@link #reconstruir} recalcula un rango de hasta
+ * gateway.estadisticas.reconstruccion-maxima desde gtw_transaccion. La reconstrucción refleja gtw_transaccion en
+ * el momento en que se ejecuta; lo que otras instancias tengan acumulado para ese rango y vuelquen después se suma
+ * de nuevo, por lo que conviene limitarla a los rangos afectados. Por eso la reconstrucción al arrancar
+ * (gateway.estadisticas.reconstruir-al-iniciar) está desactivada por defecto: en un reinicio escalonado las demás
+ * instancias siguen acumulando y la contarían dos veces.
+ */
+@Service
+@Slf4j
+public class EstadisticasTransaccionService {
+
+    private static final short MINUTO = 1;
+    private static final short HORA = 2;
+    private static final long CLAVE_BLOQUEO = 0x67747765L;
+    private static final int ESTADOS = EstadoTransaccion.values().length;
+    private static final MonedaConverter MONEDAS = new MonedaConverter();
+    private static final TipoTransaccionConverter TIPOS = new TipoTransaccionConverter();
+
+    private static final String SUMAR = """
+            INSERT INTO gtw_estadistica (granularidad, inicio, marca, moneda, pais, tipo, cantidad, monto,
+                    pendientes, aceptadas, rechazadas, errores)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (granularidad, inicio, marca, moneda, pais, tipo) DO UPDATE SET
+                cantidad = gtw_estadistica.cantidad + EXCLUDED.cantidad,
+                monto = gtw_estadistica.monto + EXCLUDED.monto,
+                pendientes = gtw_estadistica.pendientes + EXCLUDED.pendientes,
+                aceptadas = gtw_estadistica.aceptadas + EXCLUDED.aceptadas,
+                rechazadas = gtw_estadistica.rechazadas + EXCLUDED.rechazadas,
+                errores = gtw_estadistica.errores + EXCLUDED.errores
+            """;
+
+    private static final String RECONSTRUIR_MINUTOS = """
+            INSERT INTO gtw_estadistica (granularidad, inicio, marca, moneda, pais, tipo, cantidad, monto,
+                    pendientes, aceptadas, rechazadas, errores)
+            SELECT 1, date_trunc('minute', fecha), marca, moneda, pais, tipo, count(*), sum(monto),
+                   count(*) FILTER (WHERE estado = 1), count(*) FILTER (WHERE estado = 2),
+                   count(*) FILTER (WHERE estado = 3), count(*) FILTER (WHERE estado = 4)
+            FROM gtw_transaccion
+            WHERE fecha >= ? AND fecha < ?
+            GROUP BY 2, 3, 4, 5, 6
+            """;
+
+    private static final String RECONSTRUIR_HORAS = """
+            INSERT INTO gtw_estadistica (granularidad, inicio, marca, moneda, pais, tipo, cantidad, monto,
+                    pendientes, aceptadas, rechazadas, errores)
+            SELECT 2, date_trunc('hour', inicio), marca, moneda, pais, tipo, sum(cantidad), sum(monto),
+                   sum(pendientes), sum(aceptadas), sum(rechazadas), sum(errores)
+            FROM gtw_estadistica
+            WHERE granularidad = 1 AND inicio >= ? AND inicio < ?
+            GROUP BY 2, 3, 4, 5, 6
+            """;
+
+    public enum Dimension {
+        MARCA,
+        MONEDA,
+        PAIS,
+        TIPO;
+
+        static Set<Dimension> desde(List<String> valores) {
+            Set<Dimension> dimensiones = EnumSet.noneOf(Dimension.class);
+            if (valores != null) {
+                for (String valor : valores) {
+                    try {
+                        dimensiones.add(valueOf(valor.trim().toUpperCase(Locale.ROOT)));
+                    } catch (IllegalArgumentException e) {
+                        throw new TransaccionInvalidaException("Dimensión de agrupación no soportada: " + valor);
+                    }
+                }
+            }
+            return dimensiones;
+        }
+    }
+
+    public enum Intervalo {
+        TOTAL,
+        HORA,
+        MINUTO;
+
+        static Intervalo desde(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new TransaccionInvalidaException("Intervalo no soportado: " + valor);
+            }
+        }
+    }
+
+    // Las dimensiones no agrupadas y el periodo con intervalo TOTAL quedan en null
+    public record Estadistica(LocalDateTime periodo, String marca, Moneda moneda, String pais, TipoTransaccion tipo,
+            long cantidad, BigDecimal monto, long pendientes, long aceptadas, long rechazadas, long errores) {
+    }
+
+    record Clave(LocalDateTime inicio, String marca, Moneda moneda, String pais, TipoTransaccion tipo) {
+
+        static final Comparator<Clave> ORDEN = Comparator.comparing(Clave::inicio)
+                .thenComparing(Clave::marca)
+                .thenComparing(Clave::moneda)
+                .thenComparing(Clave::pais)
+                .thenComparing(Clave::tipo);
+
+        Clave hora() {
+            return new Clave(this.inicio.truncatedTo(ChronoUnit.HOURS), this.marca, this.moneda, this.pais, this.tipo);
+        }
+    }
+
+    // Solo se modifica dentro de compute/merge del mapa de pendientes, o después de sacarlo de él
+    static final class Acumulado {
+        long cantidad;
+        BigDecimal monto = BigDecimal.ZERO;
+        final long[] porEstado = new long[ESTADOS];
+
+        Acumulado sumar(Acumulado otro) {
+            this.cantidad += otro.cantidad;
+            this.monto = this.monto.add(otro.monto);
+            for (int i = 0; i < ESTADOS; i++) {
+                this.porEstado[i] += otro.porEstado[i];
+            }
+            return this;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final Duration reconstruirAlIniciar;
+    private final Period retencionMinutos;
+    private final Duration ventanaMaximaMinutos;
+    private final Duration reconstruccionMaxima;
+    private final Clock reloj;
+    private final ConcurrentHashMap<Clave, Acumulado> pendientes = new ConcurrentHashMap<>();
+    private final Counter volcadosFallidos;
+
+    @Autowired
+    public EstadisticasTransaccionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.estadisticas.habilitado:true}") boolean habilitado,
+            @Value("${gateway.estadisticas.reconstruir-al-iniciar:PT0S}") Duration reconstruirAlIniciar,
+            @Value("${gateway.estadisticas.retencion-minutos:P7D}") Period retencionMinutos,
+            @Value("${gateway.estadisticas.ventana-maxima-minutos:P1D}") Duration ventanaMaximaMinutos,
+            @Value("${gateway.estadisticas.reconstruccion-maxima:P1D}") Duration reconstruccionMaxima) {
+        this(jdbcTemplate, transactionManager, meterRegistry, habilitado, reconstruirAlIniciar, retencionMinutos,
+                ventanaMaximaMinutos, reconstruccionMaxima, Clock.systemDefaultZone());
+    }
+
+    EstadisticasTransaccionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, boolean habilitado, Duration reconstruirAlIniciar, Period retencionMinutos,
+            Duration ventanaMaximaMinutos, Duration reconstruccionMaxima, Clock reloj) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.reconstruirAlIniciar = reconstruirAlIniciar;
+        this.retencionMinutos = retencionMinutos;
+        this.ventanaMaximaMinutos = ventanaMaximaMinutos;
+        this.reconstruccionMaxima = reconstruccionMaxima;
+        this.reloj = reloj;
+        this.volcadosFallidos = Counter.builder("gateway.estadisticas.volcados.fallidos")
+                .description("Volcados de estadísticas a gtw_estadistica que fallaron y se reintentarán")
+                .register(meterRegistry);
+        Gauge.builder("gateway.estadisticas.pendientes", this.pendientes, Map::size)
+                .description("Agregados por minuto acumulados en memoria y aún no volcados")
+                .register(meterRegistry);
+    }
+
+    public void registrarCreacion(Transaccion transaccion) {
+        if (!this.habilitado) {
+            return;
+        }
+        Clave clave = clave(transaccion);
+        BigDecimal monto = transaccion.getMonto();
+        int estado = transaccion.getEstado().ordinal();
+        this.alConfirmar(() -> this.pendientes.compute(clave, (k, acumulado) -> {
+            Acumulado resultado = acumulado != null ? acumulado : new Acumulado();
+            resultado.cantidad++;
+            resultado.monto = resultado.monto.add(monto);
+            resultado.porEstado[estado]++;
+            return resultado;
+        }));
+    }
+
+    public void registrarCambioEstado(Transaccion transaccion, EstadoTransaccion anterior) {
+        if (!this.habilitado || anterior == transaccion.getEstado()) {
+            return;
+        }
+        Clave clave = clave(transaccion);
+        int desde = anterior.ordinal();
+        int hasta = transaccion.getEstado().ordinal();
+        this.alConfirmar(() -> this.pendientes.compute(clave, (k, acumulado) -> {
+            Acumulado resultado = acumulado != null ? acumulado : new Acumulado();
+            resultado.porEstado[desde]--;
+            resultado.porEstado[hasta]++;
+            return resultado;
+        }));
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.estadisticas.intervalo-volcado:PT10S}")
+    @PreDestroy
+    public void volcar() {
+        if (this.pendientes.isEmpty()) {
+            return;
+        }
+        // Cada clave se saca del mapa de forma atómica: lo registrado después queda para el siguiente volcado
+        Map<Clave, Acumulado> lote = new HashMap<>();
+        for (Clave clave : this.pendientes.keySet()) {
+            Acumulado acumulado = this.pendientes.remove(clave);
+            if (acumulado != null) {
+                lote.put(clave, acumulado);
+            }
+        }
+        Map<Clave, Acumulado> horas = new HashMap<>();
+        lote.forEach((clave, acumulado) -> horas.merge(clave.hora(), new Acumulado().sumar(acumulado),
+                Acumulado::sumar));
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> {
+                this.jdbcTemplate.execute("SELECT pg_advisory_xact_lock_shared(" + CLAVE_BLOQUEO + ")");
+                // En orden de clave, para que dos instancias que suman las mismas filas no se bloqueen entre sí
+                this.jdbcTemplate.batchUpdate(SUMAR, filas(MINUTO, lote));
+                this.jdbcTemplate.batchUpdate(SUMAR, filas(HORA, horas));
+            });
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron volcar {} agregados de estadísticas, se reintentará: {}", lote.size(),
+                    e.getMessage());
+            this.volcadosFallidos.increment();
+            lote.forEach((clave, acumulado) -> this.pendientes.merge(clave, acumulado, Acumulado::sumar));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirAlIniciar() {
+        if (!this.habilitado || this.reconstruirAlIniciar.isZero()) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now(this.reloj);
+        try {
+            int filas = this.reconstruir(ahora.minus(this.reconstruirAlIniciar), ahora);
+            log.info("Estadísticas de las últimas {} reconstruidas desde gtw_transaccion: {} agregados por minuto",
+                    this.reconstruirAlIniciar, filas);
+        } catch (RuntimeException e) {
+            log.error("No se pudieron reconstruir las estadísticas al iniciar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula desde gtw_transaccion los agregados de las horas completas que cubren [desde, hasta) y devuelve
+     * cuántos agregados por minuto se generaron. Lo acumulado en esta instancia se vuelca antes. El rango no puede
+     * superar gateway.estadisticas.reconstruccion-maxima: mientras dura, ninguna instancia puede volcar.
+     */
+    public int reconstruir(LocalDateTime desde, LocalDateTime hasta) {
+        if (!desde.isBefore(hasta)) {
+            throw new TransaccionInvalidaException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        LocalDateTime inicio = desde.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime fin = hasta.truncatedTo(ChronoUnit.HOURS);
+        if (fin.isBefore(hasta)) {
+            fin = fin.plusHours(1);
+        }
+        if (Duration.between(inicio, fin).compareTo(this.reconstruccionMaxima) > 0) {
+            throw new TransaccionInvalidaException("La reconstrucción admite rangos de hasta "
+                    + this.reconstruccionMaxima + "; divida el rango en varias llamadas");
+        }
+        this.volcar();
+        Timestamp inicioSql = Timestamp.valueOf(inicio);
+        Timestamp finSql = Timestamp.valueOf(fin);
+        Integer minutos = this.transactionTemplate.execute(status -> {
+            this.jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + CLAVE_BLOQUEO + ")");
+            this.jdbcTemplate.update("DELETE FROM gtw_estadistica WHERE inicio >= ? AND inicio < ?", inicioSql, finSql);
+            int insertados = this.jdbcTemplate.update(RECONSTRUIR_MINUTOS, inicioSql, finSql);
+            this.jdbcTemplate.update(RECONSTRUIR_HORAS, inicioSql, finSql);
+            return insertados;
+        });
+        log.info("Estadísticas reconstruidas entre {} y {}", inicio, fin);
+        return minutos != null ? minutos : 0;
+    }
+
+    // Los agregados por minuto solo sirven para los extremos de las ventanas recientes; los por hora se conservan
+    @Scheduled(cron = "${gateway.estadisticas.cron-depuracion:0 5 * * * *}")
+    public void depurar() {
+        if (!this.habilitado) {
+            return;
+        }
+        try {
+            int eliminadas = this.jdbcTemplate.update("DELETE FROM gtw_estadistica WHERE granularidad = 1 AND inicio < ?",
+                    Timestamp.valueOf(this.horizonteMinutos()));
+            log.info("Depuración de estadísticas por minuto: {} filas eliminadas", eliminadas);
+        } catch (RuntimeException e) {
+            log.error("Error al depurar las estadísticas por minuto: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Totales de las transacciones creadas en [desde, hasta), con resolución de un minuto, agrupados por las
+     * dimensiones indicadas y, según el intervalo, por hora o por minuto.
+     */
+    public List<Estadistica> consultar(LocalDateTime desde, LocalDateTime hasta, List<String> agruparPor,
+            String intervalo) {
+        Set<Dimension> dimensiones = Dimension.desde(agruparPor);
+        Intervalo serie = Intervalo.desde(intervalo);
+        LocalDateTime inicio = desde.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime fin = hasta.truncatedTo(ChronoUnit.MINUTES);
+        if (!inicio.isBefore(fin)) {
+            throw new TransaccionInvalidaException("La ventana debe abarcar al menos un minuto");
+        }
+        if (serie == Intervalo.MINUTO && Duration.between(inicio, fin).compareTo(this.ventanaMaximaMinutos) > 0) {
+            throw new TransaccionInvalidaException(
+                    "La serie por minuto admite ventanas de hasta " + this.ventanaMaximaMinutos);
+        }
+        // Horas completas dentro de la ventana; si no hay ninguna, todo sale de los agregados por minuto
+        LocalDateTime primeraHora = inicio.truncatedTo(ChronoUnit.HOURS);
+        if (primeraHora.isBefore(inicio)) {
+            primeraHora = primeraHora.plusHours(1);
+        }
+        LocalDateTime finHoras = fin.truncatedTo(ChronoUnit.HOURS);
+        if (serie == Intervalo.MINUTO || !primeraHora.isBefore(finHoras)) {
+            primeraHora = inicio;
+            finHoras = inicio;
+        }
+        // Los agregados por minuto cubren [inicio, primeraHora) y [finHoras, fin); los anteriores ya se depuraron
+        LocalDateTime primerMinuto = inicio.isBefore(primeraHora) ? inicio : finHoras.isBefore(fin) ? finHoras : null;
+        if (primerMinuto != null && primerMinuto.isBefore(this.horizonteMinutos())) {
+            throw new TransaccionInvalidaException("Los agregados por minuto se conservan " + this.retencionMinutos
+                    + ": antes de " + this.horizonteMinutos() + " la ventana debe empezar y terminar en horas exactas"
+                    + " y el intervalo no puede ser minuto");
+        }
+
+        StringBuilder columnas = new StringBuilder();
+        columnas.append(switch (serie) {
+            case TOTAL -> "NULL::timestamp";
+            case HORA -> "date_trunc('hour', inicio)";
+            case MINUTO -> "inicio";
+        });
+        columnas.append(dimensiones.contains(Dimension.MARCA) ? ", marca" : ", NULL");
+        columnas.append(dimensiones.contains(Dimension.MONEDA) ? ", moneda" : ", NULL::smallint");
+        columnas.append(dimensiones.contains(Dimension.PAIS) ? ", pais" : ", NULL");
+        columnas.append(dimensiones.contains(Dimension.TIPO) ? ", tipo" : ", NULL::smallint");
+        String sql = "SELECT " + columnas + ", sum(cantidad), sum(monto), sum(pendientes), sum(aceptadas), "
+                + "sum(rechazadas), sum(errores) FROM gtw_estadistica "
+                + "WHERE (granularidad = 2 AND inicio >= ? AND inicio < ?) "
+                + "OR (granularidad = 1 AND inicio >= ? AND inicio < ? AND NOT (inicio >= ? AND inicio < ?)) "
+                + "GROUP BY 1, 2, 3, 4, 5";
+
+        Timestamp horaDesde = Timestamp.valueOf(primeraHora);
+        Timestamp horaHasta = Timestamp.valueOf(finHoras);
+        Map<Clave, Acumulado> totales = new LinkedHashMap<>();
+        this.jdbcTemplate.query(sql, fila -> {
+            Timestamp periodo = fila.getTimestamp(1);
+            short moneda = fila.getShort(3);
+            Moneda valorMoneda = fila.wasNull() ? null : MONEDAS.convertToEntityAttribute(moneda);
+            short tipo = fila.getShort(5);
+            TipoTransaccion valorTipo = fila.wasNull() ? null : TIPOS.convertToEntityAttribute(tipo);
+            Acumulado acumulado = new Acumulado();
+            acumulado.cantidad = fila.getLong(6);
+            acumulado.monto = fila.getBigDecimal(7);
+            for (int i = 0; i < ESTADOS; i++) {
+                acumulado.porEstado[i] = fila.getLong(8 + i);
+            }
+            totales.merge(new Clave(periodo != null ? periodo.toLocalDateTime() : null, fila.getString(2),
+                    valorMoneda, fila.getString(4), valorTipo), acumulado, Acumulado::sumar);
+        }, horaDesde, horaHasta, Timestamp.valueOf(inicio), Timestamp.valueOf(fin), horaDesde, horaHasta);
+
+        // Lo acumulado en esta instancia y aún no volcado
+        this.pendientes.forEach((clave, acumulado) -> {
+            if (clave.inicio().isBefore(inicio) || !clave.inicio().isBefore(fin)) {
+                return;
+            }
+            Acumulado copia = new Acumulado();
+            this.pendientes.computeIfPresent(clave, (k, actual) -> {
+                copia.sumar(actual);
+                return actual;
+            });
+            totales.merge(proyectar(clave, dimensiones, serie), copia, Acumulado::sumar);
+        });
+
+        List<Estadistica> resultado = new ArrayList<>(totales.size());
+        totales.forEach((clave, acumulado) -> resultado.add(new Estadistica(clave.inicio(), clave.marca(),
+                clave.moneda(), clave.pais(), clave.tipo(), acumulado.cantidad, acumulado.monto,
+                acumulado.porEstado[EstadoTransaccion.PEN.ordinal()], acumulado.porEstado[EstadoTransaccion.ACT.ordinal()],
+                acumulado.porEstado[EstadoTransaccion.REJ.ordinal()], acumulado.porEstado[EstadoTransaccion.ERR.ordinal()])));
+        resultado.sort(Comparator.comparing(Estadistica::periodo, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Estadistica::marca, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Estadistica::moneda, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Estadistica::pais, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Estadistica::tipo, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return resultado;
+    }
+
+    // Inicio del agregado por minuto más antiguo que conserva la depuración
+    private LocalDateTime horizonteMinutos() {
+        return LocalDateTime.now(this.reloj).truncatedTo(ChronoUnit.HOURS).minus(this.retencionMinutos);
+    }
+
+    private static Clave proyectar(Clave clave, Set<Dimension> dimensiones, Intervalo serie) {
+        LocalDateTime periodo = switch (serie) {
+            case TOTAL -> null;
+            case HORA -> clave.inicio().truncatedTo(ChronoUnit.HOURS);
+            case MINUTO -> clave.inicio();
+        };
+        return new Clave(periodo,
+                dimensiones.contains(Dimension.MARCA) ? clave.marca() : null,
+                dimensiones.contains(Dimension.MONEDA) ? clave.moneda() : null,
+                dimensiones.contains(Dimension.PAIS) ? clave.pais() : null,
+                dimensiones.contains(Dimension.TIPO) ? clave.tipo() : null);
+    }
+
+    private static Clave clave(Transaccion transaccion) {
+        return new Clave(transaccion.getFecha().truncatedTo(ChronoUnit.MINUTES), transaccion.getMarca(),
+                transaccion.getMoneda(), transaccion.getPais(), transaccion.getTipo());
+    }
+
+    private static List<Object[]> filas(short granularidad, Map<Clave, Acumulado> acumulados) {
+        List<Object[]> filas = new ArrayList<>(acumulados.size());
+        acumulados.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Clave.ORDEN))
+                .forEach(entrada -> {
+                    Clave clave = entrada.getKey();
+                    Acumulado acumulado = entrada.getValue();
+                    filas.add(new Object[] { granularidad, Timestamp.valueOf(clave.inicio()), clave.marca(),
+                            clave.moneda().getCodigo(), clave.pais(), clave.tipo().getCodigo(), acumulado.cantidad,
+                            acumulado.monto, acumulado.porEstado[0], acumulado.porEstado[1], acumulado.porEstado[2],
+                            acumulado.porEstado[3] });
+                });
+        return filas;
+    }
+
+    // Solo cuenta lo confirmado: dentro de una transacción se registra al confirmarse
+    private void alConfirmar(Runnable registro) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    registro.run();
+                }
+            });
+        } else {
+            registro.run();
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.banquito.gateway.transacciones.banquito.exception.SuscripcionRechazadaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Eventos de creación y cambio de estado de las transacciones para los back-office de los comercios (GET /eventos).
+ * Cada evento se publica al confirmarse, recibe un id creciente en este nodo y se reparte a los suscriptores cuyo
+ * filtro coincide: primero los del comercio del evento (índice por comercio) y luego los que no filtran por comercio.
+ * <ul>
+ * <li>cada suscriptor tiene un buffer acotado que vacían los hilos de envío, con un solo envío en curso por
+ * suscriptor; si el buffer se llena se desconecta al suscriptor en lugar de frenar al resto o acumular memoria;</li>
+ * <li>los últimos {@code historial} eventos se conservan para reanudar desde el último id recibido; si ese id ya no
+ * está (otro nodo, reinicio o demasiado antiguo) el suscriptor recibe un evento de reinicio y debe volver a consultar
+ * el estado con GET /transacciones.</li>
+ * </ul>
+ * Los eventos son los de este nodo: con varias réplicas el back-office se suscribe a cada una o detrás de un
+ * balanceador con afinidad.
+ */
+@Service
+@Slf4j
+public class EventosTransaccionService {
+
+    public static final String TIPO_CREACION = "creacion";
+    public static final String TIPO_ESTADO = "estado";
+    public static final String TIPO_REINICIO = "reinicio";
+
+    private static final Evento LATIDO = new Evento(null, "latido", null, null, null, null);
+
+    private final int capacidadBuffer;
+    private final int suscriptoresMaximos;
+    private final Duration duracionMaxima;
+    // Prefijo de los ids: un id de un arranque anterior o de otro nodo no se confunde con uno de este
+    private final String arranque;
+    private final Evento[] historial;
+    private final Map<String, Set<Suscripcion>> porComercio = new HashMap<>();
+    private final Set<Suscripcion> sinComercio = new LinkedHashSet<>();
+    private final ExecutorService envios;
+    private final Counter publicados;
+    private final Counter lentos;
+    private long secuencia;
+    private int suscritos;
+
+    public EventosTransaccionService(MeterRegistry meterRegistry,
+            @Value("${gateway.eventos.historial:10000}") int historial,
+            @Value("${gateway.eventos.buffer:256}") int capacidadBuffer,
+            @Value("${gateway.eventos.suscriptores-maximos:20000}") int suscriptoresMaximos,
+            @Value("${gateway.eventos.hilos-envio:32}") int hilosEnvio,
+            @Value("${gateway.eventos.duracion-maxima:PT30M}") Duration duracionMaxima) {
+        this.capacidadBuffer = capacidadBuffer;
+        this.suscriptoresMaximos = suscriptoresMaximos;
+        this.duracionMaxima = duracionMaxima;
+        this.arranque = Long.toString(System.currentTimeMillis(), 36);
+        this.historial = new Evento[historial];
+        // Hilos de plataforma: SseEmitter.send es synchronized y un hilo virtual bloqueado en la escritura a un cliente
+        // lento fijaría su carrier. La cola no crece más que los suscriptores: hay a lo sumo un envío por suscriptor
+        AtomicInteger numero = new AtomicInteger();
+        this.envios = Executors.newFixedThreadPool(hilosEnvio, tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-transaccion-" + numero.getAndIncrement());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.publicados = Counter.builder("gateway.eventos.publicados")
+                .description("Eventos de transacciones publicados a los suscriptores")
+                .register(meterRegistry);
+        this.lentos = Counter.builder("gateway.eventos.desconexiones")
+                .tag("motivo", "consumidor-lento")
+                .description("Suscriptores desconectados por llenar su buffer de eventos")
+                .register(meterRegistry);
+        Gauge.builder("gateway.eventos.suscriptores", this, EventosTransaccionService::suscriptores)
+                .description("Suscriptores conectados a los eventos de transacciones en este nodo")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void detener() {
+        List<Suscripcion> abiertas;
+        synchronized (this.historial) {
+            abiertas = new ArrayList<>(this.sinComercio);
+            this.porComercio.values().forEach(abiertas::addAll);
+        }
+        abiertas.forEach(suscripcion -> this.cancelar(suscripcion, "apagado"));
+        this.envios.shutdown();
+    }
+
+    public void publicarCreacion(Transaccion transaccion) {
+        this.publicar(TIPO_CREACION, transaccion, null);
+    }
+
+    public void publicarCambioEstado(Transaccion transaccion, EstadoTransaccion anterior) {
+        if (transaccion.getEstado() != anterior) {
+            this.publicar(TIPO_ESTADO, transaccion, anterior);
+        }
+    }
+
+    private void publicar(String tipo, Transaccion transaccion, EstadoTransaccion anterior) {
+        Transaccion instantanea = transaccion.copia();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    EventosTransaccionService.this.repartir(tipo, instantanea, anterior);
+                }
+            });
+        } else {
+            this.repartir(tipo, instantanea, anterior);
+        }
+    }
+
+    /**
+     * Registra al suscriptor y encola, antes que cualquier evento nuevo, los posteriores a {@code ultimoEvento} que
+     * coinciden con el filtro; sin {@code ultimoEvento} solo recibe los eventos nuevos.
+     */
+    public Suscripcion suscribir(Filtro filtro, String ultimoEvento, Destino destino) {
+        Suscripcion suscripcion = new Suscripcion(filtro, destino, this.capacidadBuffer);
+        synchronized (this.historial) {
+            if (this.suscritos >= this.suscriptoresMaximos) {
+                throw new SuscripcionRechazadaException(
+                        "Se alcanzó el máximo de " + this.suscriptoresMaximos + " suscriptores de eventos en este nodo");
+            }
+            if (ultimoEvento != null && !ultimoEvento.isBlank()) {
+                this.reanudar(suscripcion, ultimoEvento);
+            }
+            this.suscriptores(filtro.codigoComercio(), true).add(suscripcion);
+            this.suscritos++;
+        }
+        this.programar(suscripcion);
+        return suscripcion;
+    }
+
+    public void cancelar(Suscripcion suscripcion) {
+        this.cancelar(suscripcion, null);
+    }
+
+    private void cancelar(Suscripcion suscripcion, String motivo) {
+        synchronized (this.historial) {
+            Set<Suscripcion> suscriptores = this.suscriptores(suscripcion.filtro.codigoComercio(), false);
+            if (suscriptores == null || !suscriptores.remove(suscripcion)) {
+                return;
+            }
+            this.suscritos--;
+            if (suscriptores.isEmpty() && suscripcion.filtro.codigoComercio() != null) {
+                this.porComercio.remove(suscripcion.filtro.codigoComercio());
+            }
+        }
+        // El cierre lo hace un hilo de envío, después del envío en curso: cancelar se llama también desde repartir,
+        // en el afterCommit del hilo que confirmó la transacción, que no debe escribir a ningún cliente
+        suscripcion.motivoCierre = motivo;
+        suscripcion.cerrada = true;
+        suscripcion.pendientes.clear();
+        if (motivo != null && suscripcion.programada.compareAndSet(false, true)) {
+            this.envios.execute(() -> this.enviar(suscripcion));
+        }
+    }
+
+    // Mantiene abiertas las conexiones sin eventos a través de proxies y balanceadores con timeout de inactividad
+    @Scheduled(fixedDelayString = "${gateway.eventos.latido:PT15S}")
+    public void latir() {
+        List<Suscripcion> inactivas = new ArrayList<>();
+        synchronized (this.historial) {
+            for (Set<Suscripcion> suscriptores : this.porComercio.values()) {
+                this.inactivas(suscriptores, inactivas);
+            }
+            this.inactivas(this.sinComercio, inactivas);
+        }
+        inactivas.forEach(this::programar);
+    }
+
+    // Al vencer, el cliente se reconecta con el último id recibido y no pierde eventos
+    public Duration duracionMaxima() {
+        return this.duracionMaxima;
+    }
+
+    public int suscriptores() {
+        synchronized (this.historial) {
+            return this.suscritos;
+        }
+    }
+
+    private void inactivas(Set<Suscripcion> suscriptores, List<Suscripcion> inactivas) {
+        for (Suscripcion suscripcion : suscriptores) {
+            if (suscripcion.pendientes.isEmpty() && suscripcion.pendientes.offer(LATIDO)) {
+                inactivas.add(suscripcion);
+            }
+        }
+    }
+
+    // El id y el reparto se hacen bajo el mismo lock: cada suscriptor recibe los eventos en el orden de sus ids
+    private void repartir(String tipo, Transaccion transaccion, EstadoTransaccion anterior) {
+        String[] origen = origen(transaccion.getTransaccionEncriptada());
+        List<Suscripcion> notificadas = new ArrayList<>();
+        List<Suscripcion> llenas = new ArrayList<>();
+        synchronized (this.historial) {
+            long id = ++this.secuencia;
+            Evento evento = new Evento(this.arranque + "-" + id, tipo, anterior, origen[1], origen[0], transaccion);
+            this.historial[(int) (id % this.historial.length)] = evento;
+            Set<Suscripcion> delComercio = origen[1] != null ? this.porComercio.get(origen[1]) : null;
+            if (delComercio != null) {
+                this.encolar(delComercio, evento, notificadas, llenas);
+            }
+            this.encolar(this.sinComercio, evento, notificadas, llenas);
+        }
+        this.publicados.increment();
+        for (Suscripcion suscripcion : llenas) {
+            this.lentos.increment();
+            log.warn("Suscriptor de eventos desconectado por no consumir a tiempo: {}", suscripcion.filtro);
+            this.cancelar(suscripcion, "consumidor-lento");
+        }
+        notificadas.forEach(this::programar);
+    }
+
+    private void encolar(Set<Suscripcion> suscriptores, Evento evento, List<Suscripcion> notificadas,
+            List<Suscripcion> llenas) {
+        for (Suscripcion suscripcion : suscriptores) {
+            if (!suscripcion.filtro.coincide(evento)) {
+                continue;
+            }
+            if (suscripcion.pendientes.offer(evento)) {
+                notificadas.add(suscripcion);
+            } else {
+                llenas.add(suscripcion);
+            }
+        }
+    }
+
+    private void reanudar(Suscripcion suscripcion, String ultimoEvento) {
+        long desde = this.secuencia(ultimoEvento);
+        long primero = Math.max(1, this.secuencia - this.historial.length + 1);
+        if (desde < 0 || desde > this.secuencia || desde + 1 < primero) {
+            suscripcion.pendientes.offer(new Evento(this.arranque + "-" + this.secuencia, TIPO_REINICIO, null, null,
+                    null, null));
+            return;
+        }
+        for (long id = desde + 1; id <= this.secuencia; id++) {
+            Evento evento = this.historial[(int) (id % this.historial.length)];
+            if (suscripcion.filtro.coincide(evento) && !suscripcion.pendientes.offer(evento)) {
+                // Más eventos perdidos que el buffer: se reinicia en lugar de entregar una parte
+                suscripcion.pendientes.clear();
+                suscripcion.pendientes.offer(new Evento(this.arranque + "-" + this.secuencia, TIPO_REINICIO, null,
+                        null, null, null));
+                return;
+            }
+        }
+    }
+
+    // -1 si el id no es de este arranque
+    private long secuencia(String id) {
+        int separador = id.lastIndexOf('-');
+        if (separador < 0 || !id.substring(0, separador).equals(this.arranque)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Set<Suscripcion> suscriptores(String codigoComercio, boolean crear) {
+        if (codigoComercio == null) {
+            return this.sinComercio;
+        }
+        return crear ? this.porComercio.computeIfAbsent(codigoComercio, codigo -> new LinkedHashSet<>())
+                : this.porComercio.get(codigoComercio);
+    }
+
+    private void programar(Suscripcion suscripcion) {
+        if (!suscripcion.pendientes.isEmpty() && suscripcion.programada.compareAndSet(false, true)) {
+            this.envios.execute(() -> this.enviar(suscripcion));
+        }
+    }
+
+    // Un solo envío en curso por suscriptor: un cliente lento ocupa a lo sumo un hilo de envío. Una suscripción
+    // cerrada se queda con programada tomada, y nada más se envía tras el cierre
+    private void enviar(Suscripcion suscripcion) {
+        while (true) {
+            if (suscripcion.cerrada) {
+                if (suscripcion.motivoCierre != null) {
+                    suscripcion.destino.cerrar(suscripcion.motivoCierre);
+                }
+                return;
+            }
+            Evento evento = suscripcion.pendientes.poll();
+            if (evento == null) {
+                suscripcion.programada.set(false);
+                if ((suscripcion.pendientes.isEmpty() && !suscripcion.cerrada)
+                        || !suscripcion.programada.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                if (evento == LATIDO) {
+                    suscripcion.destino.latido();
+                } else {
+                    suscripcion.destino.enviar(evento);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Suscriptor de eventos desconectado: {}", e.getMessage());
+                this.cancelar(suscripcion, "error-envio");
+            }
+        }
+    }
+
+    // Comercio y POS viajan en los datos adicionales con el formato de TransaccionService.formatearDatosAdicionales
+    static String[] origen(String datosAdicionales) {
+        return new String[] { valor(datosAdicionales, "POS: "), valor(datosAdicionales, "Comercio: ") };
+    }
+
+    private static String valor(String texto, String etiqueta) {
+        if (texto == null || !texto.startsWith("POS: ")) {
+            return null;
+        }
+        int inicio = texto.indexOf(etiqueta);
+        if (inicio < 0) {
+            return null;
+        }
+        inicio += etiqueta.length();
+        int fin = texto.indexOf(", ", inicio);
+        String valor = fin < 0 ? texto.substring(inicio) : texto.substring(inicio, fin);
+        return valor.isEmpty() || "null".equals(valor) ? null : valor;
+    }
+
+    /**
+     * Criterios de una suscripción; un criterio nulo no filtra. El estado coincide también con el anterior de un
+     * cambio de estado: quien sigue las PEN recibe cuándo dejan de estarlo.
+     */
+    public record Filtro(String codigoComercio, String codigoPOS, EstadoTransaccion estado) {
+
+        boolean coincide(Evento evento) {
+            if (TIPO_REINICIO.equals(evento.tipo())) {
+                return true;
+            }
+            return (this.codigoComercio == null || this.codigoComercio.equals(evento.codigoComercio()))
+                    && (this.codigoPOS == null || this.codigoPOS.equals(evento.codigoPOS()))
+                    && (this.estado == null || this.estado == evento.transaccion().getEstado()
+                            || this.estado == evento.estadoAnterior());
+        }
+    }
+
+    /** Salida de un suscriptor; se invoca desde un solo hilo a la vez. */
+    public interface Destino {
+
+        void enviar(Evento evento) throws IOException;
+
+        void latido() throws IOException;
+
+        // La conexión se cierra desde el servidor: consumidor lento, error de envío o apagado. También desde un hilo
+        // de envío, nunca en el que publica el evento
+        void cerrar(String motivo);
+    }
+
+    public static final class Evento {
+
+        private final String id;
+        private final String tipo;
+        private final EstadoTransaccion estadoAnterior;
+        private final String codigoComercio;
+        private final String codigoPOS;
+        private final Transaccion transaccion;
+        private volatile Object datos;
+
+        private Evento(String id, String tipo, EstadoTransaccion estadoAnterior, String codigoComercio,
+                String codigoPOS, Transaccion transaccion) {
+            this.id = id;
+            this.tipo = tipo;
+            this.estadoAnterior = estadoAnterior;
+            this.codigoComercio = codigoComercio;
+            this.codigoPOS = codigoPOS;
+            this.transaccion = transaccion;
+        }
+
+        public String id() {
+            return this.id;
+        }
+
+        public String tipo() {
+            return this.tipo;
+        }
+
+        public EstadoTransaccion estadoAnterior() {
+            return this.estadoAnterior;
+        }
+
+        public String codigoComercio() {
+            return this.codigoComercio;
+        }
+
+        public String codigoPOS() {
+            return this.codigoPOS;
+        }
+
+        public Transaccion transaccion() {
+            return this.transaccion;
+        }
+
+        // El mismo evento llega a muchos suscriptores: se convierte una sola vez
+        public Object datos(Function<Evento, Object> conversion) {
+            Object convertidos = this.datos;
+            if (convertidos == null) {
+                convertidos = conversion.apply(this);
+                this.datos = convertidos;
+            }
+            return convertidos;
+        }
+    }
+
+    public static final class Suscripcion {
+
+        private final Filtro filtro;
+        private final Destino destino;
+        private final ArrayBlockingQueue<Evento> pendientes;
+        private final AtomicBoolean programada = new AtomicBoolean();
+        private String motivoCierre;
+        private volatile boolean cerrada;
+
+        private Suscripcion(Filtro filtro, Destino destino, int capacidad) {
+            this.filtro = filtro;
+            this.destino = destino;
+            this.pendientes = new ArrayBlockingQueue<>(capacidad);
+        }
+    }
+}
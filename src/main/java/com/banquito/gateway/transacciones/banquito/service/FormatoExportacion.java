@@ -0,0 +1,28 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+public enum FormatoExportacion {
+
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    FormatoExportacion(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public static FormatoExportacion desde(String formato) {
+        for (FormatoExportacion valor : values()) {
+            if (valor.name().equalsIgnoreCase(formato)) {
+                return valor;
+            }
+        }
+        throw new TransaccionInvalidaException("Formato de exportación no soportado: " + formato);
+    }
+}
@@ -0,0 +1,16 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.util.UUID;
+
+/**
+ * Esquema original: los primeros 10 caracteres de un UUID aleatorio (40 bits). Las inserciones se reparten por
+ * todo el índice de la clave primaria y la probabilidad de colisión crece con el volumen; se conserva para
+ * comparar y como alternativa configurable.
+ */
+public class GeneradorCodigoAleatorio implements GeneradorCodigoTransaccion {
+
+    @Override
+    public String generar() {
+        return UUID.randomUUID().toString().substring(0, 10);
+    }
+}
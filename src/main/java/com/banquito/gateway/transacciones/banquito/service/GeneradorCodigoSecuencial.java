@@ -0,0 +1,82 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Códigos ordenados por tiempo al estilo Snowflake, escritos en base 36 (0-9A-Z) con ancho fijo de 10 caracteres,
+ * de modo que el orden del texto coincide con el numérico. Los 51 bits se reparten en:
+ * <ul>
+ * <li>40 bits de milisegundos desde 2024-01-01 UTC (alcanza hasta 2058)</li>
+ * <li>5 bits de nodo (gateway.codigo-transaccion.nodo, hasta 32 instancias)</li>
+ * <li>6 bits de secuencia (64 códigos por milisegundo y nodo)</li>
+ * </ul>
+ * Las inserciones llegan siempre al final del índice de la clave primaria en lugar de repartirse por todo el
+ * árbol. Milisegundo y secuencia viven en un único AtomicLong que solo avanza: si se agota la secuencia de un
+ * milisegundo, o si el reloj retrocede, el contador toma prestado el milisegundo siguiente y los códigos siguen
+ * siendo únicos y crecientes sin bloqueos.
+ */
+public class GeneradorCodigoSecuencial implements GeneradorCodigoTransaccion {
+
+    static final long EPOCA_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int BITS_TIEMPO = 40;
+    static final int BITS_NODO = 5;
+    static final int BITS_SECUENCIA = 6;
+    public static final int NODOS = 1 << BITS_NODO;
+
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final long MAXIMO_TIEMPO = (1L << BITS_TIEMPO) - 1;
+    private static final int LONGITUD = 10;
+    private static final char[] ALFABETO = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final Clock reloj;
+    private final long nodo;
+    private final AtomicLong contador = new AtomicLong();
+
+    public GeneradorCodigoSecuencial(int nodo) {
+        this(nodo, Clock.systemUTC());
+    }
+
+    public GeneradorCodigoSecuencial(int nodo, Clock reloj) {
+        if (nodo < 0 || nodo >= NODOS) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + (NODOS - 1) + ": " + nodo);
+        }
+        this.nodo = nodo;
+        this.reloj = reloj;
+    }
+
+    @Override
+    public String generar() {
+        long minimo = (this.reloj.millis() - EPOCA_MS) << BITS_SECUENCIA;
+        long actual = this.contador.accumulateAndGet(minimo, (anterior, ahora) -> Math.max(anterior + 1, ahora));
+        long tiempo = actual >>> BITS_SECUENCIA;
+        if (tiempo > MAXIMO_TIEMPO) {
+            throw new IllegalStateException("Se agotó el rango de tiempo del generador de códigos");
+        }
+        return codificar((tiempo << (BITS_NODO + BITS_SECUENCIA)) | (this.nodo << BITS_SECUENCIA)
+                | (actual & MASCARA_SECUENCIA));
+    }
+
+    // Instante en que se generó un código, útil para diagnóstico
+    public static Instant instante(String codigo) {
+        return Instant.ofEpochMilli((decodificar(codigo) >>> (BITS_NODO + BITS_SECUENCIA)) + EPOCA_MS);
+    }
+
+    static int nodo(String codigo) {
+        return (int) ((decodificar(codigo) >>> BITS_SECUENCIA) & (NODOS - 1));
+    }
+
+    static String codificar(long valor) {
+        char[] caracteres = new char[LONGITUD];
+        for (int i = LONGITUD - 1; i >= 0; i--) {
+            caracteres[i] = ALFABETO[(int) (valor % ALFABETO.length)];
+            valor /= ALFABETO.length;
+        }
+        return new String(caracteres);
+    }
+
+    static long decodificar(String codigo) {
+        return Long.parseLong(codigo, ALFABETO.length);
+    }
+}
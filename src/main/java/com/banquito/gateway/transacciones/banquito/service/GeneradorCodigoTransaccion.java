@@ -0,0 +1,10 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+/**
+ * Genera el código de 10 caracteres (COD_TRANSACCION) de una transacción nueva. La implementación se elige con
+ * gateway.codigo-transaccion.generador (ver CodigoTransaccionConfig).
+ */
+public interface GeneradorCodigoTransaccion {
+
+    String generar();
+}
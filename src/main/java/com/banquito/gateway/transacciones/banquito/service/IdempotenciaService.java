@@ -0,0 +1,241 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.banquito.gateway.transacciones.banquito.config.EnrutadorLecturas;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.CodigoUnicoReutilizadoException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionEnCursoException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deduplicación de autorizaciones por código único del POS. La tabla en memoria atiende los reintentos recientes
+ * en este nodo (incluidos los que llegan mientras la primera solicitud sigue en curso); el índice único
+ * ux_gtw_transaccion_codigo_unico (en gtw_transaccion_clave, que abarca todas las particiones) es la fuente de verdad
+ * entre nodos y para claves ya expiradas de la memoria. Un reintento debe repetir la {@link Huella} de la solicitud
+ * original; el mismo código con otro monto, tarjeta o comercio se rechaza en lugar de devolver la transacción original.
+ */
+@Service
+@Slf4j
+public class IdempotenciaService {
+
+    private static final long INTERVALO_CONSULTA_MS = 50;
+
+    private final TransaccionRepository transaccionRepository;
+    private final Cache<String, Reciente> recientes;
+    private final Duration esperaMaxima;
+    private final Counter duplicadosMemoria;
+    private final Counter duplicadosBase;
+    private final Counter reutilizados;
+
+    public IdempotenciaService(TransaccionRepository transaccionRepository, MeterRegistry meterRegistry,
+            @Value("${gateway.idempotencia.ttl:PT2M}") Duration ttl,
+            @Value("${gateway.idempotencia.tamanio-maximo:20000}") long tamanioMaximo,
+            @Value("${gateway.idempotencia.espera-maxima:PT15S}") Duration esperaMaxima) {
+        this.transaccionRepository = transaccionRepository;
+        this.recientes = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .build();
+        this.esperaMaxima = esperaMaxima;
+        this.duplicadosMemoria = Counter.builder("gateway.idempotencia.duplicados")
+                .description("Solicitudes repetidas resueltas sin volver a procesarse")
+                .tag("origen", "memoria")
+                .register(meterRegistry);
+        this.duplicadosBase = Counter.builder("gateway.idempotencia.duplicados")
+                .description("Solicitudes repetidas resueltas sin volver a procesarse")
+                .tag("origen", "base")
+                .register(meterRegistry);
+        this.reutilizados = Counter.builder("gateway.idempotencia.reutilizados")
+                .description("Códigos únicos repetidos con datos distintos a los de la solicitud original")
+                .register(meterRegistry);
+    }
+
+    public Transaccion ejecutar(String codigoUnico, Huella huella, Supplier<Transaccion> operacion) {
+        if (codigoUnico == null) {
+            return operacion.get();
+        }
+        Reserva reserva = this.reservar(codigoUnico, huella);
+        if (!reserva.propia()) {
+            return reserva.esperar();
+        }
+        try {
+            return reserva.completar(operacion.get());
+        } catch (RuntimeException e) {
+            throw reserva.fallar(e);
+        }
+    }
+
+    // Para quien procesa varias solicitudes a la vez (POST /lote): una reserva propia debe completarse o fallarse,
+    // una ajena se espera como cualquier reintento
+    public Reserva reservar(String codigoUnico, Huella huella) {
+        Reciente propio = new Reciente(new CompletableFuture<>(), huella);
+        Reciente existente = this.recientes.asMap().putIfAbsent(codigoUnico, propio);
+        if (existente != null) {
+            if (!huella.coincide(existente.huella())) {
+                throw this.reutilizado(codigoUnico);
+            }
+            this.duplicadosMemoria.increment();
+            log.info("Solicitud duplicada para el código único {}, se reutiliza el resultado original", codigoUnico);
+            return new Reserva(codigoUnico, existente.resultado(), false);
+        }
+        return new Reserva(codigoUnico, propio.resultado(), true);
+    }
+
+    // Se invoca cuando la inserción choca con el índice único: otro nodo, o una solicitud ya expirada de la
+    // memoria, registró el mismo código. Se espera a que salga de PEN y se devuelve su resultado final.
+    public Transaccion reproducir(String codigoUnico, Huella huella, RuntimeException errorInsercion) {
+        long limite = System.nanoTime() + this.esperaMaxima.toNanos();
+        while (true) {
+            Transaccion existente = this.buscarEnPrimaria(codigoUnico);
+            if (existente == null) {
+                throw errorInsercion;
+            }
+            if (!huella.coincide(Huella.de(existente))) {
+                throw this.reutilizado(codigoUnico);
+            }
+            if (existente.getEstado() != EstadoTransaccion.PEN) {
+                this.duplicadosBase.increment();
+                log.info("Solicitud duplicada para el código único {}, estado registrado: {}", 
+                        codigoUnico, existente.getEstado());
+                return resultadoFinal(existente);
+            }
+            if (System.nanoTime() > limite) {
+                throw new TransaccionEnCursoException(codigoUnico);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(INTERVALO_CONSULTA_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TransaccionEnCursoException(codigoUnico);
+            }
+        }
+    }
+
+    // La base es la fuente de verdad: con réplicas de lectura se consulta siempre la primaria
+    private Transaccion buscarEnPrimaria(String codigoUnico) {
+        return EnrutadorLecturas.enPrimaria(() -> this.transaccionRepository.findByCodigoUnicoTransaccion(codigoUnico));
+    }
+
+    private CodigoUnicoReutilizadoException reutilizado(String codigoUnico) {
+        this.reutilizados.increment();
+        log.warn("El código único {} llegó con datos distintos a los de la solicitud original", codigoUnico);
+        return new CodigoUnicoReutilizadoException(codigoUnico);
+    }
+
+    private Transaccion esperar(String codigoUnico, CompletableFuture<Transaccion> original) {
+        try {
+            return original.get(this.esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TransaccionEnCursoException(codigoUnico);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransaccionEnCursoException(codigoUnico);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public final class Reserva {
+
+        private final String codigoUnico;
+        private final CompletableFuture<Transaccion> resultado;
+        private final boolean propia;
+
+        private Reserva(String codigoUnico, CompletableFuture<Transaccion> resultado, boolean propia) {
+            this.codigoUnico = codigoUnico;
+            this.resultado = resultado;
+            this.propia = propia;
+        }
+
+        public boolean propia() {
+            return this.propia;
+        }
+
+        public boolean terminada() {
+            return this.resultado.isDone();
+        }
+
+        public Transaccion esperar() {
+            return IdempotenciaService.this.esperar(this.codigoUnico, this.resultado);
+        }
+
+        public Transaccion completar(Transaccion transaccion) {
+            this.resultado.complete(transaccion);
+            return transaccion;
+        }
+
+        public RuntimeException fallar(RuntimeException error) {
+            this.resultado.completeExceptionally(error);
+            // Sin fila en la base (falló antes de la inserción) el reintento debe procesarse de nuevo
+            if (IdempotenciaService.this.buscarEnPrimaria(this.codigoUnico) == null) {
+                IdempotenciaService.this.recientes.asMap().computeIfPresent(this.codigoUnico,
+                        (codigo, reciente) -> reciente.resultado() == this.resultado ? null : reciente);
+            }
+            return error;
+        }
+    }
+
+    /** Datos de una autorización que un reintento con el mismo código único debe repetir. */
+    public record Huella(BigDecimal monto, String moneda, String tarjeta, String tipo, String codigoComercio,
+            String codigoPOS) {
+
+        public static Huella de(TransaccionPosDTO posDTO) {
+            return new Huella(posDTO.getMonto(), posDTO.getMoneda(), posDTO.getNumeroTarjeta(), posDTO.getTipo(),
+                    posDTO.getCodigoComercio(), posDTO.getCodigoPOS());
+        }
+
+        // Comercio y POS de una fila registrada se leen de sus datos adicionales
+        static Huella de(Transaccion transaccion) {
+            String[] origen = EventosTransaccionService.origen(transaccion.getTransaccionEncriptada());
+            return new Huella(transaccion.getMonto(),
+                    transaccion.getMoneda() != null ? transaccion.getMoneda().name() : null, transaccion.getTarjeta(),
+                    transaccion.getTipo() != null ? transaccion.getTipo().name() : null, origen[1], origen[0]);
+        }
+
+        // El monto se compara por valor (150.5 y 150.50 son iguales); comercio y POS, solo si la original los tiene
+        boolean coincide(Huella original) {
+            return (this.monto == null ? original.monto == null
+                            : original.monto != null && this.monto.compareTo(original.monto) == 0)
+                    && Objects.equals(this.moneda, original.moneda)
+                    && Objects.equals(this.tarjeta, original.tarjeta)
+                    && Objects.equals(this.tipo, original.tipo)
+                    && (original.codigoComercio == null || original.codigoComercio.equals(this.codigoComercio))
+                    && (original.codigoPOS == null || original.codigoPOS.equals(this.codigoPOS));
+        }
+    }
+
+    private record Reciente(CompletableFuture<Transaccion> resultado, Huella huella) {
+    }
+
+    private static Transaccion resultadoFinal(Transaccion transaccion) {
+        return switch (transaccion.getEstado()) {
+            case REJ -> throw new TransaccionInvalidaException("Transacción rechazada por el procesador de pagos");
+            case ERR -> throw new TransaccionInvalidaException("Error al procesar la transacción " 
+                    + transaccion.getCodigoUnicoTransaccion());
+            case PEN, ACT -> transaccion;
+        };
+    }
+}
@@ -0,0 +1,259 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class InsercionAgrupadaService {
+
+    private final TransaccionRepository transaccionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitada;
+    private final int tamanioLote;
+    private final long esperaNanos;
+    private final int escritores;
+    private final long esperaMaximaNanos;
+    private final BlockingQueue<Pendiente> cola;
+    private final List<Thread> hilos = new ArrayList<>();
+    private final DistributionSummary tamanioLotes;
+    private final Timer tiempoEscritura;
+    private final Counter filasInsertadas;
+    private final Counter lotesFallidos;
+    private volatile boolean activo;
+
+    public InsercionAgrupadaService(TransaccionRepository transaccionRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${gateway.insercion-agrupada.habilitada:true}") boolean habilitada,
+            @Value("${gateway.insercion-agrupada.tamanio-lote:50}") int tamanioLote,
+            @Value("${gateway.insercion-agrupada.espera:PT0.0005S}") Duration espera,
+            @Value("${gateway.insercion-agrupada.escritores:2}") int escritores,
+            @Value("${gateway.insercion-agrupada.capacidad-cola:10000}") int capacidadCola,
+            @Value("${gateway.insercion-agrupada.espera-maxima:PT10S}") Duration esperaMaxima) {
+        this.transaccionRepository = transaccionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitada = habilitada;
+        this.tamanioLote = tamanioLote;
+        this.esperaNanos = espera.toNanos();
+        this.escritores = escritores;
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+        this.cola = new LinkedBlockingQueue<>(capacidadCola);
+        this.tamanioLotes = DistributionSummary.builder("gateway.insercion.lote.tamanio")
+                .description("Filas confirmadas por lote de inserción")
+                .register(meterRegistry);
+        this.tiempoEscritura = Timer.builder("gateway.insercion.lote.escritura")
+                .description("Duración del INSERT agrupado y su commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.filasInsertadas = Counter.builder("gateway.insercion.filas")
+                .description("Transacciones insertadas")
+                .register(meterRegistry);
+        this.lotesFallidos = Counter.builder("gateway.insercion.lote.fallidos")
+                .description("Lotes que debieron reintentarse fila por fila")
+                .register(meterRegistry);
+        Gauge.builder("gateway.insercion.cola", this.cola, BlockingQueue::size)
+                .description("Inserciones en espera de ser agrupadas")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (!this.habilitada) {
+            return;
+        }
+        this.activo = true;
+        for (int i = 0; i < this.escritores; i++) {
+            Thread hilo = new Thread(this::escribir, "insercion-agrupada-" + i);
+            hilo.setDaemon(true);
+            hilo.start();
+            this.hilos.add(hilo);
+        }
+        log.info("Inserción agrupada activa: lote={}, espera={}us, escritores={}", 
+                this.tamanioLote, TimeUnit.NANOSECONDS.toMicros(this.esperaNanos), this.escritores);
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        this.activo = false;
+        for (Thread hilo : this.hilos) {
+            hilo.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        // Lo que un escritor detenido o colgado no alcanzó a tomar no debe dejar esperando a nadie
+        List<Pendiente> restantes = new ArrayList<>();
+        this.cola.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            log.warn("Inserción agrupada detenida con {} inserciones en cola", restantes.size());
+            this.devolver(restantes);
+        }
+    }
+
+    public Transaccion insertar(Transaccion transaccion) {
+        // Dentro de una transacción del llamador la fila debe confirmarse junto con ella
+        if (!this.activo || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return this.insertarDirecto(transaccion);
+        }
+        Pendiente pendiente = new Pendiente(transaccion, new CompletableFuture<>());
+        if (!this.cola.offer(pendiente)) {
+            log.warn("Cola de inserción agrupada llena, insertando directamente: {}", transaccion.getCodTransaccion());
+            return this.insertarDirecto(transaccion);
+        }
+        // Si el servicio se detuvo entre la verificación y offer, ningún escritor la tomará
+        if (!this.activo && this.cola.remove(pendiente)) {
+            return this.insertarDirecto(transaccion);
+        }
+        try {
+            // null: ningún escritor la insertó (servicio detenido o escritor interrumpido), se inserta aquí
+            Transaccion guardada = pendiente.resultado().get(this.esperaMaximaNanos, TimeUnit.NANOSECONDS);
+            return guardada != null ? guardada : this.insertarDirecto(transaccion);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            return this.sinEscritor(pendiente, "Tiempo agotado esperando la inserción agrupada de ");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return this.sinEscritor(pendiente, "Interrumpido esperando la inserción agrupada de ");
+        }
+    }
+
+    // Si sigue en la cola ningún escritor la insertará: se inserta aquí. Si un escritor ya la tomó, su resultado
+    // se desconoce y no puede reintentarse sin arriesgar un duplicado
+    private Transaccion sinEscritor(Pendiente pendiente, String mensaje) {
+        if (this.cola.remove(pendiente)) {
+            log.warn("Inserción agrupada sin escritor disponible, insertando directamente: {}",
+                    pendiente.transaccion().getCodTransaccion());
+            return this.insertarDirecto(pendiente.transaccion());
+        }
+        throw new IllegalStateException(mensaje + pendiente.transaccion().getCodTransaccion());
+    }
+
+    // Un lote ya formado por el llamador (POST /lote) se confirma sin pasar por la cola, en transacciones de
+    // tamanio-lote filas; cada resultado se completa con su fila o con el error de esa fila
+    public List<CompletableFuture<Transaccion>> insertarLote(List<Transaccion> transacciones) {
+        List<Pendiente> pendientes = new ArrayList<>(transacciones.size());
+        List<CompletableFuture<Transaccion>> resultados = new ArrayList<>(transacciones.size());
+        for (Transaccion transaccion : transacciones) {
+            Pendiente pendiente = new Pendiente(transaccion, new CompletableFuture<>());
+            pendientes.add(pendiente);
+            resultados.add(pendiente.resultado());
+        }
+        for (int desde = 0; desde < pendientes.size(); desde += this.tamanioLote) {
+            this.confirmar(pendientes.subList(desde, Math.min(desde + this.tamanioLote, pendientes.size())));
+        }
+        return resultados;
+    }
+
+    private Transaccion insertarDirecto(Transaccion transaccion) {
+        Transaccion guardada = this.transaccionRepository.save(transaccion);
+        this.filasInsertadas.increment();
+        return guardada;
+    }
+
+    private void escribir() {
+        List<Pendiente> lote = new ArrayList<>(this.tamanioLote);
+        while (this.activo || !this.cola.isEmpty()) {
+            try {
+                Pendiente primero = this.cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                long limite = System.nanoTime() + this.esperaNanos;
+                while (lote.size() < this.tamanioLote) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0 || this.cola.drainTo(lote, this.tamanioLote - lote.size()) == 0
+                            && !this.esperarSiguiente(lote, restante)) {
+                        break;
+                    }
+                }
+                this.confirmar(lote);
+            } catch (InterruptedException e) {
+                // La interrupción solo llega mientras se forma el lote: nada de lo tomado se insertó
+                Thread.currentThread().interrupt();
+                log.warn("Escritor de inserción agrupada interrumpido con {} inserciones tomadas", lote.size());
+                this.devolver(lote);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error inesperado en la inserción agrupada: {}", e.getMessage());
+                for (Pendiente pendiente : lote) {
+                    pendiente.resultado().completeExceptionally(e);
+                }
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void devolver(List<Pendiente> pendientes) {
+        for (Pendiente pendiente : pendientes) {
+            pendiente.resultado().complete(null);
+        }
+    }
+
+    private boolean esperarSiguiente(List<Pendiente> lote, long restanteNanos) throws InterruptedException {
+        Pendiente siguiente = this.cola.poll(restanteNanos, TimeUnit.NANOSECONDS);
+        if (siguiente == null) {
+            return false;
+        }
+        lote.add(siguiente);
+        return true;
+    }
+
+    private void confirmar(List<Pendiente> lote) {
+        List<Transaccion> transacciones = new ArrayList<>(lote.size());
+        for (Pendiente pendiente : lote) {
+            transacciones.add(pendiente.transaccion());
+        }
+        try {
+            this.tiempoEscritura.record(() -> this.transactionTemplate.executeWithoutResult(
+                    status -> this.transaccionRepository.saveAll(transacciones)));
+            this.tamanioLotes.record(lote.size());
+            this.filasInsertadas.increment(lote.size());
+            for (Pendiente pendiente : lote) {
+                pendiente.resultado().complete(pendiente.transaccion());
+            }
+        } catch (RuntimeException e) {
+            // Una fila inválida no debe hacer fallar al resto del lote
+            log.warn("Falló el lote de {} inserciones, reintentando individualmente: {}", lote.size(), e.getMessage());
+            this.lotesFallidos.increment();
+            for (Pendiente pendiente : lote) {
+                try {
+                    pendiente.resultado().complete(this.insertarDirecto(pendiente.transaccion()));
+                } catch (RuntimeException errorFila) {
+                    pendiente.resultado().completeExceptionally(errorFila);
+                }
+            }
+        }
+    }
+
+    private record Pendiente(Transaccion transaccion, CompletableFuture<Transaccion> resultado) {
+    }
+}
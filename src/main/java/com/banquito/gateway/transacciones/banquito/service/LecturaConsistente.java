@@ -0,0 +1,58 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.banquito.gateway.transacciones.banquito.config.EnrutadorLecturas;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Búsquedas por clave que deben ver lo recién escrito aunque las lecturas vayan a una réplica
+ * (gateway.replicas.habilitado). Las claves escritas en este nodo durante la ventana se leen en la primaria, y una
+ * búsqueda que no encuentra la fila en la réplica se repite en la primaria, por si la escribió otro nodo y aún no
+ * se replicó. Sin réplicas la consulta se ejecuta tal cual.
+ */
+@Component
+public class LecturaConsistente {
+
+    private final boolean replicasHabilitadas;
+    private final Cache<String, Boolean> escriturasRecientes;
+
+    public LecturaConsistente(@Value("${gateway.replicas.habilitado:false}") boolean replicasHabilitadas,
+            @Value("${gateway.replicas.ventana-primaria:PT10S}") Duration ventana,
+            @Value("${gateway.replicas.escrituras-recientes-maximo:100000}") long maximo) {
+        this.replicasHabilitadas = replicasHabilitadas;
+        this.escriturasRecientes = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(ventana)
+                .build();
+    }
+
+    public void registrarEscritura(String... claves) {
+        if (!this.replicasHabilitadas) {
+            return;
+        }
+        for (String clave : claves) {
+            if (clave != null) {
+                this.escriturasRecientes.put(clave, Boolean.TRUE);
+            }
+        }
+    }
+
+    // La consulta debe abrir su propia transacción (no llamarse dentro de una @Transactional de lectura):
+    // la conexión, y con ella la réplica o la primaria, se elige en su primera sentencia
+    public <T> T leer(String clave, Supplier<T> consulta) {
+        if (!this.replicasHabilitadas) {
+            return consulta.get();
+        }
+        if (clave != null && this.escriturasRecientes.getIfPresent(clave) != null) {
+            return EnrutadorLecturas.enPrimaria(consulta);
+        }
+        T resultado = consulta.get();
+        return resultado != null ? resultado : EnrutadorLecturas.enPrimaria(consulta);
+    }
+}
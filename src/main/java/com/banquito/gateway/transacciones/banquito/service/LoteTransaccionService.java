@@ -0,0 +1,320 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.CodigoUnicoReutilizadoException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Autorización de un lote de solicitudes POS (POST /lote) con el mismo resultado por solicitud que
+ * procesarTransaccionPOS: se validan todas antes de tocar la base, se consulta una sola vez cada comercio, las filas
+ * en PEN se insertan juntas y las llamadas al procesador se reparten entre a lo sumo {@code concurrencia} hilos.
+ * Una solicitud inválida o rechazada solo afecta a su propio resultado.
+ */
+@Service
+@Slf4j
+public class LoteTransaccionService {
+
+    private final TransaccionService transaccionService;
+    private final ComercioCacheService comercioCacheService;
+    private final InsercionAgrupadaService insercionAgrupadaService;
+    private final IdempotenciaService idempotenciaService;
+    private final MetricasTransaccion metricasTransaccion;
+    private final Validator validator;
+    private final Executor executor;
+    private final int tamanioMaximo;
+    private final int concurrencia;
+    private final DistributionSummary tamanioLotes;
+
+    public LoteTransaccionService(TransaccionService transaccionService, ComercioCacheService comercioCacheService,
+            InsercionAgrupadaService insercionAgrupadaService, IdempotenciaService idempotenciaService,
+            MetricasTransaccion metricasTransaccion, Validator validator, MeterRegistry meterRegistry,
+            @Qualifier("applicationTaskExecutor") Executor executor,
+            @Value("${gateway.lote.tamanio-maximo:500}") int tamanioMaximo,
+            @Value("${gateway.lote.concurrencia:16}") int concurrencia) {
+        if (concurrencia < 1) {
+            throw new IllegalArgumentException("La concurrencia de los lotes debe ser al menos 1");
+        }
+        this.transaccionService = transaccionService;
+        this.comercioCacheService = comercioCacheService;
+        this.insercionAgrupadaService = insercionAgrupadaService;
+        this.idempotenciaService = idempotenciaService;
+        this.metricasTransaccion = metricasTransaccion;
+        this.validator = validator;
+        this.executor = executor;
+        this.tamanioMaximo = tamanioMaximo;
+        this.concurrencia = concurrencia;
+        this.tamanioLotes = DistributionSummary.builder("gateway.lote.tamanio")
+                .description("Solicitudes recibidas por lote en POST /lote")
+                .register(meterRegistry);
+    }
+
+    public List<ResultadoLote> procesar(List<TransaccionPosDTO> solicitudes) {
+        if (solicitudes == null || solicitudes.isEmpty()) {
+            throw new TransaccionInvalidaException("El lote no contiene transacciones");
+        }
+        if (solicitudes.size() > this.tamanioMaximo) {
+            throw new TransaccionInvalidaException("El lote supera el máximo de " + this.tamanioMaximo + " transacciones");
+        }
+        log.info("Procesando lote de {} transacciones desde POS", solicitudes.size());
+        this.tamanioLotes.record(solicitudes.size());
+
+        List<Item> items = new ArrayList<>(solicitudes.size());
+        for (int i = 0; i < solicitudes.size(); i++) {
+            items.add(new Item(i, solicitudes.get(i)));
+        }
+        try {
+            List<Item> validos = this.validar(items);
+            this.consultarComercios(validos);
+            this.insertar(validos);
+            this.enParalelo(validos, this::autorizar);
+        } finally {
+            for (Item item : items) {
+                this.liberar(item);
+                item.medicion.finalizar();
+            }
+        }
+
+        List<ResultadoLote> resultados = new ArrayList<>(items.size());
+        for (Item item : items) {
+            resultados.add(new ResultadoLote(item.indice,
+                    item.posDTO != null ? item.posDTO.getCodigoUnicoTransaccion() : null, item.resultado, item.error));
+        }
+        return resultados;
+    }
+
+    // Paso 1: validación completa de cada solicitud y reserva de su código único; las inválidas quedan resueltas
+    private List<Item> validar(List<Item> items) {
+        List<Item> validos = new ArrayList<>(items.size());
+        Map<String, Item> codigosUnicos = new HashMap<>();
+        for (Item item : items) {
+            try {
+                item.fechaCaducidad = this.validarSolicitud(item.posDTO);
+            } catch (RuntimeException e) {
+                item.error = e;
+                continue;
+            }
+            if (codigosUnicos.putIfAbsent(item.posDTO.getCodigoUnicoTransaccion(), item) != null) {
+                item.error = new TransaccionInvalidaException("El código único "
+                        + item.posDTO.getCodigoUnicoTransaccion() + " se repite en el lote");
+                continue;
+            }
+            try {
+                item.reserva = this.idempotenciaService.reservar(item.posDTO.getCodigoUnicoTransaccion(),
+                        IdempotenciaService.Huella.de(item.posDTO));
+            } catch (CodigoUnicoReutilizadoException e) {
+                item.error = e;
+                continue;
+            }
+            validos.add(item);
+        }
+        return validos;
+    }
+
+    // Las mismas reglas que @Valid y la validación previa de procesarTransaccionPOS
+    private LocalDate validarSolicitud(TransaccionPosDTO posDTO) {
+        if (posDTO == null) {
+            throw new TransaccionInvalidaException("La transacción es requerida");
+        }
+        Set<ConstraintViolation<TransaccionPosDTO>> violaciones = this.validator.validate(posDTO);
+        if (!violaciones.isEmpty()) {
+            Set<String> mensajes = new TreeSet<>();
+            for (ConstraintViolation<TransaccionPosDTO> violacion : violaciones) {
+                mensajes.add(violacion.getMessage());
+            }
+            throw new TransaccionInvalidaException(String.join("; ", mensajes));
+        }
+        return TransaccionService.prevalidarTransaccionPOS(posDTO);
+    }
+
+    // Paso 2: una consulta por código POS distinto (la caché ya agrupa las cargas concurrentes de una misma clave)
+    private void consultarComercios(List<Item> validos) {
+        Map<String, List<Item>> porPOS = new HashMap<>();
+        for (Item item : validos) {
+            if (!item.reserva.propia()) {
+                continue;
+            }
+            porPOS.computeIfAbsent(item.posDTO.getCodigoPOS(), codigo -> new ArrayList<>()).add(item);
+        }
+        this.enParalelo(new ArrayList<>(porPOS.entrySet()), entrada -> {
+            ComercioDTO comercioDTO = null;
+            RuntimeException error = null;
+            try {
+                comercioDTO = this.comercioCacheService.obtenerDatosComercio(entrada.getKey());
+            } catch (RuntimeException e) {
+                log.error("Error al consultar datos bancarios del POS {}: {}", entrada.getKey(), e.getMessage());
+                error = new TransaccionInvalidaException("No se pudieron obtener los datos bancarios del comercio");
+            }
+            for (Item item : entrada.getValue()) {
+                item.comercioDTO = comercioDTO;
+                item.error = error;
+            }
+        });
+    }
+
+    // Paso 3: inserción en PEN de todas las solicitudes con comercio, sin una transacción abierta durante el resto
+    private void insertar(List<Item> validos) {
+        List<Item> porInsertar = new ArrayList<>(validos.size());
+        List<Transaccion> transacciones = new ArrayList<>(validos.size());
+        for (Item item : validos) {
+            if (!item.reserva.propia() || item.error != null) {
+                continue;
+            }
+            try {
+                Transaccion transaccion = TransaccionService.construirTransaccionPOS(item.posDTO, item.comercioDTO,
+                        item.fechaCaducidad);
+                this.transaccionService.prepararCreacion(transaccion);
+                porInsertar.add(item);
+                transacciones.add(transaccion);
+            } catch (RuntimeException e) {
+                item.error = e;
+            }
+        }
+        if (transacciones.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Transaccion>> insertadas = this.insercionAgrupadaService.insertarLote(transacciones);
+        for (int i = 0; i < porInsertar.size(); i++) {
+            Item item = porInsertar.get(i);
+            try {
+                item.guardada = insertadas.get(i).join();
+                this.transaccionService.registrarCreacion(item.guardada);
+            } catch (CompletionException e) {
+                item.errorInsercion = e.getCause() instanceof RuntimeException causa ? causa : e;
+            }
+        }
+        log.info("Lote: {} de {} transacciones insertadas en estado pendiente", transacciones.size(), validos.size());
+    }
+
+    // Paso 4: procesador y estado final de cada solicitud; un duplicado espera el resultado de la original
+    private void autorizar(Item item) {
+        try {
+            if (!item.reserva.propia()) {
+                item.resultado = item.reserva.esperar();
+                return;
+            }
+            if (item.error != null) {
+                throw item.error;
+            }
+            if (item.errorInsercion instanceof DataIntegrityViolationException) {
+                log.warn("El código único {} ya estaba registrado, se devuelve el resultado existente",
+                        item.posDTO.getCodigoUnicoTransaccion());
+                item.resultado = this.idempotenciaService.reproducir(item.posDTO.getCodigoUnicoTransaccion(),
+                        IdempotenciaService.Huella.de(item.posDTO), item.errorInsercion);
+            } else if (item.errorInsercion != null) {
+                throw item.errorInsercion;
+            } else {
+                item.resultado = this.transaccionService.autorizarTransaccionPOS(item.posDTO, item.comercioDTO,
+                        item.guardada, item.medicion);
+            }
+            item.reserva.completar(item.resultado);
+        } catch (RuntimeException e) {
+            item.error = e;
+            item.resultado = null;
+            if (item.reserva.propia()) {
+                item.reserva.fallar(e);
+            }
+        }
+    }
+
+    // Si una fase terminó el lote con una excepción, las reservas propias que quedaron abiertas se fallan: de lo
+    // contrario los reintentos de esos códigos únicos esperarían un resultado que ya no llegará
+    private void liberar(Item item) {
+        if (item.reserva == null || !item.reserva.propia() || item.reserva.terminada()) {
+            return;
+        }
+        try {
+            item.reserva.fallar(new IllegalStateException("El lote terminó sin resolver la transacción "
+                    + item.posDTO.getCodigoUnicoTransaccion()));
+        } catch (RuntimeException e) {
+            log.warn("No se pudo liberar la reserva del código único {}: {}", item.posDTO.getCodigoUnicoTransaccion(),
+                    e.getMessage());
+        }
+    }
+
+    // Reparte las tareas entre el hilo de la petición y hasta concurrencia - 1 hilos del executor. La espera es
+    // por las tareas y no por los hilos: si el executor está saturado, el hilo de la petición las termina solo
+    private <T> void enParalelo(List<T> tareas, Consumer<T> accion) {
+        if (tareas.isEmpty()) {
+            return;
+        }
+        AtomicInteger siguiente = new AtomicInteger();
+        CountDownLatch pendientes = new CountDownLatch(tareas.size());
+        Runnable trabajador = () -> {
+            for (int i = siguiente.getAndIncrement(); i < tareas.size(); i = siguiente.getAndIncrement()) {
+                try {
+                    accion.accept(tareas.get(i));
+                } finally {
+                    pendientes.countDown();
+                }
+            }
+        };
+        int adicionales = Math.min(this.concurrencia, tareas.size()) - 1;
+        for (int i = 0; i < adicionales; i++) {
+            try {
+                this.executor.execute(trabajador);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        trabajador.run();
+        try {
+            pendientes.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se procesaba el lote", e);
+        }
+    }
+
+    public record ResultadoLote(int indice, String codigoUnicoTransaccion, Transaccion transaccion,
+            RuntimeException error) {
+    }
+
+    private final class Item {
+
+        private final int indice;
+        private final TransaccionPosDTO posDTO;
+        private final MetricasTransaccion.Medicion medicion;
+        private LocalDate fechaCaducidad;
+        private IdempotenciaService.Reserva reserva;
+        private ComercioDTO comercioDTO;
+        private Transaccion guardada;
+        private RuntimeException errorInsercion;
+        private Transaccion resultado;
+        private RuntimeException error;
+
+        private Item(int indice, TransaccionPosDTO posDTO) {
+            this.indice = indice;
+            this.posDTO = posDTO;
+            this.medicion = LoteTransaccionService.this.metricasTransaccion.iniciar(MetricasTransaccion.FLUJO_LOTE,
+                    posDTO != null ? posDTO.getTipo() : null, posDTO != null ? posDTO.getMarca() : null);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mantiene las particiones por rango de FECHA de gtw_transaccion (V6): crea por adelantado las de los próximos
+ * periodos y separa las que superan la retención, archivándolas en otro esquema o eliminándolas. Cada cambio va
+ * en su propia transacción con lock_timeout, para no bloquear las escrituras si hay transacciones largas, y
+ * serializado entre instancias con un advisory lock; lo que no se pueda hacer se reintenta en la siguiente
+ * ejecución.
+ */
+@Component
+@Slf4j
+public class MantenimientoParticionesService {
+
+    private static final String TABLA = "gtw_transaccion";
+    private static final String PREFIJO = TABLA + "_p";
+    private static final long CLAVE_BLOQUEO = 0x67747770L;
+    private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter FORMATO_LIMITE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern LIMITES = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+
+    enum Periodo {
+        DIARIO,
+        SEMANAL,
+        MENSUAL;
+
+        LocalDate inicio(LocalDate fecha) {
+            return switch (this) {
+                case DIARIO -> fecha;
+                case SEMANAL -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MENSUAL -> fecha.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate siguiente(LocalDate inicio) {
+            return switch (this) {
+                case DIARIO -> inicio.plusDays(1);
+                case SEMANAL -> inicio.plusWeeks(1);
+                case MENSUAL -> inicio.plusMonths(1);
+            };
+        }
+    }
+
+    record Particion(String nombre, LocalDate desde, LocalDate hasta) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final Periodo periodo;
+    private final int adelanto;
+    private final Period retencion;
+    private final boolean eliminarVencidas;
+    private final String esquemaArchivo;
+    private final Duration esperaBloqueo;
+    private final AtomicInteger particionesAdelantadas = new AtomicInteger();
+
+    public MantenimientoParticionesService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.particiones.habilitado:true}") boolean habilitado,
+            @Value("${gateway.particiones.periodo:mensual}") String periodo,
+            @Value("${gateway.particiones.adelanto:3}") int adelanto,
+            @Value("${gateway.particiones.retencion:P24M}") Period retencion,
+            @Value("${gateway.particiones.vencidas:archivar}") String vencidas,
+            @Value("${gateway.particiones.esquema-archivo:gtw_archivo}") String esquemaArchivo,
+            @Value("${gateway.particiones.espera-bloqueo:PT5S}") Duration esperaBloqueo) {
+        if (!"archivar".equals(vencidas) && !"eliminar".equals(vencidas)) {
+            throw new IllegalArgumentException("gateway.particiones.vencidas debe ser archivar o eliminar: " + vencidas);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.periodo = Periodo.valueOf(periodo.toUpperCase(Locale.ROOT));
+        this.adelanto = adelanto;
+        this.retencion = retencion;
+        this.eliminarVencidas = "eliminar".equals(vencidas);
+        this.esquemaArchivo = esquemaArchivo;
+        this.esperaBloqueo = esperaBloqueo;
+
+        Gauge.builder("gateway.particiones.adelantadas", this.particionesAdelantadas, AtomicInteger::get)
+                .description("Particiones de gtw_transaccion creadas para periodos futuros; 0 indica que las "
+                        + "nuevas filas caerán en la partición por defecto")
+                .register(meterRegistry);
+    }
+
+    // También al arrancar, para que una instancia recién desplegada no dependa del primer disparo del cron
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${gateway.particiones.cron:0 15 2 * * *}")
+    public void mantener() {
+        if (!this.habilitado) {
+            return;
+        }
+        try {
+            this.mantener(LocalDate.now());
+        } catch (RuntimeException e) {
+            log.error("Error en el mantenimiento de particiones de {}: {}", TABLA, e.getMessage());
+        }
+    }
+
+    public void mantener(LocalDate hoy) {
+        List<Particion> particiones = this.listarParticiones();
+        this.crearParticiones(particiones, hoy);
+        if (!this.retencion.isZero()) {
+            this.separarVencidas(particiones, hoy.minus(this.retencion));
+        }
+        this.particionesAdelantadas.set((int) this.listarParticiones().stream()
+                .filter(particion -> particion.desde().isAfter(hoy))
+                .count());
+        Boolean filasEnDefault = this.jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + TABLA + "_default)", Boolean.class);
+        if (Boolean.TRUE.equals(filasEnDefault)) {
+            log.warn("La partición {}_default tiene filas: faltan particiones para su rango de fechas", TABLA);
+        }
+    }
+
+    List<Particion> listarParticiones() {
+        List<Particion> particiones = new ArrayList<>();
+        this.jdbcTemplate.query("""
+                SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+                FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass
+                """, fila -> {
+                    Matcher limites = LIMITES.matcher(fila.getString(2));
+                    if (limites.find()) {
+                        particiones.add(new Particion(fila.getString(1),
+                                LocalDateTime.parse(limites.group(1), FORMATO_LIMITE).toLocalDate(),
+                                LocalDateTime.parse(limites.group(2), FORMATO_LIMITE).toLocalDate()));
+                    }
+                }, TABLA);
+        return particiones;
+    }
+
+    // Cubre desde el periodo actual hasta 'adelanto' periodos después, sin solaparse con las particiones
+    // existentes (que pueden tener otra duración si se cambió gateway.particiones.periodo)
+    private void crearParticiones(List<Particion> particiones, LocalDate hoy) {
+        LocalDate desde = this.periodo.inicio(hoy);
+        LocalDate limite = desde;
+        for (int i = 0; i <= this.adelanto; i++) {
+            limite = this.periodo.siguiente(limite);
+        }
+        while (desde.isBefore(limite)) {
+            LocalDate cursor = desde;
+            Particion existente = particiones.stream()
+                    .filter(particion -> !cursor.isBefore(particion.desde()) && cursor.isBefore(particion.hasta()))
+                    .findFirst()
+                    .orElse(null);
+            if (existente != null) {
+                desde = existente.hasta();
+                continue;
+            }
+            LocalDate hasta = particiones.stream()
+                    .map(Particion::desde)
+                    .filter(inicio -> inicio.isAfter(cursor))
+                    .min(LocalDate::compareTo)
+                    .filter(inicio -> inicio.isBefore(this.periodo.siguiente(cursor)))
+                    .orElse(this.periodo.siguiente(cursor));
+            this.crearParticion(new Particion(PREFIJO + cursor.format(FORMATO_NOMBRE), cursor, hasta));
+            desde = hasta;
+        }
+    }
+
+    private void crearParticion(Particion particion) {
+        this.ejecutar("crear la partición " + particion.nombre(), jdbc -> {
+            jdbc.execute("CREATE TABLE IF NOT EXISTS " + particion.nombre() + " PARTITION OF " + TABLA
+                    + " FOR VALUES FROM ('" + particion.desde() + "') TO ('" + particion.hasta() + "')");
+            log.info("Partición {} creada para [{}, {})", particion.nombre(), particion.desde(), particion.hasta());
+        });
+    }
+
+    private void separarVencidas(List<Particion> particiones, LocalDate corte) {
+        particiones.stream()
+                .filter(particion -> !particion.hasta().isAfter(corte))
+                .forEach(this::separar);
+    }
+
+    // Las claves se borran de gtw_transaccion_clave en la misma transacción: un código único de una partición
+    // separada ya no cuenta para la idempotencia
+    private void separar(Particion particion) {
+        this.ejecutar("separar la partición " + particion.nombre(), jdbc -> {
+            Boolean adjunta = jdbc.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass(?) AND inhparent = ?::regclass)",
+                    Boolean.class, particion.nombre(), TABLA);
+            if (!Boolean.TRUE.equals(adjunta)) {
+                return;
+            }
+            jdbc.execute("ALTER TABLE " + TABLA + " DETACH PARTITION " + particion.nombre());
+            jdbc.update("DELETE FROM " + TABLA + "_clave c USING " + particion.nombre()
+                    + " p WHERE c.cod_transaccion = p.cod_transaccion");
+            if (this.eliminarVencidas) {
+                jdbc.execute("DROP TABLE " + particion.nombre());
+                log.info("Partición vencida {} eliminada", particion.nombre());
+            } else {
+                jdbc.execute("CREATE SCHEMA IF NOT EXISTS " + this.esquemaArchivo);
+                jdbc.execute("ALTER TABLE " + particion.nombre() + " SET SCHEMA " + this.esquemaArchivo);
+                log.info("Partición vencida {} archivada en el esquema {}", particion.nombre(), this.esquemaArchivo);
+            }
+        });
+    }
+
+    private void ejecutar(String descripcion, Consumer<JdbcTemplate> cambio) {
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> {
+                this.jdbcTemplate.execute("SET LOCAL lock_timeout = " + this.esperaBloqueo.toMillis());
+                this.jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)::text", String.class, CLAVE_BLOQUEO);
+                cambio.accept(this.jdbcTemplate);
+            });
+        } catch (DataAccessException e) {
+            log.error("No se pudo {}, se reintentará en el siguiente mantenimiento: {}", descripcion, e.getMessage());
+        }
+    }
+}
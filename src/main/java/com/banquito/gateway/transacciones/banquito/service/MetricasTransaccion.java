@@ -0,0 +1,116 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+public class MetricasTransaccion {
+
+    public static final String FLUJO_POS = "pos";
+    public static final String FLUJO_RECURRENTE = "recurrente";
+    // Autorizaciones de POST /lote: la consulta del comercio y la inserción se comparten en el lote y no se miden
+    public static final String FLUJO_LOTE = "lote";
+
+    public static final String ETAPA_COMERCIO = "comercio";
+    public static final String ETAPA_INSERCION = "insercion";
+    public static final String ETAPA_PROCESADOR = "procesador";
+    public static final String ETAPA_ACTUALIZACION = "actualizacion";
+
+    // Resultado de una transacción que no llegó al procesador (validación o datos del comercio)
+    public static final String RESULTADO_INVALIDA = "INV";
+
+    // Los valores de las etiquetas se limitan a conjuntos cerrados para acotar la cardinalidad de las series
+    private static final Set<String> TIPOS = Set.of("PAG", "RET", "TRA", "DEV");
+    private static final Set<String> MARCAS = Set.of("VISA", "MAST", "AMEX", "DINE", "DISC");
+    private static final Set<String> ESTADOS_FINALES = Set.of("ACT", "REJ", "ERR");
+    private static final String OTRO = "OTRO";
+    private static final int MAXIMO_ETAPAS = 5;
+
+    private final MeterRegistry registry;
+
+    public MetricasTransaccion(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Medicion iniciar(String flujo, String tipo, String marca) {
+        return new Medicion(flujo, normalizar(tipo, TIPOS), normalizar(marca, MARCAS));
+    }
+
+    private static String normalizar(String valor, Set<String> permitidos) {
+        return valor != null && permitidos.contains(valor) ? valor : OTRO;
+    }
+
+    private Timer timer(String nombre, Tags tags) {
+        return Timer.builder(nombre)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(this.registry);
+    }
+
+    // Mide las etapas de una única petición; se usa desde un solo hilo y se registra al finalizar,
+    // cuando ya se conoce el resultado con el que se etiquetan todas las etapas
+    public final class Medicion {
+
+        private final long inicio = System.nanoTime();
+        private final String flujo;
+        private final String tipo;
+        private final String marca;
+        private final String[] etapas = new String[MAXIMO_ETAPAS];
+        private final long[] duraciones = new long[MAXIMO_ETAPAS];
+        private int cantidad;
+        private String resultado = RESULTADO_INVALIDA;
+
+        private Medicion(String flujo, String tipo, String marca) {
+            this.flujo = flujo;
+            this.tipo = tipo;
+            this.marca = marca;
+        }
+
+        public <T> T medir(String etapa, Supplier<T> paso) {
+            long inicioEtapa = System.nanoTime();
+            try {
+                return paso.get();
+            } finally {
+                registrarEtapa(etapa, System.nanoTime() - inicioEtapa);
+            }
+        }
+
+        public void resultado(String estado) {
+            this.resultado = estado;
+        }
+
+        public void finalizar() {
+            Tags tags = Tags.of("flujo", this.flujo, "resultado", this.resultado, "tipo", this.tipo, "marca", this.marca);
+            for (int i = 0; i < this.cantidad; i++) {
+                timer("gateway.transaccion.etapa", tags.and("etapa", this.etapas[i]))
+                        .record(this.duraciones[i], TimeUnit.NANOSECONDS);
+            }
+            timer("gateway.transaccion.duracion", tags).record(System.nanoTime() - this.inicio, TimeUnit.NANOSECONDS);
+            if (ESTADOS_FINALES.contains(this.resultado)) {
+                Counter.builder("gateway.transaccion.estado.final")
+                        .tags("flujo", this.flujo, "estado", this.resultado, "tipo", this.tipo, "marca", this.marca)
+                        .register(MetricasTransaccion.this.registry)
+                        .increment();
+            }
+        }
+
+        private void registrarEtapa(String etapa, long duracion) {
+            if (this.cantidad < MAXIMO_ETAPAS) {
+                this.etapas[this.cantidad] = etapa;
+                this.duraciones[this.cantidad] = duracion;
+                this.cantidad++;
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.banquito.gateway.transacciones.banquito.client.TransaccionRecurrenteClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.TransaccionRecurrenteDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionRecurrenteException;
+import com.banquito.gateway.transacciones.banquito.model.OutboxRecurrente;
+import com.banquito.gateway.transacciones.banquito.repository.OutboxRecurrenteRepository;
+
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entrega en segundo plano los registros de gtw_outbox_recurrente al microservicio de transacciones recurrentes.
+ * Cada lote se reclama con FOR UPDATE SKIP LOCKED y se arrienda adelantando PROXIMO_INTENTO, de modo que el
+ * envío ocurre sin transacción abierta y otra instancia solo lo retoma si el arrendamiento vence (entrega al
+ * menos una vez). Tras un fallo de transporte o un circuito abierto el resto del lote se pospone sin consumir
+ * intentos: el relay no vuelve a llamar al servicio hasta que pase la espera. Un registro entregado o fallido
+ * no conserva su contenido, que incluye el número de tarjeta.
+ */
+@Component
+@Slf4j
+public class OutboxRecurrenteRelay {
+
+    private final OutboxRecurrenteRepository outboxRepository;
+    private final TransaccionRecurrenteService transaccionRecurrenteService;
+    private final TransaccionRecurrenteClient transaccionRecurrenteClient;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final int tamanioLote;
+    private final Duration arrendamiento;
+    private final Duration esperaInicial;
+    private final Duration esperaMaxima;
+    private final int intentosMaximos;
+
+    private final AtomicInteger fallosConsecutivos = new AtomicInteger();
+    private final AtomicLong pendientes = new AtomicLong();
+    private final AtomicLong antiguedadSegundos = new AtomicLong();
+    private final Timer retrasoEntrega;
+    private final Counter enviados;
+    private final Counter reintentos;
+    private final Counter fallidos;
+
+    public OutboxRecurrenteRelay(OutboxRecurrenteRepository outboxRepository,
+            TransaccionRecurrenteService transaccionRecurrenteService,
+            TransaccionRecurrenteClient transaccionRecurrenteClient,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${gateway.outbox-recurrente.habilitado:true}") boolean habilitado,
+            @Value("${gateway.outbox-recurrente.tamanio-lote:50}") int tamanioLote,
+            @Value("${gateway.outbox-recurrente.arrendamiento:PT2M}") Duration arrendamiento,
+            @Value("${gateway.outbox-recurrente.espera-inicial:PT5S}") Duration esperaInicial,
+            @Value("${gateway.outbox-recurrente.espera-maxima:PT10M}") Duration esperaMaxima,
+            @Value("${gateway.outbox-recurrente.intentos-maximos:15}") int intentosMaximos) {
+        this.outboxRepository = outboxRepository;
+        this.transaccionRecurrenteService = transaccionRecurrenteService;
+        this.transaccionRecurrenteClient = transaccionRecurrenteClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.tamanioLote = tamanioLote;
+        this.arrendamiento = arrendamiento;
+        this.esperaInicial = esperaInicial;
+        this.esperaMaxima = esperaMaxima;
+        this.intentosMaximos = intentosMaximos;
+
+        this.retrasoEntrega = Timer.builder("gateway.outbox.recurrente.retraso")
+                .description("Tiempo entre el registro en el outbox y la entrega al servicio de recurrentes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+        this.enviados = Counter.builder("gateway.outbox.recurrente.entregas").tag("resultado", "enviado")
+                .register(meterRegistry);
+        this.reintentos = Counter.builder("gateway.outbox.recurrente.entregas").tag("resultado", "reintento")
+                .register(meterRegistry);
+        this.fallidos = Counter.builder("gateway.outbox.recurrente.entregas").tag("resultado", "fallido")
+                .register(meterRegistry);
+        Gauge.builder("gateway.outbox.recurrente.pendientes", this.pendientes, AtomicLong::get)
+                .description("Registros pendientes de entrega")
+                .register(meterRegistry);
+        Gauge.builder("gateway.outbox.recurrente.antiguedad", this.antiguedadSegundos, AtomicLong::get)
+                .description("Antigüedad en segundos del registro pendiente más antiguo")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("gateway.outbox.recurrente.fallos.consecutivos", this.fallosConsecutivos, AtomicInteger::get)
+                .description("Envíos fallidos seguidos; 0 indica que el servicio de recurrentes responde")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.outbox-recurrente.intervalo:PT1S}")
+    public void entregarPendientes() {
+        if (!this.habilitado) {
+            return;
+        }
+        try {
+            // Se drenan lotes completos mientras el servicio responda
+            while (this.procesarLote() == this.tamanioLote) {
+                log.debug("Lote de transacciones recurrentes completo, se reclama el siguiente");
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al entregar transacciones recurrentes pendientes: {}", e.getMessage());
+        }
+        this.actualizarPendientes();
+    }
+
+    int procesarLote() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<OutboxRecurrente> lote = this.transactionTemplate.execute(status -> {
+            List<OutboxRecurrente> reclamados = this.outboxRepository
+                    .findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntento(
+                            TransaccionRecurrenteService.ESTADO_PENDIENTE, ahora, Limit.of(this.tamanioLote));
+            reclamados.forEach(registro -> registro.setProximoIntento(ahora.plus(this.arrendamiento)));
+            return reclamados;
+        });
+        if (lote == null || lote.isEmpty()) {
+            return 0;
+        }
+
+        boolean servicioDisponible = true;
+        for (OutboxRecurrente registro : lote) {
+            if (servicioDisponible) {
+                servicioDisponible = this.enviar(registro);
+            } else {
+                registro.setProximoIntento(LocalDateTime.now().plus(this.espera(this.fallosConsecutivos.get())));
+            }
+        }
+
+        this.transactionTemplate.executeWithoutResult(status -> this.outboxRepository.saveAll(lote));
+        // Con el servicio caído se devuelve 0 para no reclamar más lotes en este ciclo
+        return servicioDisponible ? lote.size() : 0;
+    }
+
+    // Devuelve false si el servicio no está disponible y no conviene seguir con el lote
+    private boolean enviar(OutboxRecurrente registro) {
+        TransaccionRecurrenteDTO contenido;
+        try {
+            contenido = this.transaccionRecurrenteService.leerContenido(registro);
+        } catch (TransaccionRecurrenteException e) {
+            // Un contenido que no se puede leer tampoco se podrá leer en el siguiente intento
+            this.marcarFallido(registro, e.getMessage());
+            return true;
+        }
+        try {
+            this.transaccionRecurrenteClient.crearTransaccionRecurrente(contenido);
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            log.warn("Servicio de transacciones recurrentes no disponible ({}), se pospone el lote", e.getMessage());
+            registro.setProximoIntento(LocalDateTime.now().plus(this.espera(this.fallosConsecutivos.get())));
+            return false;
+        } catch (FeignException e) {
+            if (esRechazoDefinitivo(e.status())) {
+                this.marcarFallido(registro, "Rechazado por el servicio: HTTP " + e.status());
+                return true;
+            }
+            this.reintentar(registro, e);
+            return false;
+        } catch (RuntimeException e) {
+            this.reintentar(registro, e);
+            return false;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        this.fallosConsecutivos.set(0);
+        registro.setEstado(TransaccionRecurrenteService.ESTADO_ENVIADO);
+        registro.setFechaEnvio(ahora);
+        registro.setUltimoError(null);
+        registro.setContenido("");
+        this.retrasoEntrega.record(Duration.between(registro.getFechaCreacion(), ahora));
+        this.enviados.increment();
+        log.info("Transacción recurrente de la transacción {} entregada", registro.getCodTransaccion());
+        return true;
+    }
+
+    private void reintentar(OutboxRecurrente registro, RuntimeException e) {
+        int intentos = registro.getIntentos() + 1;
+        int fallos = this.fallosConsecutivos.incrementAndGet();
+        registro.setIntentos(intentos);
+        if (intentos >= this.intentosMaximos) {
+            this.marcarFallido(registro, e.getMessage());
+            return;
+        }
+        registro.setUltimoError(truncar(e.getMessage()));
+        registro.setProximoIntento(LocalDateTime.now().plus(this.espera(Math.max(intentos, fallos))));
+        this.reintentos.increment();
+        log.warn("Error al entregar la transacción recurrente {} (intento {}): {}",
+                registro.getCodTransaccion(), intentos, e.getMessage());
+    }
+
+    private void marcarFallido(OutboxRecurrente registro, String error) {
+        registro.setEstado(TransaccionRecurrenteService.ESTADO_FALLIDO);
+        registro.setUltimoError(truncar(error));
+        registro.setContenido("");
+        this.fallidos.increment();
+        log.error("La transacción recurrente {} no se pudo entregar: {}", registro.getCodTransaccion(), error);
+    }
+
+    // Espera exponencial desde esperaInicial, acotada por esperaMaxima, con hasta un 20 % de variación aleatoria
+    Duration espera(int intentos) {
+        int exponente = Math.min(Math.max(intentos - 1, 0), 20);
+        long base = Math.min(this.esperaInicial.toMillis() << exponente, this.esperaMaxima.toMillis());
+        long variacion = ThreadLocalRandom.current().nextLong(base / 5 + 1);
+        return Duration.ofMillis(base + variacion);
+    }
+
+    private void actualizarPendientes() {
+        try {
+            this.pendientes.set(this.outboxRepository.countByEstado(TransaccionRecurrenteService.ESTADO_PENDIENTE));
+            this.antiguedadSegundos.set(this.outboxRepository
+                    .findFirstByEstadoOrderByFechaCreacion(TransaccionRecurrenteService.ESTADO_PENDIENTE)
+                    .map(registro -> Duration.between(registro.getFechaCreacion(), LocalDateTime.now()).toSeconds())
+                    .orElse(0L));
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron actualizar las métricas del outbox recurrente: {}", e.getMessage());
+        }
+    }
+
+    // 4xx distintos de timeout y límite de peticiones: reenviar el mismo contenido no cambiaría la respuesta
+    private static boolean esRechazoDefinitivo(int status) {
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    private static String truncar(String mensaje) {
+        if (mensaje == null) {
+            return null;
+        }
+        return mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje;
+    }
+}
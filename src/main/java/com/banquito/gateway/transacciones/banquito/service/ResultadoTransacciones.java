@@ -0,0 +1,70 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Estado final de las transacciones para quienes lo esperan en este nodo (long-poll y eventos del modo asíncrono).
+ * Se publica al confirmarse el cambio de estado. Quien espera se registra antes de leer el estado actual, así que no
+ * se pierde una publicación ocurrida entre la lectura y el registro. Lo resuelto en otro nodo no se publica aquí: se
+ * ve al releer el estado cuando vence la espera.
+ */
+@Component
+public class ResultadoTransacciones {
+
+    private final Cache<String, CompletableFuture<Transaccion>> esperas;
+
+    public ResultadoTransacciones(MeterRegistry meterRegistry,
+            @Value("${gateway.asincrono.espera-maxima:PT60S}") Duration esperaMaxima,
+            @Value("${gateway.asincrono.esperas-maximas:100000}") long esperasMaximas) {
+        // Una espera sin accesos durante más de espera-maxima ya no tiene a nadie esperándola
+        this.esperas = Caffeine.newBuilder()
+                .maximumSize(esperasMaximas)
+                .expireAfterAccess(esperaMaxima)
+                .build();
+        Gauge.builder("gateway.asincrono.esperas", this.esperas, Cache::estimatedSize)
+                .description("Transacciones con clientes esperando su estado final en este nodo")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Transaccion> esperar(String codigoUnico) {
+        return this.esperas.get(codigoUnico, clave -> new CompletableFuture<>());
+    }
+
+    public void publicar(Transaccion transaccion) {
+        if (transaccion.getEstado() == EstadoTransaccion.PEN) {
+            return;
+        }
+        Transaccion instantanea = transaccion.copia();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ResultadoTransacciones.this.completar(instantanea);
+                }
+            });
+        } else {
+            this.completar(instantanea);
+        }
+    }
+
+    private void completar(Transaccion transaccion) {
+        CompletableFuture<Transaccion> espera = this.esperas.asMap().remove(transaccion.getCodigoUnicoTransaccion());
+        if (espera != null) {
+            espera.complete(transaccion);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
+import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class TransaccionExportacionService {
+
+    private static final int FILAS_POR_FLUSH = 500;
+    private static final String ENCABEZADO_CSV = "codTransaccion,tipo,marca,monto,codigoUnicoTransaccion,fecha,estado,"
+            + "moneda,pais,tarjeta,fechaCaducidad,swiftBanco,cuentaIban,diferido\n";
+
+    private final TransaccionRepository transaccionRepository;
+    private final TransaccionMapper mapper;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter jsonWriter;
+
+    public TransaccionExportacionService(TransaccionRepository transaccionRepository, TransaccionMapper mapper,
+            EntityManager entityManager, ObjectMapper objectMapper) {
+        this.transaccionRepository = transaccionRepository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.jsonWriter = objectMapper.writerFor(TransaccionDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorTarjeta(String tarjeta, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones de la tarjeta: {}", tarjeta);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByTarjeta(tarjeta)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorSwiftBanco(String swiftBanco, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones del banco con SWIFT: {}", swiftBanco);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamBySwiftBanco(swiftBanco)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorCuentaIban(String cuentaIban, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones de la cuenta IBAN: {}", cuentaIban);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByCuentaIban(cuentaIban)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorMoneda(String moneda, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones en moneda: {}", moneda);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByMoneda(Moneda.desde(moneda))) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorPais(String pais, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones del país: {}", pais);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByPais(pais)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorMontoMinimo(BigDecimal monto, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones con monto mínimo: {}", monto);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByMontoGreaterThanEqual(monto)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportarPorMontoMaximo(BigDecimal monto, FormatoExportacion formato, OutputStream salida) {
+        log.info("Exportando transacciones con monto máximo: {}", monto);
+        try (Stream<Transaccion> transacciones = this.transaccionRepository.streamByMontoLessThanEqual(monto)) {
+            return this.escribir(transacciones, formato, salida);
+        }
+    }
+
+    private long escribir(Stream<Transaccion> transacciones, FormatoExportacion formato, OutputStream salida) {
+        try {
+            long filas = formato == FormatoExportacion.CSV
+                    ? this.escribirCsv(transacciones.iterator(), salida)
+                    : this.escribirNdjson(transacciones.iterator(), salida);
+            log.info("Exportación finalizada: {} filas en formato {}", filas, formato);
+            return filas;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al escribir la exportación de transacciones", e);
+        }
+    }
+
+    private long escribirNdjson(Iterator<Transaccion> transacciones, OutputStream salida) throws IOException {
+        long filas = 0;
+        try (JsonGenerator generador = this.objectMapper.getFactory().createGenerator(salida)) {
+            generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (transacciones.hasNext()) {
+                Transaccion transaccion = transacciones.next();
+                this.jsonWriter.writeValue(generador, this.mapper.toDTO(transaccion));
+                generador.writeRaw('\n');
+                // Cada fila se suelta del contexto de persistencia para que la memoria no crezca con el resultado
+                this.entityManager.detach(transaccion);
+                if (++filas % FILAS_POR_FLUSH == 0) {
+                    generador.flush();
+                }
+            }
+        }
+        return filas;
+    }
+
+    private long escribirCsv(Iterator<Transaccion> transacciones, OutputStream salida) throws IOException {
+        long filas = 0;
+        Writer writer = new OutputStreamWriter(salida, StandardCharsets.UTF_8);
+        writer.write(ENCABEZADO_CSV);
+        while (transacciones.hasNext()) {
+            Transaccion transaccion = transacciones.next();
+            TransaccionDTO dto = this.mapper.toDTO(transaccion);
+            writer.write(String.join(",",
+                    csv(dto.getCodTransaccion()), csv(dto.getTipo()), csv(dto.getMarca()), csv(dto.getMonto()),
+                    csv(dto.getCodigoUnicoTransaccion()), csv(dto.getFecha()), csv(dto.getEstado()),
+                    csv(dto.getMoneda()), csv(dto.getPais()), csv(dto.getTarjeta()), csv(dto.getFechaCaducidad()),
+                    csv(dto.getSwiftBanco()), csv(dto.getCuentaIban()), csv(dto.getDiferido())));
+            writer.write('\n');
+            this.entityManager.detach(transaccion);
+            if (++filas % FILAS_POR_FLUSH == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return filas;
+    }
+
+    private static String csv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+}
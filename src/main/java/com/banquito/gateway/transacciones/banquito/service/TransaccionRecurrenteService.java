@@ -1,80 +1,109 @@
 package com.banquito.gateway.transacciones.banquito.service;
 
-import org.springframework.http.ResponseEntity;
+import java.time.LocalDateTime;
+
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.banquito.gateway.transacciones.banquito.client.TransaccionRecurrenteClient;
 import com.banquito.gateway.transacciones.banquito.client.dto.TransaccionRecurrenteDTO;
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionRecurrenteException;
+import com.banquito.gateway.transacciones.banquito.model.OutboxRecurrente;
+import com.banquito.gateway.transacciones.banquito.repository.OutboxRecurrenteRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Registro de transacciones recurrentes mediante outbox: la fila se inserta en la transacción del llamador
+ * (la que pasa el pago a ACT) y OutboxRecurrenteRelay la entrega al microservicio en segundo plano.
+ */
 @Service
 @Slf4j
 public class TransaccionRecurrenteService {
 
-    private final TransaccionRecurrenteClient transaccionRecurrenteClient;
+    public static final String ESTADO_PENDIENTE = "PEN";
+    public static final String ESTADO_ENVIADO = "ENV";
+    public static final String ESTADO_FALLIDO = "FAL";
+
+    private final OutboxRecurrenteRepository outboxRepository;
+    private final ObjectMapper objectMapper;
 
-    public TransaccionRecurrenteService(TransaccionRecurrenteClient transaccionRecurrenteClient) {
-        this.transaccionRecurrenteClient = transaccionRecurrenteClient;
+    public TransaccionRecurrenteService(OutboxRecurrenteRepository outboxRepository, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
     }
 
-    public void enviarTransaccionRecurrente(TransaccionDTO transaccionDTO) {
-        log.info("Preparando envío de transacción recurrente para tarjeta: {}", transaccionDTO.getTarjeta());
+    @Transactional
+    public OutboxRecurrente registrarTransaccionRecurrente(String codTransaccion, TransaccionDTO transaccionDTO) {
+        TransaccionRecurrenteDTO recurrenteDTO = construirTransaccionRecurrente(transaccionDTO);
+        // El código de seguridad no se almacena: el registro puede quedar en la base hasta agotar los reintentos
+        recurrenteDTO.setCvv(null);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        OutboxRecurrente registro = new OutboxRecurrente();
+        registro.setCodTransaccion(codTransaccion);
+        try {
+            registro.setContenido(this.objectMapper.writeValueAsString(recurrenteDTO));
+        } catch (JsonProcessingException e) {
+            throw new TransaccionRecurrenteException("No se pudo serializar la transacción recurrente", e);
+        }
+        registro.setEstado(ESTADO_PENDIENTE);
+        registro.setIntentos(0);
+        registro.setFechaCreacion(ahora);
+        registro.setProximoIntento(ahora);
+        log.info("Transacción recurrente de la transacción {} registrada para envío", codTransaccion);
+        return this.outboxRepository.save(registro);
+    }
+
+    public TransaccionRecurrenteDTO leerContenido(OutboxRecurrente registro) {
+        try {
+            return this.objectMapper.readValue(registro.getContenido(), TransaccionRecurrenteDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new TransaccionRecurrenteException(
+                    "Contenido inválido en el registro recurrente " + registro.getCodOutbox(), e);
+        }
+    }
+
+    public static TransaccionRecurrenteDTO construirTransaccionRecurrente(TransaccionDTO transaccionDTO) {
+        log.info("Preparando transacción recurrente para tarjeta: {}", transaccionDTO.getTarjeta());
+        
+        TransaccionRecurrenteDTO recurrenteDTO = new TransaccionRecurrenteDTO();
+        
+        // Mapear los campos básicos
+        recurrenteDTO.setMonto(transaccionDTO.getMonto());
+        recurrenteDTO.setMarca(transaccionDTO.getMarca());
+        recurrenteDTO.setEstado("ACT"); // Estado activo por defecto
+        recurrenteDTO.setMoneda(transaccionDTO.getMoneda());
+        recurrenteDTO.setPais(transaccionDTO.getPais());
         
+        // Convertir el número de tarjeta a Long
         try {
-            // Verificar primero si el servicio está disponible
-            try {
-                ResponseEntity<Object> pingResponse = this.transaccionRecurrenteClient.ping();
-                log.info("Ping al servicio de transacciones recurrentes: {}", pingResponse.getStatusCode());
-            } catch (Exception e) {
-                log.error("Error al hacer ping al servicio de transacciones recurrentes: {}", e.getMessage());
-                log.warn("Continuando con el intento de envío a pesar del error de ping");
-            }
-            
-            // Crear y configurar el DTO específico para transacciones recurrentes
-            TransaccionRecurrenteDTO recurrenteDTO = new TransaccionRecurrenteDTO();
-            
-            // Mapear los campos básicos
-            recurrenteDTO.setMonto(transaccionDTO.getMonto());
-            recurrenteDTO.setMarca(transaccionDTO.getMarca());
-            recurrenteDTO.setEstado("ACT"); // Estado activo por defecto
-            recurrenteDTO.setMoneda(transaccionDTO.getMoneda());
-            recurrenteDTO.setPais(transaccionDTO.getPais());
-            
-            // Convertir el número de tarjeta a Long
-            try {
-                recurrenteDTO.setTarjeta(Long.parseLong(transaccionDTO.getTarjeta().replaceAll("\\D", "")));
-            } catch (NumberFormatException e) {
-                log.warn("No se pudo convertir el número de tarjeta a Long: {}", transaccionDTO.getTarjeta());
-                // Usar un valor por defecto
-                recurrenteDTO.setTarjeta(4111111111111111L);
-            }
-            
-            // Configurar campos específicos de recurrencia
-            recurrenteDTO.setFechaInicio(transaccionDTO.getFechaInicio());
-            recurrenteDTO.setFechaFin(transaccionDTO.getFechaFin());
-            recurrenteDTO.setDiaMesPago(transaccionDTO.getDiaMesPago());
-            recurrenteDTO.setFechaCaducidad(transaccionDTO.getFechaCaducidad());
-            
-            // Configurar campos opcionales con valores predeterminados si son nulos
-            recurrenteDTO.setSwiftBanco(transaccionDTO.getSwiftBanco() != null ? 
-                                   transaccionDTO.getSwiftBanco() : "PICHEERT");
-            recurrenteDTO.setCuentaIban(transaccionDTO.getCuentaIban() != null ? 
-                                   transaccionDTO.getCuentaIban() : "EC123456789012345678905678");
-            
-            // Añadir los nuevos campos requeridos
-            recurrenteDTO.setCvv(transaccionDTO.getCodigoSeguridad() != null ? 
-                               transaccionDTO.getCodigoSeguridad().toString() : "123");
-            recurrenteDTO.setFrecuenciaDias(transaccionDTO.getFrecuenciaDias());
-            
-            log.info("Enviando transacción recurrente al servicio externo: {}", recurrenteDTO);
-            ResponseEntity<Object> respuesta = this.transaccionRecurrenteClient.crearTransaccionRecurrente(recurrenteDTO);
-            log.info("Respuesta del servicio de transacciones recurrentes: {}", respuesta.getStatusCode());
-        } catch (Exception e) {
-            log.error("Error al enviar transacción recurrente: {}", e.getMessage());
-            // No lanzamos la excepción para evitar que falle la transacción principal
-            log.warn("La transacción principal continuará a pesar del error en la recurrencia");
+            recurrenteDTO.setTarjeta(Long.parseLong(transaccionDTO.getTarjeta().replaceAll("\\D", "")));
+        } catch (NumberFormatException e) {
+            log.warn("No se pudo convertir el número de tarjeta a Long: {}", transaccionDTO.getTarjeta());
+            // Usar un valor por defecto
+            recurrenteDTO.setTarjeta(4111111111111111L);
         }
+        
+        // Configurar campos específicos de recurrencia
+        recurrenteDTO.setFechaInicio(transaccionDTO.getFechaInicio());
+        recurrenteDTO.setFechaFin(transaccionDTO.getFechaFin());
+        recurrenteDTO.setDiaMesPago(transaccionDTO.getDiaMesPago());
+        recurrenteDTO.setFechaCaducidad(transaccionDTO.getFechaCaducidad());
+        
+        // Configurar campos opcionales con valores predeterminados si son nulos
+        recurrenteDTO.setSwiftBanco(transaccionDTO.getSwiftBanco() != null ? 
+                               transaccionDTO.getSwiftBanco() : "PICHEERT");
+        recurrenteDTO.setCuentaIban(transaccionDTO.getCuentaIban() != null ? 
+                               transaccionDTO.getCuentaIban() : "EC123456789012345678905678");
+        
+        // Añadir los nuevos campos; el CVV se descarta al registrar en el outbox y no se envía al servicio
+        recurrenteDTO.setCvv(transaccionDTO.getCodigoSeguridad() != null ? 
+                           transaccionDTO.getCodigoSeguridad().toString() : "123");
+        recurrenteDTO.setFrecuenciaDias(transaccionDTO.getFrecuenciaDias());
+        
+        return recurrenteDTO;
     }
-} 
\ No newline at end of file
+}
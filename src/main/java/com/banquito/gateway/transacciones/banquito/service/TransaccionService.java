@@ -7,14 +7,22 @@ import java.util.UUID;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.banquito.gateway.transacciones.banquito.client.ComercioClient;
 import com.banquito.gateway.transacciones.banquito.client.ProcesadorPagosClient;
 import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
 import com.banquito.gateway.transacciones.banquito.client.dto.ProcesadorPagosDTO;
@@ -23,6 +31,9 @@ import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPos
 import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionRecurrenteInboundDTO;
 import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
 import com.banquito.gateway.transacciones.banquito.exception.TransaccionNotFoundException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
 import com.banquito.gateway.transacciones.banquito.model.Transaccion;
 import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
 
@@ -32,36 +43,87 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class TransaccionService {
 
+    private static final DateTimeFormatter FORMATO_FECHA_EXPIRACION = DateTimeFormatter.ofPattern("MM/yy");
+
     private final TransaccionRepository transaccionRepository;
     private final TransaccionRecurrenteService transaccionRecurrenteService;
     private final ProcesadorPagosClient procesadorPagosClient;
-    private final ComercioClient comercioClient;
+    private final ComercioCacheService comercioCacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final InsercionAgrupadaService insercionAgrupadaService;
+    private final MetricasTransaccion metricasTransaccion;
+    private final IdempotenciaService idempotenciaService;
+    private final GeneradorCodigoTransaccion generadorCodigo;
+    private final LecturaConsistente lecturaConsistente;
+    private final CacheTransacciones cacheTransacciones;
+    private final EstadisticasTransaccionService estadisticasService;
+    private final VelocidadTarjetaService velocidadTarjetaService;
+    private final ResultadoTransacciones resultadoTransacciones;
+    private final EventosTransaccionService eventosService;
 
     public TransaccionService(TransaccionRepository transaccionRepository, 
                              TransaccionRecurrenteService transaccionRecurrenteService,
                              ProcesadorPagosClient procesadorPagosClient,
-                             ComercioClient comercioClient) {
+                             ComercioCacheService comercioCacheService,
+                             PlatformTransactionManager transactionManager,
+                             InsercionAgrupadaService insercionAgrupadaService,
+                             MetricasTransaccion metricasTransaccion,
+                             IdempotenciaService idempotenciaService,
+                             GeneradorCodigoTransaccion generadorCodigo,
+                             LecturaConsistente lecturaConsistente,
+                             CacheTransacciones cacheTransacciones,
+                             EstadisticasTransaccionService estadisticasService,
+                             VelocidadTarjetaService velocidadTarjetaService,
+                             ResultadoTransacciones resultadoTransacciones,
+                             EventosTransaccionService eventosService) {
         this.transaccionRepository = transaccionRepository;
         this.transaccionRecurrenteService = transaccionRecurrenteService;
         this.procesadorPagosClient = procesadorPagosClient;
-        this.comercioClient = comercioClient;
+        this.comercioCacheService = comercioCacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.insercionAgrupadaService = insercionAgrupadaService;
+        this.metricasTransaccion = metricasTransaccion;
+        this.idempotenciaService = idempotenciaService;
+        this.generadorCodigo = generadorCodigo;
+        this.lecturaConsistente = lecturaConsistente;
+        this.cacheTransacciones = cacheTransacciones;
+        this.estadisticasService = estadisticasService;
+        this.velocidadTarjetaService = velocidadTarjetaService;
+        this.resultadoTransacciones = resultadoTransacciones;
+        this.eventosService = eventosService;
     }
 
-    @Transactional
+    // Sin @Transactional propio: la inserción se confirma en el lote del InsercionAgrupadaService,
+    // o en la transacción del llamador si existe una
     public Transaccion crearTransaccion(Transaccion transaccion) {
         log.info("Iniciando creación de transacción");
         
+        this.prepararCreacion(transaccion);
+        
+        log.info("Guardando transacción con código: {}", transaccion.getCodTransaccion());
+        Transaccion transaccionGuardada = this.insercionAgrupadaService.insertar(transaccion);
+        this.registrarCreacion(transaccionGuardada);
+        return transaccionGuardada;
+    }
+
+    // Pasos de crearTransaccion antes y después de la inserción, compartidos con LoteTransaccionService
+    void prepararCreacion(Transaccion transaccion) {
         validarTransaccion(transaccion);
         
-        transaccion.setCodTransaccion(UUID.randomUUID().toString().substring(0, 10));
+        transaccion.setCodTransaccion(this.generadorCodigo.generar());
         if (transaccion.getCodigoUnicoTransaccion() == null) {
             transaccion.setCodigoUnicoTransaccion(UUID.randomUUID().toString());
         }
         transaccion.setFecha(LocalDateTime.now());
-        transaccion.setEstado("PEN");
-        
-        log.info("Guardando transacción con código: {}", transaccion.getCodTransaccion());
-        return this.transaccionRepository.save(transaccion);
+        transaccion.setEstado(EstadoTransaccion.PEN);
+    }
+
+    void registrarCreacion(Transaccion transaccionGuardada) {
+        this.lecturaConsistente.registrarEscritura(transaccionGuardada.getCodTransaccion(), 
+                transaccionGuardada.getCodigoUnicoTransaccion());
+        this.cacheTransacciones.escribir(transaccionGuardada);
+        this.estadisticasService.registrarCreacion(transaccionGuardada);
+        this.eventosService.publicarCreacion(transaccionGuardada);
     }
     
     @Transactional
@@ -69,10 +131,10 @@ public class TransaccionService {
         log.info("Iniciando creación de transacción desde DTO");
         
         Transaccion transaccion = new Transaccion();
-        transaccion.setTipo(transaccionDTO.getTipo());
+        transaccion.setTipo(TipoTransaccion.desde(transaccionDTO.getTipo()));
         transaccion.setMarca(transaccionDTO.getMarca());
         transaccion.setMonto(transaccionDTO.getMonto());
-        transaccion.setMoneda(transaccionDTO.getMoneda());
+        transaccion.setMoneda(Moneda.desde(transaccionDTO.getMoneda()));
         transaccion.setPais(transaccionDTO.getPais());
         transaccion.setTarjeta(transaccionDTO.getTarjeta());
         transaccion.setFechaCaducidad(transaccionDTO.getFechaCaducidad());
@@ -80,38 +142,49 @@ public class TransaccionService {
         transaccion.setCuentaIban(transaccionDTO.getCuentaIban());
         transaccion.setTransaccionEncriptada(transaccionDTO.getTransaccionEncriptada());
         
+        Transaccion transaccionCreada = this.crearTransaccion(transaccion);
+        
         if (Boolean.TRUE.equals(transaccionDTO.getEsDiferido())) {
-            log.info("Transacción marcada como recurrente, se enviará al servicio de transacciones recurrentes");
+            log.info("Transacción marcada como recurrente, se registrará para el servicio de transacciones recurrentes");
+            boolean camposValidos = true;
             try {
                 validarCamposTransaccionRecurrente(transaccionDTO);
-                
-                transaccionRecurrenteService.enviarTransaccionRecurrente(transaccionDTO);
-                log.info("Transacción recurrente enviada exitosamente al servicio correspondiente");
             } catch (Exception e) {
-                log.error("Error al enviar transacción recurrente: {}", e.getMessage());
+                log.error("Transacción recurrente no registrada: {}", e.getMessage());
+                camposValidos = false;
+            }
+            // En la misma transacción que la inserción: si el registro falla tampoco se crea la transacción
+            if (camposValidos) {
+                transaccionRecurrenteService.registrarTransaccionRecurrente(
+                        transaccionCreada.getCodTransaccion(), transaccionDTO);
             }
         }
         
-        return this.crearTransaccion(transaccion);
+        return transaccionCreada;
     }
 
-    @Transactional(readOnly = true)
+    // Sin @Transactional propio: con réplicas, la consulta elige su conexión en LecturaConsistente.
+    // Las transacciones recientes se sirven desde CacheTransacciones
     public Transaccion obtenerTransaccionPorId(String id) {
         log.info("Buscando transacción con ID: {}", id);
-        return this.transaccionRepository.findById(id)
-                .orElseThrow(() -> new TransaccionNotFoundException(id));
+        Transaccion transaccion = this.cacheTransacciones.buscarPorCodigo(id, () -> this.lecturaConsistente.leer(id,
+                () -> this.transaccionRepository.findById(id).orElse(null)));
+        if (transaccion == null) {
+            throw new TransaccionNotFoundException(id);
+        }
+        return transaccion;
     }
 
     @Transactional(readOnly = true)
     public List<Transaccion> obtenerTransaccionesPorEstado(String estado) {
         log.info("Buscando transacciones con estado: {}", estado);
-        return this.transaccionRepository.findByEstado(estado);
+        return this.transaccionRepository.findByEstado(EstadoTransaccion.desde(estado));
     }
     
     @Transactional(readOnly = true)
     public Page<Transaccion> obtenerTransaccionesPorEstado(String estado, Pageable pageable) {
         log.info("Buscando transacciones con estado: {} (paginado)", estado);
-        return this.transaccionRepository.findByEstado(estado, pageable);
+        return this.transaccionRepository.findByEstado(EstadoTransaccion.desde(estado), pageable);
     }
 
     @Transactional(readOnly = true)
@@ -147,7 +220,7 @@ public class TransaccionService {
     @Transactional(readOnly = true)
     public List<Transaccion> obtenerTransaccionesPorMoneda(String moneda) {
         log.info("Buscando transacciones en moneda: {}", moneda);
-        return this.transaccionRepository.findByMoneda(moneda);
+        return this.transaccionRepository.findByMoneda(Moneda.desde(moneda));
     }
     
     @Transactional(readOnly = true)
@@ -168,10 +241,12 @@ public class TransaccionService {
         return this.transaccionRepository.findByMontoLessThanEqual(monto);
     }
     
-    @Transactional(readOnly = true)
+    // Sin @Transactional propio: con réplicas, lo recién creado o actualizado se lee en la primaria
     public Transaccion obtenerTransaccionPorCodigoUnico(String codigoUnico) {
         log.info("Buscando transacción con código único: {}", codigoUnico);
-        Transaccion transaccion = this.transaccionRepository.findByCodigoUnicoTransaccion(codigoUnico);
+        Transaccion transaccion = this.cacheTransacciones.buscarPorCodigoUnico(codigoUnico,
+                () -> this.lecturaConsistente.leer(codigoUnico,
+                        () -> this.transaccionRepository.findByCodigoUnicoTransaccion(codigoUnico)));
         if (transaccion == null) {
             throw new TransaccionNotFoundException(codigoUnico);
         }
@@ -181,13 +256,13 @@ public class TransaccionService {
     @Transactional(readOnly = true)
     public List<Transaccion> obtenerTransaccionesPorTipo(String tipo) {
         log.info("Buscando transacciones de tipo: {}", tipo);
-        return this.transaccionRepository.findByTipo(tipo);
+        return this.transaccionRepository.findByTipo(TipoTransaccion.desde(tipo));
     }
     
     @Transactional(readOnly = true)
     public Page<Transaccion> obtenerTransaccionesPorTipo(String tipo, Pageable pageable) {
         log.info("Buscando transacciones de tipo: {} (paginado)", tipo);
-        return this.transaccionRepository.findByTipo(tipo, pageable);
+        return this.transaccionRepository.findByTipo(TipoTransaccion.desde(tipo), pageable);
     }
     
     @Transactional(readOnly = true)
@@ -205,13 +280,13 @@ public class TransaccionService {
     @Transactional(readOnly = true)
     public List<Transaccion> obtenerTransaccionesPorTipoYEstado(String tipo, String estado) {
         log.info("Buscando transacciones de tipo: {} con estado: {}", tipo, estado);
-        return this.transaccionRepository.findByTipoAndEstado(tipo, estado);
+        return this.transaccionRepository.findByTipoAndEstado(TipoTransaccion.desde(tipo), EstadoTransaccion.desde(estado));
     }
     
     @Transactional(readOnly = true)
     public Page<Transaccion> obtenerTransaccionesPorTipoYEstado(String tipo, String estado, Pageable pageable) {
         log.info("Buscando transacciones de tipo: {} con estado: {} (paginado)", tipo, estado);
-        return this.transaccionRepository.findByTipoAndEstado(tipo, estado, pageable);
+        return this.transaccionRepository.findByTipoAndEstado(TipoTransaccion.desde(tipo), EstadoTransaccion.desde(estado), pageable);
     }
     
     @Transactional(readOnly = true)
@@ -226,41 +301,49 @@ public class TransaccionService {
         return this.transaccionRepository.findByMarcaAndFechaBetween(marca, fechaInicio, fechaFin, pageable);
     }
 
-    private void validarTransaccion(Transaccion transaccion) {
-        if (transaccion.getMonto() == null || transaccion.getMonto().doubleValue() <= 0) {
-            throw new TransaccionInvalidaException("El monto debe ser mayor a 0");
-        }
-        
-        if (transaccion.getFechaCaducidad() == null || transaccion.getFechaCaducidad().isBefore(LocalDateTime.now().toLocalDate())) {
-            throw new TransaccionInvalidaException("La tarjeta está caducada");
-        }
-        
-        if (transaccion.getMoneda() == null || !List.of("USD", "EUR").contains(transaccion.getMoneda())) {
-            throw new TransaccionInvalidaException("Moneda no soportada: " + transaccion.getMoneda());
-        }
-        
-        if (transaccion.getTarjeta() != null && (transaccion.getTarjeta().length() < 15 || transaccion.getTarjeta().length() > 19)) {
-            throw new TransaccionInvalidaException("Número de tarjeta inválido, debe tener entre 15 y 19 dígitos dependiendo de la marca");
-        }
-        
-        if (transaccion.getTipo() == null || !List.of("PAG", "RET", "TRA", "DEV").contains(transaccion.getTipo())) {
-            throw new TransaccionInvalidaException("Tipo de transacción no soportado: " + transaccion.getTipo());
-        }
-        
-        if ("TRA".equals(transaccion.getTipo()) && 
-            (transaccion.getSwiftBanco() == null || transaccion.getCuentaIban() == null)) {
-            throw new TransaccionInvalidaException("Para transferencias (TRA) se requiere SWIFT del banco y cuenta IBAN");
-        }
-        
-        if ("PAG".equals(transaccion.getTipo()) && transaccion.getTarjeta() == null) {
-            throw new TransaccionInvalidaException("Para pagos (PAG) se requiere número de tarjeta");
+    @Transactional(readOnly = true)
+    public Window<Transaccion> obtenerTransaccionesPorCursor(Specification<Transaccion> filtros,
+            CursorTransaccion cursor, Sort.Direction direccion, int size) {
+        ScrollPosition posicion = cursor != null ? cursor.posicion() : ScrollPosition.keyset();
+        log.info("Buscando transacciones por cursor, dirección {} y tamaño {}", direccion, size);
+        return this.transaccionRepository.findBy(filtros, consulta -> consulta
+                .sortBy(CursorTransaccion.orden(direccion))
+                .limit(size)
+                .scroll(posicion));
+    }
+
+    @Transactional(readOnly = true)
+    public long contarTransacciones(Specification<Transaccion> filtros) {
+        return this.transaccionRepository.count(filtros);
+    }
+
+    // Pasos estáticos del camino crítico de autorización; CaminoAutorizacionBenchmark los mide desde este paquete
+    static void validarTransaccion(Transaccion transaccion) {
+        ValidadorTransaccion.instancia().verificar(transaccion);
+    }
+
+    // null si la fecha falta o no es un MM/yy válido; la validación lo reporta como violación
+    static LocalDate parsearFechaCaducidad(String fechaExp) {
+        if (fechaExp == null) {
+            return null;
         }
-        
-        if (transaccion.getPais() == null || transaccion.getPais().length() != 2) {
-            throw new TransaccionInvalidaException("El código de país debe tener 2 caracteres (formato ISO)");
+        try {
+            return YearMonth.parse(fechaExp, FORMATO_FECHA_EXPIRACION).atEndOfMonth();
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
 
+    static String formatearDatosAdicionales(TransaccionPosDTO posDTO) {
+        return String.format(
+            "POS: %s, Comercio: %s, Titular: %s, CVV: %s", 
+            posDTO.getCodigoPOS(),
+            posDTO.getCodigoComercio(),
+            posDTO.getNombreTitular(),
+            posDTO.getCodigoSeguridad()
+        );
+    }
+
     @Transactional
     public Transaccion crearTransaccionRespuesta(String codigoUnicoOriginal, String estado, 
                                                String codigoRespuesta, String mensajeRespuesta) {
@@ -268,18 +351,18 @@ public class TransaccionService {
         
         Transaccion transaccionOriginal = this.obtenerTransaccionPorCodigoUnico(codigoUnicoOriginal);
         
-        if (!"PEN".equals(transaccionOriginal.getEstado())) {
+        if (transaccionOriginal.getEstado() != EstadoTransaccion.PEN) {
             throw new TransaccionInvalidaException("La transacción original debe estar en estado pendiente para crear una respuesta");
         }
 
         Transaccion nuevaTransaccion = new Transaccion();
-        nuevaTransaccion.setCodTransaccion(UUID.randomUUID().toString().substring(0, 10));
+        nuevaTransaccion.setCodTransaccion(this.generadorCodigo.generar());
         nuevaTransaccion.setCodigoUnicoTransaccion(UUID.randomUUID().toString());
         nuevaTransaccion.setTipo(transaccionOriginal.getTipo());
         nuevaTransaccion.setMarca(transaccionOriginal.getMarca());
         nuevaTransaccion.setMonto(transaccionOriginal.getMonto());
         nuevaTransaccion.setFecha(LocalDateTime.now());
-        nuevaTransaccion.setEstado(estado);
+        nuevaTransaccion.setEstado(EstadoTransaccion.desde(estado));
         nuevaTransaccion.setMoneda(transaccionOriginal.getMoneda());
         nuevaTransaccion.setPais(transaccionOriginal.getPais());
         nuevaTransaccion.setTarjeta(transaccionOriginal.getTarjeta());
@@ -295,7 +378,13 @@ public class TransaccionService {
         log.info("Guardando transacción de respuesta con código: {} y estado: {}", 
                 nuevaTransaccion.getCodTransaccion(), estado);
         
-        return this.transaccionRepository.save(nuevaTransaccion);
+        Transaccion transaccionGuardada = this.transaccionRepository.save(nuevaTransaccion);
+        this.lecturaConsistente.registrarEscritura(nuevaTransaccion.getCodTransaccion(),
+                nuevaTransaccion.getCodigoUnicoTransaccion());
+        this.cacheTransacciones.escribir(transaccionGuardada);
+        this.estadisticasService.registrarCreacion(transaccionGuardada);
+        this.eventosService.publicarCreacion(transaccionGuardada);
+        return transaccionGuardada;
     }
 
     private void validarCamposTransaccionRecurrente(TransaccionDTO transaccionDTO) {
@@ -320,15 +409,43 @@ public class TransaccionService {
         }
     }
 
-    @Transactional
+    // Sin @Transactional: cada paso de persistencia usa su propia transacción corta para
+    // no retener una conexión del pool mientras se espera al comercio o al procesador
+    // Un reintento del POS con el mismo código único devuelve el resultado de la primera solicitud
+    // sin volver a insertar ni a llamar al procesador
     public Transaccion procesarTransaccionPOS(TransaccionPosDTO posDTO) {
+        return this.idempotenciaService.ejecutar(posDTO.getCodigoUnicoTransaccion(),
+                IdempotenciaService.Huella.de(posDTO), () -> {
+            MetricasTransaccion.Medicion medicion = this.metricasTransaccion.iniciar(
+                    MetricasTransaccion.FLUJO_POS, posDTO.getTipo(), posDTO.getMarca());
+            try {
+                return this.procesarTransaccionPOS(posDTO, medicion);
+            } finally {
+                medicion.finalizar();
+            }
+        });
+    }
+
+    private Transaccion procesarTransaccionPOS(TransaccionPosDTO posDTO, MetricasTransaccion.Medicion medicion) {
+        RegistroPOS registro = this.registrarTransaccionPOS(posDTO, medicion);
+        if (!registro.pendiente()) {
+            return registro.transaccion();
+        }
+        return this.autorizarTransaccionPOS(posDTO, registro.comercioDTO(), registro.transaccion(), medicion);
+    }
+
+    // Validación, datos del comercio e inserción en PEN. Si el código único ya estaba registrado en la base
+    // devuelve el resultado existente, que no debe autorizarse de nuevo
+    RegistroPOS registrarTransaccionPOS(TransaccionPosDTO posDTO, MetricasTransaccion.Medicion medicion) {
         log.info("Procesando transacción desde POS {}, comercio {}", posDTO.getCodigoPOS(), posDTO.getCodigoComercio());
         
+        LocalDate fechaCaducidad = prevalidarTransaccionPOS(posDTO);
+        
         // Obtener datos bancarios del comercio
         ComercioDTO comercioDTO;
         try {
-            log.info("Consultando datos bancarios del comercio con POS: {}", posDTO.getCodigoPOS());
-            comercioDTO = comercioClient.obtenerDatosComercio(posDTO.getCodigoPOS());
+            comercioDTO = medicion.medir(MetricasTransaccion.ETAPA_COMERCIO,
+                    () -> this.comercioCacheService.obtenerDatosComercio(posDTO.getCodigoPOS()));
             log.info("Datos bancarios obtenidos - Swift: {}, IBAN: {}", 
                     comercioDTO.getSwift_banco(), comercioDTO.getCuenta_iban());
         } catch (Exception e) {
@@ -336,53 +453,103 @@ public class TransaccionService {
             throw new TransaccionInvalidaException("No se pudieron obtener los datos bancarios del comercio");
         }
         
+        Transaccion transaccion = construirTransaccionPOS(posDTO, comercioDTO, fechaCaducidad);
+        
+        // Paso 1: inserción en PEN, la conexión se libera al confirmar
+        Transaccion transaccionGuardada;
+        try {
+            transaccionGuardada = medicion.medir(MetricasTransaccion.ETAPA_INSERCION,
+                    () -> this.crearTransaccion(transaccion));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("El código único {} ya estaba registrado, se devuelve el resultado existente", 
+                    posDTO.getCodigoUnicoTransaccion());
+            return new RegistroPOS(this.idempotenciaService.reproducir(posDTO.getCodigoUnicoTransaccion(),
+                    IdempotenciaService.Huella.de(posDTO), e), null, false);
+        }
+        log.info("Transacción guardada con ID: {} en estado pendiente", transaccionGuardada.getCodTransaccion());
+        return new RegistroPOS(transaccionGuardada, comercioDTO, true);
+    }
+
+    record RegistroPOS(Transaccion transaccion, ComercioDTO comercioDTO, boolean pendiente) {
+    }
+
+    // Validación previa con los datos del POS para no consultar al comercio por una solicitud inválida;
+    // la cuenta destino llega con el comercio y se valida en crearTransaccion
+    static LocalDate prevalidarTransaccionPOS(TransaccionPosDTO posDTO) {
+        LocalDate fechaCaducidad = parsearFechaCaducidad(posDTO.getFechaExpiracion());
+        int violaciones = ValidadorTransaccion.instancia().validar(posDTO.getTipo(), posDTO.getMonto(),
+                posDTO.getMoneda(), posDTO.getPais(), posDTO.getNumeroTarjeta(), fechaCaducidad, null, null)
+                & ~ValidadorTransaccion.Violacion.CUENTA_DESTINO_REQUERIDA.bit();
+        if (fechaCaducidad == null) {
+            // Sin una fecha legible no se sabe si la tarjeta está caducada
+            violaciones = violaciones & ~ValidadorTransaccion.Violacion.TARJETA_CADUCADA.bit()
+                    | ValidadorTransaccion.Violacion.FECHA_EXPIRACION_INVALIDA.bit();
+        }
+        if (violaciones != 0) {
+            throw new TransaccionInvalidaException(
+                    ValidadorTransaccion.mensaje(violaciones, posDTO.getTipo(), posDTO.getMoneda()));
+        }
+        return fechaCaducidad;
+    }
+
+    static Transaccion construirTransaccionPOS(TransaccionPosDTO posDTO, ComercioDTO comercioDTO, 
+            LocalDate fechaCaducidad) {
         Transaccion transaccion = new Transaccion();
-        transaccion.setTipo(posDTO.getTipo());
+        transaccion.setTipo(TipoTransaccion.desde(posDTO.getTipo()));
         transaccion.setMarca(posDTO.getMarca());
         transaccion.setMonto(posDTO.getMonto());
-        transaccion.setMoneda(posDTO.getMoneda());
+        transaccion.setMoneda(Moneda.desde(posDTO.getMoneda()));
         transaccion.setPais(posDTO.getPais());
         transaccion.setTarjeta(posDTO.getNumeroTarjeta());
         transaccion.setCodigoUnicoTransaccion(posDTO.getCodigoUnicoTransaccion());
         transaccion.setSwiftBanco(comercioDTO.getSwift_banco());
         transaccion.setCuentaIban(comercioDTO.getCuenta_iban());
         
-        String fechaExp = posDTO.getFechaExpiracion();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/yy");
-        YearMonth yearMonth = YearMonth.parse(fechaExp, formatter);
-        transaccion.setFechaCaducidad(yearMonth.atEndOfMonth());
-        
-        String datosAdicionales = String.format(
-            "POS: %s, Comercio: %s, Titular: %s, CVV: %s", 
-            posDTO.getCodigoPOS(),
-            posDTO.getCodigoComercio(),
-            posDTO.getNombreTitular(),
-            posDTO.getCodigoSeguridad()
-        );
-        transaccion.setTransaccionEncriptada(datosAdicionales);
+        transaccion.setFechaCaducidad(fechaCaducidad);
+        transaccion.setTransaccionEncriptada(formatearDatosAdicionales(posDTO));
         
         boolean esDiferida = "DIF".equals(posDTO.getModalidad()) && posDTO.getPlazo() != null && posDTO.getPlazo() > 1;
         transaccion.setDiferido(esDiferida);
-        
-        Transaccion transaccionGuardada = this.crearTransaccion(transaccion);
-        log.info("Transacción guardada con ID: {} en estado pendiente", transaccionGuardada.getCodTransaccion());
+        return transaccion;
+    }
+
+    // Pasos posteriores a la inserción en PEN: velocidad de la tarjeta, procesador y actualización del estado
+    Transaccion autorizarTransaccionPOS(TransaccionPosDTO posDTO, ComercioDTO comercioDTO, 
+            Transaccion transaccionGuardada, MetricasTransaccion.Medicion medicion) {
+        String codTransaccion = transaccionGuardada.getCodTransaccion();
+        
+        // Límites de velocidad de la tarjeta: después de la inserción para no contar dos veces un reintento del
+        // mismo código único; si se superan, la transacción queda en REJ sin llamar al procesador
+        VelocidadTarjetaService.Regla superada = this.velocidadTarjetaService.registrar(
+                posDTO.getNumeroTarjeta(), transaccionGuardada.getMoneda(), posDTO.getMonto());
+        if (superada != null) {
+            this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.REJ);
+            log.warn("Transacción {} rechazada por velocidad de la tarjeta: {}", codTransaccion, superada.descripcion());
+            throw new TransaccionInvalidaException(
+                    "Transacción rechazada: la tarjeta superó el límite de " + superada.descripcion());
+        }
         
         try {
             log.info("Enviando transacción al procesador de pagos y esperando respuesta: {}", 
                     transaccionGuardada.getCodigoUnicoTransaccion());
             
-            // Crear DTO específico para el procesador de pagos
+            // Paso 2: llamada remota fuera de cualquier transacción
             ProcesadorPagosDTO procesadorDTO = new ProcesadorPagosDTO(posDTO, comercioDTO);
-            ResponseEntity<Object> respuesta = procesadorPagosClient.procesarPago(procesadorDTO);
+            ResponseEntity<Object> respuesta = medicion.medir(MetricasTransaccion.ETAPA_PROCESADOR,
+                    () -> procesadorPagosClient.procesarPago(procesadorDTO));
             
+            // Paso 3: actualización condicionada a que la transacción siga en PEN. El registro recurrente
+            // se confirma junto con el ACT y lo entrega OutboxRecurrenteRelay
             if (respuesta.getStatusCode().is2xxSuccessful()) {
-                transaccionGuardada.setEstado("ACT");
-                transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+                boolean esRecurrente = "REC".equals(posDTO.getModalidad()) || Boolean.TRUE.equals(posDTO.getRecurrente());
+                TransaccionDTO registroRecurrente = esRecurrente && posDTO.getFrecuenciaDias() != null
+                        ? construirTransaccionRecurrente(posDTO, comercioDTO)
+                        : null;
+                transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.ACT, registroRecurrente);
                 log.info("Procesador aceptó la transacción: {}. Estado actualizado a: ACT", 
                         transaccionGuardada.getCodigoUnicoTransaccion());
             } else {
-                transaccionGuardada.setEstado("REJ");
-                transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+                transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.REJ);
                 log.error("Procesador rechazó la transacción: {}. Estado actualizado a: REJ", 
                         transaccionGuardada.getCodigoUnicoTransaccion());
                 throw new TransaccionInvalidaException("Transacción rechazada por el procesador de pagos");
@@ -393,23 +560,11 @@ public class TransaccionService {
             }
             
             log.error("Error al procesar la transacción con el procesador: {}", e.getMessage());
-            transaccionGuardada.setEstado("ERR");
-            transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+            transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.ERR);
             log.error("Transacción marcada con estado de error");
             throw new TransaccionInvalidaException("Error al procesar la transacción: " + e.getMessage());
         }
         
-        boolean esRecurrente = "REC".equals(posDTO.getModalidad()) || Boolean.TRUE.equals(posDTO.getRecurrente());
-        if (esRecurrente && posDTO.getFrecuenciaDias() != null) {
-            try {
-                log.info("Enviando transacción recurrente al servicio correspondiente");
-                enviarTransaccionRecurrente(posDTO, comercioDTO);
-                log.info("Transacción recurrente enviada exitosamente");
-            } catch (Exception e) {
-                log.error("Error al enviar transacción recurrente: {}", e.getMessage());
-            }
-        }
-        
         return transaccionGuardada;
     }
     
@@ -419,18 +574,101 @@ public class TransaccionService {
         Transaccion transaccion = this.transaccionRepository.findById(codTransaccion)
                 .orElseThrow(() -> new TransaccionNotFoundException(codTransaccion));
         
-        transaccion.setEstado(nuevoEstado);
+        EstadoTransaccion anterior = transaccion.getEstado();
+        EstadoTransaccion estado = EstadoTransaccion.desde(nuevoEstado);
+        if (estado == anterior) {
+            log.info("La transacción {} ya está en estado {}", codTransaccion, estado);
+            return;
+        }
+        validarTransicion(anterior, estado);
+        transaccion.setEstado(estado);
         this.transaccionRepository.save(transaccion);
+        this.lecturaConsistente.registrarEscritura(codTransaccion, transaccion.getCodigoUnicoTransaccion());
+        this.cacheTransacciones.escribir(transaccion);
+        this.estadisticasService.registrarCambioEstado(transaccion, anterior);
+        this.eventosService.publicarCambioEstado(transaccion, anterior);
+        this.resultadoTransacciones.publicar(transaccion);
         log.info("Estado de transacción actualizado exitosamente");
     }
+
+    // Pasa a ERR hasta maximo transacciones que siguen en PEN desde antes de la fecha dada, las más antiguas primero.
+    // La actualización vuelve a exigir PEN: si otro nodo la resolvió entre la consulta y el bloqueo, se omite
+    public int marcarPendientesAbandonadas(LocalDateTime anteriorA, int maximo) {
+        List<Transaccion> pendientes = this.transaccionRepository.findByEstadoAndFechaBefore(EstadoTransaccion.PEN,
+                anteriorA, PageRequest.of(0, maximo, Sort.by("fecha")));
+        int marcadas = 0;
+        for (Transaccion pendiente : pendientes) {
+            try {
+                this.actualizarEstadoPendiente(pendiente.getCodTransaccion(), EstadoTransaccion.ERR, null);
+                marcadas++;
+                log.warn("Transacción {} sin autorización en curso desde {}, marcada con estado de error",
+                        pendiente.getCodTransaccion(), pendiente.getFecha());
+            } catch (TransaccionInvalidaException e) {
+                log.info("La transacción {} dejó PEN antes del barrido", pendiente.getCodTransaccion());
+            }
+        }
+        return marcadas;
+    }
+
+    private Transaccion actualizarEstado(MetricasTransaccion.Medicion medicion, String codTransaccion,
+            EstadoTransaccion nuevoEstado) {
+        return this.actualizarEstado(medicion, codTransaccion, nuevoEstado, null);
+    }
+
+    private Transaccion actualizarEstado(MetricasTransaccion.Medicion medicion, String codTransaccion,
+            EstadoTransaccion nuevoEstado, TransaccionDTO registroRecurrente) {
+        Transaccion transaccion = medicion.medir(MetricasTransaccion.ETAPA_ACTUALIZACION,
+                () -> this.actualizarEstadoPendiente(codTransaccion, nuevoEstado, registroRecurrente));
+        medicion.resultado(nuevoEstado.name());
+        return transaccion;
+    }
+
+    private Transaccion actualizarEstadoPendiente(String codTransaccion, EstadoTransaccion nuevoEstado,
+            TransaccionDTO registroRecurrente) {
+        validarTransicion(EstadoTransaccion.PEN, nuevoEstado);
+        return this.transactionTemplate.execute(status -> {
+            Transaccion transaccion = this.transaccionRepository.findByCodTransaccionAndEstado(codTransaccion, EstadoTransaccion.PEN)
+                    .orElseThrow(() -> new TransaccionInvalidaException(
+                            "La transacción " + codTransaccion + " ya no se encuentra en estado pendiente"));
+            transaccion.setEstado(nuevoEstado);
+            if (registroRecurrente != null) {
+                this.transaccionRecurrenteService.registrarTransaccionRecurrente(codTransaccion, registroRecurrente);
+            }
+            this.lecturaConsistente.registrarEscritura(codTransaccion, transaccion.getCodigoUnicoTransaccion());
+            this.cacheTransacciones.escribir(transaccion);
+            this.estadisticasService.registrarCambioEstado(transaccion, EstadoTransaccion.PEN);
+            this.eventosService.publicarCambioEstado(transaccion, EstadoTransaccion.PEN);
+            this.resultadoTransacciones.publicar(transaccion);
+            return transaccion;
+        });
+    }
     
-    private void enviarTransaccionRecurrente(TransaccionPosDTO posDTO, ComercioDTO comercioDTO) {
-        log.info("Preparando envío de transacción recurrente para la tarjeta: {}", posDTO.getNumeroTarjeta());
+    // Una PEN se resuelve una sola vez; una ERR (sin respuesta conocida del procesador) todavía puede conciliarse a
+    // ACT o REJ; ACT y REJ son finales
+    static boolean transicionPermitida(EstadoTransaccion anterior, EstadoTransaccion nuevo) {
+        return switch (anterior) {
+            case PEN -> switch (nuevo) {
+                case ACT, REJ, ERR -> true;
+                case PEN -> false;
+            };
+            case ERR -> switch (nuevo) {
+                case ACT, REJ -> true;
+                case PEN, ERR -> false;
+            };
+            case ACT, REJ -> false;
+        };
+    }
+
+    private static void validarTransicion(EstadoTransaccion anterior, EstadoTransaccion nuevo) {
+        if (!transicionPermitida(anterior, nuevo)) {
+            throw new TransaccionInvalidaException("No se permite pasar una transacción de " + anterior + " a " + nuevo);
+        }
+    }
+
+    private static TransaccionDTO construirTransaccionRecurrente(TransaccionPosDTO posDTO, ComercioDTO comercioDTO) {
+        log.info("Preparando transacción recurrente para la tarjeta: {}", posDTO.getNumeroTarjeta());
         
-        String fechaExp = posDTO.getFechaExpiracion();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/yy");
-        YearMonth yearMonth = YearMonth.parse(fechaExp, formatter);
-        LocalDate fechaCaducidad = yearMonth.atEndOfMonth();
+        LocalDate fechaCaducidad = parsearFechaCaducidad(posDTO.getFechaExpiracion());
         
         // Crear un DTO específico para transacciones recurrentes
         TransaccionDTO transaccionDTO = new TransaccionDTO();
@@ -462,18 +700,22 @@ public class TransaccionService {
         transaccionDTO.setFechaInicio(fechaInicio);
         transaccionDTO.setFechaFin(fechaFin);
         transaccionDTO.setDiaMesPago(diaPago);
-        
-        // Enviar al servicio de transacciones recurrentes
+        return transaccionDTO;
+    }
+
+    // Mismo esquema que procesarTransaccionPOS: inserción, llamada remota y actualización por separado
+    public Transaccion procesarTransaccionRecurrenteInbound(TransaccionRecurrenteInboundDTO recurrenteDTO) {
+        MetricasTransaccion.Medicion medicion = this.metricasTransaccion.iniciar(
+                MetricasTransaccion.FLUJO_RECURRENTE, "PAG", recurrenteDTO.getMarca());
         try {
-            transaccionRecurrenteService.enviarTransaccionRecurrente(transaccionDTO);
-            log.info("Transacción recurrente enviada exitosamente");
-        } catch (Exception e) {
-            log.error("Error al enviar transacción recurrente: {}", e.getMessage());
+            return this.procesarTransaccionRecurrenteInbound(recurrenteDTO, medicion);
+        } finally {
+            medicion.finalizar();
         }
     }
 
-    @Transactional
-    public Transaccion procesarTransaccionRecurrenteInbound(TransaccionRecurrenteInboundDTO recurrenteDTO) {
+    private Transaccion procesarTransaccionRecurrenteInbound(TransaccionRecurrenteInboundDTO recurrenteDTO,
+            MetricasTransaccion.Medicion medicion) {
         log.info("Procesando transacción recurrente entrante desde el microservicio recurrente");
         
         // Generar un código único para esta transacción
@@ -481,10 +723,10 @@ public class TransaccionService {
         
         // Crear la transacción con los datos recibidos
         Transaccion transaccion = new Transaccion();
-        transaccion.setTipo("PAG"); // Por defecto es un pago
+        transaccion.setTipo(TipoTransaccion.PAG); // Por defecto es un pago
         transaccion.setMarca(recurrenteDTO.getMarca());
         transaccion.setMonto(recurrenteDTO.getMonto());
-        transaccion.setMoneda(recurrenteDTO.getMoneda());
+        transaccion.setMoneda(Moneda.desde(recurrenteDTO.getMoneda()));
         transaccion.setPais(recurrenteDTO.getPais());
         transaccion.setTarjeta(recurrenteDTO.getNumeroTarjeta());
         transaccion.setCodigoUnicoTransaccion(codigoUnico);
@@ -492,10 +734,7 @@ public class TransaccionService {
         transaccion.setCuentaIban(recurrenteDTO.getCuenta_iban());
         
         // Convertir la fecha de expiración
-        String fechaExp = recurrenteDTO.getFechaExpiracion();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/yy");
-        YearMonth yearMonth = YearMonth.parse(fechaExp, formatter);
-        transaccion.setFechaCaducidad(yearMonth.atEndOfMonth());
+        transaccion.setFechaCaducidad(parsearFechaCaducidad(recurrenteDTO.getFechaExpiracion()));
         
         // Guardar información adicional encriptada
         String datosAdicionales = String.format(
@@ -509,9 +748,11 @@ public class TransaccionService {
         transaccion.setDiferido(false);
         
         // Guardar la transacción en estado pendiente
-        Transaccion transaccionGuardada = this.crearTransaccion(transaccion);
+        Transaccion transaccionGuardada = medicion.medir(MetricasTransaccion.ETAPA_INSERCION,
+                () -> this.crearTransaccion(transaccion));
         log.info("Transacción recurrente guardada con ID: {} en estado pendiente", 
                 transaccionGuardada.getCodTransaccion());
+        String codTransaccion = transaccionGuardada.getCodTransaccion();
         
         // Crear el DTO para enviar al procesador de pagos
         ProcesadorPagosDTO procesadorDTO = new ProcesadorPagosDTO();
@@ -532,16 +773,15 @@ public class TransaccionService {
             log.info("Enviando transacción recurrente al procesador de pagos y esperando respuesta: {}", 
                     transaccionGuardada.getCodigoUnicoTransaccion());
             
-            ResponseEntity<Object> respuesta = procesadorPagosClient.procesarPago(procesadorDTO);
+            ResponseEntity<Object> respuesta = medicion.medir(MetricasTransaccion.ETAPA_PROCESADOR,
+                    () -> procesadorPagosClient.procesarPago(procesadorDTO));
             
             if (respuesta.getStatusCode().is2xxSuccessful()) {
-                transaccionGuardada.setEstado("ACT");
-                transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+                transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.ACT);
                 log.info("Procesador aceptó la transacción recurrente: {}. Estado actualizado a: ACT", 
                         transaccionGuardada.getCodigoUnicoTransaccion());
             } else {
-                transaccionGuardada.setEstado("REJ");
-                transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+                transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.REJ);
                 log.error("Procesador rechazó la transacción recurrente: {}. Estado actualizado a: REJ", 
                         transaccionGuardada.getCodigoUnicoTransaccion());
                 throw new TransaccionInvalidaException("Transacción recurrente rechazada por el procesador de pagos");
@@ -552,8 +792,7 @@ public class TransaccionService {
             }
             
             log.error("Error al procesar la transacción recurrente con el procesador: {}", e.getMessage());
-            transaccionGuardada.setEstado("ERR");
-            transaccionGuardada = this.transaccionRepository.save(transaccionGuardada);
+            transaccionGuardada = this.actualizarEstado(medicion, codTransaccion, EstadoTransaccion.ERR);
             log.error("Transacción recurrente marcada con estado de error");
             throw new TransaccionInvalidaException("Error al procesar la transacción recurrente: " + e.getMessage());
         }
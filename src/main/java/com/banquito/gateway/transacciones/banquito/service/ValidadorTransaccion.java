@@ -0,0 +1,180 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+/**
+ * Reglas de validación de una transacción precompiladas en tablas estáticas. {@link #validar} recorre todas las
+ * reglas en una pasada y devuelve las violaciones como máscara de bits, sin asignar memoria cuando la transacción
+ * es válida; el mensaje y la excepción solo se construyen si hay violaciones.
+ */
+public final class ValidadorTransaccion {
+
+    public enum Violacion {
+        MONTO_NO_POSITIVO("El monto debe ser mayor a 0"),
+        TARJETA_CADUCADA("La tarjeta está caducada"),
+        MONEDA_NO_SOPORTADA("Moneda no soportada"),
+        LONGITUD_TARJETA("Número de tarjeta inválido, debe tener entre 15 y 19 dígitos dependiendo de la marca"),
+        TIPO_NO_SOPORTADO("Tipo de transacción no soportado"),
+        CUENTA_DESTINO_REQUERIDA("Para transferencias (TRA) se requiere SWIFT del banco y cuenta IBAN"),
+        TARJETA_REQUERIDA("Para pagos (PAG) se requiere número de tarjeta"),
+        PAIS_INVALIDO("El código de país debe tener 2 caracteres (formato ISO)"),
+        FECHA_EXPIRACION_INVALIDA("La fecha de expiración debe tener el formato MM/YY");
+
+        private final String mensaje;
+        private final int bit;
+
+        Violacion(String mensaje) {
+            this.mensaje = mensaje;
+            this.bit = 1 << this.ordinal();
+        }
+
+        public int bit() {
+            return this.bit;
+        }
+
+        public String getMensaje() {
+            return this.mensaje;
+        }
+    }
+
+    // Datos obligatorios adicionales según el tipo de transacción
+    enum Requisito {
+        TARJETA,
+        CUENTA_DESTINO
+    }
+
+    private static final EnumSet<Moneda> MONEDAS = EnumSet.of(Moneda.USD, Moneda.EUR);
+    private static final Map<TipoTransaccion, EnumSet<Requisito>> REQUISITOS_POR_TIPO = new EnumMap<>(Map.of(
+            TipoTransaccion.PAG, EnumSet.of(Requisito.TARJETA),
+            TipoTransaccion.RET, EnumSet.noneOf(Requisito.class),
+            TipoTransaccion.TRA, EnumSet.of(Requisito.CUENTA_DESTINO),
+            TipoTransaccion.DEV, EnumSet.noneOf(Requisito.class)));
+    private static final int LONGITUD_MINIMA_TARJETA = 15;
+    private static final int LONGITUD_MAXIMA_TARJETA = 19;
+    private static final Violacion[] VIOLACIONES = Violacion.values();
+
+    private static final ValidadorTransaccion INSTANCIA = new ValidadorTransaccion(Clock.systemDefaultZone());
+
+    private final Clock reloj;
+    private volatile FechaActual fechaActual;
+
+    public ValidadorTransaccion(Clock reloj) {
+        this.reloj = reloj;
+        this.fechaActual = FechaActual.calcular(reloj);
+    }
+
+    public static ValidadorTransaccion instancia() {
+        return INSTANCIA;
+    }
+
+    public void verificar(Transaccion transaccion) {
+        int violaciones = this.validar(transaccion);
+        if (violaciones != 0) {
+            throw new TransaccionInvalidaException(mensaje(violaciones, nombre(transaccion.getTipo()),
+                    nombre(transaccion.getMoneda())));
+        }
+    }
+
+    public int validar(Transaccion transaccion) {
+        return this.validar(transaccion.getTipo(), transaccion.getMonto(), transaccion.getMoneda(),
+                transaccion.getPais(), transaccion.getTarjeta(), transaccion.getFechaCaducidad(),
+                transaccion.getSwiftBanco(), transaccion.getCuentaIban());
+    }
+
+    // Valores tal como llegan en la solicitud: un tipo o una moneda desconocidos cuentan como no soportados
+    public int validar(String tipo, BigDecimal monto, String moneda, String pais, String tarjeta,
+            LocalDate fechaCaducidad, String swiftBanco, String cuentaIban) {
+        return this.validar(TipoTransaccion.buscar(tipo), monto, Moneda.buscar(moneda), pais, tarjeta, fechaCaducidad,
+                swiftBanco, cuentaIban);
+    }
+
+    public int validar(TipoTransaccion tipo, BigDecimal monto, Moneda moneda, String pais, String tarjeta,
+            LocalDate fechaCaducidad, String swiftBanco, String cuentaIban) {
+        int violaciones = 0;
+        if (monto == null || monto.signum() <= 0) {
+            violaciones |= Violacion.MONTO_NO_POSITIVO.bit;
+        }
+        if (fechaCaducidad == null || fechaCaducidad.isBefore(this.hoy())) {
+            violaciones |= Violacion.TARJETA_CADUCADA.bit;
+        }
+        if (moneda == null || !MONEDAS.contains(moneda)) {
+            violaciones |= Violacion.MONEDA_NO_SOPORTADA.bit;
+        }
+        if (tarjeta != null && (tarjeta.length() < LONGITUD_MINIMA_TARJETA || tarjeta.length() > LONGITUD_MAXIMA_TARJETA)) {
+            violaciones |= Violacion.LONGITUD_TARJETA.bit;
+        }
+        EnumSet<Requisito> requisitos = tipo == null ? null : REQUISITOS_POR_TIPO.get(tipo);
+        if (requisitos == null) {
+            violaciones |= Violacion.TIPO_NO_SOPORTADO.bit;
+        } else {
+            if (requisitos.contains(Requisito.CUENTA_DESTINO) && (swiftBanco == null || cuentaIban == null)) {
+                violaciones |= Violacion.CUENTA_DESTINO_REQUERIDA.bit;
+            }
+            if (requisitos.contains(Requisito.TARJETA) && tarjeta == null) {
+                violaciones |= Violacion.TARJETA_REQUERIDA.bit;
+            }
+        }
+        if (pais == null || pais.length() != 2) {
+            violaciones |= Violacion.PAIS_INVALIDO.bit;
+        }
+        return violaciones;
+    }
+
+    private static String nombre(Enum<?> valor) {
+        return valor == null ? null : valor.name();
+    }
+
+    public static boolean contiene(int violaciones, Violacion violacion) {
+        return (violaciones & violacion.bit) != 0;
+    }
+
+    public static String mensaje(int violaciones, String tipo, String moneda) {
+        StringBuilder mensaje = new StringBuilder();
+        for (Violacion violacion : VIOLACIONES) {
+            if (!contiene(violaciones, violacion)) {
+                continue;
+            }
+            if (mensaje.length() > 0) {
+                mensaje.append("; ");
+            }
+            mensaje.append(violacion.mensaje);
+            if (violacion == Violacion.MONEDA_NO_SOPORTADA) {
+                mensaje.append(": ").append(moneda);
+            } else if (violacion == Violacion.TIPO_NO_SOPORTADO) {
+                mensaje.append(": ").append(tipo);
+            }
+        }
+        return mensaje.toString();
+    }
+
+    // La fecha se recalcula solo al cruzar la medianoche; el resto de llamadas compara milisegundos
+    LocalDate hoy() {
+        FechaActual actual = this.fechaActual;
+        if (this.reloj.millis() >= actual.finDelDiaMillis) {
+            actual = FechaActual.calcular(this.reloj);
+            this.fechaActual = actual;
+        }
+        return actual.fecha;
+    }
+
+    private record FechaActual(LocalDate fecha, long finDelDiaMillis) {
+
+        static FechaActual calcular(Clock reloj) {
+            ZoneId zona = reloj.getZone();
+            LocalDate fecha = LocalDate.ofInstant(Instant.ofEpochMilli(reloj.millis()), zona);
+            return new FechaActual(fecha, fecha.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli());
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Contadores de velocidad por tarjeta en memoria, para rechazar antes de llamar al procesador las tarjetas que
+ * superan N autorizaciones o un monto acumulado en una ventana deslizante (p. ej. 10 minutos):
+ * <ul>
+ * <li>cada regla divide su ventana en {@code cubetas} y guarda por tarjeta y moneda un anillo de cubetas con la
+ * cantidad y el monto; la ventana suma el anillo completo, así que se desliza con un error de a lo sumo una
+ * cubeta;</li>
+ * <li>las tarjetas se reparten en franjas con su propio cerrojo. Cada franja es una tabla de direccionamiento
+ * abierto sobre arreglos primitivos con los anillos de cada tarjeta contiguos: una comprobación no crea objetos y
+ * toca pocas líneas de caché aunque haya millones de tarjetas;</li>
+ * <li>pasado el tamaño máximo, cada tarjeta nueva desaloja la usada hace más tiempo entre una muestra de su
+ * franja, y {@link #depurar} quita las inactivas;</li>
+ * <li>de la tarjeta solo se guarda un hash de 64 bits con una semilla aleatoria de esta instancia.</li>
+ * </ul>
+ * Los contadores son de esta instancia: con varias réplicas los límites efectivos se multiplican por el número de
+ * réplicas, salvo que el balanceador reparta por tarjeta.
+ */
+@Service
+@Slf4j
+public class VelocidadTarjetaService {
+
+    /**
+     * Máximo de autorizaciones y de monto acumulado (en la moneda de la transacción) dentro de la ventana. Se
+     * configura como {@code ventana/maximoAutorizaciones/montoMaximo}, p. ej. {@code PT10M/10/5000.00}; un límite
+     * vacío no se aplica.
+     */
+    public record Regla(Duration ventana, int maximoAutorizaciones, BigDecimal montoMaximo) {
+
+        static Regla desde(String texto) {
+            String[] partes = texto.trim().split("/", -1);
+            if (partes.length != 3) {
+                throw new IllegalArgumentException("Regla de velocidad inválida, se espera ventana/maximo/monto: " + texto);
+            }
+            Duration ventana = Duration.parse(partes[0].trim());
+            if (ventana.isNegative() || ventana.isZero()) {
+                throw new IllegalArgumentException("La ventana de una regla de velocidad debe ser positiva: " + texto);
+            }
+            int maximo = partes[1].isBlank() ? Integer.MAX_VALUE : Integer.parseInt(partes[1].trim());
+            BigDecimal monto = partes[2].isBlank() ? null : new BigDecimal(partes[2].trim());
+            return new Regla(ventana, maximo, monto);
+        }
+
+        public String descripcion() {
+            StringBuilder descripcion = new StringBuilder();
+            if (this.maximoAutorizaciones != Integer.MAX_VALUE) {
+                descripcion.append(this.maximoAutorizaciones).append(" autorizaciones");
+            }
+            if (this.montoMaximo != null) {
+                descripcion.append(descripcion.isEmpty() ? "" : " o ").append(this.montoMaximo.toPlainString());
+            }
+            return descripcion.append(" en ").append(this.ventana).toString();
+        }
+    }
+
+    // Cada cubeta guarda la cantidad en los 20 bits altos y el monto en centavos en los 44 bajos, ambos saturados
+    private static final int BITS_CENTAVOS = 44;
+    private static final long MAXIMO_CENTAVOS = (1L << BITS_CENTAVOS) - 1;
+    private static final long MAXIMO_CANTIDAD = (1L << (Long.SIZE - BITS_CENTAVOS)) - 1;
+    private static final int MUESTRA_DESALOJO = 8;
+
+    /**
+     * Tabla de sondeo lineal (ocupación hasta 1/2) con el token y su entrada densa en posiciones contiguas; cada
+     * entrada ocupa {@code ancho} longs: último uso, por regla la cubeta actual y los totales de la ventana, y los
+     * anillos de todas las reglas. El token 0 marca una ranura libre.
+     */
+    private static final class Franja {
+        final int ancho;
+        long[] tabla = new long[32];
+        long[] datos;
+        int[] ranuras = new int[8];
+        int ocupadas;
+        int cursor;
+
+        Franja(int ancho) {
+            this.ancho = ancho;
+            this.datos = new long[this.ranuras.length * ancho];
+        }
+
+        // Ranura del token, o -(ranura libre + 1) donde insertarlo
+        int buscar(long token) {
+            int mascara = (this.tabla.length >> 1) - 1;
+            for (int i = (int) token & mascara;; i = (i + 1) & mascara) {
+                long actual = this.tabla[i << 1];
+                if (actual == token) {
+                    return i;
+                }
+                if (actual == 0) {
+                    return -(i + 1);
+                }
+            }
+        }
+
+        int inicio(int ranura) {
+            return (int) this.tabla[(ranura << 1) + 1] * this.ancho;
+        }
+
+        // Devuelve el inicio en datos de la nueva entrada, en cero
+        int agregar(long token) {
+            if ((this.ocupadas + 1) * 4 > this.tabla.length) {
+                this.redimensionar(this.tabla.length);
+            }
+            if (this.ocupadas == this.ranuras.length) {
+                this.ranuras = Arrays.copyOf(this.ranuras, this.ranuras.length * 2);
+                this.datos = Arrays.copyOf(this.datos, this.ranuras.length * this.ancho);
+            }
+            int ranura = -this.buscar(token) - 1;
+            int entrada = this.ocupadas++;
+            this.ubicar(ranura, token, entrada);
+            Arrays.fill(this.datos, entrada * this.ancho, (entrada + 1) * this.ancho, 0);
+            return entrada * this.ancho;
+        }
+
+        void eliminar(int ranura) {
+            int entrada = (int) this.tabla[(ranura << 1) + 1];
+            // Borrado con desplazamiento hacia atrás: ningún token queda separado de su ranura ideal por un hueco
+            int mascara = (this.tabla.length >> 1) - 1;
+            int hueco = ranura;
+            for (int i = (hueco + 1) & mascara; this.tabla[i << 1] != 0; i = (i + 1) & mascara) {
+                int ideal = (int) this.tabla[i << 1] & mascara;
+                if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                    this.ubicar(hueco, this.tabla[i << 1], (int) this.tabla[(i << 1) + 1]);
+                    hueco = i;
+                }
+            }
+            this.tabla[hueco << 1] = 0;
+            // La última entrada densa pasa al lugar de la eliminada
+            int ultima = --this.ocupadas;
+            if (entrada != ultima) {
+                System.arraycopy(this.datos, ultima * this.ancho, this.datos, entrada * this.ancho, this.ancho);
+                int ranuraUltima = this.ranuras[ultima];
+                this.ubicar(ranuraUltima, this.tabla[ranuraUltima << 1], entrada);
+            }
+        }
+
+        // Quita la usada hace más tiempo entre una muestra de entradas consecutivas
+        void desalojar() {
+            int elegida = -1;
+            for (int i = 0; i < Math.min(MUESTRA_DESALOJO, this.ocupadas); i++) {
+                int entrada = (this.cursor + i) % this.ocupadas;
+                if (elegida < 0 || this.datos[entrada * this.ancho] < this.datos[elegida * this.ancho]) {
+                    elegida = entrada;
+                }
+            }
+            this.cursor = (this.cursor + MUESTRA_DESALOJO) % Math.max(this.ocupadas, 1);
+            this.eliminar(this.ranuras[elegida]);
+        }
+
+        // Reconstruye la tabla con otra capacidad (en ranuras); con pocas tarjetas también reduce las entradas densas
+        void redimensionar(int capacidad) {
+            long[] anterior = this.tabla;
+            this.tabla = new long[capacidad * 2];
+            for (int i = 0; i < anterior.length; i += 2) {
+                if (anterior[i] != 0) {
+                    this.ubicar(-this.buscar(anterior[i]) - 1, anterior[i], (int) anterior[i + 1]);
+                }
+            }
+            int densas = Math.max(capacidad / 2, 8);
+            if (densas < this.ranuras.length) {
+                this.ranuras = Arrays.copyOf(this.ranuras, densas);
+                this.datos = Arrays.copyOf(this.datos, densas * this.ancho);
+            }
+        }
+
+        private void ubicar(int ranura, long token, int entrada) {
+            this.tabla[ranura << 1] = token;
+            this.tabla[(ranura << 1) + 1] = entrada;
+            this.ranuras[entrada] = ranura;
+        }
+    }
+
+    private final boolean habilitado;
+    private final Regla[] reglas;
+    private final long[] resolucionNanos;
+    private final int[] maximos;
+    private final long[] montosMaximos;
+    private final int cubetas;
+    private final int ancho;
+    private final long ventanaMaximaNanos;
+    private final int tamanioMaximo;
+    private final AtomicInteger enMemoria = new AtomicInteger();
+    private final Franja[] franjas;
+    private final long semilla = ThreadLocalRandom.current().nextLong();
+    private final Ticker ticker;
+    private final Counter[] rechazos;
+    private final Counter desalojos;
+
+    @Autowired
+    public VelocidadTarjetaService(MeterRegistry meterRegistry,
+            @Value("${gateway.velocidad.habilitado:true}") boolean habilitado,
+            @Value("${gateway.velocidad.reglas:PT10M/10/5000.00,PT1H/30/20000.00}") List<String> reglas,
+            @Value("${gateway.velocidad.cubetas:20}") int cubetas,
+            @Value("${gateway.velocidad.tamanio-maximo:100000}") int tamanioMaximo,
+            @Value("${gateway.velocidad.franjas:64}") int franjas) {
+        this(meterRegistry, habilitado, reglas, cubetas, tamanioMaximo, franjas, Ticker.systemTicker());
+    }
+
+    VelocidadTarjetaService(MeterRegistry meterRegistry, boolean habilitado, List<String> reglas, int cubetas,
+            int tamanioMaximo, int franjas, Ticker ticker) {
+        if (cubetas < 1) {
+            throw new IllegalArgumentException("gateway.velocidad.cubetas debe ser al menos 1");
+        }
+        this.habilitado = habilitado;
+        this.reglas = reglas.stream()
+                .filter(regla -> !regla.isBlank())
+                .map(Regla::desde)
+                .sorted(Comparator.comparing(Regla::ventana))
+                .toArray(Regla[]::new);
+        this.cubetas = cubetas;
+        this.ancho = 1 + 3 * this.reglas.length + this.reglas.length * cubetas;
+        this.resolucionNanos = new long[this.reglas.length];
+        this.maximos = new int[this.reglas.length];
+        this.montosMaximos = new long[this.reglas.length];
+        this.rechazos = new Counter[this.reglas.length];
+        for (int i = 0; i < this.reglas.length; i++) {
+            Regla regla = this.reglas[i];
+            this.resolucionNanos[i] = Math.max(regla.ventana().toNanos() / cubetas, 1);
+            this.maximos[i] = regla.maximoAutorizaciones();
+            this.montosMaximos[i] = regla.montoMaximo() == null ? Long.MAX_VALUE : centavos(regla.montoMaximo());
+            this.rechazos[i] = Counter.builder("gateway.velocidad.rechazos")
+                    .description("Autorizaciones rechazadas por superar una regla de velocidad de la tarjeta")
+                    .tag("regla", regla.ventana().toString())
+                    .register(meterRegistry);
+        }
+        this.ventanaMaximaNanos = this.reglas.length == 0 ? 0 : this.reglas[this.reglas.length - 1].ventana().toNanos();
+        this.tamanioMaximo = tamanioMaximo;
+        this.franjas = new Franja[Integer.highestOneBit(Math.max(franjas, 1))];
+        for (int i = 0; i < this.franjas.length; i++) {
+            this.franjas[i] = new Franja(this.ancho);
+        }
+        this.ticker = ticker;
+        this.desalojos = Counter.builder("gateway.velocidad.desalojos")
+                .description("Tarjetas activas desalojadas por alcanzar el tamaño máximo")
+                .register(meterRegistry);
+        Gauge.builder("gateway.velocidad.tarjetas", this, VelocidadTarjetaService::tarjetas)
+                .description("Tarjetas con contadores de velocidad en memoria")
+                .register(meterRegistry);
+        log.info("Reglas de velocidad por tarjeta: {}", Arrays.toString(this.reglas));
+    }
+
+    /**
+     * Registra la autorización en los contadores de la tarjeta si no supera ninguna regla. Si supera alguna no la
+     * registra y devuelve la regla de menor ventana superada.
+     */
+    public Regla registrar(String tarjeta, Moneda moneda, BigDecimal monto) {
+        if (!this.habilitado || this.reglas.length == 0 || tarjeta == null || moneda == null || monto == null) {
+            return null;
+        }
+        long token = this.token(tarjeta, moneda);
+        long montoCentavos = centavos(monto);
+        long ahora = this.ticker.read();
+        // Los bits altos eligen la franja y los bajos la ranura dentro de ella
+        Franja franja = this.franjas[(int) (token >>> 40) & (this.franjas.length - 1)];
+        synchronized (franja) {
+            int ranura = franja.buscar(token);
+            long[] datos = ranura >= 0 ? franja.datos : null;
+            int inicio = ranura >= 0 ? franja.inicio(ranura) : 0;
+            int superada = this.superada(datos, inicio, ahora, montoCentavos);
+            if (superada >= 0) {
+                if (datos != null) {
+                    datos[inicio] = ahora;
+                }
+                this.rechazos[superada].increment();
+                return this.reglas[superada];
+            }
+            if (datos == null) {
+                inicio = this.agregar(franja, token, ahora);
+                datos = franja.datos;
+            }
+            datos[inicio] = ahora;
+            for (int r = 0; r < this.reglas.length; r++) {
+                int cubeta = inicio + this.anillo(r) + this.avanzar(datos, inicio, r, ahora);
+                long cantidadAnterior = datos[cubeta] >>> BITS_CENTAVOS;
+                long centavosAnteriores = datos[cubeta] & MAXIMO_CENTAVOS;
+                long cantidad = Math.min(cantidadAnterior + 1, MAXIMO_CANTIDAD);
+                long centavos = Math.min(centavosAnteriores + montoCentavos, MAXIMO_CENTAVOS);
+                datos[cubeta] = cantidad << BITS_CENTAVOS | centavos;
+                datos[inicio + 2 + 3 * r] += cantidad - cantidadAnterior;
+                datos[inicio + 3 + 3 * r] += centavos - centavosAnteriores;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Quita las tarjetas sin autorizaciones dentro de la ventana más larga y reduce las franjas que quedaron con
+     * mucho espacio libre.
+     */
+    @Scheduled(fixedDelayString = "${gateway.velocidad.intervalo-depuracion:PT1M}")
+    public void depurar() {
+        long ahora = this.ticker.read();
+        int quitadas = 0;
+        for (Franja franja : this.franjas) {
+            synchronized (franja) {
+                // De la última a la primera: la entrada que se mueve al eliminar ya fue revisada
+                for (int entrada = franja.ocupadas - 1; entrada >= 0; entrada--) {
+                    if (ahora - franja.datos[entrada * this.ancho] >= this.ventanaMaximaNanos) {
+                        franja.eliminar(franja.ranuras[entrada]);
+                        this.enMemoria.decrementAndGet();
+                        quitadas++;
+                    }
+                }
+                int capacidad = franja.tabla.length >> 1;
+                if (capacidad > 16 && franja.ocupadas * 8 < capacidad) {
+                    franja.redimensionar(Math.max(Integer.highestOneBit(franja.ocupadas) * 4, 16));
+                }
+            }
+        }
+        if (quitadas > 0) {
+            log.debug("Tarjetas inactivas quitadas de los contadores de velocidad: {}", quitadas);
+        }
+    }
+
+    int tarjetas() {
+        return this.enMemoria.get();
+    }
+
+    // Inserta la tarjeta, desalojando otra de la franja si se alcanzó el tamaño máximo
+    private int agregar(Franja franja, long token, long ahora) {
+        if (this.enMemoria.incrementAndGet() > this.tamanioMaximo && franja.ocupadas > 0) {
+            this.enMemoria.decrementAndGet();
+            franja.desalojar();
+            this.desalojos.increment();
+        }
+        int inicio = franja.agregar(token);
+        for (int r = 0; r < this.reglas.length; r++) {
+            franja.datos[inicio + 1 + 3 * r] = Math.floorDiv(ahora, this.resolucionNanos[r]);
+        }
+        return inicio;
+    }
+
+    // Índice de la primera regla que la autorización superaría, o -1. Sin datos, la tarjeta no tiene historial
+    private int superada(long[] datos, int inicio, long ahora, long montoCentavos) {
+        for (int r = 0; r < this.reglas.length; r++) {
+            long cantidad = 1;
+            long centavos = montoCentavos;
+            if (datos != null) {
+                this.avanzar(datos, inicio, r, ahora);
+                cantidad += datos[inicio + 2 + 3 * r];
+                centavos += datos[inicio + 3 + 3 * r];
+            }
+            if (cantidad > this.maximos[r] || centavos > this.montosMaximos[r]) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Vacía las cubetas que salieron de la ventana de la regla, descontándolas de los totales, y devuelve la
+     * posición de la actual en su anillo. Una comprobación solo lee la cabecera y las cubetas que vence.
+     */
+    private int avanzar(long[] datos, int inicio, int regla, long ahora) {
+        int cabecera = inicio + 1 + 3 * regla;
+        long cubeta = Math.floorDiv(ahora, this.resolucionNanos[regla]);
+        long anterior = datos[cabecera];
+        int desde = inicio + this.anillo(regla);
+        if (cubeta - anterior >= this.cubetas) {
+            Arrays.fill(datos, desde, desde + this.cubetas, 0);
+            datos[cabecera + 1] = 0;
+            datos[cabecera + 2] = 0;
+        } else {
+            for (long c = anterior + 1; c <= cubeta; c++) {
+                int posicion = desde + (int) Math.floorMod(c, (long) this.cubetas);
+                datos[cabecera + 1] -= datos[posicion] >>> BITS_CENTAVOS;
+                datos[cabecera + 2] -= datos[posicion] & MAXIMO_CENTAVOS;
+                datos[posicion] = 0;
+            }
+        }
+        if (cubeta > anterior) {
+            datos[cabecera] = cubeta;
+        }
+        return (int) Math.floorMod(datos[cabecera], (long) this.cubetas);
+    }
+
+    // Desplazamiento del anillo de la regla dentro de la entrada, después de la cabecera
+    private int anillo(int regla) {
+        return 1 + 3 * this.reglas.length + regla * this.cubetas;
+    }
+
+    // FNV-1a sobre los dígitos con la semilla de la instancia y mezcla final de 64 bits; nunca 0 (ranura libre)
+    private long token(String tarjeta, Moneda moneda) {
+        long hash = this.semilla;
+        for (int i = 0; i < tarjeta.length(); i++) {
+            hash = (hash ^ tarjeta.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= moneda.ordinal() + 1;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    private static long centavos(BigDecimal monto) {
+        // scaleByPowerOfTen evita el BigInteger de unscaledValue()
+        return Math.max(monto.setScale(2, RoundingMode.HALF_UP).scaleByPowerOfTen(2).longValueExact(), 0);
+    }
+}
@@ -0,0 +1,20 @@
+-- Esquema inicial equivalente al que generaba ddl-auto=update.
+-- En bases existentes esta versión queda como línea base (spring.flyway.baseline-on-migrate).
+CREATE TABLE IF NOT EXISTS gtw_transaccion (
+    cod_transaccion          VARCHAR(10)    NOT NULL,
+    tipo                     VARCHAR(3)     NOT NULL,
+    marca                    VARCHAR(4)     NOT NULL,
+    monto                    NUMERIC(20, 2) NOT NULL,
+    codigo_unico_transaccion VARCHAR(64)    NOT NULL,
+    fecha                    TIMESTAMP(6)   NOT NULL,
+    estado                   VARCHAR(3)     NOT NULL,
+    moneda                   VARCHAR(3)     NOT NULL,
+    pais                     VARCHAR(2)     NOT NULL,
+    tarjeta                  VARCHAR(16)    NOT NULL,
+    fecha_caducidad          DATE           NOT NULL,
+    transaccion_encriptada   VARCHAR(1000),
+    swift_banco              VARCHAR(11),
+    cuenta_iban              VARCHAR(28),
+    diferido                 BOOLEAN,
+    CONSTRAINT gtw_transaccion_pkey PRIMARY KEY (cod_transaccion)
+);
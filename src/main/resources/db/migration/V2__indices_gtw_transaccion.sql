@@ -0,0 +1,51 @@
+-- Índices alineados con los métodos de TransaccionRepository. Todos terminan en FECHA DESC
+-- porque el listado paginado ordena por fecha descendente por defecto.
+-- CONCURRENTLY evita bloquear escrituras en tablas grandes; Flyway ejecuta esta migración
+-- fuera de transacción.
+
+-- findByCodigoUnicoTransaccion: además garantiza unicidad del código enviado por el POS
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_gtw_transaccion_codigo_unico
+    ON gtw_transaccion (codigo_unico_transaccion);
+
+-- findByFechaBetween
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_fecha
+    ON gtw_transaccion (fecha DESC);
+
+-- findByEstado
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_estado_fecha
+    ON gtw_transaccion (estado, fecha DESC);
+
+-- findByTipoAndEstado. findByTipo no lo usa: con solo cuatro tipos el planificador recorre el índice por
+-- fecha (ix_gtw_transaccion_fecha_cod desde V3) filtrando por tipo hasta completar la página
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_tipo_estado_fecha
+    ON gtw_transaccion (tipo, estado, fecha DESC);
+
+-- findByMarca y findByMarcaAndFechaBetween
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_marca_fecha
+    ON gtw_transaccion (marca, fecha DESC);
+
+-- findByTarjeta
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_tarjeta_fecha
+    ON gtw_transaccion (tarjeta, fecha DESC);
+
+-- findBySwiftBanco y findByCuentaIban: columnas opcionales, se excluyen los nulos
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_swift_fecha
+    ON gtw_transaccion (swift_banco, fecha DESC) WHERE swift_banco IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_iban_fecha
+    ON gtw_transaccion (cuenta_iban, fecha DESC) WHERE cuenta_iban IS NOT NULL;
+
+-- findByMoneda y findByPais
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_moneda_fecha
+    ON gtw_transaccion (moneda, fecha DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_pais_fecha
+    ON gtw_transaccion (pais, fecha DESC);
+
+-- findByMontoGreaterThanEqual y findByMontoLessThanEqual
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_monto
+    ON gtw_transaccion (monto);
+
+-- Consulta de pendientes (estado=PEN), la más frecuente desde los back-office de comercios
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_pendientes
+    ON gtw_transaccion (fecha DESC) WHERE estado = 'PEN';
@@ -0,0 +1,6 @@
+-- La paginación por cursor ordena por (fecha, cod_transaccion); el índice completo permite
+-- recorrerla sin ordenamiento adicional y reemplaza al índice solo por fecha.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_gtw_transaccion_fecha_cod
+    ON gtw_transaccion (fecha DESC, cod_transaccion DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS ix_gtw_transaccion_fecha;
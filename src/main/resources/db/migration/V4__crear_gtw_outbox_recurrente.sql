@@ -0,0 +1,19 @@
+-- Registros de transacciones recurrentes pendientes de enviar al microservicio de recurrentes.
+-- Se insertan en la misma transacción que pasa el pago a ACT y los envía OutboxRecurrenteRelay.
+CREATE TABLE IF NOT EXISTS gtw_outbox_recurrente (
+    cod_outbox       BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    cod_transaccion  VARCHAR(10)   NOT NULL,
+    contenido        TEXT          NOT NULL,
+    estado           VARCHAR(3)    NOT NULL,
+    intentos         INTEGER       NOT NULL DEFAULT 0,
+    fecha_creacion   TIMESTAMP(6)  NOT NULL,
+    proximo_intento  TIMESTAMP(6)  NOT NULL,
+    fecha_envio      TIMESTAMP(6),
+    ultimo_error     VARCHAR(500),
+    CONSTRAINT gtw_outbox_recurrente_pkey PRIMARY KEY (cod_outbox),
+    CONSTRAINT ux_gtw_outbox_recurrente_transaccion UNIQUE (cod_transaccion)
+);
+
+-- Reclamo de lotes por el relay: solo las filas pendientes, en orden de próximo intento
+CREATE INDEX IF NOT EXISTS ix_gtw_outbox_recurrente_pendientes
+    ON gtw_outbox_recurrente (proximo_intento) WHERE estado = 'PEN';
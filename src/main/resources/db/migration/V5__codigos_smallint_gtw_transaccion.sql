@@ -0,0 +1,25 @@
+-- TIPO, ESTADO y MONEDA pasan de VARCHAR(3) a SMALLINT con los códigos de TipoTransaccion, EstadoTransaccion
+-- y Moneda. La API sigue recibiendo y devolviendo los códigos de texto; la conversión la hace ConvertidorCodigo.
+-- MARCA (catálogo abierto del procesador) y PAIS (ISO 3166 de 2 letras) se mantienen como texto.
+--
+-- El cambio de tipo reescribe la tabla y sus índices bajo un bloqueo exclusivo: en bases grandes debe
+-- ejecutarse en una ventana de mantenimiento. Un valor fuera de catálogo queda en NULL y la restricción
+-- NOT NULL aborta la migración sin perder datos.
+
+-- El predicado del índice parcial compara con 'PEN' y no sobrevive al cambio de tipo
+DROP INDEX IF EXISTS ix_gtw_transaccion_pendientes;
+
+ALTER TABLE gtw_transaccion
+    ALTER COLUMN tipo TYPE SMALLINT USING CASE tipo
+        WHEN 'PAG' THEN 1 WHEN 'RET' THEN 2 WHEN 'TRA' THEN 3 WHEN 'DEV' THEN 4 END,
+    ALTER COLUMN estado TYPE SMALLINT USING CASE estado
+        WHEN 'PEN' THEN 1 WHEN 'ACT' THEN 2 WHEN 'REJ' THEN 3 WHEN 'ERR' THEN 4 END,
+    ALTER COLUMN moneda TYPE SMALLINT USING CASE moneda
+        WHEN 'USD' THEN 1 WHEN 'EUR' THEN 2 END,
+    ADD CONSTRAINT ck_gtw_transaccion_tipo CHECK (tipo BETWEEN 1 AND 4),
+    ADD CONSTRAINT ck_gtw_transaccion_estado CHECK (estado BETWEEN 1 AND 4),
+    ADD CONSTRAINT ck_gtw_transaccion_moneda CHECK (moneda BETWEEN 1 AND 2);
+
+-- Consulta de pendientes (estado = PEN = 1)
+CREATE INDEX IF NOT EXISTS ix_gtw_transaccion_pendientes
+    ON gtw_transaccion (fecha DESC) WHERE estado = 1;
@@ -0,0 +1,115 @@
+-- GTW_TRANSACCION pasa a ser una tabla particionada por rango de FECHA (una partición mensual
+-- gtw_transaccion_pAAAAMMDD, con AAAAMMDD el inicio del rango). Las consultas acotadas por fecha solo leen
+-- las particiones del rango y las vencidas se separan sin DELETE masivo (ver MantenimientoParticionesService,
+-- que además crea las particiones futuras).
+--
+-- La migración copia las filas a la tabla nueva: en bases grandes debe ejecutarse en una ventana de
+-- mantenimiento, igual que V5.
+
+CREATE TABLE gtw_transaccion_particionada (
+    cod_transaccion          VARCHAR(10)    NOT NULL,
+    tipo                     SMALLINT       NOT NULL,
+    marca                    VARCHAR(4)     NOT NULL,
+    monto                    NUMERIC(20, 2) NOT NULL,
+    codigo_unico_transaccion VARCHAR(64)    NOT NULL,
+    fecha                    TIMESTAMP(6)   NOT NULL,
+    estado                   SMALLINT       NOT NULL,
+    moneda                   SMALLINT       NOT NULL,
+    pais                     VARCHAR(2)     NOT NULL,
+    tarjeta                  VARCHAR(16)    NOT NULL,
+    fecha_caducidad          DATE           NOT NULL,
+    transaccion_encriptada   VARCHAR(1000),
+    swift_banco              VARCHAR(11),
+    cuenta_iban              VARCHAR(28),
+    diferido                 BOOLEAN,
+    CONSTRAINT ck_gtw_transaccion_tipo CHECK (tipo BETWEEN 1 AND 4),
+    CONSTRAINT ck_gtw_transaccion_estado CHECK (estado BETWEEN 1 AND 4),
+    CONSTRAINT ck_gtw_transaccion_moneda CHECK (moneda BETWEEN 1 AND 2)
+) PARTITION BY RANGE (fecha);
+
+-- Red de seguridad si el mantenimiento no creó a tiempo la partición del periodo; debe permanecer vacía
+CREATE TABLE gtw_transaccion_default PARTITION OF gtw_transaccion_particionada DEFAULT;
+
+-- Un mes por partición desde la fila más antigua hasta tres meses después del actual
+DO $$
+DECLARE
+    inicio DATE := date_trunc('month', LEAST(COALESCE((SELECT min(fecha) FROM gtw_transaccion), LOCALTIMESTAMP), LOCALTIMESTAMP));
+    limite DATE := date_trunc('month', LOCALTIMESTAMP) + INTERVAL '4 months';
+BEGIN
+    WHILE inicio < limite LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF gtw_transaccion_particionada FOR VALUES FROM (%L) TO (%L)',
+                'gtw_transaccion_p' || to_char(inicio, 'YYYYMMDD'), inicio, inicio + INTERVAL '1 month');
+        inicio := inicio + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO gtw_transaccion_particionada
+SELECT cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha, estado, moneda, pais, tarjeta,
+       fecha_caducidad, transaccion_encriptada, swift_banco, cuenta_iban, diferido
+FROM gtw_transaccion;
+
+DROP TABLE gtw_transaccion;
+ALTER TABLE gtw_transaccion_particionada RENAME TO gtw_transaccion;
+
+-- Las claves únicas de una tabla particionada deben incluir FECHA; la unicidad global de ambos códigos
+-- se mantiene en gtw_transaccion_clave
+ALTER TABLE gtw_transaccion ADD CONSTRAINT gtw_transaccion_pkey PRIMARY KEY (cod_transaccion, fecha);
+
+-- Claves globales de GTW_TRANSACCION. ux_gtw_transaccion_codigo_unico sigue siendo la fuente de verdad de la
+-- idempotencia entre nodos (IdempotenciaService): un código repetido falla en el INSERT igual que antes
+CREATE TABLE gtw_transaccion_clave (
+    cod_transaccion          VARCHAR(10) NOT NULL,
+    codigo_unico_transaccion VARCHAR(64) NOT NULL,
+    CONSTRAINT gtw_transaccion_clave_pkey PRIMARY KEY (cod_transaccion),
+    CONSTRAINT ux_gtw_transaccion_codigo_unico UNIQUE (codigo_unico_transaccion)
+);
+
+INSERT INTO gtw_transaccion_clave (cod_transaccion, codigo_unico_transaccion)
+SELECT cod_transaccion, codigo_unico_transaccion FROM gtw_transaccion;
+
+CREATE FUNCTION gtw_transaccion_registrar_clave() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO gtw_transaccion_clave (cod_transaccion, codigo_unico_transaccion)
+        VALUES (NEW.cod_transaccion, NEW.codigo_unico_transaccion);
+    ELSE
+        DELETE FROM gtw_transaccion_clave WHERE cod_transaccion = OLD.cod_transaccion;
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER tr_gtw_transaccion_clave
+    AFTER INSERT OR DELETE ON gtw_transaccion
+    FOR EACH ROW EXECUTE FUNCTION gtw_transaccion_registrar_clave();
+
+-- Índices de V2, V3 y V5 definidos en la tabla padre: Postgres los crea en cada partición, también en las
+-- que se creen después
+
+-- findByCodigoUnicoTransaccion (la unicidad la garantiza gtw_transaccion_clave)
+CREATE INDEX ix_gtw_transaccion_codigo_unico ON gtw_transaccion (codigo_unico_transaccion);
+
+CREATE INDEX ix_gtw_transaccion_fecha_cod ON gtw_transaccion (fecha DESC, cod_transaccion DESC);
+
+CREATE INDEX ix_gtw_transaccion_estado_fecha ON gtw_transaccion (estado, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_tipo_estado_fecha ON gtw_transaccion (tipo, estado, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_marca_fecha ON gtw_transaccion (marca, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_tarjeta_fecha ON gtw_transaccion (tarjeta, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_swift_fecha
+    ON gtw_transaccion (swift_banco, fecha DESC) WHERE swift_banco IS NOT NULL;
+
+CREATE INDEX ix_gtw_transaccion_iban_fecha
+    ON gtw_transaccion (cuenta_iban, fecha DESC) WHERE cuenta_iban IS NOT NULL;
+
+CREATE INDEX ix_gtw_transaccion_moneda_fecha ON gtw_transaccion (moneda, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_pais_fecha ON gtw_transaccion (pais, fecha DESC);
+
+CREATE INDEX ix_gtw_transaccion_monto ON gtw_transaccion (monto);
+
+CREATE INDEX ix_gtw_transaccion_pendientes ON gtw_transaccion (fecha DESC) WHERE estado = 1;
+
+ANALYZE gtw_transaccion;
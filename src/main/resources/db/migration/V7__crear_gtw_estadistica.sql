@@ -0,0 +1,20 @@
+-- Agregados de gtw_transaccion por minuto (granularidad 1) y por hora (2), según la FECHA de creación de la
+-- transacción y por marca, moneda, país y tipo. EstadisticasTransaccionService los mantiene sumando lo acumulado
+-- en cada instancia y los reconstruye desde gtw_transaccion cuando se pierde lo acumulado (reinicio o caída).
+-- MONEDA y TIPO usan los mismos códigos SMALLINT que gtw_transaccion (V5).
+CREATE TABLE IF NOT EXISTS gtw_estadistica (
+    granularidad  SMALLINT       NOT NULL,
+    inicio        TIMESTAMP(6)   NOT NULL,
+    marca         VARCHAR(4)     NOT NULL,
+    moneda        SMALLINT       NOT NULL,
+    pais          VARCHAR(2)     NOT NULL,
+    tipo          SMALLINT       NOT NULL,
+    cantidad      BIGINT         NOT NULL,
+    monto         NUMERIC(24, 2) NOT NULL,
+    pendientes    BIGINT         NOT NULL,
+    aceptadas     BIGINT         NOT NULL,
+    rechazadas    BIGINT         NOT NULL,
+    errores       BIGINT         NOT NULL,
+    CONSTRAINT gtw_estadistica_pkey PRIMARY KEY (granularidad, inicio, marca, moneda, pais, tipo),
+    CONSTRAINT ck_gtw_estadistica_granularidad CHECK (granularidad IN (1, 2))
+);
@@ -0,0 +1,10 @@
+-- El outbox ya no guarda el código de seguridad y los registros fallidos no conservan su contenido (número de
+-- tarjeta); se limpian los registros anteriores a este cambio. Los ya enviados se vaciaron al entregarse.
+UPDATE gtw_outbox_recurrente
+   SET contenido = ''
+ WHERE estado = 'FAL';
+
+UPDATE gtw_outbox_recurrente
+   SET contenido = (contenido::jsonb - 'cvv')::text
+ WHERE estado = 'PEN'
+   AND contenido LIKE '%"cvv"%';
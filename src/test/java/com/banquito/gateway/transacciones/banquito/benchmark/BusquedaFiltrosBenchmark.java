@@ -0,0 +1,102 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.FiltroTransaccion;
+import com.banquito.gateway.transacciones.banquito.service.BusquedaTransaccionService;
+import com.banquito.gateway.transacciones.banquito.service.TransaccionService;
+
+/**
+ * Compara la búsqueda anterior (un único filtro en SQL y el resto aplicado por el cliente) con el motor de filtros
+ * combinados. Imprime la SQL generada por cada variante (show-sql), la latencia media y cuántas filas de la página
+ * cumplen realmente todos los filtros. Requiere un Postgres con datos, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.BusquedaFiltrosBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.iteraciones (200), benchmark.desde (7 días atrás).
+ */
+public class BusquedaFiltrosBenchmark {
+
+    public static void main(String[] args) {
+        int iteraciones = Integer.getInteger("benchmark.iteraciones", 200);
+        LocalDateTime fin = LocalDateTime.now();
+        LocalDateTime inicio = LocalDateTime.parse(System.getProperty("benchmark.desde", fin.minusDays(7).toString()));
+        Pageable pageable = PageRequest.of(0, 50, Sort.by(Sort.Direction.DESC, "fecha"));
+
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=true", "spring.jpa.properties.hibernate.format_sql=false",
+                        "gateway.insercion-agrupada.habilitada=false")
+                .run();
+        try {
+            TransaccionService transaccionService = contexto.getBean(TransaccionService.class);
+            BusquedaTransaccionService busquedaService = contexto.getBean(BusquedaTransaccionService.class);
+
+            Map<String, Escenario> escenarios = new LinkedHashMap<>();
+            escenarios.put("estado+marca+fecha", new Escenario(
+                    () -> transaccionService.obtenerTransaccionesPorEstado("ACT", pageable),
+                    t -> "VISA".equals(t.getMarca()) && !t.getFecha().isBefore(inicio),
+                    new FiltroTransaccion("ACT", null, "VISA", null, null, inicio, fin, null, null, null, null)));
+            escenarios.put("tipo+moneda+pais+fecha", new Escenario(
+                    () -> transaccionService.obtenerTransaccionesPorTipo("PAG", pageable),
+                    t -> t.getMoneda() == Moneda.USD && "EC".equals(t.getPais()) && !t.getFecha().isBefore(inicio),
+                    new FiltroTransaccion(null, "PAG", null, "USD", "EC", inicio, fin, null, null, null, null)));
+            escenarios.put("marca+fecha+monto", new Escenario(
+                    () -> transaccionService.obtenerTransaccionesPorMarcaYFecha("MAST", inicio, fin, pageable),
+                    t -> t.getMonto().compareTo(BigDecimal.valueOf(100)) >= 0,
+                    new FiltroTransaccion(null, null, "MAST", null, null, inicio, fin,
+                            BigDecimal.valueOf(100), null, null, null)));
+
+            for (Map.Entry<String, Escenario> escenario : escenarios.entrySet()) {
+                Escenario e = escenario.getValue();
+                System.out.println("== " + escenario.getKey());
+                Medicion anterior = medir(iteraciones, () -> e.anterior().get(), e.cumple());
+                Medicion combinada = medir(iteraciones, () -> busquedaService.buscar(e.filtro(), pageable), e.cumple());
+                System.out.printf("anterior   media=%.2fms filas=%d utiles=%d%n", anterior.mediaMs(), anterior.filas(),
+                        anterior.utiles());
+                System.out.printf("combinada  media=%.2fms filas=%d utiles=%d%n", combinada.mediaMs(), combinada.filas(),
+                        combinada.utiles());
+            }
+        } finally {
+            contexto.close();
+        }
+    }
+
+    private static Medicion medir(int iteraciones, Supplier<Page<Transaccion>> consulta, Predicate<Transaccion> cumple) {
+        List<Transaccion> ultima = consulta.get().getContent();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            ultima = consulta.get().getContent();
+        }
+        double mediaMs = (System.nanoTime() - inicio) / 1_000_000.0 / iteraciones;
+        return new Medicion(mediaMs, ultima.size(), ultima.stream().filter(cumple).count());
+    }
+
+    private record Escenario(Supplier<Page<Transaccion>> anterior, Predicate<Transaccion> cumple,
+            FiltroTransaccion filtro) {
+    }
+
+    private record Medicion(double mediaMs, int filas, long utiles) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoAleatorio;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoSecuencial;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoTransaccion;
+import com.banquito.gateway.transacciones.banquito.service.InsercionAgrupadaService;
+
+/**
+ * Compara el generador de códigos aleatorio (UUID) con el secuencial: inserciones por segundo, colisiones de
+ * clave primaria y tamaño y densidad del índice gtw_transaccion_pkey tras la carga. Vacía gtw_transaccion antes
+ * de cada escenario, así que requiere un Postgres de pruebas, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.CodigoTransaccionBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway?reWriteBatchedInserts=true
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.duracion (PT60S), benchmark.concurrencia (32). La densidad de hojas se reporta
+ * si la extensión pgstattuple está disponible.
+ */
+public class CodigoTransaccionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Duration duracion = Duration.parse(System.getProperty("benchmark.duracion", "PT60S"));
+        int concurrencia = Integer.parseInt(System.getProperty("benchmark.concurrencia", "32"));
+        Map<String, GeneradorCodigoTransaccion> generadores = Map.of(
+                "aleatorio", new GeneradorCodigoAleatorio(),
+                "secuencial", new GeneradorCodigoSecuencial(0));
+
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "gateway.outbox-recurrente.habilitado=false")
+                .run();
+        try {
+            InsercionAgrupadaService service = contexto.getBean(InsercionAgrupadaService.class);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(contexto.getBean(DataSource.class));
+            boolean pgstattuple = instalarPgstattuple(jdbcTemplate);
+            for (String nombre : new String[] { "aleatorio", "secuencial" }) {
+                jdbcTemplate.execute("TRUNCATE gtw_transaccion");
+                LongAdder colisiones = new LongAdder();
+                long filas = ejecutar(service, generadores.get(nombre), concurrencia, duracion, colisiones);
+                jdbcTemplate.execute("ANALYZE gtw_transaccion");
+                long bytesIndice = jdbcTemplate.queryForObject(
+                        "SELECT pg_relation_size('gtw_transaccion_pkey')", Long.class);
+                System.out.printf("%-10s concurrencia=%d inserciones/s=%.1f filas=%d colisiones=%d "
+                        + "pkey=%.1f MB (%.1f B/fila)%n", nombre, concurrencia, filas / (double) duracion.toSeconds(),
+                        filas, colisiones.sum(), bytesIndice / 1048576.0, bytesIndice / (double) Math.max(filas, 1));
+                if (pgstattuple) {
+                    Map<String, Object> estadisticas = jdbcTemplate.queryForMap(
+                            "SELECT avg_leaf_density, leaf_fragmentation FROM pgstatindex('gtw_transaccion_pkey')");
+                    System.out.printf("%-10s densidad de hojas=%s%% fragmentación=%s%%%n", nombre,
+                            estadisticas.get("avg_leaf_density"), estadisticas.get("leaf_fragmentation"));
+                }
+            }
+        } finally {
+            contexto.close();
+        }
+    }
+
+    private static long ejecutar(InsercionAgrupadaService service, GeneradorCodigoTransaccion generador,
+            int concurrencia, Duration duracion, LongAdder colisiones) {
+        LongAdder filas = new LongAdder();
+        long fin = System.nanoTime() + duracion.toNanos();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(concurrencia)) {
+            for (int i = 0; i < concurrencia; i++) {
+                hilos.submit(() -> {
+                    while (System.nanoTime() < fin) {
+                        try {
+                            service.insertar(crearTransaccion(generador.generar()));
+                            filas.increment();
+                        } catch (DataIntegrityViolationException e) {
+                            colisiones.increment();
+                        }
+                    }
+                });
+            }
+        }
+        return filas.sum();
+    }
+
+    private static boolean instalarPgstattuple(JdbcTemplate jdbcTemplate) {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pgstattuple");
+            return true;
+        } catch (RuntimeException e) {
+            System.out.println("pgstattuple no disponible, se omite la densidad del índice: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static Transaccion crearTransaccion(String codTransaccion) {
+        Transaccion transaccion = new Transaccion(codTransaccion);
+        transaccion.setCodigoUnicoTransaccion(UUID.randomUUID().toString());
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setMarca("VISA");
+        transaccion.setMonto(new BigDecimal("10.00"));
+        transaccion.setFecha(LocalDateTime.now());
+        transaccion.setEstado(EstadoTransaccion.PEN);
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setPais("EC");
+        transaccion.setTarjeta("1234567812345678");
+        transaccion.setFechaCaducidad(LocalDate.now().plusYears(2));
+        return transaccion;
+    }
+}
@@ -0,0 +1,166 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compara hilos de plataforma contra hilos virtuales para POST /api/v1/transacciones con un
+ * procesador de pagos simulado lento. Requiere un Postgres accesible, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.HilosVirtualesBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.concurrencia (400), benchmark.duracion (PT30S),
+ * benchmark.latencia-procesador (PT0.2S).
+ */
+public class HilosVirtualesBenchmark {
+
+    private static final String COMERCIO_JSON = "{\"codigo_comercio\":\"COM1\",\"swift_banco\":\"PICHEERT\","
+            + "\"cuenta_iban\":\"EC123456789012345678905678\",\"estado\":\"ACT\"}";
+
+    public static void main(String[] args) throws Exception {
+        int concurrencia = Integer.getInteger("benchmark.concurrencia", 400);
+        Duration duracion = Duration.parse(System.getProperty("benchmark.duracion", "PT30S"));
+        Duration latencia = Duration.parse(System.getProperty("benchmark.latencia-procesador", "PT0.2S"));
+
+        HttpServer stub = iniciarStub(latencia);
+        try {
+            String urlStub = "http://localhost:" + stub.getAddress().getPort();
+            for (boolean virtuales : new boolean[] { false, true }) {
+                Resultado resultado = ejecutar(virtuales, urlStub, concurrencia, duracion);
+                System.out.printf("%-10s concurrencia=%d peticiones=%d errores=%d rps=%.1f p50=%dms p99=%dms%n",
+                        virtuales ? "virtuales" : "plataforma", concurrencia, resultado.exitosas, resultado.errores,
+                        resultado.exitosas / (double) duracion.toSeconds(), resultado.percentil(0.50),
+                        resultado.percentil(0.99));
+            }
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private static Resultado ejecutar(boolean virtuales, String urlStub, int concurrencia, Duration duracion)
+            throws InterruptedException {
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtuales,
+                        "spring.jpa.show-sql=false",
+                        "gateway.clientes.comercios.url=" + urlStub,
+                        "gateway.clientes.procesador-pagos.url=" + urlStub,
+                        "gateway.clientes.transacciones-recurrentes.url=" + urlStub)
+                .run();
+        try {
+            String url = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/transacciones";
+            HttpClient cliente = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+            Resultado resultado = new Resultado();
+            long fin = System.nanoTime() + duracion.toNanos();
+            try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < concurrencia; i++) {
+                    clientes.submit(() -> {
+                        while (System.nanoTime() < fin) {
+                            long inicio = System.nanoTime();
+                            try {
+                                HttpResponse<Void> respuesta = cliente.send(crearPeticion(url),
+                                        HttpResponse.BodyHandlers.discarding());
+                                resultado.registrar(respuesta.statusCode() == 200, System.nanoTime() - inicio);
+                            } catch (IOException | InterruptedException e) {
+                                resultado.registrar(false, System.nanoTime() - inicio);
+                            }
+                        }
+                    });
+                }
+            }
+            return resultado;
+        } finally {
+            contexto.close();
+        }
+    }
+
+    private static HttpRequest crearPeticion(String url) {
+        String cuerpo = "{\"codigoPOS\":\"POS123456\",\"codigoComercio\":\"COM789012\",\"tipo\":\"PAG\","
+                + "\"marca\":\"VISA\",\"modalidad\":\"SIM\",\"monto\":150.50,\"moneda\":\"USD\",\"pais\":\"EC\","
+                + "\"numeroTarjeta\":\"1234567812345678\",\"nombreTitular\":\"Juan Perez\",\"codigoSeguridad\":123,"
+                + "\"fechaExpiracion\":\"12/99\",\"codigoUnicoTransaccion\":\"" + UUID.randomUUID() + "\"}";
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build();
+    }
+
+    private static HttpServer iniciarStub(Duration latencia) throws IOException {
+        HttpServer stub = HttpServer.create(new InetSocketAddress(0), 1024);
+        stub.createContext("/v1/comercios/pos/", intercambio -> responder(intercambio, COMERCIO_JSON));
+        stub.createContext("/api/v1/transacciones", intercambio -> {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencia.toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responder(intercambio, "{}");
+        });
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.start();
+        return stub;
+    }
+
+    private static void responder(HttpExchange intercambio, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getRequestBody().readAllBytes();
+        intercambio.getResponseHeaders().add("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(200, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    private static class Resultado {
+
+        private final List<Long> latencias = new ArrayList<>();
+        private volatile long exitosas;
+        private volatile long errores;
+
+        private synchronized void registrar(boolean exito, long nanos) {
+            if (exito) {
+                this.exitosas++;
+                this.latencias.add(nanos);
+            } else {
+                this.errores++;
+            }
+        }
+
+        private long percentil(double percentil) {
+            List<Long> ordenadas = new ArrayList<>(this.latencias);
+            if (ordenadas.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(ordenadas);
+            int indice = (int) Math.min(ordenadas.size() - 1, Math.round(percentil * ordenadas.size()));
+            return TimeUnit.NANOSECONDS.toMillis(ordenadas.get(indice));
+        }
+    }
+}
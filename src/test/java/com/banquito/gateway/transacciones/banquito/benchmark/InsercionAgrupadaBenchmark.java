@@ -0,0 +1,89 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.InsercionAgrupadaService;
+
+/**
+ * Mide inserciones por segundo con y sin inserción agrupada para distintos niveles de concurrencia.
+ * Requiere un Postgres accesible, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.InsercionAgrupadaBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway?reWriteBatchedInserts=true
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.duracion (PT15S), benchmark.concurrencias (1,8,32,128).
+ */
+public class InsercionAgrupadaBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Duration duracion = Duration.parse(System.getProperty("benchmark.duracion", "PT15S"));
+        String[] concurrencias = System.getProperty("benchmark.concurrencias", "1,8,32,128").split(",");
+
+        for (boolean agrupada : new boolean[] { false, true }) {
+            ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("spring.jpa.show-sql=false", "gateway.insercion-agrupada.habilitada=" + agrupada)
+                    .run();
+            try {
+                InsercionAgrupadaService service = contexto.getBean(InsercionAgrupadaService.class);
+                for (String concurrencia : concurrencias) {
+                    long filas = ejecutar(service, Integer.parseInt(concurrencia.trim()), duracion);
+                    System.out.printf("%-9s concurrencia=%s inserciones/s=%.1f%n", agrupada ? "agrupada" : "directa",
+                            concurrencia.trim(), filas / (double) duracion.toSeconds());
+                }
+            } finally {
+                contexto.close();
+            }
+        }
+    }
+
+    private static long ejecutar(InsercionAgrupadaService service, int concurrencia, Duration duracion) {
+        LongAdder filas = new LongAdder();
+        long fin = System.nanoTime() + duracion.toNanos();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(concurrencia)) {
+            for (int i = 0; i < concurrencia; i++) {
+                hilos.submit(() -> {
+                    while (System.nanoTime() < fin) {
+                        service.insertar(crearTransaccion());
+                        filas.increment();
+                    }
+                });
+            }
+        }
+        return filas.sum();
+    }
+
+    private static Transaccion crearTransaccion() {
+        Transaccion transaccion = new Transaccion(UUID.randomUUID().toString().substring(0, 10));
+        transaccion.setCodigoUnicoTransaccion(UUID.randomUUID().toString());
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setMarca("VISA");
+        transaccion.setMonto(new BigDecimal("10.00"));
+        transaccion.setFecha(LocalDateTime.now());
+        transaccion.setEstado(EstadoTransaccion.PEN);
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setPais("EC");
+        transaccion.setTarjeta("1234567812345678");
+        transaccion.setFechaCaducidad(LocalDate.now().plusYears(2));
+        return transaccion;
+    }
+}
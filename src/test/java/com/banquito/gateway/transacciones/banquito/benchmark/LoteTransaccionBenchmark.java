@@ -0,0 +1,183 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compara transacciones por segundo de POST /api/v1/transacciones/lote contra el mismo número de llamadas
+ * individuales a POST /api/v1/transacciones, con la misma cantidad de llamadas simultáneas al procesador de pagos
+ * simulado: benchmark.concurrencia peticiones individuales a la vez, o un lote a la vez con gateway.lote.concurrencia
+ * igual a benchmark.concurrencia. Requiere un Postgres accesible, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.LoteTransaccionBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway?reWriteBatchedInserts=true
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.transacciones (5000), benchmark.tamanio-lote (100), benchmark.concurrencia (16),
+ * benchmark.latencia-procesador (PT0.02S).
+ */
+public class LoteTransaccionBenchmark {
+
+    private static final String COMERCIO_JSON = "{\"codigo_comercio\":\"COM1\",\"swift_banco\":\"PICHEERT\","
+            + "\"cuenta_iban\":\"EC123456789012345678905678\",\"estado\":\"ACT\"}";
+
+    public static void main(String[] args) throws Exception {
+        int transacciones = Integer.getInteger("benchmark.transacciones", 5000);
+        int tamanioLote = Integer.getInteger("benchmark.tamanio-lote", 100);
+        int concurrencia = Integer.getInteger("benchmark.concurrencia", 16);
+        Duration latencia = Duration.parse(System.getProperty("benchmark.latencia-procesador", "PT0.02S"));
+
+        HttpServer stub = iniciarStub(latencia);
+        String urlStub = "http://localhost:" + stub.getAddress().getPort();
+        // Como argumentos de línea de comandos para que prevalezcan sobre application.properties
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class).run(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.banquito=WARN",
+                "--logging.level.org.springframework.web=ERROR",
+                "--gateway.lote.concurrencia=" + concurrencia,
+                "--gateway.lote.tamanio-maximo=" + tamanioLote,
+                // Sin límites de velocidad: todas las solicitudes usan la misma tarjeta
+                "--gateway.velocidad.habilitado=false",
+                "--gateway.clientes.comercios.url=" + urlStub,
+                "--gateway.clientes.procesador-pagos.url=" + urlStub,
+                "--gateway.clientes.transacciones-recurrentes.url=" + urlStub);
+        try {
+            String url = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/transacciones";
+            HttpClient cliente = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+            // Calentamiento de ambos caminos
+            individuales(cliente, url, Math.min(transacciones, 500), concurrencia);
+            lotes(cliente, url, Math.min(transacciones, 500), tamanioLote);
+
+            for (boolean lote : new boolean[] { false, true }) {
+                long inicio = System.nanoTime();
+                long exitosas = lote
+                        ? lotes(cliente, url, transacciones, tamanioLote)
+                        : individuales(cliente, url, transacciones, concurrencia);
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+                System.out.printf("%-11s transacciones=%d exitosas=%d concurrencia=%d%s tiempo=%.2fs tps=%.1f%n",
+                        lote ? "lote" : "individual", transacciones, exitosas, concurrencia,
+                        lote ? " tamanio-lote=" + tamanioLote : "", segundos, exitosas / segundos);
+            }
+        } finally {
+            contexto.close();
+            stub.stop(0);
+        }
+    }
+
+    private static long individuales(HttpClient cliente, String url, int transacciones, int concurrencia)
+            throws InterruptedException {
+        LongAdder exitosas = new LongAdder();
+        Semaphore permisos = new Semaphore(concurrencia);
+        try (ExecutorService peticiones = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < transacciones; i++) {
+                permisos.acquire();
+                peticiones.submit(() -> {
+                    try {
+                        HttpResponse<Void> respuesta = cliente.send(crearPeticion(url, crearSolicitud()),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (respuesta.statusCode() == 200) {
+                            exitosas.increment();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        // Se cuenta como no exitosa
+                    } finally {
+                        permisos.release();
+                    }
+                });
+            }
+        }
+        return exitosas.sum();
+    }
+
+    private static long lotes(HttpClient cliente, String url, int transacciones, int tamanioLote)
+            throws IOException, InterruptedException {
+        long exitosas = 0;
+        for (int enviadas = 0; enviadas < transacciones; enviadas += tamanioLote) {
+            List<String> solicitudes = new ArrayList<>(tamanioLote);
+            for (int i = 0; i < Math.min(tamanioLote, transacciones - enviadas); i++) {
+                solicitudes.add(crearSolicitud());
+            }
+            HttpResponse<String> respuesta = cliente.send(
+                    crearPeticion(url + "/lote", "[" + String.join(",", solicitudes) + "]"),
+                    HttpResponse.BodyHandlers.ofString());
+            if (respuesta.statusCode() == 200) {
+                exitosas += contar(respuesta.body(), "\"codigoEstado\":200");
+            }
+        }
+        return exitosas;
+    }
+
+    private static long contar(String texto, String patron) {
+        long cantidad = 0;
+        for (int i = texto.indexOf(patron); i >= 0; i = texto.indexOf(patron, i + patron.length())) {
+            cantidad++;
+        }
+        return cantidad;
+    }
+
+    private static String crearSolicitud() {
+        return "{\"codigoPOS\":\"POS123456\",\"codigoComercio\":\"COM789012\",\"tipo\":\"PAG\","
+                + "\"marca\":\"VISA\",\"modalidad\":\"SIM\",\"monto\":150.50,\"moneda\":\"USD\",\"pais\":\"EC\","
+                + "\"numeroTarjeta\":\"1234567812345678\",\"nombreTitular\":\"Juan Perez\",\"codigoSeguridad\":123,"
+                + "\"fechaExpiracion\":\"12/99\",\"codigoUnicoTransaccion\":\"" + UUID.randomUUID() + "\"}";
+    }
+
+    private static HttpRequest crearPeticion(String url, String cuerpo) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build();
+    }
+
+    private static HttpServer iniciarStub(Duration latencia) throws IOException {
+        HttpServer stub = HttpServer.create(new InetSocketAddress(0), 1024);
+        stub.createContext("/v1/comercios/pos/", intercambio -> responder(intercambio, COMERCIO_JSON));
+        stub.createContext("/api/v1/transacciones", intercambio -> {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencia.toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responder(intercambio, "{}");
+        });
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.start();
+        return stub;
+    }
+
+    private static void responder(HttpExchange intercambio, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getRequestBody().readAllBytes();
+        intercambio.getResponseHeaders().add("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(200, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.banquito.gateway.transacciones.banquito.BanquitoApplication;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compara POST /api/v1/transacciones síncrono contra el modo asíncrono (Prefer: respond-async seguido del long-poll
+ * de GET /codigo-unico/{codigoUnico}/resultado) con benchmark.concurrencia clientes en bucle cerrado durante
+ * benchmark.duracion y un procesador de pagos simulado lento. Reporta transacciones por segundo hasta el estado
+ * final, latencias hasta el estado final y hasta la respuesta del POST, y el máximo de heap usado e hilos vivos
+ * del proceso (clientes incluidos, iguales en ambos modos). El bulkhead del procesador se amplía a la concurrencia
+ * para que el límite sea el de cada modo: hilos de Tomcat en el síncrono, gateway.asincrono.hilos en el asíncrono.
+ * Requiere un Postgres accesible, por ejemplo:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.banquito.gateway.transacciones.banquito.benchmark.ModoAsincronoBenchmark \
+ *   -Dspring.datasource.url=jdbc:postgresql://localhost:5432/transacciones_gateway
+ * </pre>
+ *
+ * Parámetros opcionales: benchmark.concurrencia (400), benchmark.duracion (PT30S),
+ * benchmark.latencia-procesador (PT0.2S), benchmark.hilos-asincronos (200, igual que server.tomcat.threads.max).
+ */
+public class ModoAsincronoBenchmark {
+
+    private static final String COMERCIO_JSON = "{\"codigo_comercio\":\"COM1\",\"swift_banco\":\"PICHEERT\","
+            + "\"cuenta_iban\":\"EC123456789012345678905678\",\"estado\":\"ACT\"}";
+
+    public static void main(String[] args) throws Exception {
+        int concurrencia = Integer.getInteger("benchmark.concurrencia", 400);
+        Duration duracion = Duration.parse(System.getProperty("benchmark.duracion", "PT30S"));
+        Duration latencia = Duration.parse(System.getProperty("benchmark.latencia-procesador", "PT0.2S"));
+        int hilosAsincronos = Integer.getInteger("benchmark.hilos-asincronos", 200);
+
+        HttpServer stub = iniciarStub(latencia);
+        String urlStub = "http://localhost:" + stub.getAddress().getPort();
+        // Como argumentos de línea de comandos para que prevalezcan sobre application.properties
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BanquitoApplication.class).run(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.banquito=OFF",
+                "--logging.level.org.springframework.web=ERROR",
+                "--gateway.asincrono.hilos=" + hilosAsincronos,
+                "--gateway.resiliencia.bulkhead.procesador-pagos=" + Math.max(concurrencia, hilosAsincronos),
+                // Sin límites de velocidad: todas las solicitudes usan la misma tarjeta
+                "--gateway.velocidad.habilitado=false",
+                "--gateway.clientes.comercios.url=" + urlStub,
+                "--gateway.clientes.procesador-pagos.url=" + urlStub,
+                "--gateway.clientes.transacciones-recurrentes.url=" + urlStub);
+        try {
+            String url = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/transacciones";
+            HttpClient cliente = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+            // Calentamiento de ambos caminos
+            ejecutar(cliente, url, false, Math.min(concurrencia, 50), Duration.ofSeconds(3));
+            ejecutar(cliente, url, true, Math.min(concurrencia, 50), Duration.ofSeconds(3));
+
+            for (boolean asincrono : new boolean[] { false, true }) {
+                System.gc();
+                Resultado resultado = ejecutar(cliente, url, asincrono, concurrencia, duracion);
+                System.out.printf("%-10s concurrencia=%d finales=%d errores=%d tps=%.1f p50=%dms p99=%dms "
+                        + "post-p50=%dms post-p99=%dms heap-max=%dMB hilos-max=%d%n",
+                        asincrono ? "asincrono" : "sincrono", concurrencia, resultado.exitosas, resultado.errores,
+                        resultado.exitosas / (double) duracion.toSeconds(),
+                        Resultado.percentil(resultado.latencias, 0.50), Resultado.percentil(resultado.latencias, 0.99),
+                        Resultado.percentil(resultado.latenciasPost, 0.50),
+                        Resultado.percentil(resultado.latenciasPost, 0.99),
+                        resultado.heapMaximo.get() / (1024 * 1024), resultado.hilosMaximo.get());
+            }
+        } finally {
+            contexto.close();
+            stub.stop(0);
+        }
+    }
+
+    private static Resultado ejecutar(HttpClient cliente, String url, boolean asincrono, int concurrencia,
+            Duration duracion) throws InterruptedException {
+        Resultado resultado = new Resultado();
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        ScheduledExecutorService muestreo = Executors.newSingleThreadScheduledExecutor();
+        muestreo.scheduleAtFixedRate(() -> {
+            resultado.heapMaximo.accumulateAndGet(memoria.getHeapMemoryUsage().getUsed(), Math::max);
+            resultado.hilosMaximo.accumulateAndGet(hilos.getThreadCount(), Math::max);
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        long fin = System.nanoTime() + duracion.toNanos();
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrencia; i++) {
+                clientes.submit(() -> {
+                    while (System.nanoTime() < fin) {
+                        long inicio = System.nanoTime();
+                        try {
+                            boolean exito = asincrono
+                                    ? autorizarAsincrono(cliente, url, resultado, inicio)
+                                    : autorizarSincrono(cliente, url, resultado, inicio);
+                            resultado.registrar(exito, System.nanoTime() - inicio);
+                        } catch (IOException | InterruptedException e) {
+                            resultado.registrar(false, System.nanoTime() - inicio);
+                        }
+                    }
+                });
+            }
+        } finally {
+            muestreo.shutdownNow();
+        }
+        return resultado;
+    }
+
+    private static boolean autorizarSincrono(HttpClient cliente, String url, Resultado resultado, long inicio)
+            throws IOException, InterruptedException {
+        HttpResponse<Void> respuesta = cliente.send(crearPeticion(url, crearSolicitud(), false),
+                HttpResponse.BodyHandlers.discarding());
+        resultado.registrarPost(System.nanoTime() - inicio);
+        return respuesta.statusCode() == 200;
+    }
+
+    // 202 con Location al registrarse en PEN; el long-poll se repite mientras siga en PEN (202)
+    private static boolean autorizarAsincrono(HttpClient cliente, String url, Resultado resultado, long inicio)
+            throws IOException, InterruptedException {
+        HttpResponse<Void> respuesta = cliente.send(crearPeticion(url, crearSolicitud(), true),
+                HttpResponse.BodyHandlers.discarding());
+        resultado.registrarPost(System.nanoTime() - inicio);
+        if (respuesta.statusCode() != 202) {
+            return respuesta.statusCode() == 200;
+        }
+        URI ubicacion = URI.create(url).resolve(respuesta.headers().firstValue("Location").orElseThrow()
+                + "?espera=30");
+        HttpResponse<Void> estado;
+        do {
+            estado = cliente.send(HttpRequest.newBuilder(ubicacion).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+        } while (estado.statusCode() == 202);
+        return estado.statusCode() == 200;
+    }
+
+    private static String crearSolicitud() {
+        return "{\"codigoPOS\":\"POS123456\",\"codigoComercio\":\"COM789012\",\"tipo\":\"PAG\","
+                + "\"marca\":\"VISA\",\"modalidad\":\"SIM\",\"monto\":150.50,\"moneda\":\"USD\",\"pais\":\"EC\","
+                + "\"numeroTarjeta\":\"1234567812345678\",\"nombreTitular\":\"Juan Perez\",\"codigoSeguridad\":123,"
+                + "\"fechaExpiracion\":\"12/99\",\"codigoUnicoTransaccion\":\"" + UUID.randomUUID() + "\"}";
+    }
+
+    private static HttpRequest crearPeticion(String url, String cuerpo, boolean asincrono) {
+        HttpRequest.Builder peticion = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo));
+        if (asincrono) {
+            peticion.header("Prefer", "respond-async");
+        }
+        return peticion.build();
+    }
+
+    private static HttpServer iniciarStub(Duration latencia) throws IOException {
+        HttpServer stub = HttpServer.create(new InetSocketAddress(0), 1024);
+        stub.createContext("/v1/comercios/pos/", intercambio -> responder(intercambio, COMERCIO_JSON));
+        stub.createContext("/api/v1/transacciones", intercambio -> {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencia.toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responder(intercambio, "{}");
+        });
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.start();
+        return stub;
+    }
+
+    private static void responder(HttpExchange intercambio, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getRequestBody().readAllBytes();
+        intercambio.getResponseHeaders().add("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(200, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    private static class Resultado {
+
+        private final List<Long> latencias = new ArrayList<>();
+        private final List<Long> latenciasPost = new ArrayList<>();
+        private final AtomicLong heapMaximo = new AtomicLong();
+        private final AtomicInteger hilosMaximo = new AtomicInteger();
+        private volatile long exitosas;
+        private volatile long errores;
+
+        private synchronized void registrar(boolean exito, long nanos) {
+            if (exito) {
+                this.exitosas++;
+                this.latencias.add(nanos);
+            } else {
+                this.errores++;
+            }
+        }
+
+        private synchronized void registrarPost(long nanos) {
+            this.latenciasPost.add(nanos);
+        }
+
+        private static long percentil(List<Long> latencias, double percentil) {
+            List<Long> ordenadas = new ArrayList<>(latencias);
+            if (ordenadas.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(ordenadas);
+            int indice = (int) Math.min(ordenadas.size() - 1, Math.round(percentil * ordenadas.size()));
+            return TimeUnit.NANOSECONDS.toMillis(ordenadas.get(indice));
+        }
+    }
+}
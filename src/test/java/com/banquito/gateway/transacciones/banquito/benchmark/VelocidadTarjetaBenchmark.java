@@ -0,0 +1,83 @@
+package com.banquito.gateway.transacciones.banquito.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.service.VelocidadTarjetaService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Costo de {@link VelocidadTarjetaService#registrar} (comprobación de las reglas y registro) con muchas tarjetas
+ * distintas en memoria, en un hilo y en 8 hilos sobre las mismas franjas. Las tarjetas se recorren saltando por
+ * la tabla para no favorecer la caché de la CPU, y cada número se construye en la operación, como llega en una
+ * petición; los límites no se alcanzan, así que siempre se registra:
+ *
+ * <pre>
+ * mvn -Pbenchmark test -Djmh.incluir=VelocidadTarjetaBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VelocidadTarjetaBenchmark {
+
+    private static final int PASO = 7919;
+    private static final BigDecimal MONTO = new BigDecimal("25.90");
+
+    @Param({ "10000", "1000000" })
+    public int tarjetas;
+
+    private VelocidadTarjetaService service;
+
+    @State(Scope.Thread)
+    public static class Posicion {
+        int siguiente = ThreadLocalRandom.current().nextInt(1 << 20);
+    }
+
+    @Setup
+    public void setUp() {
+        // Mismas ventanas y cubetas que la configuración por defecto, con límites que no se alcanzan
+        this.service = new VelocidadTarjetaService(new SimpleMeterRegistry(), true,
+                List.of("PT10M/1000000000/", "PT1H/1000000000/100000000000.00"), 20, this.tarjetas, 64);
+        for (int i = 0; i < this.tarjetas; i++) {
+            this.service.registrar(numero(i), Moneda.USD, MONTO);
+        }
+    }
+
+    @Benchmark
+    public VelocidadTarjetaService.Regla registrar(Posicion posicion) {
+        posicion.siguiente = (posicion.siguiente + PASO) % this.tarjetas;
+        return this.service.registrar(numero(posicion.siguiente), Moneda.USD, MONTO);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public VelocidadTarjetaService.Regla registrarConcurrente(Posicion posicion) {
+        posicion.siguiente = (posicion.siguiente + PASO) % this.tarjetas;
+        return this.service.registrar(numero(posicion.siguiente), Moneda.USD, MONTO);
+    }
+
+    private static String numero(int tarjeta) {
+        return Long.toString(4_000_000_000_000_000L + tarjeta * 7L);
+    }
+}
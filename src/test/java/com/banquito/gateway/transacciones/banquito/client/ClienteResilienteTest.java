@@ -0,0 +1,217 @@
+package com.banquito.gateway.transacciones.banquito.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.config.ResilienciaFeignConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.RequestLine;
+import feign.Retryer;
+import feign.Target;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Servidor HTTP local que simula un procesador degradado (latencia y 5xx) junto a un servicio de comercios sano.
+ */
+class ClienteResilienteTest {
+
+    interface Remoto {
+        @RequestLine("GET /procesador")
+        String procesar();
+
+        @RequestLine("GET /comercio")
+        String comercio();
+    }
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private final AtomicInteger estadoProcesador = new AtomicInteger(200);
+    private volatile long latenciaProcesadorMs = 0;
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private BulkheadRegistry bulkheadRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private Remoto procesador;
+    private Remoto comercios;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.hilosServidor = Executors.newCachedThreadPool();
+        this.servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.servidor.setExecutor(this.hilosServidor);
+        this.servidor.createContext("/procesador", exchange -> {
+            dormir(this.latenciaProcesadorMs);
+            responder(exchange, this.estadoProcesador.get());
+        });
+        this.servidor.createContext("/comercio", exchange -> responder(exchange, 200));
+        this.servidor.start();
+
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(ResilienciaFeignConfig.configuracionCircuito(
+                50, 100, Duration.ofSeconds(5), 10, 10, Duration.ofMillis(300), 3));
+        this.bulkheadRegistry = BulkheadRegistry.of(ResilienciaFeignConfig.configuracionBulkhead(4));
+        this.meterRegistry = new SimpleMeterRegistry();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(this.circuitBreakerRegistry).bindTo(this.meterRegistry);
+
+        String url = "http://127.0.0.1:" + this.servidor.getAddress().getPort();
+        this.procesador = this.cliente(ResilienciaFeignConfig.CLIENTE_PROCESADOR_PAGOS, url);
+        this.comercios = this.cliente(ResilienciaFeignConfig.CLIENTE_COMERCIOS, url);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.servidor.stop(0);
+        this.hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void circuitoAbiertoFallaRapidoSinAfectarOtrosClientes() {
+        this.estadoProcesador.set(503);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(RuntimeException.class, this.procesador::procesar);
+        }
+        CircuitBreaker circuito = this.circuitBreakerRegistry.circuitBreaker(ResilienciaFeignConfig.CLIENTE_PROCESADOR_PAGOS);
+        assertEquals(CircuitBreaker.State.OPEN, circuito.getState());
+
+        // Con el circuito abierto la llamada no llega al servidor aunque éste responda lento
+        this.latenciaProcesadorMs = 2000;
+        long inicio = System.nanoTime();
+        assertThrows(CallNotPermittedException.class, this.procesador::procesar);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 200);
+
+        assertEquals("ok", this.comercios.comercio());
+        assertEquals(CircuitBreaker.State.CLOSED,
+                this.circuitBreakerRegistry.circuitBreaker(ResilienciaFeignConfig.CLIENTE_COMERCIOS).getState());
+        assertEquals(1.0, this.meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", ResilienciaFeignConfig.CLIENTE_PROCESADOR_PAGOS).tag("state", "open").gauge().value());
+    }
+
+    @Test
+    void circuitoSemiabiertoSeCierraCuandoElProcesadorSeRecupera() throws InterruptedException {
+        this.estadoProcesador.set(500);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(RuntimeException.class, this.procesador::procesar);
+        }
+        CircuitBreaker circuito = this.circuitBreakerRegistry.circuitBreaker(ResilienciaFeignConfig.CLIENTE_PROCESADOR_PAGOS);
+        assertEquals(CircuitBreaker.State.OPEN, circuito.getState());
+
+        this.estadoProcesador.set(200);
+        Thread.sleep(400);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("ok", this.procesador.procesar());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuito.getState());
+    }
+
+    @Test
+    void circuitoSemiabiertoVuelveAAbrirseSiLaSondaFalla() throws InterruptedException {
+        this.estadoProcesador.set(500);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(RuntimeException.class, this.procesador::procesar);
+        }
+        Thread.sleep(400);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, this.procesador::procesar);
+        }
+        assertEquals(CircuitBreaker.State.OPEN,
+                this.circuitBreakerRegistry.circuitBreaker(ResilienciaFeignConfig.CLIENTE_PROCESADOR_PAGOS).getState());
+        assertThrows(CallNotPermittedException.class, this.procesador::procesar);
+    }
+
+    @Test
+    void bulkheadRechazaExcesoYComerciosMantieneSuLatencia() throws Exception {
+        this.latenciaProcesadorMs = 500;
+        int llamadas = 16;
+        ExecutorService clientes = Executors.newFixedThreadPool(llamadas);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<String>> resultados = new ArrayList<>();
+        try {
+            for (int i = 0; i < llamadas; i++) {
+                resultados.add(clientes.submit(() -> {
+                    salida.await();
+                    return this.procesador.procesar();
+                }));
+            }
+            salida.countDown();
+            Thread.sleep(100);
+
+            // El procesador tiene todos sus permisos ocupados; comercios usa su propio bulkhead
+            long inicio = System.nanoTime();
+            assertEquals("ok", this.comercios.comercio());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 200);
+
+            int exitosas = 0;
+            int rechazadas = 0;
+            for (Future<String> resultado : resultados) {
+                try {
+                    resultado.get(5, TimeUnit.SECONDS);
+                    exitosas++;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertTrue(e.getCause() instanceof BulkheadFullException);
+                    rechazadas++;
+                }
+            }
+            assertEquals(4, exitosas);
+            assertEquals(llamadas - 4, rechazadas);
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    private Remoto cliente(String nombre, String url) {
+        return Feign.builder()
+                .client(new Client.Default(null, null))
+                .options(new Request.Options(1, TimeUnit.SECONDS, 3, TimeUnit.SECONDS, true))
+                .retryer(Retryer.NEVER_RETRY)
+                .addCapability(new ResilienciaCapability(this.circuitBreakerRegistry, this.bulkheadRegistry))
+                .target(new Target.HardCodedTarget<>(Remoto.class, nombre, url));
+    }
+
+    private static void responder(HttpExchange exchange, int estado) throws IOException {
+        byte[] cuerpo = (estado == 200 ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(estado, cuerpo.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static void dormir(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoAleatorio;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoSecuencial;
+import com.banquito.gateway.transacciones.banquito.service.GeneradorCodigoTransaccion;
+
+class CodigoTransaccionConfigTest {
+
+    private final CodigoTransaccionConfig config = new CodigoTransaccionConfig();
+    private final ApplicationContextRunner contexto = new ApplicationContextRunner()
+            .withUserConfiguration(CodigoTransaccionConfig.class);
+
+    @Test
+    void sinConfiguracionSeUsaElGeneradorAleatorio() {
+        // Sin GATEWAY_NODO, como en el despliegue actual: la aplicación arranca con el generador aleatorio
+        this.contexto.run(contexto -> assertTrue(
+                contexto.getBean(GeneradorCodigoTransaccion.class) instanceof GeneradorCodigoAleatorio));
+        this.contexto.withPropertyValues("gateway.codigo-transaccion.generador=secuencial")
+                .run(contexto -> assertTrue(contexto.getStartupFailure() != null));
+    }
+
+    @Test
+    void sinNodoConfiguradoLaAplicacionNoArranca() {
+        // -1 es el valor que toma gateway.codigo-transaccion.nodo cuando GATEWAY_NODO no está definido
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> this.config.generadorCodigoSecuencial(-1));
+
+        assertTrue(error.getMessage().contains("GATEWAY_NODO"), error.getMessage());
+    }
+
+    @Test
+    void conNodoConfiguradoSeUsaElGeneradorSecuencial() {
+        GeneradorCodigoTransaccion generador = this.config.generadorCodigoSecuencial(7);
+
+        assertTrue(generador instanceof GeneradorCodigoSecuencial);
+        assertEquals(10, generador.generar().length());
+    }
+}
@@ -0,0 +1,170 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.banquito.gateway.transacciones.banquito.service.LecturaConsistente;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Dos bases del mismo Postgres hacen de primaria y réplica; la "réplica" no se replica, así que una fila con el
+// mismo código y distinto estado en cada base muestra de dónde leyó cada transacción. Se omite sin Docker.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ ReplicasLecturaConfig.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class ReplicasLecturaConfigTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void propiedades(DynamicPropertyRegistry registro) {
+        registro.add("spring.datasource.url", postgres::getJdbcUrl);
+        registro.add("spring.datasource.username", postgres::getUsername);
+        registro.add("spring.datasource.password", postgres::getPassword);
+        registro.add("gateway.replicas.habilitado", () -> "true");
+        registro.add("gateway.replicas.urls", () -> urlReplica());
+        registro.add("gateway.replicas.retraso-maximo", () -> "PT2S");
+    }
+
+    @BeforeAll
+    static void crearReplica() throws Exception {
+        try (Connection conexion = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword()); Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("CREATE DATABASE replica");
+        }
+        Flyway.configure()
+                .dataSource(urlReplica(), postgres.getUsername(), postgres.getPassword())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+    }
+
+    private static String urlReplica() {
+        return postgres.getJdbcUrl().replace("/" + postgres.getDatabaseName(), "/replica");
+    }
+
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private HikariDataSource fuentePrimaria;
+
+    @Autowired
+    private EnrutadorLecturas enrutadorLecturas;
+
+    private TransactionTemplate soloLectura;
+    private TransactionTemplate escritura;
+
+    @BeforeEach
+    void preparar() {
+        this.soloLectura = new TransactionTemplate(this.transactionManager);
+        this.soloLectura.setReadOnly(true);
+        this.escritura = new TransactionTemplate(this.transactionManager);
+        // Misma transacción en ambas bases: ACT en la primaria, todavía PEN en la réplica
+        insertar(new JdbcTemplate(this.fuentePrimaria), "RUTEO00001", "ruteo-1", 2);
+        insertar(new JdbcTemplate(this.replica()), "RUTEO00001", "ruteo-1", 1);
+        // Recién creada en la primaria, aún no replicada
+        insertar(new JdbcTemplate(this.fuentePrimaria), "RUTEO00002", "ruteo-2", 1);
+        this.enrutadorLecturas.registrarRetraso(0, 0);
+    }
+
+    @AfterEach
+    void limpiar() {
+        new JdbcTemplate(this.fuentePrimaria).update("DELETE FROM gtw_transaccion WHERE cod_transaccion LIKE 'RUTEO%'");
+        new JdbcTemplate(this.replica()).update("DELETE FROM gtw_transaccion WHERE cod_transaccion LIKE 'RUTEO%'");
+    }
+
+    @Test
+    void transaccionesDeSoloLecturaVanALaReplicaYLasDeEscrituraALaPrimaria() {
+        assertEquals(EstadoTransaccion.PEN, this.soloLectura.execute(status -> this.estado("RUTEO00001")));
+        assertEquals(EstadoTransaccion.ACT, this.escritura.execute(status -> this.estado("RUTEO00001")));
+        // Los métodos de lectura de los repositorios abren su propia transacción de solo lectura
+        assertEquals(EstadoTransaccion.PEN, this.estado("RUTEO00001"));
+    }
+
+    @Test
+    void replicaAtrasadaOForzadaLeeDeLaPrimaria() {
+        assertEquals(EstadoTransaccion.ACT,
+                EnrutadorLecturas.enPrimaria(() -> this.soloLectura.execute(status -> this.estado("RUTEO00001"))));
+
+        this.enrutadorLecturas.registrarRetraso(0, 5_000);
+        assertEquals(EstadoTransaccion.ACT, this.soloLectura.execute(status -> this.estado("RUTEO00001")));
+
+        this.enrutadorLecturas.registrarRetraso(0, -1);
+        assertEquals(EstadoTransaccion.ACT, this.soloLectura.execute(status -> this.estado("RUTEO00001")));
+
+        this.enrutadorLecturas.verificarRetraso();
+        assertEquals(EstadoTransaccion.PEN, this.soloLectura.execute(status -> this.estado("RUTEO00001")));
+    }
+
+    @Test
+    void lecturaConsistenteVeLoRecienEscrito() {
+        LecturaConsistente lectura = new LecturaConsistente(true, Duration.ofSeconds(10), 100);
+
+        // No replicada: no está en la réplica y se repite en la primaria
+        Transaccion nueva = lectura.leer("ruteo-2", () -> this.transaccionRepository.findByCodigoUnicoTransaccion("ruteo-2"));
+        assertNotNull(nueva);
+        assertEquals("RUTEO00002", nueva.getCodTransaccion());
+
+        assertEquals(EstadoTransaccion.PEN, lectura.leer("ruteo-1",
+                () -> this.transaccionRepository.findByCodigoUnicoTransaccion("ruteo-1")).getEstado());
+        lectura.registrarEscritura("RUTEO00001", "ruteo-1");
+        assertEquals(EstadoTransaccion.ACT, lectura.leer("ruteo-1",
+                () -> this.transaccionRepository.findByCodigoUnicoTransaccion("ruteo-1")).getEstado());
+    }
+
+    private EstadoTransaccion estado(String codTransaccion) {
+        return this.transaccionRepository.findById(codTransaccion).map(Transaccion::getEstado).orElse(null);
+    }
+
+    private DataSource replica() {
+        return new DriverManagerDataSource(urlReplica(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    private static void insertar(JdbcTemplate jdbcTemplate, String codTransaccion, String codigoUnico, int estado) {
+        jdbcTemplate.update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad)
+                VALUES (?, 1, 'VISA', 10.00, ?, LOCALTIMESTAMP, ?, 1, 'EC', '4111111111111111', DATE '2030-12-31')
+                """, codTransaccion, codigoUnico, estado);
+    }
+}
@@ -0,0 +1,151 @@
+package com.banquito.gateway.transacciones.banquito.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import feign.Feign;
+import feign.RequestLine;
+import feign.RetryableException;
+import feign.Retryer;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TransporteHttpConfigTest {
+
+    interface Remoto {
+        @RequestLine("GET /rapido")
+        String rapido();
+
+        @RequestLine("GET /lento")
+        String lento();
+    }
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private final Set<Integer> puertosCliente = ConcurrentHashMap.newKeySet();
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.hilosServidor = Executors.newCachedThreadPool();
+        this.servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.servidor.setExecutor(this.hilosServidor);
+        this.servidor.createContext("/rapido", exchange -> {
+            this.puertosCliente.add(exchange.getRemoteAddress().getPort());
+            byte[] cuerpo = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        this.servidor.createContext("/lento", exchange -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write("ok".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        this.servidor.start();
+        this.url = "http://127.0.0.1:" + this.servidor.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.servidor.stop(0);
+        this.hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void reutilizaLaConexionEntreLlamadasYPublicaMetricasDelPool() throws IOException {
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "feign").bindTo(meterRegistry);
+
+        try (CloseableHttpClient httpClient = this.httpClient(connectionManager)) {
+            Remoto remoto = this.cliente(httpClient);
+            for (int i = 0; i < 50; i++) {
+                assertEquals("ok", remoto.rapido());
+            }
+        }
+
+        assertEquals(1, this.puertosCliente.size());
+        assertEquals(2.0, meterRegistry.get("httpcomponents.httpclient.pool.route.max.default").gauge().value());
+        assertEquals(0.0, meterRegistry.get("httpcomponents.httpclient.pool.total.pending").gauge().value());
+    }
+
+    @Test
+    void limitePorRutaSeAplicaSoloAlHostConfigurado() {
+        PoolingHttpClientConnectionManager connectionManager = TransporteHttpConfig.crearConnectionManager(200, 20,
+                Duration.ofMinutes(5), Duration.ofSeconds(2),
+                Map.of("http://procesador.interno", 100, "https://comercios.interno:8443/api", 40));
+
+        assertEquals(100, connectionManager.getMaxPerRoute(TransporteHttpConfig.ruta("http://procesador.interno:80")));
+        assertEquals(40, connectionManager.getMaxPerRoute(TransporteHttpConfig.ruta("https://comercios.interno:8443")));
+        assertEquals(20, connectionManager.getMaxPerRoute(TransporteHttpConfig.ruta("http://otro.interno")));
+        connectionManager.close();
+    }
+
+    @Test
+    void poolAgotadoFallaTrasLaEsperaDeConexion() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager(1);
+        try (CloseableHttpClient httpClient = this.httpClient(connectionManager)) {
+            Remoto remoto = this.cliente(httpClient);
+            ExecutorService hilos = Executors.newSingleThreadExecutor();
+            CountDownLatch enCurso = new CountDownLatch(1);
+            Future<String> ocupada = hilos.submit(() -> {
+                enCurso.countDown();
+                return remoto.lento();
+            });
+            enCurso.await();
+            Thread.sleep(100);
+
+            assertThrows(RetryableException.class, remoto::rapido);
+            assertEquals("ok", ocupada.get(5, TimeUnit.SECONDS));
+            hilos.shutdownNow();
+        }
+    }
+
+    private PoolingHttpClientConnectionManager connectionManager(int maximoPorRuta) {
+        return TransporteHttpConfig.crearConnectionManager(10, maximoPorRuta, Duration.ofMinutes(5),
+                Duration.ofSeconds(2), Map.of());
+    }
+
+    private CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+        return TransporteHttpConfig.crearHttpClient(connectionManager, Duration.ofSeconds(30), Duration.ofSeconds(20),
+                Duration.ofMillis(100));
+    }
+
+    private Remoto cliente(CloseableHttpClient httpClient) {
+        return Feign.builder()
+                .client(new ApacheHttp5Client(httpClient))
+                .retryer(Retryer.NEVER_RETRY)
+                .target(Remoto.class, this.url);
+    }
+}
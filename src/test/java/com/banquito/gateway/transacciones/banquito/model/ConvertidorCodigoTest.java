@@ -0,0 +1,52 @@
+package com.banquito.gateway.transacciones.banquito.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+class ConvertidorCodigoTest {
+
+    @Test
+    void codigosCoincidenConLaMigracion() {
+        EstadoTransaccionConverter estados = new EstadoTransaccionConverter();
+        assertEquals((short) 1, estados.convertToDatabaseColumn(EstadoTransaccion.PEN));
+        assertEquals((short) 2, estados.convertToDatabaseColumn(EstadoTransaccion.ACT));
+        assertEquals((short) 3, estados.convertToDatabaseColumn(EstadoTransaccion.REJ));
+        assertEquals((short) 4, estados.convertToDatabaseColumn(EstadoTransaccion.ERR));
+
+        TipoTransaccionConverter tipos = new TipoTransaccionConverter();
+        assertEquals((short) 1, tipos.convertToDatabaseColumn(TipoTransaccion.PAG));
+        assertEquals((short) 2, tipos.convertToDatabaseColumn(TipoTransaccion.RET));
+        assertEquals((short) 3, tipos.convertToDatabaseColumn(TipoTransaccion.TRA));
+        assertEquals((short) 4, tipos.convertToDatabaseColumn(TipoTransaccion.DEV));
+
+        MonedaConverter monedas = new MonedaConverter();
+        assertEquals((short) 1, monedas.convertToDatabaseColumn(Moneda.USD));
+        assertEquals((short) 2, monedas.convertToDatabaseColumn(Moneda.EUR));
+    }
+
+    @Test
+    void lecturaDevuelveLaConstanteYRechazaCodigosDesconocidos() {
+        EstadoTransaccionConverter estados = new EstadoTransaccionConverter();
+        for (EstadoTransaccion estado : EstadoTransaccion.values()) {
+            assertEquals(estado, estados.convertToEntityAttribute(estados.convertToDatabaseColumn(estado)));
+        }
+        assertNull(estados.convertToEntityAttribute(null));
+        assertThrows(IllegalStateException.class, () -> estados.convertToEntityAttribute((short) 9));
+        assertThrows(IllegalStateException.class, () -> estados.convertToEntityAttribute((short) 0));
+    }
+
+    @Test
+    void valoresDeLaApiSeConviertenPorNombre() {
+        assertEquals(TipoTransaccion.TRA, TipoTransaccion.desde("TRA"));
+        assertNull(TipoTransaccion.buscar("XYZ"));
+        assertNull(Moneda.desde(null));
+        TransaccionInvalidaException error = assertThrows(TransaccionInvalidaException.class,
+                () -> Moneda.desde("GBP"));
+        assertEquals("Error en la transacción: Moneda no soportada: GBP", error.getMessage());
+    }
+}
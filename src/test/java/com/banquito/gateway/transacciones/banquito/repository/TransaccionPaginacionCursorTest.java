@@ -0,0 +1,112 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.CursorTransaccion;
+
+// Recorre GET /transacciones?paginacion=cursor página por página sobre un Postgres real, pasando cada vez por el token
+// codificado como lo hace el controlador, con muchas filas de la misma fecha. Se omite si no hay Docker disponible.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class TransaccionPaginacionCursorTest {
+
+    private static final int FILAS = 257;
+    private static final int TAMANIO_PAGINA = 10;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void poblar() {
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        // Siete fechas distintas (una con microsegundos) para 257 filas; los códigos no siguen el orden de inserción
+        this.jdbcTemplate.update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad, diferido)
+                SELECT lpad((n * 7919 % 1000003)::text, 10, '0'), 1, 'VISA', 10.00, md5(n::text),
+                       TIMESTAMP '2024-03-01' + (n % 7 || ' hours')::interval
+                               + CASE WHEN n % 7 = 3 THEN INTERVAL '0.123456 seconds' ELSE INTERVAL '0' END,
+                       CASE WHEN n % 5 = 0 THEN 3 ELSE 2 END, 1, 'EC', '4111111111111111', DATE '2030-12-31', false
+                FROM generate_series(1, ?) AS n
+                """, FILAS);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Sort.Direction.class)
+    void recorreTodasLasFilasSinDuplicadosNiHuecos(Sort.Direction direccion) {
+        List<String> recorridas = this.recorrer(Specification.where(null), direccion);
+
+        assertEquals(this.esperadas("", direccion), recorridas);
+        assertEquals(FILAS, new HashSet<>(recorridas).size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Sort.Direction.class)
+    void conFiltrosElCursorSoloRecorreLasFilasFiltradas(Sort.Direction direccion) {
+        FiltroTransaccion filtro = new FiltroTransaccion("REJ", null, null, null, null, null, null, null, null, null,
+                null);
+
+        List<String> recorridas = this.recorrer(TransaccionSpecification.conFiltros(filtro), direccion);
+
+        assertEquals(this.esperadas("WHERE estado = 3", direccion), recorridas);
+    }
+
+    private List<String> recorrer(Specification<Transaccion> filtros, Sort.Direction direccion) {
+        List<String> recorridas = new ArrayList<>();
+        String token = null;
+        int paginas = 0;
+        do {
+            ScrollPosition posicion = token != null ? CursorTransaccion.decodificar(token).posicion()
+                    : ScrollPosition.keyset();
+            Window<Transaccion> ventana = this.transaccionRepository.findBy(filtros, consulta -> consulta
+                    .sortBy(CursorTransaccion.orden(direccion))
+                    .limit(TAMANIO_PAGINA)
+                    .scroll(posicion));
+            ventana.forEach(transaccion -> recorridas.add(transaccion.getCodTransaccion()));
+            token = ventana.hasNext() && !ventana.isEmpty()
+                    ? CursorTransaccion.desde(ventana.getContent().get(ventana.size() - 1), direccion).codificar()
+                    : null;
+            assertTrue(++paginas <= FILAS / TAMANIO_PAGINA + 1, "El recorrido no termina");
+        } while (token != null);
+        return recorridas;
+    }
+
+    private List<String> esperadas(String condicion, Sort.Direction direccion) {
+        return this.jdbcTemplate.queryForList("SELECT cod_transaccion FROM gtw_transaccion " + condicion
+                + " ORDER BY fecha " + direccion + ", cod_transaccion " + direccion, String.class);
+    }
+}
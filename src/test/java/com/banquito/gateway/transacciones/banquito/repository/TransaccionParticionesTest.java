@@ -0,0 +1,178 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.service.MantenimientoParticionesService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Particionado de gtw_transaccion (V6) y su mantenimiento sobre un Postgres real. Sin la transacción de prueba:
+// el DDL del mantenimiento se confirma igual que en producción. Se omite si no hay Docker disponible.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class TransaccionParticionesTest {
+
+    private static final Pattern PARTICION = Pattern.compile("gtw_transaccion_(p\\d{8}|default)");
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+    private MantenimientoParticionesService mantenimiento;
+
+    @BeforeEach
+    void preparar() {
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.mantenimiento = new MantenimientoParticionesService(this.jdbcTemplate, this.transactionManager,
+                new SimpleMeterRegistry(), true, "mensual", 3, Period.ofMonths(24), "archivar", "gtw_archivo",
+                Duration.ofSeconds(5));
+    }
+
+    @Test
+    void consultasAcotadasPorFechaSoloLeenLasParticionesDelRango() {
+        this.mantenimiento.mantener(LocalDate.of(2024, 1, 10));
+        this.insertar("2024-01-01", 120_000);
+        this.jdbcTemplate.execute("ANALYZE gtw_transaccion");
+
+        String porFecha = this.plan("EXPLAIN SELECT * FROM gtw_transaccion "
+                + "WHERE fecha BETWEEN '2024-02-01' AND '2024-02-02' ORDER BY fecha DESC");
+        assertParticiones(porFecha, "gtw_transaccion_p20240201");
+
+        String porMarcaYFecha = this.plan("EXPLAIN SELECT * FROM gtw_transaccion "
+                + "WHERE marca = 'AMEX' AND fecha BETWEEN '2024-02-10' AND '2024-03-05' ORDER BY fecha DESC");
+        assertParticiones(porMarcaYFecha, "gtw_transaccion_p20240201", "gtw_transaccion_p20240301");
+
+        // Con parámetros enlazados (como envía Hibernate) y plan genérico la poda ocurre al iniciar la ejecución
+        String generico = this.jdbcTemplate.execute((Connection conexion) -> {
+            try (Statement sentencia = conexion.createStatement()) {
+                sentencia.execute("SET plan_cache_mode = force_generic_plan");
+                sentencia.execute("PREPARE por_fecha(timestamp, timestamp) AS "
+                        + "SELECT * FROM gtw_transaccion WHERE fecha BETWEEN $1 AND $2");
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet filas = sentencia.executeQuery(
+                        "EXPLAIN (ANALYZE, COSTS OFF) EXECUTE por_fecha('2024-02-01', '2024-02-02')")) {
+                    while (filas.next()) {
+                        plan.append(filas.getString(1)).append('\n');
+                    }
+                }
+                sentencia.execute("DEALLOCATE por_fecha");
+                sentencia.execute("RESET plan_cache_mode");
+                return plan.toString();
+            }
+        });
+        assertTrue(generico.contains("Subplans Removed"), generico);
+        assertParticiones(generico, "gtw_transaccion_p20240201");
+    }
+
+    @Test
+    void mantenimientoCreaParticionesFuturasYArchivaLasVencidas() {
+        this.mantenimiento.mantener(LocalDate.of(2020, 1, 15));
+        this.insertar("2020-01-01", 100);
+        assertTrue(this.particiones().containsAll(List.of("gtw_transaccion_p20200101", "gtw_transaccion_p20200201",
+                "gtw_transaccion_p20200301", "gtw_transaccion_p20200401")));
+
+        // Retención de 24 meses: a 2022-02-20 solo vence enero de 2020
+        this.mantenimiento.mantener(LocalDate.of(2022, 2, 20));
+
+        List<String> particiones = this.particiones();
+        assertFalse(particiones.contains("gtw_transaccion_p20200101"));
+        assertTrue(particiones.containsAll(List.of("gtw_transaccion_p20200201", "gtw_transaccion_p20220501")));
+        assertEquals(100, this.jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM gtw_archivo.gtw_transaccion_p20200101", Integer.class));
+        assertEquals(0, this.jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM gtw_transaccion_clave WHERE codigo_unico_transaccion = md5('2020-01-01' || 7)",
+                Integer.class));
+
+        // Una segunda ejecución no repite cambios
+        this.mantenimiento.mantener(LocalDate.of(2022, 2, 20));
+        assertEquals(particiones.size(), this.particiones().size());
+    }
+
+    @Test
+    void codigoUnicoEsUnicoEntreParticiones() {
+        this.mantenimiento.mantener(LocalDate.of(2023, 5, 1));
+        this.insertar("2023-05-01", 1);
+
+        // Mismo codigo_unico_transaccion, otro mes: la fila cae en otra partición
+        assertThrows(DataIntegrityViolationException.class, () -> this.jdbcTemplate.update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad)
+                VALUES ('DUPLICADO1', 1, 'VISA', 10, md5('2023-05-01' || 1), TIMESTAMP '2023-07-01', 1, 1, 'EC',
+                        '4111111111111111', DATE '2030-12-31')
+                """));
+    }
+
+    private void insertar(String desde, int filas) {
+        this.jdbcTemplate.update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad)
+                SELECT to_char(?::date, 'YYMM') || lpad(n::text, 6, '0'),
+                       1 + n % 4,
+                       (ARRAY['VISA','MAST','AMEX','DINE'])[1 + n % 4],
+                       (n % 10000) / 10.0,
+                       md5(?::text || n),
+                       ?::date + (n || ' minutes')::interval,
+                       2, 1, 'EC', lpad((n % 50000)::text, 16, '4'), DATE '2030-12-31'
+                FROM generate_series(1, ?) AS n
+                """, desde, desde, desde, filas);
+    }
+
+    private List<String> particiones() {
+        return this.jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'gtw_transaccion'::regclass
+                """, String.class);
+    }
+
+    private String plan(String consulta) {
+        return String.join("\n", this.jdbcTemplate.queryForList(consulta, String.class));
+    }
+
+    private static void assertParticiones(String plan, String... particiones) {
+        Set<String> leidas = PARTICION.matcher(plan).results()
+                .map(MatchResult::group)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(particiones), leidas, plan);
+    }
+}
@@ -0,0 +1,116 @@
+package com.banquito.gateway.transacciones.banquito.repository;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.service.MantenimientoParticionesService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica sobre un Postgres real, con datos de distribución realista y estadísticas al día, que el planificador elige
+// para cada consulta de TransaccionRepository su índice de Flyway (en las particiones, las copias del índice definido
+// en gtw_transaccion) y nunca un recorrido secuencial. Se omite si no hay Docker disponible.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class TransaccionRepositoryIndicesTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void poblar() {
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        // Particiones mensuales de enero a junio de 2024 para los datos de prueba
+        new MantenimientoParticionesService(this.jdbcTemplate, this.transactionManager, new SimpleMeterRegistry(),
+                true, "mensual", 5, Period.ZERO, "archivar", "gtw_archivo", Duration.ofSeconds(5))
+                .mantener(LocalDate.of(2024, 1, 1));
+        // Distribuciones de producción: pocos pendientes, VISA y MASTERCARD dominantes, casi todo en USD y EC, y
+        // tipos distintos de PAG poco frecuentes. Las consultas se planifican con la configuración por defecto, así
+        // que el índice esperado debe ser el que el planificador elige por costo
+        this.jdbcTemplate.update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad, swift_banco, cuenta_iban, diferido)
+                SELECT lpad(n::text, 10, '0'),
+                       CASE WHEN n % 100 < 90 THEN 1 WHEN n % 100 < 95 THEN 2 WHEN n % 100 < 98 THEN 3 ELSE 4 END,
+                       CASE WHEN n % 100 < 55 THEN 'VISA' WHEN n % 100 < 90 THEN 'MAST'
+                            WHEN n % 100 < 97 THEN 'AMEX' ELSE 'DINE' END,
+                       (n * 7919 % 100000) / 100.0,
+                       md5(n::text),
+                       TIMESTAMP '2024-01-01' + (n || ' minutes')::interval,
+                       CASE WHEN n % 200 = 0 THEN 1 WHEN n % 200 < 10 THEN 4 WHEN n % 200 < 20 THEN 3 ELSE 2 END,
+                       CASE WHEN n % 100 < 97 THEN 1 ELSE 2 END,
+                       CASE WHEN n % 50 < 40 THEN 'EC' WHEN n % 50 < 44 THEN 'CO' WHEN n % 50 < 47 THEN 'PE'
+                            WHEN n % 50 < 49 THEN 'US' ELSE 'ES' END,
+                       lpad((n * 31 % 50000)::text, 16, '4'),
+                       DATE '2030-12-31',
+                       CASE WHEN n % 3 = 0 THEN 'SWIFT' || (n % 500) END,
+                       CASE WHEN n % 3 = 0 THEN 'EC' || lpad((n % 20000)::text, 20, '0') END,
+                       false
+                FROM generate_series(1, 200000) AS n
+                """);
+        this.jdbcTemplate.execute("ANALYZE gtw_transaccion");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', quoteCharacter = '"', value = {
+        "findByCodigoUnicoTransaccion | WHERE codigo_unico_transaccion = md5('77') | ix_gtw_transaccion_codigo_unico",
+        "findByEstado | WHERE estado = 3 ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_estado_fecha",
+        "findByEstado PEN | WHERE estado = 1 ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_pendientes",
+        "findByTipoAndEstado | WHERE tipo = 3 AND estado = 4 ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_tipo_estado_fecha",
+        "findByTipo | WHERE tipo = 4 ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_fecha_cod",
+        "findByFechaBetween | WHERE fecha BETWEEN '2024-02-01' AND '2024-02-02' ORDER BY fecha DESC | ix_gtw_transaccion_fecha_cod",
+        "cursor | WHERE fecha < '2024-02-01' OR (fecha = '2024-02-01' AND cod_transaccion < '0000050000') ORDER BY fecha DESC, cod_transaccion DESC LIMIT 11 | ix_gtw_transaccion_fecha_cod",
+        "findByMarcaAndFechaBetween | WHERE marca = 'AMEX' AND fecha BETWEEN '2024-02-01' AND '2024-02-02' ORDER BY fecha DESC | ix_gtw_transaccion_marca_fecha",
+        "findByMarca | WHERE marca = 'DINE' ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_marca_fecha",
+        "findByTarjeta | WHERE tarjeta = lpad('123', 16, '4') | ix_gtw_transaccion_tarjeta_fecha",
+        "findBySwiftBanco | WHERE swift_banco = 'SWIFT42' | ix_gtw_transaccion_swift_fecha",
+        "findByCuentaIban | WHERE cuenta_iban = 'EC00000000000000000042' | ix_gtw_transaccion_iban_fecha",
+        "findByMoneda | WHERE moneda = 2 ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_moneda_fecha",
+        "findByPais | WHERE pais = 'PE' ORDER BY fecha DESC LIMIT 10 | ix_gtw_transaccion_pais_fecha",
+        "findByMontoGreaterThanEqual | WHERE monto >= 999.5 | ix_gtw_transaccion_monto",
+        "findByMontoLessThanEqual | WHERE monto <= 0.5 | ix_gtw_transaccion_monto"
+    })
+    void consultaUsaIndice(String metodo, String condicion, String indice) {
+        List<String> plan = this.jdbcTemplate.queryForList("EXPLAIN SELECT * FROM gtw_transaccion " + condicion,
+                String.class);
+        String texto = String.join("\n", plan);
+        List<String> indicesParticiones = this.jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass
+                """, String.class, indice);
+        assertTrue(indicesParticiones.stream().anyMatch(texto::contains), metodo + " no usa " + indice + ":\n" + texto);
+        // Las particiones vacías (meses sin datos y la default) se recorren secuencialmente a costo cero
+        assertFalse(plan.stream().anyMatch(linea -> linea.contains("Seq Scan") && !linea.contains("cost=0.00..0.00 ")),
+                metodo + " recorre secuencialmente una partición con datos:\n" + texto);
+    }
+}
@@ -0,0 +1,260 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.banquito.gateway.transacciones.banquito.client.ProcesadorPagosClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.client.dto.ProcesadorPagosDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AutorizacionAsincronaServiceTest {
+
+    private TransaccionRepository transaccionRepository;
+    private ProcesadorPagosClient procesadorPagosClient;
+    private SimpleMeterRegistry meterRegistry;
+    private TransaccionService transaccionService;
+    private IdempotenciaService idempotenciaService;
+    private MetricasTransaccion metricasTransaccion;
+    private ResultadoTransacciones resultadoTransacciones;
+    private AutorizacionAsincronaService service;
+    private CountDownLatch procesador;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        ComercioCacheService comercioCacheService = mock(ComercioCacheService.class);
+        this.procesadorPagosClient = mock(ProcesadorPagosClient.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.procesador = new CountDownLatch(1);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        this.idempotenciaService = new IdempotenciaService(this.transaccionRepository, this.meterRegistry,
+                Duration.ofMinutes(2), 1000, Duration.ofSeconds(5));
+        this.metricasTransaccion = new MetricasTransaccion(this.meterRegistry);
+        this.resultadoTransacciones = new ResultadoTransacciones(this.meterRegistry, Duration.ofMinutes(1), 1000);
+        this.transaccionService = new TransaccionService(this.transaccionRepository,
+                mock(TransaccionRecurrenteService.class), this.procesadorPagosClient, comercioCacheService,
+                transactionManager,
+                new InsercionAgrupadaService(this.transaccionRepository, transactionManager, this.meterRegistry,
+                        false, 50, Duration.ofNanos(500_000), 1, 100, Duration.ofSeconds(10)),
+                this.metricasTransaccion, this.idempotenciaService,
+                new GeneradorCodigoSecuencial(0), new LecturaConsistente(false, Duration.ofSeconds(10), 1000),
+                new CacheTransacciones(this.meterRegistry, true, 1000, Duration.ofMinutes(5), Duration.ofSeconds(2),
+                        64, Ticker.systemTicker()),
+                new EstadisticasTransaccionService(mock(JdbcTemplate.class), transactionManager, this.meterRegistry,
+                        true, Duration.ZERO, Period.ofDays(7), Duration.ofDays(1), Duration.ofDays(1)),
+                new VelocidadTarjetaService(this.meterRegistry, true, List.of("PT10M/1000/"), 20, 1000, 16,
+                        Ticker.systemTicker()),
+                this.resultadoTransacciones,
+                new EventosTransaccionService(this.meterRegistry, 1000, 256, 1000, 2, Duration.ofMinutes(1)));
+
+        ComercioDTO comercio = new ComercioDTO();
+        comercio.setSwift_banco("PICHEERT");
+        comercio.setCuenta_iban("EC123456789012345678905678");
+        when(comercioCacheService.obtenerDatosComercio(anyString())).thenReturn(comercio);
+        // La "base": lo guardado se vuelve a leer en PEN al actualizar el estado
+        Map<String, Transaccion> guardadas = new ConcurrentHashMap<>();
+        when(this.transaccionRepository.save(any(Transaccion.class))).thenAnswer(inv -> {
+            Transaccion transaccion = inv.getArgument(0);
+            guardadas.put(transaccion.getCodTransaccion(), transaccion.copia());
+            return transaccion;
+        });
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion(anyString())).thenAnswer(inv -> guardadas.values()
+                .stream().filter(t -> t.getCodigoUnicoTransaccion().equals(inv.getArgument(0))).findFirst().orElse(null));
+        when(this.transaccionRepository.findByCodTransaccionAndEstado(anyString(), eq(EstadoTransaccion.PEN)))
+                .thenAnswer(inv -> {
+                    Transaccion pendiente = guardadas.get(inv.getArgument(0)).copia();
+                    pendiente.setEstado(EstadoTransaccion.PEN);
+                    return Optional.of(pendiente);
+                });
+        // Las solicitudes terminadas en 9 las rechaza el procesador, las terminadas en 8 las acepta de inmediato y el
+        // resto espera a que el test lo libere
+        when(this.procesadorPagosClient.procesarPago(any())).thenAnswer(inv -> {
+            String codigoUnico = inv.<ProcesadorPagosDTO>getArgument(0).getCodigoUnicoTransaccion();
+            if (codigoUnico.endsWith("9")) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (codigoUnico.endsWith("8")) {
+                return ResponseEntity.ok().build();
+            }
+            assertTrue(this.procesador.await(5, TimeUnit.SECONDS));
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        this.procesador.countDown();
+        if (this.service != null) {
+            this.service.detener();
+        }
+    }
+
+    @Test
+    void respondeEnPendienteYEntregaElEstadoFinalAlConocerse() throws Exception {
+        this.service = this.crear(4, 10);
+
+        Transaccion aceptada = this.service.aceptar(crearPosDTO(0));
+        AutorizacionAsincronaService.Espera espera = this.service.esperarResultado("TRX0000000");
+
+        assertEquals(EstadoTransaccion.PEN, aceptada.getEstado());
+        assertEquals(EstadoTransaccion.PEN, espera.actual().getEstado());
+        assertFalse(espera.resultado().isDone());
+        this.procesador.countDown();
+        Transaccion resultado = espera.resultado().get(5, TimeUnit.SECONDS);
+        assertEquals(EstadoTransaccion.ACT, resultado.getEstado());
+        assertEquals(aceptada.getCodTransaccion(), resultado.getCodTransaccion());
+        assertEquals(EstadoTransaccion.ACT, this.service.estadoActual("TRX0000000").getEstado());
+    }
+
+    @Test
+    void unRechazoDelProcesadorLlegaComoEstadoFinal() throws Exception {
+        this.service = this.crear(4, 10);
+
+        this.service.aceptar(crearPosDTO(9));
+        Transaccion resultado = this.service.esperarResultado("TRX0000009").resultado().get(5, TimeUnit.SECONDS);
+
+        assertEquals(EstadoTransaccion.REJ, resultado.getEstado());
+        // Quien llega después de terminada recibe el estado final sin esperar
+        AutorizacionAsincronaService.Espera tardia = this.service.esperarResultado("TRX0000009");
+        assertTrue(tardia.resultado().isDone());
+        assertEquals(EstadoTransaccion.REJ, tardia.actual().getEstado());
+        // Un reintento responde lo mismo que el modo síncrono
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.aceptar(crearPosDTO(9)));
+        verify(this.procesadorPagosClient, times(1)).procesarPago(any());
+    }
+
+    @Test
+    void conLaColaLlenaSeProcesaEnElHiloDeLaPeticion() {
+        this.service = this.crear(1, 1);
+        this.service.aceptar(crearPosDTO(0));
+        this.service.aceptar(crearPosDTO(1));
+
+        // Sin hilo ni lugar en la cola: se autoriza aquí y se devuelve el estado final, como en el modo síncrono
+        Transaccion sincrona = this.service.aceptar(crearPosDTO(18));
+
+        assertEquals(EstadoTransaccion.ACT, sincrona.getEstado());
+        assertEquals(1, this.meterRegistry.get("gateway.asincrono.sincronas").counter().count());
+    }
+
+    @Test
+    void unaSolicitudInvalidaFallaSinRegistrarseYPuedeReintentarse() {
+        this.service = this.crear(4, 10);
+        TransaccionPosDTO invalida = crearPosDTO(0);
+        invalida.setMonto(BigDecimal.ZERO);
+
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.aceptar(invalida));
+
+        verify(this.transaccionRepository, never()).save(any(Transaccion.class));
+        assertEquals(EstadoTransaccion.PEN, this.service.aceptar(crearPosDTO(0)).getEstado());
+    }
+
+    @Test
+    void unReintentoEnCursoNoLlamaDeNuevoAlProcesador() throws Exception {
+        this.service = this.crear(4, 10);
+        Transaccion original = this.service.aceptar(crearPosDTO(0));
+
+        Transaccion reintento = this.service.aceptar(crearPosDTO(0));
+
+        assertEquals(EstadoTransaccion.PEN, reintento.getEstado());
+        assertEquals(original.getCodTransaccion(), reintento.getCodTransaccion());
+        AutorizacionAsincronaService.Espera espera = this.service.esperarResultado("TRX0000000");
+        this.procesador.countDown();
+        assertEquals(EstadoTransaccion.ACT, espera.resultado().get(5, TimeUnit.SECONDS).getEstado());
+        verify(this.procesadorPagosClient, times(1)).procesarPago(any());
+        verify(this.transaccionRepository, times(1)).save(any(Transaccion.class));
+    }
+
+    @Test
+    void sinEsperaPositivaSeUsaLaMaxima() {
+        this.service = this.crear(1, 1);
+
+        assertEquals(Duration.ofSeconds(30), this.service.limitarEspera(Duration.ZERO));
+        assertEquals(Duration.ofSeconds(30), this.service.limitarEspera(Duration.ofSeconds(-1)));
+        assertEquals(Duration.ofSeconds(30), this.service.limitarEspera(Duration.ofMinutes(10)));
+        assertEquals(Duration.ofSeconds(5), this.service.limitarEspera(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void elBarridoPasaAErrLasPendientesAbandonadas() throws Exception {
+        this.service = this.crear(4, 10);
+        // Una fila en PEN cuya autorización ya no está en curso en ningún nodo
+        Transaccion abandonada = new Transaccion("ABANDONADA");
+        abandonada.setCodigoUnicoTransaccion("TRX0000007");
+        abandonada.setFecha(LocalDateTime.now().minusMinutes(30));
+        abandonada.setEstado(EstadoTransaccion.PEN);
+        this.transaccionRepository.save(abandonada);
+        when(this.transaccionRepository.findByEstadoAndFechaBefore(eq(EstadoTransaccion.PEN), any(), any()))
+                .thenReturn(List.of(abandonada));
+        AutorizacionAsincronaService.Espera espera = this.service.esperarResultado("TRX0000007");
+
+        this.service.barrerPendientes();
+
+        assertEquals(EstadoTransaccion.ERR, espera.resultado().get(5, TimeUnit.SECONDS).getEstado());
+        assertEquals(1, this.meterRegistry.get("gateway.asincrono.abandonadas").counter().count());
+        // Solo las que llevan en PEN más que el máximo configurado
+        verify(this.transaccionRepository).findByEstadoAndFechaBefore(eq(EstadoTransaccion.PEN),
+                argThat(limite -> limite.isBefore(LocalDateTime.now().minusMinutes(4))), any());
+        verify(this.procesadorPagosClient, never()).procesarPago(any());
+    }
+
+    private AutorizacionAsincronaService crear(int hilos, int capacidadCola) {
+        return new AutorizacionAsincronaService(this.transaccionService, this.idempotenciaService,
+                this.metricasTransaccion, this.resultadoTransacciones, this.meterRegistry, hilos, capacidadCola,
+                Duration.ofSeconds(30), Duration.ofMinutes(5), 500);
+    }
+
+    private static TransaccionPosDTO crearPosDTO(int indice) {
+        TransaccionPosDTO posDTO = new TransaccionPosDTO();
+        posDTO.setCodigoPOS("POS123456");
+        posDTO.setCodigoComercio("COM789012");
+        posDTO.setTipo("PAG");
+        posDTO.setMarca("VISA");
+        posDTO.setModalidad("SIM");
+        posDTO.setMonto(new BigDecimal("150.50"));
+        posDTO.setMoneda("USD");
+        posDTO.setPais("EC");
+        posDTO.setNumeroTarjeta("1234567812345678");
+        posDTO.setNombreTitular("Juan Pérez");
+        posDTO.setCodigoSeguridad(123);
+        posDTO.setFechaExpiracion("12/99");
+        posDTO.setCodigoUnicoTransaccion(String.format("TRX%07d", indice));
+        return posDTO;
+    }
+}
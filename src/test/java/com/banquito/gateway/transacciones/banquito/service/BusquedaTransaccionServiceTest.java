@@ -0,0 +1,116 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.FiltroTransaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+
+class BusquedaTransaccionServiceTest {
+
+    // Orden esperado de los predicados, del más selectivo al menos selectivo
+    private static final List<String> CAMPOS = List.of("cuentaIban", "swiftBanco", "tipo", "estado", "marca", "pais",
+            "moneda", "fechaInicio", "fechaFin", "montoMinimo", "montoMaximo");
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private BusquedaTransaccionService service;
+    private Root<Transaccion> root;
+    private CriteriaQuery<?> query;
+    private CriteriaBuilder cb;
+    private final List<String> consultados = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        this.service = new BusquedaTransaccionService(mock(TransaccionRepository.class), Duration.ofDays(31));
+        this.root = mock(Root.class);
+        this.query = mock(CriteriaQuery.class);
+        this.cb = mock(CriteriaBuilder.class);
+        Path<Object> path = mock(Path.class);
+        doAnswer(inv -> {
+            this.consultados.add(inv.getArgument(0));
+            return path;
+        }).when(this.root).get(anyString());
+    }
+
+    @Test
+    void todasLasCombinacionesAplicanSusFiltrosEnOrdenDeSelectividadORechazanElRecorridoCompleto() {
+        for (int combinacion = 0; combinacion < 1 << CAMPOS.size(); combinacion++) {
+            FiltroTransaccion filtro = filtro(combinacion);
+            boolean acotada = activo(combinacion, "cuentaIban") || activo(combinacion, "swiftBanco")
+                    || (activo(combinacion, "fechaInicio") && activo(combinacion, "fechaFin"));
+
+            if (!acotada) {
+                assertThrows(TransaccionInvalidaException.class, () -> this.service.construir(filtro),
+                        "combinación " + combinacion);
+                continue;
+            }
+            this.consultados.clear();
+            this.service.construir(filtro).toPredicate(this.root, this.query, this.cb);
+
+            List<String> esperados = new ArrayList<>();
+            for (String campo : CAMPOS) {
+                if (activo(combinacion, campo)) {
+                    esperados.add(campo.startsWith("fecha") ? "fecha" : campo.startsWith("monto") ? "monto" : campo);
+                }
+            }
+            assertEquals(esperados, this.consultados, "combinación " + combinacion);
+        }
+    }
+
+    @Test
+    void estadoPendienteNoRequiereRangoDeFechas() {
+        this.service.construir(new FiltroTransaccion("PEN", null, "VISA", null, null, null, null, null, null, null, null))
+                .toPredicate(this.root, this.query, this.cb);
+
+        assertEquals(List.of("estado", "marca"), this.consultados);
+    }
+
+    @Test
+    void rechazaRangosInvalidos() {
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.construir(new FiltroTransaccion(
+                null, null, null, null, null, INICIO, INICIO.plusDays(32), null, null, null, null)));
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.construir(new FiltroTransaccion(
+                null, null, null, null, null, INICIO.plusDays(1), INICIO, null, null, null, null)));
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.construir(new FiltroTransaccion(
+                null, null, null, null, null, null, null, BigDecimal.TEN, BigDecimal.ONE, "PICHECEQ", null)));
+    }
+
+    private static FiltroTransaccion filtro(int combinacion) {
+        return new FiltroTransaccion(
+                activo(combinacion, "estado") ? "ACT" : null,
+                activo(combinacion, "tipo") ? "PAG" : null,
+                activo(combinacion, "marca") ? "VISA" : null,
+                activo(combinacion, "moneda") ? "USD" : null,
+                activo(combinacion, "pais") ? "EC" : null,
+                activo(combinacion, "fechaInicio") ? INICIO : null,
+                activo(combinacion, "fechaFin") ? INICIO.plusDays(7) : null,
+                activo(combinacion, "montoMinimo") ? BigDecimal.ONE : null,
+                activo(combinacion, "montoMaximo") ? BigDecimal.TEN : null,
+                activo(combinacion, "swiftBanco") ? "PICHECEQ" : null,
+                activo(combinacion, "cuentaIban") ? "EC123456789012345678905678" : null);
+    }
+
+    private static boolean activo(int combinacion, String campo) {
+        return (combinacion & (1 << CAMPOS.indexOf(campo))) != 0;
+    }
+}
@@ -0,0 +1,215 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CacheTransaccionesTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheTransacciones cache;
+    private AtomicInteger cargas;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.cache = new CacheTransacciones(this.meterRegistry, true, 1000, Duration.ofMinutes(5),
+                Duration.ofSeconds(2), 64, Ticker.systemTicker());
+        this.cargas = new AtomicInteger();
+    }
+
+    @Test
+    void escrituraConfirmadaSeSirvePorAmbasClavesSinIrALaBase() {
+        this.cache.escribir(transaccion(EstadoTransaccion.ACT, 1));
+
+        Transaccion porCodigo = this.cache.buscarPorCodigo("TRX0000001", this.base(null));
+        Transaccion porCodigoUnico = this.cache.buscarPorCodigoUnico("cu-1", this.base(null));
+
+        assertEquals(EstadoTransaccion.ACT, porCodigo.getEstado());
+        assertEquals(EstadoTransaccion.ACT, porCodigoUnico.getEstado());
+        assertNotSame(porCodigo, porCodigoUnico);
+        assertEquals(0, this.cargas.get());
+
+        // Las instantáneas se entregan copiadas: modificar la devuelta no altera la guardada
+        porCodigo.setEstado(EstadoTransaccion.ERR);
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001", this.base(null)).getEstado());
+        assertEquals(3.0, this.meterRegistry.get("cache.gets").tags("cache", "transacciones", "result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void laInstantaneaSePublicaAlConfirmarseYSeDescartaSiSeRevierte() {
+        List<TransactionSynchronization> confirmada = enTransaccion(
+                () -> this.cache.escribir(transaccion(EstadoTransaccion.ACT, 1)));
+        assertEquals(EstadoTransaccion.PEN,
+                this.cache.buscarPorCodigo("TRX0000001", this.base(transaccion(EstadoTransaccion.PEN, 1))).getEstado());
+        completar(confirmada, TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001", this.base(null)).getEstado());
+        assertEquals(1, this.cargas.get());
+
+        completar(enTransaccion(() -> this.cache.escribir(transaccion(EstadoTransaccion.REJ, 1))),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001",
+                this.base(transaccion(EstadoTransaccion.ACT, 1))).getEstado());
+        assertEquals(2, this.cargas.get());
+    }
+
+    @Test
+    void unaInstantaneaPendienteVenceEnSegundosYUnaFinalNo() {
+        AtomicLong nanos = new AtomicLong();
+        CacheTransacciones conReloj = new CacheTransacciones(this.meterRegistry, true, 1000, Duration.ofMinutes(5),
+                Duration.ofSeconds(2), 64, nanos::get);
+        // PEN leída de la base; otro nodo la pasa luego a ACT
+        conReloj.buscarPorCodigo("TRX0000001", this.base(transaccion(EstadoTransaccion.PEN, 1)));
+        conReloj.buscarPorCodigo("TRX0000002", this.base(transaccion(EstadoTransaccion.ACT, 2)));
+        assertEquals(EstadoTransaccion.PEN, conReloj.buscarPorCodigo("TRX0000001", this.base(null)).getEstado());
+        assertEquals(2, this.cargas.get());
+
+        nanos.addAndGet(Duration.ofSeconds(3).toNanos());
+
+        assertEquals(EstadoTransaccion.ACT, conReloj.buscarPorCodigoUnico("cu-1",
+                this.base(transaccion(EstadoTransaccion.ACT, 1))).getEstado());
+        assertEquals(EstadoTransaccion.ACT, conReloj.buscarPorCodigo("TRX0000002", this.base(null)).getEstado());
+        assertEquals(3, this.cargas.get());
+    }
+
+    @Test
+    void lecturaSolapadaConUnaEscrituraNoGuardaLoQueLeyo() {
+        // La escritura empieza y se confirma mientras el lector consulta la base: lo leído ya es antiguo
+        Transaccion leida = this.cache.buscarPorCodigoUnico("cu-1", () -> {
+            Transaccion antigua = transaccion(EstadoTransaccion.PEN, 1);
+            this.cache.escribir(transaccion(EstadoTransaccion.ACT, 1));
+            return antigua;
+        });
+        assertEquals(EstadoTransaccion.PEN, leida.getEstado());
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigoUnico("cu-1", this.base(null)).getEstado());
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001", this.base(null)).getEstado());
+    }
+
+    @Test
+    void escriturasSolapadasNoPublicanNinguna() {
+        List<TransactionSynchronization> sincronizaciones = enTransaccion(() -> {
+            this.cache.escribir(transaccion(EstadoTransaccion.ACT, 1));
+            this.cache.escribir(transaccion(EstadoTransaccion.REJ, 1));
+        });
+        // Se confirman en orden inverso al de inicio: ninguna sabe si fue la última
+        completar(List.of(sincronizaciones.get(1)), TransactionSynchronization.STATUS_COMMITTED);
+        completar(List.of(sincronizaciones.get(0)), TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001",
+                this.base(transaccion(EstadoTransaccion.ACT, 1))).getEstado());
+        assertEquals(1, this.cargas.get());
+        assertEquals(EstadoTransaccion.ACT, this.cache.buscarPorCodigo("TRX0000001", this.base(null)).getEstado());
+    }
+
+    @Test
+    void ningunLectorVeUnEstadoAnteriorAlUltimoConfirmado() throws Exception {
+        // Una "base" con la última versión confirmada; el escritor marca la escritura antes de confirmarla,
+        // como en una transacción real, y los lectores cargan de la base con demoras variables
+        AtomicReference<Transaccion> base = new AtomicReference<>(version(0));
+        AtomicLong confirmada = new AtomicLong();
+        AtomicBoolean terminado = new AtomicBoolean();
+        int versiones = 20_000;
+
+        List<Future<Long>> lectores = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(5)) {
+            for (int i = 0; i < 4; i++) {
+                lectores.add(hilos.submit(() -> {
+                    long lecturas = 0;
+                    while (!terminado.get()) {
+                        long minima = confirmada.get();
+                        Transaccion leida = this.cache.buscarPorCodigo("TRX0000001", () -> {
+                            Transaccion fila = base.get();
+                            Thread.yield();
+                            return fila.copia();
+                        });
+                        if (leida.getMonto().longValue() < minima) {
+                            fail("Versión " + leida.getMonto() + " leída tras confirmarse la " + minima);
+                        }
+                        lecturas++;
+                    }
+                    return lecturas;
+                }));
+            }
+            Future<?> escritor = hilos.submit(() -> {
+                for (int v = 1; v <= versiones; v++) {
+                    Transaccion nueva = version(v);
+                    List<TransactionSynchronization> sincronizaciones = enTransaccion(() -> this.cache.escribir(nueva));
+                    base.set(nueva);
+                    completar(sincronizaciones, TransactionSynchronization.STATUS_COMMITTED);
+                    confirmada.set(v);
+                }
+                terminado.set(true);
+            });
+            escritor.get(60, TimeUnit.SECONDS);
+            long lecturas = 0;
+            for (Future<Long> lector : lectores) {
+                lecturas += lector.get(5, TimeUnit.SECONDS);
+            }
+            assertTrue(lecturas > 0);
+        }
+        assertEquals(versiones, this.cache.buscarPorCodigo("TRX0000001", () -> version(-1)).getMonto().longValue());
+    }
+
+    private Supplier<Transaccion> base(Transaccion fila) {
+        return () -> {
+            this.cargas.incrementAndGet();
+            return fila;
+        };
+    }
+
+    private static Transaccion transaccion(EstadoTransaccion estado, int numero) {
+        Transaccion transaccion = new Transaccion("TRX000000" + numero);
+        transaccion.setCodigoUnicoTransaccion("cu-" + numero);
+        transaccion.setEstado(estado);
+        transaccion.setMonto(BigDecimal.TEN);
+        return transaccion;
+    }
+
+    private static Transaccion version(long version) {
+        Transaccion transaccion = transaccion(EstadoTransaccion.ACT, 1);
+        transaccion.setMonto(BigDecimal.valueOf(version));
+        return transaccion;
+    }
+
+    // Ejecuta las escrituras como dentro de una transacción y devuelve las sincronizaciones sin completarlas
+    private static List<TransactionSynchronization> enTransaccion(Runnable escrituras) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            escrituras.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void completar(List<TransactionSynchronization> sincronizaciones, int estado) {
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+}
@@ -0,0 +1,123 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.client.dto.ProcesadorPagosDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapper;
+import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapperImpl;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+/**
+ * Trabajo de CPU por petición en el camino de autorización de {@link TransaccionService}. Está en el paquete del
+ * servicio para medir sus pasos package-private. Se ejecuta con el perfil {@code benchmark}, que añade el profiler de
+ * GC para reportar también la tasa de asignación (gc.alloc.rate.norm):
+ *
+ * <pre>
+ * mvn -Pbenchmark test
+ * mvn -Pbenchmark test -Djmh.incluir=CaminoAutorizacionBenchmark.validarTransaccion
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaminoAutorizacionBenchmark {
+
+    private final TransaccionMapper mapper = new TransaccionMapperImpl();
+    private final GeneradorCodigoTransaccion generadorCodigo = new GeneradorCodigoSecuencial(0);
+    private TransaccionPosDTO posDTO;
+    private ComercioDTO comercioDTO;
+    private Transaccion transaccion;
+
+    @Setup
+    public void setUp() {
+        this.posDTO = new TransaccionPosDTO();
+        this.posDTO.setCodigoPOS("POS0000001");
+        this.posDTO.setCodigoComercio("COM0000001");
+        this.posDTO.setTipo("PAG");
+        this.posDTO.setMarca("VISA");
+        this.posDTO.setModalidad("SIM");
+        this.posDTO.setMonto(new BigDecimal("150.50"));
+        this.posDTO.setMoneda("USD");
+        this.posDTO.setPais("EC");
+        this.posDTO.setNumeroTarjeta("4111111111111111");
+        this.posDTO.setNombreTitular("Juan Perez");
+        this.posDTO.setCodigoSeguridad(123);
+        this.posDTO.setFechaExpiracion("12/28");
+        this.posDTO.setCodigoUnicoTransaccion("7f3c2a9e-1b4d-4e8a-9c6f-2d5b8a1e4f70");
+
+        this.comercioDTO = new ComercioDTO();
+        this.comercioDTO.setSwift_banco("PICHECEQ");
+        this.comercioDTO.setCuenta_iban("EC123456789012345678905678");
+
+        this.transaccion = new Transaccion("a1b2c3d4e5");
+        this.transaccion.setTipo(TipoTransaccion.PAG);
+        this.transaccion.setMarca("VISA");
+        this.transaccion.setMonto(new BigDecimal("150.50"));
+        this.transaccion.setCodigoUnicoTransaccion(this.posDTO.getCodigoUnicoTransaccion());
+        this.transaccion.setFecha(LocalDateTime.now());
+        this.transaccion.setEstado(EstadoTransaccion.PEN);
+        this.transaccion.setMoneda(Moneda.USD);
+        this.transaccion.setPais("EC");
+        this.transaccion.setTarjeta("4111111111111111");
+        this.transaccion.setFechaCaducidad(LocalDate.now().plusYears(2));
+        this.transaccion.setSwiftBanco("PICHECEQ");
+        this.transaccion.setCuentaIban("EC123456789012345678905678");
+        this.transaccion.setTransaccionEncriptada(TransaccionService.formatearDatosAdicionales(this.posDTO));
+        this.transaccion.setDiferido(false);
+    }
+
+    @Benchmark
+    public void validarTransaccion(Blackhole blackhole) {
+        TransaccionService.validarTransaccion(this.transaccion);
+        blackhole.consume(this.transaccion);
+    }
+
+    @Benchmark
+    public String generarCodigoTransaccion() {
+        return this.generadorCodigo.generar();
+    }
+
+    @Benchmark
+    public LocalDate parsearFechaCaducidad() {
+        return TransaccionService.parsearFechaCaducidad(this.posDTO.getFechaExpiracion());
+    }
+
+    @Benchmark
+    public String formatearDatosAdicionales() {
+        return TransaccionService.formatearDatosAdicionales(this.posDTO);
+    }
+
+    @Benchmark
+    public ProcesadorPagosDTO construirProcesadorPagosDTO() {
+        return new ProcesadorPagosDTO(this.posDTO, this.comercioDTO);
+    }
+
+    @Benchmark
+    public TransaccionDTO mapearTransaccionDTO() {
+        return this.mapper.toDTO(this.transaccion);
+    }
+}
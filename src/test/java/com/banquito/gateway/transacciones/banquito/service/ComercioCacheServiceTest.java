@@ -0,0 +1,110 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.client.ComercioClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ComercioCacheServiceTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private ComercioClient comercioClient;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        this.comercioClient = mock(ComercioClient.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void consultasConcurrentesDelMismoPOSProducenUnaSolaLlamada() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        ComercioDTO comercio = comercio("PICHEERT");
+        when(this.comercioClient.obtenerDatosComercio("POS1")).thenAnswer(inv -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return comercio;
+        });
+        ComercioCacheService service = crearService(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<ComercioDTO>> resultados = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            resultados.add(executor.submit(() -> service.obtenerDatosComercio("POS1")));
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        liberar.countDown();
+        for (Future<ComercioDTO> resultado : resultados) {
+            assertSame(comercio, resultado.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        verify(this.comercioClient, times(1)).obtenerDatosComercio("POS1");
+        assertEquals(15.0, this.meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void sirveDatosPreviosCuandoElServicioDeComerciosFalla() {
+        ComercioDTO comercio = comercio("PICHEERT");
+        when(this.comercioClient.obtenerDatosComercio("POS1"))
+                .thenReturn(comercio)
+                .thenThrow(new IllegalStateException("servicio caído"));
+        ComercioCacheService service = crearService(true);
+
+        service.obtenerDatosComercio("POS1");
+        avanzar(Duration.ofMinutes(31));
+
+        assertSame(comercio, service.obtenerDatosComercio("POS1"));
+        assertEquals(1.0, this.meterRegistry.get("gateway.comercios.cache.obsoletos").counter().count());
+    }
+
+    @Test
+    void propagaElErrorSiNoSePermitenDatosObsoletos() {
+        when(this.comercioClient.obtenerDatosComercio("POS1"))
+                .thenReturn(comercio("PICHEERT"))
+                .thenThrow(new IllegalStateException("servicio caído"));
+        ComercioCacheService service = crearService(false);
+
+        service.obtenerDatosComercio("POS1");
+        avanzar(Duration.ofMinutes(31));
+
+        assertThrows(IllegalStateException.class, () -> service.obtenerDatosComercio("POS1"));
+    }
+
+    private ComercioCacheService crearService(boolean servirObsoleto) {
+        return new ComercioCacheService(this.comercioClient, this.meterRegistry, 100, Duration.ofMinutes(30),
+                Duration.ofMinutes(20), servirObsoleto, Duration.ofHours(24), this.nanos::get, Runnable::run);
+    }
+
+    private void avanzar(Duration duracion) {
+        this.nanos.addAndGet(duracion.toNanos());
+    }
+
+    private ComercioDTO comercio(String swift) {
+        ComercioDTO comercio = new ComercioDTO();
+        comercio.setSwift_banco(swift);
+        comercio.setCuenta_iban("EC123456789012345678905678");
+        return comercio;
+    }
+}
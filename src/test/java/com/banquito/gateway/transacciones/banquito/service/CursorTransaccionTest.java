@@ -0,0 +1,91 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Sort;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+
+class CursorTransaccionTest {
+
+    @Test
+    void codificarYDecodificarConservanLaPosicion() {
+        for (Sort.Direction direccion : Sort.Direction.values()) {
+            CursorTransaccion cursor = new CursorTransaccion(LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_000),
+                    "0A1B2C3D4E", direccion);
+
+            String token = cursor.codificar();
+
+            assertFalse(token.contains("=") || token.contains("+") || token.contains("/"), token);
+            assertEquals(cursor, CursorTransaccion.decodificar(token));
+            assertEquals(List.of("fecha", "codTransaccion"),
+                    List.copyOf(CursorTransaccion.decodificar(token).posicion().getKeys().keySet()));
+        }
+    }
+
+    @Test
+    void unaFechaSinFraccionDeSegundoTambienSeConserva() {
+        CursorTransaccion cursor = new CursorTransaccion(LocalDateTime.of(2024, 1, 1, 0, 0), "0000000001",
+                Sort.Direction.DESC);
+
+        assertEquals(cursor, CursorTransaccion.decodificar(cursor.codificar()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "no-es-base64!", "djJ8", "eHh4eA" })
+    void rechazaCursoresQueNoSonDeEstaApi(String token) {
+        assertThrows(TransaccionInvalidaException.class, () -> CursorTransaccion.decodificar(token));
+    }
+
+    @Test
+    void rechazaUnCursorTruncado() {
+        String token = new CursorTransaccion(LocalDateTime.of(2024, 1, 1, 12, 0), "0000000001", Sort.Direction.ASC)
+                .codificar();
+
+        assertThrows(TransaccionInvalidaException.class,
+                () -> CursorTransaccion.decodificar(token.substring(0, token.length() - 4)));
+    }
+
+    @Test
+    void rechazaUnCursorAlterado() {
+        String token = new CursorTransaccion(LocalDateTime.of(2024, 1, 1, 12, 0), "0000000001", Sort.Direction.ASC)
+                .codificar();
+        String texto = texto(token);
+
+        // Otra posición, otra dirección o la versión anterior sin suma de verificación
+        assertThrows(TransaccionInvalidaException.class,
+                () -> CursorTransaccion.decodificar(token(texto.replace("0000000001", "0000000099"))));
+        assertThrows(TransaccionInvalidaException.class,
+                () -> CursorTransaccion.decodificar(token(texto.replace("|ASC|", "|DESC|"))));
+        assertThrows(TransaccionInvalidaException.class,
+                () -> CursorTransaccion.decodificar(token("v1|2024-01-01T12:00|0000000001|ASC")));
+    }
+
+    @Test
+    void rechazaCamposInvalidosAunqueLaSumaCoincida() {
+        // Cursores bien formados que no pudo emitir la API: se construyen con el mismo formato
+        assertThrows(TransaccionInvalidaException.class, () -> CursorTransaccion.decodificar(
+                new CursorTransaccion(LocalDateTime.of(2024, 1, 1, 12, 0), "", Sort.Direction.ASC).codificar()));
+        assertThrows(TransaccionInvalidaException.class, () -> CursorTransaccion.decodificar(
+                new CursorTransaccion(LocalDateTime.of(2024, 1, 1, 12, 0), "00000000001", Sort.Direction.ASC)
+                        .codificar()));
+    }
+
+    private static String texto(String token) {
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+
+    private static String token(String texto) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
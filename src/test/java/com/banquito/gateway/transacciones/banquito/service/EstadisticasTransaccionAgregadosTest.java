@@ -0,0 +1,193 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Agregación por minuto y hora, y reparto de la ventana entre ambas granularidades, sin base de datos: se
+// registran las sentencias que el servicio envía a gtw_estadistica
+class EstadisticasTransaccionAgregadosTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2024, 3, 20, 12, 30);
+    // Depuración de los agregados por minuto: la hora actual menos la retención de 7 días
+    private static final LocalDateTime HORIZONTE = LocalDateTime.of(2024, 3, 13, 12, 0);
+
+    private JdbcRegistrado jdbc;
+    private EstadisticasTransaccionService service;
+
+    @BeforeEach
+    void setUp() {
+        this.jdbc = new JdbcRegistrado();
+        this.service = new EstadisticasTransaccionService(this.jdbc, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true, Duration.ZERO, Period.ofDays(7), Duration.ofDays(1),
+                Duration.ofDays(1), Clock.fixed(AHORA.atZone(ZoneId.systemDefault()).toInstant(),
+                        ZoneId.systemDefault()));
+    }
+
+    @Test
+    void elVolcadoSumaCadaMinutoYSuHora() {
+        LocalDateTime diez = LocalDateTime.of(2024, 3, 19, 10, 0);
+        this.service.registrarCreacion(transaccion(diez.plusMinutes(5).plusSeconds(10), "10.00"));
+        Transaccion aceptada = transaccion(diez.plusMinutes(5).plusSeconds(50), "2.50");
+        this.service.registrarCreacion(aceptada);
+        this.service.registrarCreacion(transaccion(diez.plusMinutes(40), "1.00"));
+        this.service.registrarCreacion(transaccion(diez.plusMinutes(62), "4.00"));
+        aceptada.setEstado(EstadoTransaccion.ACT);
+        this.service.registrarCambioEstado(aceptada, EstadoTransaccion.PEN);
+
+        this.service.volcar();
+
+        assertEquals(2, this.jdbc.lotes.size());
+        List<Object[]> minutos = this.jdbc.lotes.get(0);
+        assertEquals(3, minutos.size());
+        assertFila(minutos.get(0), 1, diez.plusMinutes(5), 2, "12.50", 1, 1);
+        assertFila(minutos.get(1), 1, diez.plusMinutes(40), 1, "1.00", 1, 0);
+        assertFila(minutos.get(2), 1, diez.plusMinutes(62), 1, "4.00", 1, 0);
+        List<Object[]> horas = this.jdbc.lotes.get(1);
+        assertEquals(2, horas.size());
+        assertFila(horas.get(0), 2, diez, 3, "13.50", 2, 1);
+        assertFila(horas.get(1), 2, diez.plusHours(1), 1, "4.00", 1, 0);
+
+        // Lo volcado no se vuelve a sumar
+        this.service.volcar();
+        assertEquals(2, this.jdbc.lotes.size());
+    }
+
+    @Test
+    void lasHorasCompletasSalenDeLosAgregadosPorHoraYLosExtremosDeLosPorMinuto() {
+        LocalDateTime diez = LocalDateTime.of(2024, 3, 19, 10, 0);
+
+        this.service.consultar(diez.plusMinutes(17), diez.plusHours(4).plusMinutes(42), null, "total");
+
+        // Horas [11:00, 14:00) y minutos [10:17, 14:42) fuera de esas horas
+        assertArrayEquals(new Object[] { ts(diez.plusHours(1)), ts(diez.plusHours(4)), ts(diez.plusMinutes(17)),
+                ts(diez.plusHours(4).plusMinutes(42)), ts(diez.plusHours(1)), ts(diez.plusHours(4)) },
+                this.jdbc.ultimaConsulta);
+
+        // Sin horas completas toda la ventana sale de los agregados por minuto
+        this.service.consultar(diez.plusMinutes(5), diez.plusMinutes(35), null, "total");
+        assertArrayEquals(new Object[] { ts(diez.plusMinutes(5)), ts(diez.plusMinutes(5)), ts(diez.plusMinutes(5)),
+                ts(diez.plusMinutes(35)), ts(diez.plusMinutes(5)), ts(diez.plusMinutes(5)) },
+                this.jdbc.ultimaConsulta);
+    }
+
+    @Test
+    void antesDeLaRetencionSoloSeAdmitenHorasExactas() {
+        LocalDateTime antigua = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+        this.service.consultar(antigua, antigua.plusHours(4), List.of("marca"), "hora");
+        assertEquals(ts(antigua), this.jdbc.ultimaConsulta[0]);
+
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(antigua.plusMinutes(17), antigua.plusHours(4), null, "total"));
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(antigua, antigua.plusHours(3).plusMinutes(45), null, "total"));
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(antigua, antigua.plusHours(1), null, "minuto"));
+        // El límite es el inicio de los agregados por minuto que aún se conservan
+        this.service.consultar(HORIZONTE.plusMinutes(10), HORIZONTE.plusHours(2), null, "total");
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(HORIZONTE.minusMinutes(10), HORIZONTE.plusHours(2), null, "total"));
+        assertEquals(2, this.jdbc.consultas);
+    }
+
+    @Test
+    void laReconstruccionNoAdmiteRangosMayoresAlMaximo() {
+        LocalDateTime diez = LocalDateTime.of(2024, 3, 19, 10, 0);
+
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.reconstruir(diez, diez.plusDays(1).plusMinutes(1)));
+        assertEquals(0, this.jdbc.sentencias.size());
+
+        // Se redondea a horas: [10:00, 10:00 del día siguiente) cabe justo
+        this.service.reconstruir(diez.plusMinutes(17), diez.plusDays(1));
+        assertTrue(this.jdbc.sentencias.get(0).startsWith("SELECT pg_advisory_xact_lock("));
+        assertArrayEquals(new Object[] { ts(diez), ts(diez.plusDays(1)) }, this.jdbc.argumentos.get(0));
+    }
+
+    private static void assertFila(Object[] fila, int granularidad, LocalDateTime inicio, long cantidad,
+            String monto, long pendientes, long aceptadas) {
+        assertEquals((short) granularidad, fila[0]);
+        assertEquals(ts(inicio), fila[1]);
+        assertEquals(cantidad, fila[6]);
+        assertEquals(new BigDecimal(monto), fila[7]);
+        assertEquals(pendientes, fila[8]);
+        assertEquals(aceptadas, fila[9]);
+    }
+
+    private static Timestamp ts(LocalDateTime fecha) {
+        return Timestamp.valueOf(fecha);
+    }
+
+    private static Transaccion transaccion(LocalDateTime fecha, String monto) {
+        Transaccion transaccion = new Transaccion("EST0000001");
+        transaccion.setFecha(fecha);
+        transaccion.setMarca("VISA");
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setPais("EC");
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setMonto(new BigDecimal(monto));
+        transaccion.setEstado(EstadoTransaccion.PEN);
+        return transaccion;
+    }
+
+    // Registra las sentencias en lugar de ejecutarlas; las consultas no devuelven filas
+    private static final class JdbcRegistrado extends JdbcTemplate {
+
+        private final List<String> sentencias = new ArrayList<>();
+        private final List<Object[]> argumentos = new ArrayList<>();
+        private final List<List<Object[]>> lotes = new ArrayList<>();
+        private Object[] ultimaConsulta;
+        private int consultas;
+
+        @Override
+        public void execute(String sql) {
+            this.sentencias.add(sql);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            this.sentencias.add(sql);
+            this.argumentos.add(args);
+            return 0;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> filas) {
+            this.lotes.add(filas);
+            return new int[filas.size()];
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler manejador, Object... args) {
+            this.ultimaConsulta = args;
+            this.consultas++;
+        }
+    }
+}
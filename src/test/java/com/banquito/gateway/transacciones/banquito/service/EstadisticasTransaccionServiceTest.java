@@ -0,0 +1,194 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.EstadisticasTransaccionService.Estadistica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Agregados de gtw_estadistica (V7) sobre un Postgres real: lo volcado incrementalmente debe coincidir con la
+// reconstrucción desde gtw_transaccion y con un GROUP BY directo. Se omite si no hay Docker disponible.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class EstadisticasTransaccionServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 5, 10, 0);
+    private static final String[] MARCAS = { "VISA", "MAST", "AMEX" };
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+    private EstadisticasTransaccionService service;
+
+    @BeforeEach
+    void preparar() {
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.jdbcTemplate.update("DELETE FROM gtw_transaccion WHERE cod_transaccion LIKE 'EST%'");
+        this.jdbcTemplate.update("DELETE FROM gtw_estadistica");
+        new MantenimientoParticionesService(this.jdbcTemplate, this.transactionManager, new SimpleMeterRegistry(),
+                true, "mensual", 1, Period.ZERO, "archivar", "gtw_archivo", Duration.ofSeconds(5))
+                .mantener(LocalDate.of(2024, 3, 1));
+        // Las ventanas consultadas quedan dentro de la retención de los agregados por minuto
+        this.service = new EstadisticasTransaccionService(this.jdbcTemplate, this.transactionManager,
+                new SimpleMeterRegistry(), true, Duration.ZERO, Period.ofDays(7), Duration.ofDays(1),
+                Duration.ofDays(1), Clock.fixed(BASE.plusDays(1).atZone(ZoneId.systemDefault()).toInstant(),
+                        ZoneId.systemDefault()));
+    }
+
+    @Test
+    void loVolcadoIncrementalmenteCoincideConLaReconstruccion() {
+        List<Transaccion> transacciones = this.crear(600);
+        // La mitad se acepta, y una de cada diez se rechaza, en dos volcados distintos
+        for (int i = 0; i < transacciones.size(); i += 2) {
+            this.cambiarEstado(transacciones.get(i), i % 10 == 0 ? EstadoTransaccion.REJ : EstadoTransaccion.ACT);
+        }
+        this.service.volcar();
+        for (int i = 1; i < transacciones.size(); i += 6) {
+            this.cambiarEstado(transacciones.get(i), EstadoTransaccion.ERR);
+        }
+        this.service.volcar();
+
+        LocalDateTime desde = BASE.plusMinutes(17);
+        LocalDateTime hasta = BASE.plusHours(3).plusMinutes(42);
+        List<Estadistica> incremental = this.service.consultar(desde, hasta, List.of("marca", "moneda"), "hora");
+        List<Estadistica> total = this.service.consultar(desde, hasta, List.of("pais", "tipo"), "total");
+        List<Map<String, Object>> tabla = this.jdbcTemplate.queryForList(
+                "SELECT * FROM gtw_estadistica ORDER BY granularidad, inicio, marca, moneda, pais, tipo");
+
+        this.service.reconstruir(BASE, BASE.plusHours(5));
+
+        assertEquals(tabla, this.jdbcTemplate.queryForList(
+                "SELECT * FROM gtw_estadistica ORDER BY granularidad, inicio, marca, moneda, pais, tipo"));
+        assertEquals(incremental, this.service.consultar(desde, hasta, List.of("marca", "moneda"), "hora"));
+        assertEquals(total, this.service.consultar(desde, hasta, List.of("pais", "tipo"), "total"));
+    }
+
+    @Test
+    void ventanaArbitrariaCoincideConLaTablaBase() {
+        this.crear(900);
+        this.service.volcar();
+
+        LocalDateTime desde = BASE.plusMinutes(23);
+        LocalDateTime hasta = BASE.plusHours(4).plusMinutes(11);
+        List<Estadistica> porMarca = this.service.consultar(desde, hasta, List.of("marca"), "total");
+
+        List<Estadistica> esperado = new ArrayList<>();
+        this.jdbcTemplate.query("""
+                SELECT marca, count(*), sum(monto), count(*) FILTER (WHERE estado = 1)
+                FROM gtw_transaccion WHERE fecha >= ? AND fecha < ? GROUP BY marca ORDER BY marca
+                """, fila -> {
+            esperado.add(new Estadistica(null, fila.getString(1), null, null, null, fila.getLong(2),
+                    fila.getBigDecimal(3), fila.getLong(4), 0, 0, 0));
+        }, Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+        assertEquals(esperado, porMarca);
+
+        // Una ventana sin horas completas sale solo de los agregados por minuto
+        List<Estadistica> corta = this.service.consultar(BASE.plusMinutes(5), BASE.plusMinutes(35), null, "total");
+        assertEquals(this.jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM gtw_transaccion WHERE fecha >= ? AND fecha < ?", Long.class,
+                Timestamp.valueOf(BASE.plusMinutes(5)), Timestamp.valueOf(BASE.plusMinutes(35))),
+                corta.get(0).cantidad());
+    }
+
+    @Test
+    void lasConsultasIncluyenLoAunNoVolcado() {
+        this.crear(120);
+        this.service.volcar();
+        this.crear(30);
+
+        List<Estadistica> porMinuto = this.service.consultar(BASE, BASE.plusHours(1), null, "minuto");
+        long cantidad = porMinuto.stream().mapToLong(Estadistica::cantidad).sum();
+
+        assertEquals(150, cantidad);
+        assertEquals(this.jdbcTemplate.queryForObject("SELECT count(DISTINCT date_trunc('minute', fecha)) "
+                + "FROM gtw_transaccion WHERE cod_transaccion LIKE 'EST%'", Integer.class), porMinuto.size());
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(BASE, BASE.plusDays(2), null, "minuto"));
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.consultar(BASE, BASE.plusHours(1), List.of("comercio"), "total"));
+    }
+
+    private int creadas;
+
+    // Inserta las filas y las registra como lo haría TransaccionService al confirmarlas
+    private List<Transaccion> crear(int cantidad) {
+        List<Transaccion> transacciones = new ArrayList<>();
+        List<Object[]> filas = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            int n = this.creadas++;
+            Transaccion transaccion = new Transaccion(String.format("EST%07d", n));
+            transaccion.setTipo(TipoTransaccion.values()[n % 4]);
+            transaccion.setMarca(MARCAS[n % 3]);
+            transaccion.setMonto(BigDecimal.valueOf(100 + n % 97, 2).add(BigDecimal.valueOf(n % 13)));
+            transaccion.setMoneda(n % 5 == 0 ? Moneda.EUR : Moneda.USD);
+            transaccion.setPais(n % 2 == 0 ? "EC" : "CO");
+            transaccion.setCodigoUnicoTransaccion("est-" + n);
+            transaccion.setFecha(BASE.plusSeconds(n * 17L % (5 * 3600)));
+            transaccion.setEstado(EstadoTransaccion.PEN);
+            transacciones.add(transaccion);
+            filas.add(new Object[] { transaccion.getCodTransaccion(), transaccion.getTipo().getCodigo(),
+                    transaccion.getMarca(), transaccion.getMonto(), transaccion.getCodigoUnicoTransaccion(),
+                    Timestamp.valueOf(transaccion.getFecha()), transaccion.getMoneda().getCodigo(),
+                    transaccion.getPais() });
+        }
+        this.jdbcTemplate.batchUpdate("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad)
+                VALUES (?, ?, ?, ?, ?, ?, 1, ?, ?, '4111111111111111', DATE '2030-12-31')
+                """, filas);
+        transacciones.forEach(this.service::registrarCreacion);
+        return transacciones;
+    }
+
+    private void cambiarEstado(Transaccion transaccion, EstadoTransaccion nuevo) {
+        EstadoTransaccion anterior = transaccion.getEstado();
+        this.jdbcTemplate.update("UPDATE gtw_transaccion SET estado = ? WHERE cod_transaccion = ?",
+                nuevo.getCodigo(), transaccion.getCodTransaccion());
+        transaccion.setEstado(nuevo);
+        this.service.registrarCambioEstado(transaccion, anterior);
+    }
+}
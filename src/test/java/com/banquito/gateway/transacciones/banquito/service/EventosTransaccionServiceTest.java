@@ -0,0 +1,326 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.SuscripcionRechazadaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.EventosTransaccionService.Evento;
+import com.banquito.gateway.transacciones.banquito.service.EventosTransaccionService.Filtro;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EventosTransaccionServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EventosTransaccionService service;
+
+    @AfterEach
+    void tearDown() {
+        if (this.service != null) {
+            this.service.detener();
+        }
+    }
+
+    @Test
+    void milesDeSuscriptoresRecibenEnOrdenSoloLosEventosDeSuFiltro() throws Exception {
+        int comercios = 50;
+        int porComercio = 100;
+        int transacciones = 400;
+        this.service = this.crear(10_000, 1024, 20_000);
+        // Por comercio: la mitad sin más filtros, un cuarto por POS y un cuarto solo los ACT; más 10 sin filtro
+        List<Registro> registros = new ArrayList<>();
+        List<Filtro> filtros = new ArrayList<>();
+        for (int c = 0; c < comercios; c++) {
+            for (int s = 0; s < porComercio; s++) {
+                filtros.add(switch (s % 4) {
+                    case 0, 1 -> new Filtro("COM" + c, null, null);
+                    case 2 -> new Filtro("COM" + c, "POS" + c + "-" + s % 3, null);
+                    default -> new Filtro("COM" + c, null, EstadoTransaccion.ACT);
+                });
+            }
+        }
+        for (int s = 0; s < 10; s++) {
+            filtros.add(new Filtro(null, null, null));
+        }
+        // Cada transacción produce una creación (PEN) y un cambio de estado (ACT o REJ)
+        long esperados = 0;
+        for (Filtro filtro : filtros) {
+            long propios = 0;
+            for (int t = 0; t < transacciones; t++) {
+                if (coincide(filtro, t, EstadoTransaccion.PEN)) {
+                    propios++;
+                }
+                if (coincide(filtro, t, estadoFinal(t))) {
+                    propios++;
+                }
+            }
+            esperados += propios;
+        }
+        CountDownLatch entregas = new CountDownLatch((int) esperados);
+        for (Filtro filtro : filtros) {
+            Registro registro = new Registro(entregas);
+            registros.add(registro);
+            this.service.suscribir(filtro, null, registro);
+        }
+        assertEquals(filtros.size(), this.service.suscriptores());
+
+        try (ExecutorService publicadores = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < transacciones; t++) {
+                int indice = t;
+                publicadores.execute(() -> {
+                    Transaccion transaccion = crearTransaccion(indice);
+                    this.service.publicarCreacion(transaccion);
+                    transaccion.setEstado(estadoFinal(indice));
+                    this.service.publicarCambioEstado(transaccion, EstadoTransaccion.PEN);
+                });
+            }
+        }
+        assertTrue(entregas.await(60, TimeUnit.SECONDS), "faltan " + entregas.getCount() + " de " + esperados);
+
+        for (int i = 0; i < filtros.size(); i++) {
+            Filtro filtro = filtros.get(i);
+            Registro registro = registros.get(i);
+            long anterior = 0;
+            for (Evento evento : registro.eventos) {
+                assertTrue(filtro.coincide(evento));
+                long id = secuencia(evento);
+                assertTrue(id > anterior, "eventos fuera de orden");
+                anterior = id;
+            }
+            assertNull(registro.cierre);
+        }
+        assertEquals(0, this.meterRegistry.get("gateway.eventos.desconexiones").counter().count());
+    }
+
+    @Test
+    void unConsumidorLentoSeDesconectaSinFrenarALosDemas() throws Exception {
+        this.service = this.crear(1000, 4, 100);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch entregas = new CountDownLatch(10);
+        Registro lento = new Registro(null) {
+            @Override
+            public void enviar(Evento evento) {
+                try {
+                    liberar.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.enviar(evento);
+            }
+        };
+        Registro rapido = new Registro(entregas);
+        this.service.suscribir(new Filtro("COM0", null, null), null, lento);
+        this.service.suscribir(new Filtro("COM0", null, null), null, rapido);
+
+        // Al ritmo del rápido: su buffer de 4 nunca se llena, el del lento sí
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int t = 0; t < 10; t++) {
+            this.service.publicarCreacion(crearTransaccion(t * 50));
+            while (entregas.getCount() > 10 - (t + 1) && System.nanoTime() < limite) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        }
+
+        assertEquals(0, entregas.getCount());
+        assertEquals(10, rapido.eventos.size());
+        assertEquals(1, this.service.suscriptores());
+        assertEquals(1, this.meterRegistry.get("gateway.eventos.desconexiones").counter().count());
+        // El cierre espera al envío en curso y lo hace un hilo de envío, no el que publicó
+        assertNull(lento.cierre);
+        liberar.countDown();
+        assertTrue(lento.cerrada.await(10, TimeUnit.SECONDS));
+        assertEquals("consumidor-lento", lento.cierre);
+        assertTrue(lento.hiloCierre.startsWith("eventos-transaccion-"), lento.hiloCierre);
+        assertEquals(1, lento.eventos.size());
+    }
+
+    @Test
+    void elFiltroPorEstadoIncluyeLosCambiosDesdeEseEstado() throws Exception {
+        this.service = this.crear(100, 256, 100);
+        Registro pendientes = new Registro(new CountDownLatch(2));
+        Registro rechazadas = new Registro(null);
+        this.service.suscribir(new Filtro(null, null, EstadoTransaccion.PEN), null, pendientes);
+        this.service.suscribir(new Filtro(null, null, EstadoTransaccion.REJ), null, rechazadas);
+
+        Transaccion transaccion = crearTransaccion(1);
+        this.service.publicarCreacion(transaccion);
+        transaccion.setEstado(EstadoTransaccion.ACT);
+        this.service.publicarCambioEstado(transaccion, EstadoTransaccion.PEN);
+
+        assertTrue(pendientes.entregas.await(10, TimeUnit.SECONDS));
+        assertEquals(EventosTransaccionService.TIPO_ESTADO, pendientes.eventos.get(1).tipo());
+        assertEquals(EstadoTransaccion.PEN, pendientes.eventos.get(1).estadoAnterior());
+        assertEquals(EstadoTransaccion.ACT, pendientes.eventos.get(1).transaccion().getEstado());
+        assertTrue(rechazadas.eventos.isEmpty());
+    }
+
+    @Test
+    void reanudaDesdeElUltimoEventoRecibido() throws Exception {
+        this.service = this.crear(8, 256, 100);
+        Registro primero = new Registro(new CountDownLatch(3));
+        EventosTransaccionService.Suscripcion suscripcion = this.service.suscribir(
+                new Filtro("COM0", null, null), null, primero);
+        for (int t = 0; t < 3; t++) {
+            this.service.publicarCreacion(crearTransaccion(t * 50));
+        }
+        assertTrue(primero.entregas.await(10, TimeUnit.SECONDS));
+        this.service.cancelar(suscripcion);
+        // Mientras estaba desconectado: dos del comercio y uno de otro
+        this.service.publicarCreacion(crearTransaccion(150));
+        this.service.publicarCreacion(crearTransaccion(1));
+        this.service.publicarCreacion(crearTransaccion(200));
+
+        Registro reanudado = new Registro(new CountDownLatch(2));
+        this.service.suscribir(new Filtro("COM0", null, null), primero.eventos.get(2).id(), reanudado);
+
+        assertTrue(reanudado.entregas.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("TRX0000150", "TRX0000200"), reanudado.eventos.stream()
+                .map(evento -> evento.transaccion().getCodigoUnicoTransaccion()).toList());
+        assertTrue(secuencia(reanudado.eventos.get(0)) > secuencia(primero.eventos.get(2)));
+    }
+
+    @Test
+    void sinPoderReanudarSeEnviaUnReinicio() throws Exception {
+        this.service = this.crear(4, 256, 100);
+        Registro primero = new Registro(new CountDownLatch(1));
+        this.service.suscribir(new Filtro(null, null, null), null, primero);
+        this.service.publicarCreacion(crearTransaccion(0));
+        assertTrue(primero.entregas.await(10, TimeUnit.SECONDS));
+        // El historial solo conserva 4 eventos
+        for (int t = 1; t <= 5; t++) {
+            this.service.publicarCreacion(crearTransaccion(t));
+        }
+
+        Registro antiguo = new Registro(new CountDownLatch(1));
+        Registro otroNodo = new Registro(new CountDownLatch(1));
+        this.service.suscribir(new Filtro(null, null, null), primero.eventos.get(0).id(), antiguo);
+        this.service.suscribir(new Filtro(null, null, null), "kx0-42", otroNodo);
+
+        assertTrue(antiguo.entregas.await(10, TimeUnit.SECONDS));
+        assertTrue(otroNodo.entregas.await(10, TimeUnit.SECONDS));
+        assertEquals(EventosTransaccionService.TIPO_REINICIO, antiguo.eventos.get(0).tipo());
+        assertEquals(EventosTransaccionService.TIPO_REINICIO, otroNodo.eventos.get(0).tipo());
+    }
+
+    @Test
+    void losEventosSePublicanAlConfirmarse() throws Exception {
+        this.service = this.crear(100, 256, 100);
+        Registro registro = new Registro(new CountDownLatch(1));
+        this.service.suscribir(new Filtro("COM0", null, null), null, registro);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.service.publicarCreacion(crearTransaccion(0));
+            assertEquals(0, this.meterRegistry.get("gateway.eventos.publicados").counter().count());
+            for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+                sincronizacion.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(registro.entregas.await(10, TimeUnit.SECONDS));
+        assertEquals(EventosTransaccionService.TIPO_CREACION, registro.eventos.get(0).tipo());
+        assertEquals("POS0-0", registro.eventos.get(0).codigoPOS());
+    }
+
+    @Test
+    void seRechazanSuscripcionesSobreElMaximo() {
+        this.service = this.crear(100, 256, 2);
+        this.service.suscribir(new Filtro("COM0", null, null), null, new Registro(null));
+        this.service.suscribir(new Filtro(null, null, null), null, new Registro(null));
+
+        assertThrows(SuscripcionRechazadaException.class,
+                () -> this.service.suscribir(new Filtro("COM1", null, null), null, new Registro(null)));
+    }
+
+    private EventosTransaccionService crear(int historial, int buffer, int suscriptoresMaximos) {
+        return new EventosTransaccionService(this.meterRegistry, historial, buffer, suscriptoresMaximos, 8,
+                Duration.ofMinutes(30));
+    }
+
+    // La transacción t es del comercio t % 50, de uno de sus 3 POS, y termina en REJ si es múltiplo de 7
+    private static Transaccion crearTransaccion(int t) {
+        Transaccion transaccion = new Transaccion();
+        transaccion.setCodTransaccion(String.format("T%09d", t));
+        transaccion.setCodigoUnicoTransaccion(String.format("TRX%07d", t));
+        transaccion.setEstado(EstadoTransaccion.PEN);
+        transaccion.setTransaccionEncriptada(TransaccionService.formatearDatosAdicionales(posDTO(t)));
+        return transaccion;
+    }
+
+    private static TransaccionPosDTO posDTO(int t) {
+        TransaccionPosDTO posDTO = new TransaccionPosDTO();
+        posDTO.setCodigoComercio("COM" + t % 50);
+        posDTO.setCodigoPOS("POS" + t % 50 + "-" + t % 3);
+        posDTO.setNombreTitular("Juan Pérez");
+        posDTO.setCodigoSeguridad(123);
+        return posDTO;
+    }
+
+    private static long secuencia(Evento evento) {
+        return Long.parseLong(evento.id().substring(evento.id().lastIndexOf('-') + 1));
+    }
+
+    private static EstadoTransaccion estadoFinal(int t) {
+        return t % 7 == 0 ? EstadoTransaccion.REJ : EstadoTransaccion.ACT;
+    }
+
+    private static boolean coincide(Filtro filtro, int t, EstadoTransaccion estado) {
+        return (filtro.codigoComercio() == null || filtro.codigoComercio().equals("COM" + t % 50))
+                && (filtro.codigoPOS() == null || filtro.codigoPOS().equals("POS" + t % 50 + "-" + t % 3))
+                && (filtro.estado() == null || filtro.estado() == estado);
+    }
+
+    private static class Registro implements EventosTransaccionService.Destino {
+
+        private final CountDownLatch entregas;
+        private final List<Evento> eventos = new ArrayList<>();
+        private final CountDownLatch cerrada = new CountDownLatch(1);
+        private volatile String cierre;
+        private volatile String hiloCierre;
+
+        private Registro(CountDownLatch entregas) {
+            this.entregas = entregas;
+        }
+
+        @Override
+        public void enviar(Evento evento) {
+            synchronized (this.eventos) {
+                this.eventos.add(evento);
+            }
+            if (this.entregas != null) {
+                this.entregas.countDown();
+            }
+        }
+
+        @Override
+        public void latido() {
+        }
+
+        @Override
+        public void cerrar(String motivo) {
+            this.hiloCierre = Thread.currentThread().getName();
+            this.cierre = motivo;
+            this.cerrada.countDown();
+        }
+    }
+}
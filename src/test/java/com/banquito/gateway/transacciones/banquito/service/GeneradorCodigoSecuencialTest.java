@@ -0,0 +1,117 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class GeneradorCodigoSecuencialTest {
+
+    private static final Instant AHORA = Instant.parse("2026-03-15T12:00:00Z");
+
+    @Test
+    void codigosTienenDiezCaracteresYCodificanInstanteYNodo() {
+        GeneradorCodigoSecuencial generador = new GeneradorCodigoSecuencial(17, Clock.fixed(AHORA, ZoneOffset.UTC));
+
+        String codigo = generador.generar();
+
+        assertEquals(10, codigo.length());
+        assertTrue(codigo.matches("[0-9A-Z]{10}"), codigo);
+        assertEquals(AHORA, GeneradorCodigoSecuencial.instante(codigo));
+        assertEquals(17, GeneradorCodigoSecuencial.nodo(codigo));
+    }
+
+    @Test
+    void agotarLaSecuenciaOUnRelojQueRetrocedeSiguenProduciendoCodigosCrecientes() {
+        RelojAjustable reloj = new RelojAjustable(AHORA);
+        GeneradorCodigoSecuencial generador = new GeneradorCodigoSecuencial(3, reloj);
+
+        List<String> codigos = new ArrayList<>();
+        // 200 códigos en el mismo milisegundo: más que los 64 de la secuencia
+        for (int i = 0; i < 200; i++) {
+            codigos.add(generador.generar());
+        }
+        reloj.ajustar(AHORA.minus(Duration.ofSeconds(5)));
+        for (int i = 0; i < 10; i++) {
+            codigos.add(generador.generar());
+        }
+
+        for (int i = 1; i < codigos.size(); i++) {
+            assertTrue(codigos.get(i - 1).compareTo(codigos.get(i)) < 0, codigos.get(i - 1) + " >= " + codigos.get(i));
+        }
+        assertEquals(3, GeneradorCodigoSecuencial.nodo(codigos.get(codigos.size() - 1)));
+    }
+
+    @Test
+    void nodosDistintosNoColisionanEnElMismoInstante() {
+        Clock reloj = Clock.fixed(AHORA, ZoneOffset.UTC);
+        assertNotEquals(new GeneradorCodigoSecuencial(1, reloj).generar(),
+                new GeneradorCodigoSecuencial(2, reloj).generar());
+        assertThrows(IllegalArgumentException.class, () -> new GeneradorCodigoSecuencial(32, reloj));
+    }
+
+    @Test
+    void esUnicoBajoContencion() throws Exception {
+        GeneradorCodigoSecuencial generador = new GeneradorCodigoSecuencial(0);
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        int hilos = 8;
+        int porHilo = 50_000;
+        try (ExecutorService ejecutor = Executors.newFixedThreadPool(hilos)) {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < hilos; i++) {
+                tareas.add(ejecutor.submit(() -> {
+                    for (int j = 0; j < porHilo; j++) {
+                        codigos.add(generador.generar());
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        }
+        assertEquals(hilos * porHilo, codigos.size());
+    }
+
+    private static class RelojAjustable extends Clock {
+
+        private Instant instante;
+
+        RelojAjustable(Instant instante) {
+            this.instante = instante;
+        }
+
+        void ajustar(Instant instante) {
+            this.instante = instante;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instante;
+        }
+    }
+}
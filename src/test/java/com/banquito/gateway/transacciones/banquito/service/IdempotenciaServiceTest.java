@@ -0,0 +1,199 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.banquito.gateway.transacciones.banquito.exception.CodigoUnicoReutilizadoException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionEnCursoException;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IdempotenciaServiceTest {
+
+    private static final int HILOS = 64;
+    private static final IdempotenciaService.Huella HUELLA = new IdempotenciaService.Huella(new BigDecimal("150.50"),
+            "USD", "4111111111111111", "PAG", "COM001", "POS001");
+
+    private TransaccionRepository transaccionRepository;
+    private IdempotenciaService service;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        this.service = new IdempotenciaService(this.transaccionRepository, new SimpleMeterRegistry(),
+                Duration.ofMinutes(2), 1000, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void mismaClaveDesdeMuchosHilosSeProcesaUnaSolaVez() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        Transaccion transaccion = transaccion(EstadoTransaccion.ACT);
+        CountDownLatch largada = new CountDownLatch(1);
+
+        List<Future<Transaccion>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(HILOS)) {
+            for (int i = 0; i < HILOS; i++) {
+                resultados.add(hilos.submit(() -> {
+                    largada.await();
+                    return this.service.ejecutar("TRX1", HUELLA, () -> {
+                        ejecuciones.incrementAndGet();
+                        dormir(100);
+                        return transaccion;
+                    });
+                }));
+            }
+            largada.countDown();
+            for (Future<Transaccion> resultado : resultados) {
+                assertSame(transaccion, resultado.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void rechazoRegistradoSeReproduceSinVolverAProcesar() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion("TRX1")).thenReturn(transaccion(EstadoTransaccion.REJ));
+
+        List<Future<Transaccion>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(HILOS)) {
+            for (int i = 0; i < HILOS; i++) {
+                resultados.add(hilos.submit(() -> this.service.ejecutar("TRX1", HUELLA, () -> {
+                    ejecuciones.incrementAndGet();
+                    dormir(50);
+                    throw new TransaccionInvalidaException("Transacción rechazada por el procesador de pagos");
+                })));
+            }
+            for (Future<Transaccion> resultado : resultados) {
+                ExecutionException error = assertThrows(ExecutionException.class, () -> resultado.get(5, TimeUnit.SECONDS));
+                assertEquals(TransaccionInvalidaException.class, error.getCause().getClass());
+            }
+        }
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void falloAntesDeInsertarPermiteReintentar() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.ejecutar("TRX1", HUELLA, () -> {
+            ejecuciones.incrementAndGet();
+            throw new TransaccionInvalidaException("No se pudieron obtener los datos bancarios del comercio");
+        }));
+        Transaccion reintento = this.service.ejecutar("TRX1", HUELLA, () -> {
+            ejecuciones.incrementAndGet();
+            return transaccion(EstadoTransaccion.ACT);
+        });
+
+        assertEquals(EstadoTransaccion.ACT, reintento.getEstado());
+        assertEquals(2, ejecuciones.get());
+    }
+
+    @Test
+    void duplicadoEnBaseEsperaQueSalgaDePendiente() {
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion("TRX1"))
+                .thenReturn(transaccion(EstadoTransaccion.PEN), transaccion(EstadoTransaccion.PEN), transaccion(EstadoTransaccion.ACT));
+
+        Transaccion resultado = this.service.reproducir("TRX1", HUELLA, new DataIntegrityViolationException("duplicado"));
+
+        assertEquals(EstadoTransaccion.ACT, resultado.getEstado());
+    }
+
+    @Test
+    void duplicadoEnBaseQueSigueEnCursoAgotaLaEspera() {
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion("TRX1")).thenReturn(transaccion(EstadoTransaccion.PEN));
+
+        assertThrows(TransaccionEnCursoException.class,
+                () -> this.service.reproducir("TRX1", HUELLA, new DataIntegrityViolationException("duplicado")));
+    }
+
+    @Test
+    void reintentoConOtrosDatosSeRechazaSinReutilizarElResultado() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        Transaccion original = this.service.ejecutar("TRX1", HUELLA, () -> {
+            ejecuciones.incrementAndGet();
+            return transaccion(EstadoTransaccion.ACT);
+        });
+
+        // Otro monto, otra tarjeta u otro comercio con el mismo código único
+        for (IdempotenciaService.Huella distinta : List.of(
+                new IdempotenciaService.Huella(new BigDecimal("999.00"), "USD", "4111111111111111", "PAG", "COM001",
+                        "POS001"),
+                new IdempotenciaService.Huella(new BigDecimal("150.50"), "USD", "5500000000000004", "PAG", "COM001",
+                        "POS001"),
+                new IdempotenciaService.Huella(new BigDecimal("150.50"), "USD", "4111111111111111", "PAG", "COM002",
+                        "POS001"))) {
+            assertThrows(CodigoUnicoReutilizadoException.class, () -> this.service.ejecutar("TRX1", distinta, () -> {
+                ejecuciones.incrementAndGet();
+                return transaccion(EstadoTransaccion.ACT);
+            }));
+        }
+        // El mismo monto con otra escala sí es un reintento
+        Transaccion reintento = this.service.ejecutar("TRX1", new IdempotenciaService.Huella(new BigDecimal("150.5"),
+                "USD", "4111111111111111", "PAG", "COM001", "POS001"), () -> {
+                    ejecuciones.incrementAndGet();
+                    return transaccion(EstadoTransaccion.ACT);
+                });
+
+        assertSame(original, reintento);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void duplicadoEnBaseConOtrosDatosSeRechaza() {
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion("TRX1")).thenReturn(transaccion(EstadoTransaccion.ACT));
+        IdempotenciaService.Huella otroMonto = new IdempotenciaService.Huella(new BigDecimal("10.00"), "USD",
+                "4111111111111111", "PAG", "COM001", "POS001");
+
+        assertThrows(CodigoUnicoReutilizadoException.class,
+                () -> this.service.reproducir("TRX1", otroMonto, new DataIntegrityViolationException("duplicado")));
+        assertEquals(EstadoTransaccion.ACT, this.service.reproducir("TRX1", HUELLA,
+                new DataIntegrityViolationException("duplicado")).getEstado());
+    }
+
+    // Una fila registrada con los datos de HUELLA
+    private static Transaccion transaccion(EstadoTransaccion estado) {
+        Transaccion transaccion = new Transaccion("T000000001");
+        transaccion.setCodigoUnicoTransaccion("TRX1");
+        transaccion.setEstado(estado);
+        transaccion.setMonto(new BigDecimal("150.50"));
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setTarjeta("4111111111111111");
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setTransaccionEncriptada("POS: POS001, Comercio: COM001, Titular: JUAN PEREZ, CVV: 123");
+        return transaccion;
+    }
+
+    private static void dormir(long milisegundos) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(milisegundos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InsercionAgrupadaServiceTest {
+
+    private TransaccionRepository transaccionRepository;
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private InsercionAgrupadaService service;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        this.transactionManager = mock(PlatformTransactionManager.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+        when(this.transaccionRepository.save(any(Transaccion.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(this.transaccionRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (this.service != null) {
+            this.service.detener();
+        }
+    }
+
+    @Test
+    void insercionesConcurrentesSeConfirmanEnUnSoloLote() throws Exception {
+        // Un escritor que espera hasta 2 s a completar un lote de 10
+        this.service = this.crear(1, 10, Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        List<Future<Transaccion>> resultados = this.insertarEnParalelo(10);
+
+        for (int i = 0; i < resultados.size(); i++) {
+            assertEquals(String.format("TRX%07d", i), resultados.get(i).get(5, TimeUnit.SECONDS).getCodTransaccion());
+        }
+        ArgumentCaptor<List<Transaccion>> lote = listaCapturada();
+        verify(this.transaccionRepository, times(1)).saveAll(lote.capture());
+        assertEquals(10, lote.getValue().size());
+        verify(this.transaccionRepository, never()).save(any(Transaccion.class));
+        assertEquals(10, this.meterRegistry.get("gateway.insercion.filas").counter().count());
+    }
+
+    @Test
+    void unaFilaInvalidaSoloHaceFallarASuInsercion() throws Exception {
+        this.service = this.crear(1, 3, Duration.ofSeconds(2), Duration.ofSeconds(10));
+        when(this.transaccionRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(this.transaccionRepository.save(any(Transaccion.class))).thenAnswer(inv -> {
+            Transaccion transaccion = inv.getArgument(0);
+            if (transaccion.getCodTransaccion().endsWith("1")) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return transaccion;
+        });
+
+        List<Future<Transaccion>> resultados = this.insertarEnParalelo(3);
+
+        assertEquals("TRX0000000", resultados.get(0).get(5, TimeUnit.SECONDS).getCodTransaccion());
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> resultados.get(1).get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof DataIntegrityViolationException);
+        assertEquals("TRX0000002", resultados.get(2).get(5, TimeUnit.SECONDS).getCodTransaccion());
+        verify(this.transaccionRepository, times(1)).saveAll(anyList());
+        verify(this.transaccionRepository, times(3)).save(any(Transaccion.class));
+        assertEquals(1, this.meterRegistry.get("gateway.insercion.lote.fallidos").counter().count());
+    }
+
+    @Test
+    void sinEscritorLaEsperaTerminaYSeInsertaDirectamente() {
+        // Sin escritores nadie toma la cola: al agotarse la espera la inserción la hace el propio llamador
+        this.service = this.crear(0, 10, Duration.ofNanos(500_000), Duration.ofMillis(200));
+        Transaccion transaccion = transaccion(0);
+
+        long inicio = System.nanoTime();
+        Transaccion guardada = this.service.insertar(transaccion);
+
+        assertSame(transaccion, guardada);
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicio) < 5);
+        verify(this.transaccionRepository, times(1)).save(transaccion);
+        verify(this.transaccionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void alDetenerseLasInsercionesEnColaNoQuedanEsperando() throws Exception {
+        this.service = this.crear(0, 10, Duration.ofNanos(500_000), Duration.ofMinutes(5));
+        List<Future<Transaccion>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                Transaccion transaccion = transaccion(i);
+                resultados.add(hilos.submit(() -> this.service.insertar(transaccion)));
+            }
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (this.meterRegistry.get("gateway.insercion.cola").gauge().value() < 4) {
+                assertTrue(System.nanoTime() < limite);
+                Thread.sleep(10);
+            }
+            assertFalse(resultados.get(0).isDone());
+
+            this.service.detener();
+
+            for (int i = 0; i < resultados.size(); i++) {
+                assertEquals(String.format("TRX%07d", i),
+                        resultados.get(i).get(5, TimeUnit.SECONDS).getCodTransaccion());
+            }
+        }
+        verify(this.transaccionRepository, times(4)).save(any(Transaccion.class));
+        // Tras detenerse, las nuevas inserciones no pasan por la cola
+        this.service.insertar(transaccion(9));
+        verify(this.transaccionRepository, times(5)).save(any(Transaccion.class));
+    }
+
+    private InsercionAgrupadaService crear(int escritores, int tamanioLote, Duration espera, Duration esperaMaxima) {
+        InsercionAgrupadaService insercion = new InsercionAgrupadaService(this.transaccionRepository,
+                this.transactionManager, this.meterRegistry, true, tamanioLote, espera, escritores, 100,
+                esperaMaxima);
+        insercion.iniciar();
+        return insercion;
+    }
+
+    private List<Future<Transaccion>> insertarEnParalelo(int cantidad) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Transaccion>> resultados = new ArrayList<>();
+        ExecutorService hilos = Executors.newFixedThreadPool(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Transaccion transaccion = transaccion(i);
+            resultados.add(hilos.submit(() -> {
+                largada.await();
+                return this.service.insertar(transaccion);
+            }));
+        }
+        largada.countDown();
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(10, TimeUnit.SECONDS));
+        return resultados;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Transaccion>> listaCapturada() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static Transaccion transaccion(int indice) {
+        Transaccion transaccion = new Transaccion();
+        transaccion.setCodTransaccion(String.format("TRX%07d", indice));
+        return transaccion;
+    }
+}
@@ -0,0 +1,277 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.banquito.gateway.transacciones.banquito.client.ProcesadorPagosClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.client.dto.ProcesadorPagosDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.banquito.gateway.transacciones.banquito.service.LoteTransaccionService.ResultadoLote;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+
+class LoteTransaccionServiceTest {
+
+    private static final long LATENCIA_PROCESADOR_MS = 50;
+
+    private TransaccionRepository transaccionRepository;
+    private ComercioCacheService comercioCacheService;
+    private ProcesadorPagosClient procesadorPagosClient;
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private TransaccionService transaccionService;
+    private InsercionAgrupadaService insercionAgrupadaService;
+    private IdempotenciaService idempotenciaService;
+    private MetricasTransaccion metricasTransaccion;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        this.comercioCacheService = mock(ComercioCacheService.class);
+        this.procesadorPagosClient = mock(ProcesadorPagosClient.class);
+        this.executor = Executors.newFixedThreadPool(8);
+        this.meterRegistry = new SimpleMeterRegistry();
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        this.insercionAgrupadaService = new InsercionAgrupadaService(this.transaccionRepository, transactionManager,
+                this.meterRegistry, false, 50, Duration.ofNanos(500_000), 1, 100, Duration.ofSeconds(10));
+        this.idempotenciaService = new IdempotenciaService(this.transaccionRepository, this.meterRegistry,
+                Duration.ofMinutes(2), 1000, Duration.ofSeconds(5));
+        this.metricasTransaccion = new MetricasTransaccion(this.meterRegistry);
+        this.transaccionService = new TransaccionService(this.transaccionRepository,
+                mock(TransaccionRecurrenteService.class), this.procesadorPagosClient, this.comercioCacheService,
+                transactionManager, this.insercionAgrupadaService, this.metricasTransaccion, this.idempotenciaService,
+                new GeneradorCodigoSecuencial(0), new LecturaConsistente(false, Duration.ofSeconds(10), 1000),
+                new CacheTransacciones(this.meterRegistry, true, 1000, Duration.ofMinutes(5), Duration.ofSeconds(2),
+                        64, Ticker.systemTicker()),
+                new EstadisticasTransaccionService(mock(JdbcTemplate.class), transactionManager, this.meterRegistry,
+                        true, Duration.ZERO, Period.ofDays(7), Duration.ofDays(1), Duration.ofDays(1)),
+                new VelocidadTarjetaService(this.meterRegistry, true, List.of("PT10M/1000/"), 20, 1000, 16,
+                        Ticker.systemTicker()),
+                new ResultadoTransacciones(this.meterRegistry, Duration.ofMinutes(1), 1000),
+                new EventosTransaccionService(this.meterRegistry, 1000, 256, 1000, 2, Duration.ofMinutes(1)));
+
+        when(this.comercioCacheService.obtenerDatosComercio(anyString())).thenAnswer(inv -> {
+            ComercioDTO comercio = new ComercioDTO();
+            comercio.setSwift_banco("PICHEERT");
+            comercio.setCuenta_iban("EC123456789012345678905678");
+            return comercio;
+        });
+        // La "base": lo insertado en lote se vuelve a leer en PEN al actualizar el estado
+        Map<String, Transaccion> guardadas = new ConcurrentHashMap<>();
+        when(this.transaccionRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Transaccion> transacciones = inv.getArgument(0);
+            transacciones.forEach(transaccion -> guardadas.put(transaccion.getCodTransaccion(), transaccion.copia()));
+            return transacciones;
+        });
+        when(this.transaccionRepository.findByCodigoUnicoTransaccion(anyString())).thenAnswer(inv -> guardadas.values()
+                .stream().filter(t -> t.getCodigoUnicoTransaccion().equals(inv.getArgument(0))).findFirst().orElse(null));
+        when(this.transaccionRepository.findByCodTransaccionAndEstado(anyString(), eq(EstadoTransaccion.PEN)))
+                .thenAnswer(inv -> {
+                    Transaccion pendiente = guardadas.get(inv.getArgument(0)).copia();
+                    pendiente.setEstado(EstadoTransaccion.PEN);
+                    return Optional.of(pendiente);
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void unaSolicitudInvalidaNoHaceFallarAlLote() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        TransaccionPosDTO sinTarjeta = crearPosDTO(1);
+        sinTarjeta.setNumeroTarjeta("12345");
+        TransaccionPosDTO montoInvalido = crearPosDTO(2);
+        montoInvalido.setMonto(BigDecimal.ZERO);
+
+        List<ResultadoLote> resultados = this.crear(16, 100).procesar(
+                List.of(crearPosDTO(0), sinTarjeta, montoInvalido, crearPosDTO(3)));
+
+        assertEquals(4, resultados.size());
+        assertEquals(EstadoTransaccion.ACT, resultados.get(0).transaccion().getEstado());
+        assertInstanceOf(TransaccionInvalidaException.class, resultados.get(1).error());
+        assertTrue(resultados.get(1).error().getMessage().contains("16 dígitos"));
+        assertInstanceOf(TransaccionInvalidaException.class, resultados.get(2).error());
+        assertNull(resultados.get(2).transaccion());
+        assertEquals("TRX0000003", resultados.get(3).codigoUnicoTransaccion());
+        assertEquals(EstadoTransaccion.ACT, resultados.get(3).transaccion().getEstado());
+        // Las inválidas no llegan a la base ni al procesador; las válidas se insertan en una sola transacción
+        verify(this.transaccionRepository, times(1)).saveAll(argThat(filas -> ((List<?>) filas).size() == 2));
+        verify(this.procesadorPagosClient, times(2)).procesarPago(any());
+    }
+
+    @Test
+    void cadaComercioSeConsultaUnaSolaVezYSuFalloSoloAfectaASusSolicitudes() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        when(this.comercioCacheService.obtenerDatosComercio("POSCAIDO")).thenThrow(new IllegalStateException("503"));
+        List<TransaccionPosDTO> solicitudes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            TransaccionPosDTO posDTO = crearPosDTO(i);
+            posDTO.setCodigoPOS(i % 10 == 0 ? "POSCAIDO" : "POS" + i % 3);
+            solicitudes.add(posDTO);
+        }
+
+        List<ResultadoLote> resultados = this.crear(4, 100).procesar(solicitudes);
+
+        for (ResultadoLote resultado : resultados) {
+            if (resultado.indice() % 10 == 0) {
+                assertTrue(resultado.error().getMessage().endsWith("datos bancarios del comercio"));
+            } else {
+                assertEquals(EstadoTransaccion.ACT, resultado.transaccion().getEstado());
+            }
+        }
+        for (String pos : new String[] { "POSCAIDO", "POS0", "POS1", "POS2" }) {
+            verify(this.comercioCacheService, times(1)).obtenerDatosComercio(pos);
+        }
+        verify(this.procesadorPagosClient, times(27)).procesarPago(any());
+    }
+
+    @Test
+    void lasLlamadasAlProcesadorSeRepartenSinSuperarLaConcurrencia() {
+        AtomicInteger enCurso = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        List<String> atendidas = Collections.synchronizedList(new ArrayList<>());
+        when(this.procesadorPagosClient.procesarPago(any())).thenAnswer(inv -> {
+            maximo.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+            TimeUnit.MILLISECONDS.sleep(LATENCIA_PROCESADOR_MS);
+            atendidas.add(inv.<ProcesadorPagosDTO>getArgument(0).getCodigoUnicoTransaccion());
+            enCurso.decrementAndGet();
+            return ResponseEntity.ok().build();
+        });
+        List<TransaccionPosDTO> solicitudes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            solicitudes.add(crearPosDTO(i));
+        }
+
+        long inicio = System.nanoTime();
+        List<ResultadoLote> resultados = this.crear(4, 100).procesar(solicitudes);
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertEquals(4, maximo.get());
+        assertEquals(40, atendidas.size());
+        assertTrue(duracionMs < 40 * LATENCIA_PROCESADOR_MS / 2, "duración " + duracionMs + " ms");
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, resultados.get(i).indice());
+            assertEquals(String.format("TRX%07d", i), resultados.get(i).transaccion().getCodigoUnicoTransaccion());
+        }
+    }
+
+    @Test
+    void codigosUnicosRepetidosNoSeProcesanDosVeces() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenAnswer(inv -> 
+                inv.<ProcesadorPagosDTO>getArgument(0).getCodigoUnicoTransaccion().endsWith("1")
+                        ? ResponseEntity.badRequest().build()
+                        : ResponseEntity.ok().build());
+        LoteTransaccionService service = this.crear(16, 100);
+
+        List<ResultadoLote> primero = service.procesar(List.of(crearPosDTO(0), crearPosDTO(1), crearPosDTO(0)));
+        assertEquals(EstadoTransaccion.ACT, primero.get(0).transaccion().getEstado());
+        assertTrue(primero.get(1).error().getMessage().endsWith("rechazada por el procesador de pagos"));
+        assertTrue(primero.get(2).error().getMessage().endsWith("TRX0000000 se repite en el lote"));
+
+        // Reenviar el lote devuelve los resultados originales sin volver a insertar ni a llamar al procesador
+        List<ResultadoLote> reenvio = service.procesar(List.of(crearPosDTO(0), crearPosDTO(1)));
+        assertEquals(primero.get(0).transaccion().getCodTransaccion(), reenvio.get(0).transaccion().getCodTransaccion());
+        assertTrue(reenvio.get(1).error().getMessage().endsWith("rechazada por el procesador de pagos"));
+        verify(this.transaccionRepository, times(1)).saveAll(anyList());
+        verify(this.procesadorPagosClient, times(2)).procesarPago(any());
+        assertEquals(2, this.meterRegistry.get("gateway.transaccion.estado.final").tag("flujo", "lote").counters()
+                .stream().mapToDouble(contador -> contador.count()).sum());
+    }
+
+    @Test
+    void unLoteInterrumpidoNoDejaReservasAbiertas() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        LoteTransaccionService service = this.crear(1, 100);
+
+        // La interrupción hace fallar la consulta de comercios, con los códigos únicos ya reservados
+        Thread.currentThread().interrupt();
+        assertThrows(IllegalStateException.class, () -> service.procesar(List.of(crearPosDTO(0), crearPosDTO(1))));
+        assertTrue(Thread.interrupted());
+
+        // El reintento se procesa de nuevo en lugar de esperar a la reserva del lote interrumpido
+        List<ResultadoLote> reintento = service.procesar(List.of(crearPosDTO(0), crearPosDTO(1)));
+        assertEquals(EstadoTransaccion.ACT, reintento.get(0).transaccion().getEstado());
+        assertEquals(EstadoTransaccion.ACT, reintento.get(1).transaccion().getEstado());
+        verify(this.procesadorPagosClient, times(2)).procesarPago(any());
+    }
+
+    @Test
+    void loteVacioOMayorAlMaximoSeRechazaCompleto() {
+        LoteTransaccionService service = this.crear(16, 10);
+        List<TransaccionPosDTO> solicitudes = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            solicitudes.add(crearPosDTO(i));
+        }
+
+        assertThrows(TransaccionInvalidaException.class, () -> service.procesar(List.of()));
+        assertThrows(TransaccionInvalidaException.class, () -> service.procesar(solicitudes));
+    }
+
+    private LoteTransaccionService crear(int concurrencia, int tamanioMaximo) {
+        return new LoteTransaccionService(this.transaccionService, this.comercioCacheService,
+                this.insercionAgrupadaService, this.idempotenciaService, this.metricasTransaccion,
+                Validation.buildDefaultValidatorFactory().getValidator(), this.meterRegistry, this.executor,
+                tamanioMaximo, concurrencia);
+    }
+
+    private static TransaccionPosDTO crearPosDTO(int indice) {
+        TransaccionPosDTO posDTO = new TransaccionPosDTO();
+        posDTO.setCodigoPOS("POS123456");
+        posDTO.setCodigoComercio("COM789012");
+        posDTO.setTipo("PAG");
+        posDTO.setMarca("VISA");
+        posDTO.setModalidad("SIM");
+        posDTO.setMonto(new BigDecimal("150.50"));
+        posDTO.setMoneda("USD");
+        posDTO.setPais("EC");
+        posDTO.setNumeroTarjeta("1234567812345678");
+        posDTO.setNombreTitular("Juan Pérez");
+        posDTO.setCodigoSeguridad(123);
+        posDTO.setFechaExpiracion("12/99");
+        posDTO.setCodigoUnicoTransaccion(String.format("TRX%07d", indice));
+        return posDTO;
+    }
+}
@@ -0,0 +1,251 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.banquito.gateway.transacciones.banquito.client.TransaccionRecurrenteClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.TransaccionRecurrenteDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionDTO;
+import com.banquito.gateway.transacciones.banquito.model.OutboxRecurrente;
+import com.banquito.gateway.transacciones.banquito.repository.OutboxRecurrenteRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import feign.FeignException;
+import feign.Request;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboxRecurrenteRelayTest {
+
+    private OutboxRecurrenteRepository outboxRepository;
+    private TransaccionRecurrenteClient cliente;
+    private TransaccionRecurrenteService recurrenteService;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRecurrenteRelay relay;
+    private final Map<Long, OutboxRecurrente> tabla = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        this.outboxRepository = mock(OutboxRecurrenteRepository.class);
+        this.cliente = mock(TransaccionRecurrenteClient.class);
+        this.recurrenteService = new TransaccionRecurrenteService(this.outboxRepository,
+                new ObjectMapper().findAndRegisterModules());
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.relay = new OutboxRecurrenteRelay(this.outboxRepository, this.recurrenteService, this.cliente,
+                new TransactionManagerSimple(), this.meterRegistry, true, 3, Duration.ofMinutes(2),
+                Duration.ofSeconds(5), Duration.ofMinutes(10), 3);
+
+        when(this.outboxRepository.save(any(OutboxRecurrente.class))).thenAnswer(inv -> {
+            OutboxRecurrente registro = inv.getArgument(0);
+            registro.setCodOutbox((long) this.tabla.size() + 1);
+            this.tabla.put(registro.getCodOutbox(), registro);
+            return registro;
+        });
+        when(this.outboxRepository.findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntento(eq("PEN"),
+                any(LocalDateTime.class), any(Limit.class))).thenAnswer(inv -> {
+                    LocalDateTime ahora = inv.getArgument(1);
+                    Limit limite = inv.getArgument(2);
+                    return new ArrayList<>(this.tabla.values().stream()
+                            .filter(r -> "PEN".equals(r.getEstado()) && !r.getProximoIntento().isAfter(ahora))
+                            .limit(limite.max())
+                            .toList());
+                });
+        when(this.outboxRepository.countByEstado(anyString())).thenAnswer(inv -> this.tabla.values().stream()
+                .filter(r -> inv.getArgument(0).equals(r.getEstado())).count());
+        when(this.outboxRepository.findFirstByEstadoOrderByFechaCreacion(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void entregaLosPendientesEnLotesYRegistraElRetraso() {
+        for (int i = 0; i < 7; i++) {
+            this.registrar("T00000000" + i);
+        }
+        when(this.cliente.crearTransaccionRecurrente(any())).thenReturn(ResponseEntity.ok().build());
+
+        this.relay.entregarPendientes();
+
+        verify(this.cliente, times(7)).crearTransaccionRecurrente(any());
+        for (OutboxRecurrente registro : this.tabla.values()) {
+            assertEquals("ENV", registro.getEstado());
+            assertEquals("", registro.getContenido());
+        }
+        assertEquals(7, this.meterRegistry.get("gateway.outbox.recurrente.retraso").timer().count());
+        assertEquals(0.0, this.meterRegistry.get("gateway.outbox.recurrente.pendientes").gauge().value());
+    }
+
+    @Test
+    void falloDelServicioPosponeElRestoDelLoteSinConsumirSusIntentos() {
+        for (int i = 0; i < 3; i++) {
+            this.registrar("T00000000" + i);
+        }
+        when(this.cliente.crearTransaccionRecurrente(any())).thenThrow(new FeignException.ServiceUnavailable(
+                "no disponible", this.request(), null, null));
+
+        this.relay.entregarPendientes();
+
+        verify(this.cliente, times(1)).crearTransaccionRecurrente(any());
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Integer> intentos = this.tabla.values().stream().map(OutboxRecurrente::getIntentos).sorted().toList();
+        assertEquals(List.of(0, 0, 1), intentos);
+        for (OutboxRecurrente registro : this.tabla.values()) {
+            assertEquals("PEN", registro.getEstado());
+            assertTrue(registro.getProximoIntento().isAfter(ahora.plusSeconds(4)));
+        }
+        assertEquals(1.0, this.meterRegistry.get("gateway.outbox.recurrente.fallos.consecutivos").gauge().value());
+    }
+
+    @Test
+    void circuitoAbiertoPosponeSinContarIntentos() {
+        this.registrar("T000000001");
+        when(this.cliente.crearTransaccionRecurrente(any())).thenThrow(CallNotPermittedException
+                .createCallNotPermittedException(CircuitBreaker.ofDefaults("transaccionesRecurrentes")));
+
+        this.relay.entregarPendientes();
+
+        OutboxRecurrente registro = this.tabla.get(1L);
+        assertEquals("PEN", registro.getEstado());
+        assertEquals(0, registro.getIntentos());
+        assertTrue(registro.getProximoIntento().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void rechazoDefinitivoOAgotarIntentosMarcaFallido() {
+        this.registrar("T000000001");
+        when(this.cliente.crearTransaccionRecurrente(any())).thenThrow(new FeignException.BadRequest(
+                "invalida", this.request(), null, null));
+
+        this.relay.entregarPendientes();
+
+        assertEquals("FAL", this.tabla.get(1L).getEstado());
+        assertEquals("", this.tabla.get(1L).getContenido());
+        assertEquals(1.0, this.meterRegistry.get("gateway.outbox.recurrente.entregas")
+                .tag("resultado", "fallido").counter().count());
+
+        OutboxRecurrente agotado = this.registrar("T000000002");
+        agotado.setIntentos(2);
+        doThrow(new IllegalStateException("timeout")).when(this.cliente).crearTransaccionRecurrente(any());
+
+        this.relay.entregarPendientes();
+
+        assertEquals("FAL", agotado.getEstado());
+        assertEquals(3, agotado.getIntentos());
+        assertEquals("", agotado.getContenido());
+    }
+
+    @Test
+    void contenidoIlegibleSeMarcaFallidoSinReintentar() {
+        OutboxRecurrente registro = this.registrar("T000000001");
+        registro.setContenido("{\"monto\": ");
+
+        this.relay.entregarPendientes();
+
+        verify(this.cliente, never()).crearTransaccionRecurrente(any());
+        assertEquals("FAL", registro.getEstado());
+        assertEquals(0, registro.getIntentos());
+        assertEquals("", registro.getContenido());
+        assertEquals(0.0, this.meterRegistry.get("gateway.outbox.recurrente.fallos.consecutivos").gauge().value());
+    }
+
+    @Test
+    void esperaCreceExponencialmenteHastaElMaximo() {
+        assertTrue(this.relay.espera(1).compareTo(Duration.ofSeconds(5)) >= 0);
+        assertTrue(this.relay.espera(1).compareTo(Duration.ofSeconds(6)) <= 0);
+        assertTrue(this.relay.espera(3).compareTo(Duration.ofSeconds(20)) >= 0);
+        assertTrue(this.relay.espera(40).compareTo(Duration.ofMinutes(12)) <= 0);
+        assertTrue(this.relay.espera(40).compareTo(Duration.ofMinutes(10)) >= 0);
+    }
+
+    @Test
+    void registroConservaElContenidoParaElReenvioSinElCodigoDeSeguridad() {
+        OutboxRecurrente registro = this.registrar("T000000001");
+
+        assertEquals("PEN", registro.getEstado());
+        assertNull(registro.getFechaEnvio());
+        assertEquals(new BigDecimal("99.90"), this.recurrenteService.leerContenido(registro).getMonto());
+        assertEquals(LocalDate.of(2030, 1, 1), this.recurrenteService.leerContenido(registro).getFechaCaducidad());
+        assertNull(this.recurrenteService.leerContenido(registro).getCvv());
+        assertFalse(registro.getContenido().contains("987"), registro.getContenido());
+    }
+
+    @Test
+    void laEntregaOmiteElCodigoDeSeguridad() throws Exception {
+        this.registrar("T000000001");
+        ArgumentCaptor<TransaccionRecurrenteDTO> enviado = ArgumentCaptor.forClass(TransaccionRecurrenteDTO.class);
+        when(this.cliente.crearTransaccionRecurrente(enviado.capture())).thenReturn(ResponseEntity.ok().build());
+
+        this.relay.entregarPendientes();
+
+        // El cuerpo que serializa el cliente Feign no lleva la clave cvv, ni siquiera con valor nulo
+        String cuerpo = new ObjectMapper().findAndRegisterModules().writeValueAsString(enviado.getValue());
+        assertFalse(cuerpo.contains("cvv"), cuerpo);
+        assertTrue(cuerpo.contains("\"tarjeta\":4111111111111111"), cuerpo);
+        assertEquals("ENV", this.tabla.get(1L).getEstado());
+    }
+
+    private OutboxRecurrente registrar(String codTransaccion) {
+        TransaccionDTO transaccionDTO = new TransaccionDTO();
+        transaccionDTO.setMonto(new BigDecimal("99.90"));
+        transaccionDTO.setMarca("VISA");
+        transaccionDTO.setMoneda("USD");
+        transaccionDTO.setPais("EC");
+        transaccionDTO.setTarjeta("4111111111111111");
+        transaccionDTO.setFechaCaducidad(LocalDate.of(2030, 1, 1));
+        transaccionDTO.setCodigoSeguridad(987);
+        transaccionDTO.setFrecuenciaDias(30);
+        return this.recurrenteService.registrarTransaccionRecurrente(codTransaccion, transaccionDTO);
+    }
+
+    private Request request() {
+        return Request.create(Request.HttpMethod.POST, "http://recurrentes/v1/transacciones-recurrentes",
+                Map.of(), new byte[0], StandardCharsets.UTF_8, null);
+    }
+
+    private static class TransactionManagerSimple implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus(true);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapperImpl;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.persistence.EntityManager;
+
+class TransaccionExportacionServiceTest {
+
+    private static final long FILAS = 10_000;
+
+    private TransaccionRepository transaccionRepository;
+    private final AtomicLong desasociadas = new AtomicLong();
+    private TransaccionExportacionService service;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        doAnswer(inv -> this.desasociadas.incrementAndGet()).when(entityManager).detach(any());
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.service = new TransaccionExportacionService(this.transaccionRepository, new TransaccionMapperImpl(),
+                entityManager, objectMapper);
+    }
+
+    @Test
+    void cadaFilaExportadaSeSueltaDelContextoDePersistencia() {
+        when(this.transaccionRepository.streamByMoneda(Moneda.USD))
+                .thenReturn(LongStream.range(0, FILAS).mapToObj(TransaccionExportacionServiceTest::transaccion));
+        ContadorSalida salida = new ContadorSalida();
+
+        long filas = this.service.exportarPorMoneda("USD", FormatoExportacion.NDJSON, salida);
+
+        assertEquals(FILAS, filas);
+        assertEquals(FILAS, salida.lineas);
+        assertEquals(FILAS, this.desasociadas.get());
+    }
+
+    @Test
+    void exportaCsvConEncabezadoYCamposEscapados() {
+        Transaccion transaccion = transaccion(1);
+        transaccion.setCuentaIban("EC12,\"34\"");
+        when(this.transaccionRepository.streamByPais("EC")).thenReturn(Stream.of(transaccion));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = this.service.exportarPorPais("EC", FormatoExportacion.CSV, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, filas);
+        assertEquals(2, lineas.length);
+        assertEquals("codTransaccion,tipo,marca,monto,codigoUnicoTransaccion,fecha,estado,"
+                + "moneda,pais,tarjeta,fechaCaducidad,swiftBanco,cuentaIban,diferido", lineas[0]);
+        assertEquals("T000000001,PAG,VISA,10.50,CU000000001,2025-01-15T10:30,ACT,USD,EC,4111111111111111,"
+                + "2028-12-01,PICHECEQ,\"EC12,\"\"34\"\"\",false", lineas[1]);
+    }
+
+    private static Transaccion transaccion(long numero) {
+        Transaccion transaccion = new Transaccion();
+        transaccion.setCodTransaccion(String.format("T%09d", numero));
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setMarca("VISA");
+        transaccion.setMonto(new BigDecimal("10.50"));
+        transaccion.setCodigoUnicoTransaccion(String.format("CU%09d", numero));
+        transaccion.setFecha(LocalDateTime.of(2025, 1, 15, 10, 30));
+        transaccion.setEstado(EstadoTransaccion.ACT);
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setPais("EC");
+        transaccion.setTarjeta("4111111111111111");
+        transaccion.setFechaCaducidad(LocalDate.of(2028, 12, 1));
+        transaccion.setSwiftBanco("PICHECEQ");
+        transaccion.setDiferido(false);
+        return transaccion;
+    }
+
+    // Descarta los bytes y solo cuenta los saltos de línea
+    private static final class ContadorSalida extends OutputStream {
+
+        private long lineas;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                this.lineas++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    this.lineas++;
+                }
+            }
+        }
+    }
+}
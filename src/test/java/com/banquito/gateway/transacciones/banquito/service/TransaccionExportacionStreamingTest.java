@@ -0,0 +1,104 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.banquito.gateway.transacciones.banquito.controller.mapper.TransaccionMapperImpl;
+
+// Exportación de un millón de filas desde un Postgres real: con el cursor del driver (fetch size) y cada entidad
+// soltada del contexto de persistencia, el heap a mitad de la exportación no crece con el resultado. Sin streaming
+// el driver materializa todas las filas antes de entregar la primera. Se omite si no hay Docker disponible.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ TransaccionExportacionService.class, TransaccionMapperImpl.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class TransaccionExportacionStreamingTest {
+
+    private static final long FILAS = 1_000_000;
+    // Retenidas, las filas ocupan varios cientos de MB; en streaming solo las de un fetch
+    private static final long CRECIMIENTO_MAXIMO = 64L * 1024 * 1024;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransaccionExportacionService service;
+
+    @Test
+    void exportaUnMillonDeFilasSinRetenerlasEnMemoria() {
+        // Las filas en EUR no deben exportarse
+        new JdbcTemplate(this.dataSource).update("""
+                INSERT INTO gtw_transaccion (cod_transaccion, tipo, marca, monto, codigo_unico_transaccion, fecha,
+                        estado, moneda, pais, tarjeta, fecha_caducidad, swift_banco, cuenta_iban, diferido)
+                SELECT lpad(n::text, 10, '0'), 1, 'VISA', (n % 100000) / 100.0, md5(n::text),
+                       TIMESTAMP '2024-01-01' + (n || ' seconds')::interval, 2, CASE WHEN n % 11 = 0 THEN 2 ELSE 1 END,
+                       'EC', lpad((n % 50000)::text, 16, '4'), DATE '2030-12-31', 'PICHECEQ',
+                       'EC' || lpad(n::text, 24, '0'), false
+                FROM generate_series(1, ?) AS n
+                """, FILAS * 11 / 10);
+        MedidorSalida salida = new MedidorSalida(FILAS / 2);
+        long base = heapTrasGc();
+
+        long filas = this.service.exportarPorMoneda("USD", FormatoExportacion.NDJSON, salida);
+
+        assertEquals(FILAS, filas);
+        assertEquals(FILAS, salida.lineas);
+        long crecimiento = salida.heapALaMitad - base;
+        assertTrue(crecimiento < CRECIMIENTO_MAXIMO, "El heap creció " + crecimiento / (1024 * 1024)
+                + " MB a mitad de la exportación");
+    }
+
+    private static long heapTrasGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Descarta los bytes, cuenta los saltos de línea y mide el heap vivo al llegar a la línea indicada
+    private static final class MedidorSalida extends OutputStream {
+
+        private final long lineaMedicion;
+        private long lineas;
+        private long heapALaMitad;
+
+        private MedidorSalida(long lineaMedicion) {
+            this.lineaMedicion = lineaMedicion;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n' && ++this.lineas == this.lineaMedicion) {
+                this.heapALaMitad = heapTrasGc();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                this.write(b[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.banquito.gateway.transacciones.banquito.client.ProcesadorPagosClient;
+import com.banquito.gateway.transacciones.banquito.client.dto.ComercioDTO;
+import com.banquito.gateway.transacciones.banquito.controller.dto.TransaccionPosDTO;
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.EstadoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.repository.TransaccionRepository;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TransaccionServiceTest {
+
+    private static final long LATENCIA_PROCESADOR_MS = 300;
+
+    private TransaccionRepository transaccionRepository;
+    private ComercioCacheService comercioCacheService;
+    private TransaccionRecurrenteService transaccionRecurrenteService;
+    private ProcesadorPagosClient procesadorPagosClient;
+    private TransactionManagerMedido transactionManager;
+    private TransaccionService service;
+    private SimpleMeterRegistry meterRegistry;
+    private MetricasTransaccion metricasTransaccion;
+    private EstadisticasTransaccionService estadisticasService;
+
+    @BeforeEach
+    void setUp() {
+        this.transaccionRepository = mock(TransaccionRepository.class);
+        this.comercioCacheService = mock(ComercioCacheService.class);
+        this.transaccionRecurrenteService = mock(TransaccionRecurrenteService.class);
+        this.procesadorPagosClient = mock(ProcesadorPagosClient.class);
+        this.transactionManager = new TransactionManagerMedido();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.metricasTransaccion = new MetricasTransaccion(this.meterRegistry);
+        this.estadisticasService = new EstadisticasTransaccionService(mock(JdbcTemplate.class), this.transactionManager,
+                this.meterRegistry, true, Duration.ZERO, Period.ofDays(7), Duration.ofDays(1), Duration.ofDays(1));
+        this.service = new TransaccionService(this.transaccionRepository, this.transaccionRecurrenteService,
+                this.procesadorPagosClient, this.comercioCacheService, this.transactionManager,
+                new InsercionAgrupadaService(this.transaccionRepository, this.transactionManager,
+                        new SimpleMeterRegistry(), false, 50, Duration.ofNanos(500_000), 1, 100,
+                        Duration.ofSeconds(10)),
+                this.metricasTransaccion,
+                new IdempotenciaService(this.transaccionRepository, this.meterRegistry, Duration.ofMinutes(2), 1000,
+                        Duration.ofSeconds(5)),
+                new GeneradorCodigoSecuencial(0), new LecturaConsistente(false, Duration.ofSeconds(10), 1000),
+                new CacheTransacciones(this.meterRegistry, true, 1000, Duration.ofMinutes(5), Duration.ofSeconds(2),
+                        64, Ticker.systemTicker()),
+                this.estadisticasService,
+                new VelocidadTarjetaService(this.meterRegistry, true, List.of("PT10M/3/"), 20, 1000, 16,
+                        Ticker.systemTicker()),
+                new ResultadoTransacciones(this.meterRegistry, Duration.ofMinutes(1), 1000),
+                new EventosTransaccionService(this.meterRegistry, 1000, 256, 1000, 2, Duration.ofMinutes(1)));
+
+        ComercioDTO comercio = new ComercioDTO();
+        comercio.setSwift_banco("PICHEERT");
+        comercio.setCuenta_iban("EC123456789012345678905678");
+        when(this.comercioCacheService.obtenerDatosComercio(anyString())).thenReturn(comercio);
+        // La "base": lo guardado se vuelve a leer en PEN al actualizar el estado
+        Map<String, Transaccion> guardadas = new ConcurrentHashMap<>();
+        when(this.transaccionRepository.save(any(Transaccion.class))).thenAnswer(inv -> {
+            Transaccion transaccion = inv.getArgument(0);
+            guardadas.put(transaccion.getCodTransaccion(), transaccion.copia());
+            return transaccion;
+        });
+        when(this.transaccionRepository.findByCodTransaccionAndEstado(anyString(), eq(EstadoTransaccion.PEN)))
+                .thenAnswer(inv -> {
+                    Transaccion pendiente = guardadas.get(inv.getArgument(0)).copia();
+                    pendiente.setEstado(EstadoTransaccion.PEN);
+                    return Optional.of(pendiente);
+                });
+    }
+
+    @Test
+    void procesarTransaccionPOSNoRetieneTransaccionDuranteLlamadaAlProcesador() {
+        AtomicInteger abiertasDuranteLlamada = new AtomicInteger(-1);
+        when(this.procesadorPagosClient.procesarPago(any())).thenAnswer(inv -> {
+            abiertasDuranteLlamada.set(this.transactionManager.abiertas.get());
+            TimeUnit.MILLISECONDS.sleep(LATENCIA_PROCESADOR_MS);
+            return ResponseEntity.ok().build();
+        });
+
+        Transaccion resultado = this.service.procesarTransaccionPOS(crearPosDTO());
+
+        assertEquals(EstadoTransaccion.ACT, resultado.getEstado());
+        assertEquals(0, abiertasDuranteLlamada.get());
+        assertTrue(this.transactionManager.transacciones.get() > 0);
+        assertTrue(this.transactionManager.maximaRetencionNanos.get() < TimeUnit.MILLISECONDS.toNanos(LATENCIA_PROCESADOR_MS),
+                "La retención de la conexión no debe incluir la latencia del procesador");
+    }
+
+    @Test
+    void soloSePermitenLasTransicionesDeEstadoValidas() {
+        for (EstadoTransaccion nuevo : EstadoTransaccion.values()) {
+            assertEquals(nuevo != EstadoTransaccion.PEN,
+                    TransaccionService.transicionPermitida(EstadoTransaccion.PEN, nuevo));
+            assertEquals(nuevo == EstadoTransaccion.ACT || nuevo == EstadoTransaccion.REJ,
+                    TransaccionService.transicionPermitida(EstadoTransaccion.ERR, nuevo));
+            assertFalse(TransaccionService.transicionPermitida(EstadoTransaccion.ACT, nuevo));
+            assertFalse(TransaccionService.transicionPermitida(EstadoTransaccion.REJ, nuevo));
+        }
+    }
+
+    @Test
+    void actualizarEstadoRechazaVolverAPendiente() {
+        Transaccion aceptada = new Transaccion("TRX0000001");
+        aceptada.setCodigoUnicoTransaccion("CU0000001");
+        aceptada.setFecha(LocalDateTime.now());
+        aceptada.setEstado(EstadoTransaccion.ACT);
+        when(this.transaccionRepository.findById("TRX0000001")).thenReturn(Optional.of(aceptada));
+
+        assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.actualizarEstadoTransaccion("TRX0000001", "PEN"));
+
+        assertEquals(EstadoTransaccion.ACT, aceptada.getEstado());
+        verify(this.transaccionRepository, never()).save(any(Transaccion.class));
+
+        // Una ERR sí puede conciliarse
+        aceptada.setEstado(EstadoTransaccion.ERR);
+        this.service.actualizarEstadoTransaccion("TRX0000001", "ACT");
+        assertEquals(EstadoTransaccion.ACT, aceptada.getEstado());
+        verify(this.transaccionRepository, times(1)).save(aceptada);
+    }
+
+    @Test
+    void procesarTransaccionPOSMarcaErrorSinTransaccionAbiertaCuandoFallaElProcesador() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenThrow(new IllegalStateException("timeout"));
+
+        TransaccionInvalidaException error = assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.procesarTransaccionPOS(crearPosDTO()));
+
+        assertTrue(error.getMessage().contains("timeout"));
+        assertEquals(0, this.transactionManager.abiertas.get());
+        assertEquals(1, this.transactionManager.transacciones.get());
+    }
+
+    @Test
+    void reintentosConcurrentesDelPOSLlamanUnaSolaVezAlProcesador() throws Exception {
+        when(this.procesadorPagosClient.procesarPago(any())).thenAnswer(inv -> {
+            TimeUnit.MILLISECONDS.sleep(LATENCIA_PROCESADOR_MS);
+            return ResponseEntity.ok().build();
+        });
+
+        List<Future<Transaccion>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newFixedThreadPool(32)) {
+            for (int i = 0; i < 32; i++) {
+                resultados.add(hilos.submit(() -> this.service.procesarTransaccionPOS(crearPosDTO())));
+            }
+            for (Future<Transaccion> resultado : resultados) {
+                assertEquals(EstadoTransaccion.ACT, resultado.get(5, TimeUnit.SECONDS).getEstado());
+            }
+        }
+        verify(this.procesadorPagosClient, times(1)).procesarPago(any());
+        verify(this.transaccionRepository, times(1)).save(any(Transaccion.class));
+    }
+
+    @Test
+    void procesarTransaccionPOSRegistraCadaEtapaConResultadoYEtiquetasAcotadas() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        TransaccionPosDTO posDTO = crearPosDTO();
+        posDTO.setMarca("ZZZZ");
+
+        this.service.procesarTransaccionPOS(posDTO);
+
+        for (String etapa : new String[] { "comercio", "insercion", "procesador", "actualizacion" }) {
+            assertEquals(1, this.meterRegistry.get("gateway.transaccion.etapa")
+                    .tags("flujo", "pos", "etapa", etapa, "resultado", "ACT", "tipo", "PAG", "marca", "OTRO")
+                    .timer().count(), etapa);
+        }
+        assertEquals(1.0, this.meterRegistry.get("gateway.transaccion.estado.final")
+                .tags("flujo", "pos", "estado", "ACT", "marca", "OTRO").counter().count());
+        assertEquals(1, this.meterRegistry.get("gateway.transaccion.duracion").tags("resultado", "ACT").timer().count());
+    }
+
+    @Test
+    void ventaRecurrenteSeRegistraEnElOutboxDentroDeLaTransaccionDelACT() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        AtomicInteger abiertasDuranteRegistro = new AtomicInteger(-1);
+        when(this.transaccionRecurrenteService.registrarTransaccionRecurrente(anyString(), any()))
+                .thenAnswer(inv -> {
+                    abiertasDuranteRegistro.set(this.transactionManager.abiertas.get());
+                    return null;
+                });
+        TransaccionPosDTO posDTO = crearPosDTO();
+        posDTO.setModalidad("REC");
+        posDTO.setFrecuenciaDias(30);
+
+        Transaccion resultado = this.service.procesarTransaccionPOS(posDTO);
+
+        assertEquals(EstadoTransaccion.ACT, resultado.getEstado());
+        assertEquals(1, abiertasDuranteRegistro.get());
+        verify(this.transaccionRecurrenteService, times(1))
+                .registrarTransaccionRecurrente(eq(resultado.getCodTransaccion()), any());
+    }
+
+    @Test
+    void consultasDeUnaTransaccionRecienProcesadaNoVanALaBase() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+
+        Transaccion procesada = this.service.procesarTransaccionPOS(crearPosDTO());
+
+        assertEquals(EstadoTransaccion.ACT,
+                this.service.obtenerTransaccionPorCodigoUnico("TRX123456789").getEstado());
+        assertEquals(EstadoTransaccion.ACT,
+                this.service.obtenerTransaccionPorId(procesada.getCodTransaccion()).getEstado());
+        verify(this.transaccionRepository, never()).findByCodigoUnicoTransaccion(anyString());
+        verify(this.transaccionRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void estadisticasCuentanLaCreacionYElCambioDeEstadoDelFlujoPOS() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+
+        this.service.procesarTransaccionPOS(crearPosDTO());
+
+        // Sin volcar todavía: la consulta devuelve lo acumulado en memoria
+        List<EstadisticasTransaccionService.Estadistica> estadisticas = this.estadisticasService.consultar(
+                LocalDateTime.now().minusHours(1), LocalDateTime.now().plusMinutes(1), List.of("marca"), "total");
+        assertEquals(1, estadisticas.size());
+        EstadisticasTransaccionService.Estadistica visa = estadisticas.get(0);
+        assertEquals("VISA", visa.marca());
+        assertEquals(1, visa.cantidad());
+        assertEquals(0, new BigDecimal("150.50").compareTo(visa.monto()));
+        assertEquals(0, visa.pendientes());
+        assertEquals(1, visa.aceptadas());
+    }
+
+    @Test
+    void tarjetaQueSuperaLaVelocidadSeRechazaSinLlamarAlProcesador() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.ok().build());
+        for (int i = 0; i < 3; i++) {
+            TransaccionPosDTO posDTO = crearPosDTO();
+            posDTO.setCodigoUnicoTransaccion("TRX12345678" + i);
+            assertEquals(EstadoTransaccion.ACT, this.service.procesarTransaccionPOS(posDTO).getEstado());
+        }
+        TransaccionPosDTO cuarta = crearPosDTO();
+        cuarta.setCodigoUnicoTransaccion("TRX123456783");
+
+        TransaccionInvalidaException error = assertThrows(TransaccionInvalidaException.class,
+                () -> this.service.procesarTransaccionPOS(cuarta));
+
+        assertTrue(error.getMessage().contains("3 autorizaciones en PT10M"));
+        verify(this.procesadorPagosClient, times(3)).procesarPago(any());
+        assertEquals(EstadoTransaccion.REJ,
+                this.service.obtenerTransaccionPorCodigoUnico("TRX123456783").getEstado());
+        // Otra tarjeta no se ve afectada
+        TransaccionPosDTO otraTarjeta = crearPosDTO();
+        otraTarjeta.setCodigoUnicoTransaccion("TRX123456784");
+        otraTarjeta.setNumeroTarjeta("4111111111111111");
+        assertEquals(EstadoTransaccion.ACT, this.service.procesarTransaccionPOS(otraTarjeta).getEstado());
+    }
+
+    @Test
+    void ventaRecurrenteRechazadaNoSeRegistraEnElOutbox() {
+        when(this.procesadorPagosClient.procesarPago(any())).thenReturn(ResponseEntity.badRequest().build());
+        TransaccionPosDTO posDTO = crearPosDTO();
+        posDTO.setModalidad("REC");
+        posDTO.setFrecuenciaDias(30);
+
+        assertThrows(TransaccionInvalidaException.class, () -> this.service.procesarTransaccionPOS(posDTO));
+
+        verify(this.transaccionRecurrenteService, times(0)).registrarTransaccionRecurrente(anyString(), any());
+    }
+
+    @Test
+    void fechaDeExpiracionIlegibleEsUnaViolacionYNoUnErrorInterno() {
+        for (String fecha : new String[] { null, "13/30", "1230", "ab/cd" }) {
+            TransaccionPosDTO posDTO = crearPosDTO();
+            posDTO.setFechaExpiracion(fecha);
+
+            TransaccionInvalidaException error = assertThrows(TransaccionInvalidaException.class,
+                    () -> this.service.procesarTransaccionPOS(posDTO));
+
+            assertTrue(error.getMessage().contains("La fecha de expiración debe tener el formato MM/YY"),
+                    error.getMessage());
+        }
+        verify(this.transaccionRepository, never()).save(any(Transaccion.class));
+        verify(this.procesadorPagosClient, never()).procesarPago(any());
+    }
+
+    private TransaccionPosDTO crearPosDTO() {
+        TransaccionPosDTO posDTO = new TransaccionPosDTO();
+        posDTO.setCodigoPOS("POS123456");
+        posDTO.setCodigoComercio("COM789012");
+        posDTO.setTipo("PAG");
+        posDTO.setMarca("VISA");
+        posDTO.setModalidad("SIM");
+        posDTO.setMonto(new BigDecimal("150.50"));
+        posDTO.setMoneda("USD");
+        posDTO.setPais("EC");
+        posDTO.setNumeroTarjeta("1234567812345678");
+        posDTO.setNombreTitular("Juan Pérez");
+        posDTO.setCodigoSeguridad(123);
+        posDTO.setFechaExpiracion("12/99");
+        posDTO.setCodigoUnicoTransaccion("TRX123456789");
+        return posDTO;
+    }
+
+    private static class TransactionManagerMedido implements PlatformTransactionManager {
+
+        private final AtomicInteger abiertas = new AtomicInteger();
+        private final AtomicInteger transacciones = new AtomicInteger();
+        private final AtomicLong maximaRetencionNanos = new AtomicLong();
+        private final ThreadLocal<Long> inicio = new ThreadLocal<>();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            this.abiertas.incrementAndGet();
+            this.transacciones.incrementAndGet();
+            this.inicio.set(System.nanoTime());
+            return new SimpleTransactionStatus(true);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            cerrar();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            cerrar();
+        }
+
+        private void cerrar() {
+            long retencion = System.nanoTime() - this.inicio.get();
+            this.maximaRetencionNanos.accumulateAndGet(retencion, Math::max);
+            this.abiertas.decrementAndGet();
+        }
+    }
+}
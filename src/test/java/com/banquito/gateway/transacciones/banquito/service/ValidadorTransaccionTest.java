@@ -0,0 +1,135 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.exception.TransaccionInvalidaException;
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+import com.banquito.gateway.transacciones.banquito.model.TipoTransaccion;
+import com.banquito.gateway.transacciones.banquito.model.Transaccion;
+import com.banquito.gateway.transacciones.banquito.service.ValidadorTransaccion.Violacion;
+
+class ValidadorTransaccionTest {
+
+    private static final ZoneId ZONA = ZoneId.of("America/Guayaquil");
+
+    private final ValidadorTransaccion validador = new ValidadorTransaccion(
+            Clock.fixed(LocalDate.of(2026, 3, 15).atTime(12, 0).atZone(ZONA).toInstant(), ZONA));
+
+    @Test
+    void transaccionValidaNoTieneViolaciones() {
+        assertEquals(0, this.validador.validar(this.pago()));
+
+        Transaccion transferencia = this.pago();
+        transferencia.setTipo(TipoTransaccion.TRA);
+        transferencia.setTarjeta(null);
+        transferencia.setSwiftBanco("PICHECEQXXX");
+        transferencia.setCuentaIban("EC12345678901234567890");
+        assertEquals(0, this.validador.validar(transferencia));
+    }
+
+    @Test
+    void reportaTodasLasViolacionesEnUnaPasada() {
+        Transaccion transaccion = this.pago();
+        transaccion.setMonto(new BigDecimal("0.00"));
+        transaccion.setMoneda(null);
+        transaccion.setPais("ECU");
+        transaccion.setFechaCaducidad(LocalDate.of(2026, 3, 14));
+
+        int violaciones = this.validador.validar(transaccion);
+
+        assertEquals(Violacion.MONTO_NO_POSITIVO.bit() | Violacion.TARJETA_CADUCADA.bit()
+                | Violacion.MONEDA_NO_SOPORTADA.bit() | Violacion.PAIS_INVALIDO.bit(), violaciones);
+        TransaccionInvalidaException error = assertThrows(TransaccionInvalidaException.class,
+                () -> this.validador.verificar(transaccion));
+        assertEquals("Error en la transacción: El monto debe ser mayor a 0; La tarjeta está caducada; "
+                + "Moneda no soportada: null; El código de país debe tener 2 caracteres (formato ISO)", error.getMessage());
+    }
+
+    @Test
+    void requisitosDependenDelTipo() {
+        Transaccion pago = this.pago();
+        pago.setTarjeta(null);
+        assertEquals(Violacion.TARJETA_REQUERIDA.bit(), this.validador.validar(pago));
+
+        Transaccion transferencia = this.pago();
+        transferencia.setTipo(TipoTransaccion.TRA);
+        assertEquals(Violacion.CUENTA_DESTINO_REQUERIDA.bit(), this.validador.validar(transferencia));
+
+        assertEquals(Violacion.TIPO_NO_SOPORTADO.bit() | Violacion.MONEDA_NO_SOPORTADA.bit(),
+                this.validador.validar("XYZ", new BigDecimal("10.00"), "GBP", "EC", "4111111111111111",
+                        LocalDate.of(2028, 12, 31), null, null));
+        assertEquals("Tipo de transacción no soportado: XYZ",
+                ValidadorTransaccion.mensaje(Violacion.TIPO_NO_SOPORTADO.bit(), "XYZ", "USD"));
+
+        Transaccion tarjetaCorta = this.pago();
+        tarjetaCorta.setTarjeta("41111111");
+        assertTrue(ValidadorTransaccion.contiene(this.validador.validar(tarjetaCorta), Violacion.LONGITUD_TARJETA));
+    }
+
+    @Test
+    void fechaEnCacheSeRenuevaAlCruzarLaMedianoche() {
+        RelojAjustable reloj = new RelojAjustable(
+                LocalDate.of(2026, 3, 15).atTime(23, 59, 59).atZone(ZONA).toInstant(), ZONA);
+        ValidadorTransaccion validadorConReloj = new ValidadorTransaccion(reloj);
+        Transaccion transaccion = this.pago();
+        transaccion.setFechaCaducidad(LocalDate.of(2026, 3, 15));
+
+        assertEquals(0, validadorConReloj.validar(transaccion));
+
+        reloj.avanzar(Duration.ofSeconds(2));
+        assertEquals(LocalDate.of(2026, 3, 16), validadorConReloj.hoy());
+        assertEquals(Violacion.TARJETA_CADUCADA.bit(), validadorConReloj.validar(transaccion));
+    }
+
+    private Transaccion pago() {
+        Transaccion transaccion = new Transaccion();
+        transaccion.setTipo(TipoTransaccion.PAG);
+        transaccion.setMonto(new BigDecimal("150.50"));
+        transaccion.setMoneda(Moneda.USD);
+        transaccion.setPais("EC");
+        transaccion.setTarjeta("4111111111111111");
+        transaccion.setFechaCaducidad(LocalDate.of(2028, 12, 31));
+        return transaccion;
+    }
+
+    private static class RelojAjustable extends Clock {
+
+        private Instant instante;
+        private final ZoneId zona;
+
+        RelojAjustable(Instant instante, ZoneId zona) {
+            this.instante = instante;
+            this.zona = zona;
+        }
+
+        void avanzar(Duration duracion) {
+            this.instante = this.instante.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return this.zona;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            return new RelojAjustable(this.instante, zona);
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instante;
+        }
+    }
+}
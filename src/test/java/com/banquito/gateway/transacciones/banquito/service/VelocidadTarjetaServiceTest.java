@@ -0,0 +1,176 @@
+package com.banquito.gateway.transacciones.banquito.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.banquito.gateway.transacciones.banquito.model.Moneda;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VelocidadTarjetaServiceTest {
+
+    private static final String TARJETA = "4111111111111111";
+    private static final BigDecimal DIEZ = new BigDecimal("10.00");
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong reloj;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        // Un reloj negativo comprueba también el cálculo de cubetas con System.nanoTime() < 0
+        this.reloj = new AtomicLong(-TimeUnit.HOURS.toNanos(5));
+    }
+
+    @Test
+    void superarElMaximoDeAutorizacionesRechazaSinRegistrar() {
+        VelocidadTarjetaService service = this.crear(List.of("PT10M/3/"), 1000);
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        }
+        VelocidadTarjetaService.Regla superada = service.registrar(TARJETA, Moneda.USD, DIEZ);
+
+        assertNotNull(superada);
+        assertEquals(Duration.ofMinutes(10), superada.ventana());
+        assertEquals("3 autorizaciones en PT10M", superada.descripcion());
+        // Otra tarjeta y otra moneda llevan sus propios contadores
+        assertNull(service.registrar("5500000000000004", Moneda.USD, DIEZ));
+        assertNull(service.registrar(TARJETA, Moneda.EUR, DIEZ));
+        assertEquals(1.0, this.meterRegistry.get("gateway.velocidad.rechazos").tag("regla", "PT10M").counter().count());
+    }
+
+    @Test
+    void laVentanaSeDeslizaPorCubetas() {
+        VelocidadTarjetaService service = this.crear(List.of("PT10M/3/"), 1000);
+
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        this.avanzar(Duration.ofMinutes(6));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        this.avanzar(Duration.ofMinutes(3));
+        assertNotNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+
+        // Las dos primeras salen de la ventana; la del minuto 6 sigue contando
+        this.avanzar(Duration.ofMinutes(1).plusSeconds(30));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        assertNotNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+
+        this.avanzar(Duration.ofHours(3));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+    }
+
+    @Test
+    void montoAcumuladoSeComparaConCadaReglaEnOrdenDeVentana() {
+        VelocidadTarjetaService service = this.crear(List.of("PT1H//100.00", "PT5M/10/"), 1000);
+
+        assertNull(service.registrar(TARJETA, Moneda.USD, new BigDecimal("60.00")));
+        assertNull(service.registrar(TARJETA, Moneda.USD, new BigDecimal("40")));
+        VelocidadTarjetaService.Regla superada = service.registrar(TARJETA, Moneda.USD, new BigDecimal("0.01"));
+
+        assertEquals(Duration.ofHours(1), superada.ventana());
+        assertEquals("100.00 en PT1H", superada.descripcion());
+        for (int i = 0; i < 8; i++) {
+            assertNull(service.registrar(TARJETA, Moneda.USD, BigDecimal.ZERO));
+        }
+        // Superadas ambas, se informa la de menor ventana
+        assertEquals(Duration.ofMinutes(5), service.registrar(TARJETA, Moneda.USD, BigDecimal.ONE).ventana());
+    }
+
+    @Test
+    void memoriaAcotadaYTarjetasInactivasDepuradas() {
+        VelocidadTarjetaService service = this.crear(List.of("PT10M/5/"), 64);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertNull(service.registrar(String.format("4%015d", i), Moneda.USD, DIEZ));
+        }
+
+        assertTrue(service.tarjetas() <= 64);
+        assertTrue(this.meterRegistry.get("gateway.velocidad.desalojos").counter().count() >= 10_000 - 64);
+        this.avanzar(Duration.ofMinutes(5));
+        assertNull(service.registrar(TARJETA, Moneda.USD, DIEZ));
+        this.avanzar(Duration.ofMinutes(6));
+        service.depurar();
+        assertEquals(1, service.tarjetas());
+        assertEquals(1.0, this.meterRegistry.get("gateway.velocidad.tarjetas").gauge().value());
+    }
+
+    @Test
+    void lasTarjetasQueQuedanConservanSusContadoresTrasDepurar() {
+        VelocidadTarjetaService service = this.crear(List.of("PT10M/2/"), 100_000);
+        for (int i = 0; i < 5_000; i++) {
+            assertNull(service.registrar(String.format("4%015d", i), Moneda.USD, DIEZ));
+        }
+        this.avanzar(Duration.ofMinutes(6));
+        for (int i = 0; i < 5_000; i += 3) {
+            assertNull(service.registrar(String.format("4%015d", i), Moneda.USD, DIEZ));
+        }
+        this.avanzar(Duration.ofMinutes(5));
+
+        service.depurar();
+
+        assertEquals(1_667, service.tarjetas());
+        // Las depuradas empiezan de cero; las que quedan llevan una autorización en la ventana
+        for (int i = 0; i < 5_000; i++) {
+            String tarjeta = String.format("4%015d", i);
+            assertNull(service.registrar(tarjeta, Moneda.USD, DIEZ), "tarjeta " + i);
+            assertEquals(i % 3 == 0, service.registrar(tarjeta, Moneda.USD, DIEZ) != null, "tarjeta " + i);
+        }
+    }
+
+    @Test
+    void autorizacionesConcurrentesDeUnaTarjetaNoSuperanElMaximo() throws Exception {
+        VelocidadTarjetaService service = this.crear(List.of("PT10M/100/"), 1000);
+        List<Future<Integer>> hilos = new ArrayList<>();
+
+        try (ExecutorService ejecutor = Executors.newFixedThreadPool(8)) {
+            for (int h = 0; h < 8; h++) {
+                hilos.add(ejecutor.submit(() -> {
+                    int aceptadas = 0;
+                    for (int i = 0; i < 500; i++) {
+                        if (service.registrar(TARJETA, Moneda.USD, DIEZ) == null) {
+                            aceptadas++;
+                        }
+                    }
+                    return aceptadas;
+                }));
+            }
+            int aceptadas = 0;
+            for (Future<Integer> hilo : hilos) {
+                aceptadas += hilo.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(100, aceptadas);
+        }
+    }
+
+    @Test
+    void reglaMalFormadaSeRechazaAlArrancar() {
+        assertThrows(IllegalArgumentException.class, () -> this.crear(List.of("PT10M/5"), 1000));
+        assertThrows(IllegalArgumentException.class, () -> this.crear(List.of("PT0S/5/"), 1000));
+    }
+
+    private VelocidadTarjetaService crear(List<String> reglas, int tamanioMaximo) {
+        return new VelocidadTarjetaService(this.meterRegistry, true, reglas, 20, tamanioMaximo, 4, this.reloj::get);
+    }
+
+    private void avanzar(Duration duracion) {
+        this.reloj.addAndGet(duracion.toNanos());
+    }
+}